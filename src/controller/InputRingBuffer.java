@@ -0,0 +1,130 @@
+package controller;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Bounded single-producer / single-consumer queue of timestamped key events.
+ * <p>
+ * The Swing event thread is the only producer ({@link #publish(int, boolean, long)})
+ * and the game thread the only consumer ({@link #drain(Handler)}). Each side
+ * owns one index and only reads the other's, so no locks or CAS are needed:
+ * the producer writes the slot and then releases the new tail, the consumer
+ * acquires the tail before reading the slots and releases the new head once
+ * they are consumed. Slots are plain primitive arrays, so publishing and
+ * draining allocate nothing.
+ * <p>
+ * The producer never waits: if the buffer is full (the game thread stalled
+ * for hundreds of key events, mostly key auto-repeat) the new event is
+ * dropped and counted in {@link #getDropped()}, so a stall never freezes the
+ * Swing event thread. A producer that must not lose what an event carries
+ * keeps that state itself and lets the consumer catch up from it when
+ * {@link #publish} reports a drop (see {@link KeyHandler}).
+ */
+public class InputRingBuffer {
+
+    /**
+     * Receives drained events in the order they were published.
+     */
+    public interface Handler {
+
+        /**
+         * Called once per event.
+         *
+         * @param keyCode {@link java.awt.event.KeyEvent} key code
+         * @param pressed true for a press, false for a release
+         * @param nanos   {@code System.nanoTime()} when the event was published
+         */
+        void onKey(int keyCode, boolean pressed, long nanos);
+    }
+
+    private static final VarHandle HEAD;
+    private static final VarHandle TAIL;
+
+    static {
+        try {
+            MethodHandles.Lookup l = MethodHandles.lookup();
+            HEAD = l.findVarHandle(InputRingBuffer.class, "head", long.class);
+            TAIL = l.findVarHandle(InputRingBuffer.class, "tail", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final int mask;
+    private final int[] keys;     // key code, sign bit set for presses
+    private final long[] times;
+
+    // next slot to read (written by the consumer only)
+    @SuppressWarnings("unused")
+    private volatile long head;
+    // next slot to write (written by the producer only)
+    @SuppressWarnings("unused")
+    private volatile long tail;
+
+    // events rejected because the buffer was full (written by the producer only)
+    private volatile long dropped;
+
+    /**
+     * Creates a buffer holding up to {@code capacity} undrained events.
+     *
+     * @param capacity requested capacity, rounded up to a power of two
+     */
+    public InputRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.keys = new int[size];
+        this.times = new long[size];
+    }
+
+    /**
+     * Appends an event, or drops it if the buffer is full. Must only be called
+     * from the producer thread.
+     *
+     * @param keyCode key code of the event
+     * @param pressed true for a press, false for a release
+     * @param nanos   event timestamp ({@code System.nanoTime()})
+     * @return false if the event was dropped
+     */
+    public boolean publish(int keyCode, boolean pressed, long nanos) {
+        long t = (long) TAIL.getOpaque(this);
+        if (t - (long) HEAD.getAcquire(this) > mask) {
+            dropped++; // single writer
+            return false;
+        }
+        int i = (int) t & mask;
+        keys[i] = pressed ? (keyCode | Integer.MIN_VALUE) : keyCode;
+        times[i] = nanos;
+        TAIL.setRelease(this, t + 1);
+        return true;
+    }
+
+    /**
+     * Hands every event published so far to {@code handler} and frees their
+     * slots. Must only be called from the consumer thread.
+     *
+     * @param handler receiver of the events
+     * @return number of events drained
+     */
+    public int drain(Handler handler) {
+        long h = (long) HEAD.getOpaque(this);
+        long t = (long) TAIL.getAcquire(this);
+        for (long n = h; n < t; n++) {
+            int i = (int) n & mask;
+            int k = keys[i];
+            handler.onKey(k & Integer.MAX_VALUE, k < 0, times[i]);
+        }
+        HEAD.setRelease(this, t);
+        return (int) (t - h);
+    }
+
+    /**
+     * Returns how many events were dropped because the buffer was full.
+     * May be called from any thread.
+     *
+     * @return number of dropped events
+     */
+    public long getDropped() {
+        return dropped;
+    }
+}
@@ -2,6 +2,7 @@ package controller;
 
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Handles all keyboard input for the game, including:
@@ -14,16 +15,31 @@ import java.awt.event.KeyListener;
  *             <li><b>J</b> — detonate walking bomb</li>
  *         </ul>
  *     </li>
+ *     <li><b>F3</b> — toggle the performance overlay</li>
  * </ul>
  *
  * <p>This class tracks which keys are currently pressed using boolean flags
  * that the GameModel and other game systems read every update cycle.</p>
  *
+ * <p>The flags are owned by the game thread. The Swing event thread only
+ * publishes timestamped press/release events into an {@link InputRingBuffer};
+ * {@link #pollInputs()} drains them at the start of every tick and applies them
+ * in order, so every event is seen by the very next tick and no field is
+ * written from two threads.</p>
+ *
+ * <p>Auto-repeat presses of a key that is already held are not queued. If the
+ * queue is full anyway, the event thread never waits: it drops the event, and
+ * the next {@link #pollInputs()} sets the movement and bomb keys from the
+ * set of held keys the event thread keeps. A key release is therefore never
+ * lost, however long the game thread stalls.</p>
+ *
  * <p>Key press behavior:
  * <ul>
  *     <li>Movement keys behave continuously (true while held down).</li>
  *     <li>Bomb placement triggers only once per key press.</li>
- *     <li>Detonation triggers once and resets on key release.</li>
+ *     <li>Detonation triggers once per press and is consumed by the game.</li>
+ *     <li>A movement key pressed and released within one tick still counts as
+ *         held for that tick, so short taps are never lost.</li>
  * </ul>
  */
 public class KeyHandler implements KeyListener {
@@ -78,16 +94,69 @@ public class KeyHandler implements KeyListener {
      */
     public boolean placeKeyDown;
 
-    /** True while J is held — triggers detonation of walking bomb. */
+    /** Set when J is pressed — triggers detonation of walking bomb; cleared by the game once handled. */
     public boolean detonatePressed;
 
 
+    // -------------------------------------------------------------
+    // Debug
+    // -------------------------------------------------------------
+
+    /**
+     * Whether the FPS / frame-time overlay is shown. Flipped on each F3 press;
+     * read by the render thread, hence volatile.
+     */
+    public volatile boolean perfOverlay = Boolean.getBoolean("boomberman.perfOverlay");
+
+
+    // -------------------------------------------------------------
+    // Event queue (EDT -> game thread)
+    // -------------------------------------------------------------
+
+    /** Key events published on the EDT, drained by {@link #pollInputs()}. */
+    private final InputRingBuffer events = new InputRingBuffer(256);
+
+    /** Keys held according to the event thread (bit per key, see {@link #keyBit}); EDT only. */
+    private int heldOnEdt;
+
+    /** {@link #heldOnEdt} as published to the game thread. */
+    private final AtomicInteger held = new AtomicInteger();
+
+    /** Set when an event could not be queued; the flags are then reset from {@link #held}. */
+    private volatile boolean eventsLost;
+
+    /** Applies drained events to the flags; created once so draining allocates nothing. */
+    private final InputRingBuffer.Handler applier = this::apply;
+
+    /** Movement keys pressed during the current {@link #pollInputs()} batch (bit per key). */
+    private int pressedInBatch;
+
+    /** Movement keys whose release is held back until the next tick. */
+    private int releaseNextTick;
+
+    /** {@code System.nanoTime()} of the newest event applied so far (0 if none). */
+    private long lastEventNanos;
+
+    /** Timestamp of the oldest hero-movement press not yet taken by the hero (0 if none). */
+    private long pendingMoveNanos;
+
+    // bit positions of the movement keys
+    private static final int UP = 0, DOWN = 1, LEFT = 2, RIGHT = 3,
+            BOMB_UP = 4, BOMB_DOWN = 5, BOMB_LEFT = 6, BOMB_RIGHT = 7;
+
+    // bit of the place-bomb key in the held set
+    private static final int PLACE = 8;
+
+
     @Override
     public void keyTyped(KeyEvent e) { }
 
 
     /**
-     * Handles the moments when keys are pressed down.
+     * Handles the moments when keys are pressed down (EDT).
+     * <p>
+     * Game keys are only queued here; the debug overlay toggle is applied
+     * immediately because it does not affect the simulation.
      *
      * @param e key event containing the pressed key code
      */
@@ -95,91 +164,172 @@ public class KeyHandler implements KeyListener {
     public void keyPressed(KeyEvent e) {
         int key = e.getKeyCode();
 
-        // ---------------- HERO MOVEMENT (WASD) ----------------
-        if (key == KeyEvent.VK_W) {
-            upPressed = true;
-        }
-        else if (key == KeyEvent.VK_S) {
-            downPressed = true;
-        }
-        else if (key == KeyEvent.VK_A) {
-            leftPressed = true;
-        }
-        else if (key == KeyEvent.VK_D) {
-            rightPressed = true;
-        }
-
-        // ------------- WALKING BOMB MOVEMENT (ARROWS) ----------
-        else if (key == KeyEvent.VK_UP) {
-            bombUpPressed = true;
-        }
-        else if (key == KeyEvent.VK_DOWN) {
-            bombDownPressed = true;
-        }
-        else if (key == KeyEvent.VK_LEFT) {
-            bombLeftPressed = true;
-        }
-        else if (key == KeyEvent.VK_RIGHT) {
-            bombRightPressed = true;
-        }
-
-        // ---------------- BOMB ACTIONS ----------------
-        else if (key == KeyEvent.VK_H) {
-            // Only trigger once per press
-            if (!placeKeyDown) {
-                placePressed = true;
-                placeKeyDown = true;
-            }
+        // ---------------- DEBUG ----------------
+        if (key == KeyEvent.VK_F3) {
+            perfOverlay = !perfOverlay;
+            return;
         }
-        else if (key == KeyEvent.VK_J) {
-            detonatePressed = true;
+        int bit = keyBit(key);
+        if (bit >= 0) {
+            if ((heldOnEdt & (1 << bit)) != 0) return; // auto-repeat: already held
+            heldOnEdt |= 1 << bit;
+            held.set(heldOnEdt);
         }
+        if (!events.publish(key, true, System.nanoTime())) eventsLost = true;
     }
 
 
     /**
-     * Handles the moments when keys are released.
+     * Handles the moments when keys are released (EDT).
      *
      * @param e key event containing the released key code
      */
     @Override
     public void keyReleased(KeyEvent e) {
         int key = e.getKeyCode();
-
-        // ---------------- HERO MOVEMENT ----------------
-        if (key == KeyEvent.VK_W) {
-            upPressed = false;
+        int bit = keyBit(key);
+        if (bit >= 0) {
+            heldOnEdt &= ~(1 << bit);
+            held.set(heldOnEdt);
         }
-        else if (key == KeyEvent.VK_S) {
-            downPressed = false;
-        }
-        else if (key == KeyEvent.VK_A) {
-            leftPressed = false;
+        if (!events.publish(key, false, System.nanoTime())) eventsLost = true;
+    }
+
+
+    /**
+     * Applies every key event received since the previous call. Called by the
+     * game thread at the start of each tick, before anything reads the flags.
+     */
+    public void pollInputs() {
+        // releases of keys tapped within the previous tick take effect now
+        if (releaseNextTick != 0) {
+            for (int bit = UP; bit <= BOMB_RIGHT; bit++) {
+                if ((releaseNextTick & (1 << bit)) != 0) setMovement(bit, false);
+            }
+            releaseNextTick = 0;
         }
-        else if (key == KeyEvent.VK_D) {
-            rightPressed = false;
+        pressedInBatch = 0;
+        events.drain(applier);
+        if (eventsLost) {
+            eventsLost = false;
+            catchUp(held.get());
         }
+    }
+
 
-        // ------------- WALKING BOMB MOVEMENT --------------
-        else if (key == KeyEvent.VK_UP) {
-            bombUpPressed = false;
+    /**
+     * Sets the key flags from the keys the event thread reports as held,
+     * after events were dropped because the queue was full (game thread).
+     */
+    private void catchUp(int heldKeys) {
+        for (int bit = UP; bit <= BOMB_RIGHT; bit++) {
+            boolean down = (heldKeys & (1 << bit)) != 0;
+            setMovement(bit, down);
+            if (!down) releaseNextTick &= ~(1 << bit);
         }
-        else if (key == KeyEvent.VK_DOWN) {
-            bombDownPressed = false;
+        boolean placeHeld = (heldKeys & (1 << PLACE)) != 0;
+        if (placeHeld && !placeKeyDown) placePressed = true; // its press was among the dropped
+        placeKeyDown = placeHeld;
+    }
+
+
+    /**
+     * Returns the time the newest applied key event was received.
+     *
+     * @return {@code System.nanoTime()} of the event, or 0 if none was applied yet
+     */
+    public long getLastEventNanos() {
+        return lastEventNanos;
+    }
+
+
+    /**
+     * Returns and clears the timestamp of the oldest W/A/S/D press the hero has
+     * not acted on yet. Used to measure input-to-photon latency.
+     *
+     * @return {@code System.nanoTime()} of that key event, or 0 if there is none
+     */
+    public long takeMoveInputNanos() {
+        long t = pendingMoveNanos;
+        pendingMoveNanos = 0;
+        return t;
+    }
+
+
+    /** Applies one queued event to the flags (game thread). */
+    private void apply(int key, boolean pressed, long nanos) {
+        lastEventNanos = nanos;
+
+        // ---------------- MOVEMENT (WASD / ARROWS) ----------------
+        int bit = movementBit(key);
+        if (bit >= 0) {
+            int m = 1 << bit;
+            if (pressed) {
+                if (bit <= RIGHT && pendingMoveNanos == 0) pendingMoveNanos = nanos;
+                setMovement(bit, true);
+                pressedInBatch |= m;
+                releaseNextTick &= ~m;
+            } else if ((pressedInBatch & m) != 0) {
+                // pressed and released before any tick saw it: keep it for one tick
+                releaseNextTick |= m;
+            } else {
+                setMovement(bit, false);
+            }
+            return;
         }
-        else if (key == KeyEvent.VK_LEFT) {
-            bombLeftPressed = false;
+
+        // ---------------- BOMB ACTIONS ----------------
+        if (key == KeyEvent.VK_H) {
+            if (pressed) {
+                // Only trigger once per press
+                if (!placeKeyDown) {
+                    placePressed = true;
+                    placeKeyDown = true;
+                }
+            } else {
+                placeKeyDown = false;
+            }
         }
-        else if (key == KeyEvent.VK_RIGHT) {
-            bombRightPressed = false;
+        else if (key == KeyEvent.VK_J && pressed) {
+            // stays set until the game handles it, even if J is already released
+            detonatePressed = true;
         }
+    }
 
-        // ---------------- BOMB ACTIONS ----------------
-        else if (key == KeyEvent.VK_J) {
-            detonatePressed = false;
+
+    /** @return the held-set bit of a movement or place-bomb key, or -1 for other keys */
+    private static int keyBit(int key) {
+        return (key == KeyEvent.VK_H) ? PLACE : movementBit(key);
+    }
+
+
+    /** @return the flag bit of a movement key, or -1 for other keys */
+    private static int movementBit(int key) {
+        switch (key) {
+            case KeyEvent.VK_W: return UP;
+            case KeyEvent.VK_S: return DOWN;
+            case KeyEvent.VK_A: return LEFT;
+            case KeyEvent.VK_D: return RIGHT;
+            case KeyEvent.VK_UP: return BOMB_UP;
+            case KeyEvent.VK_DOWN: return BOMB_DOWN;
+            case KeyEvent.VK_LEFT: return BOMB_LEFT;
+            case KeyEvent.VK_RIGHT: return BOMB_RIGHT;
+            default: return -1;
         }
-        else if (key == KeyEvent.VK_H) {
-            placeKeyDown = false;
+    }
+
+
+    private void setMovement(int bit, boolean value) {
+        switch (bit) {
+            case UP: upPressed = value; break;
+            case DOWN: downPressed = value; break;
+            case LEFT: leftPressed = value; break;
+            case RIGHT: rightPressed = value; break;
+            case BOMB_UP: bombUpPressed = value; break;
+            case BOMB_DOWN: bombDownPressed = value; break;
+            case BOMB_LEFT: bombLeftPressed = value; break;
+            case BOMB_RIGHT: bombRightPressed = value; break;
+            default: break;
         }
     }
 }
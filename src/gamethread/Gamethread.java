@@ -11,10 +11,16 @@ import model.GamePanel;
  * <ul>
  *     <li>Calculates elapsed time between frames</li>
  *     <li>Updates the {@link GameModel} based on time passed</li>
- *     <li>Triggers a screen repaint through {@link GamePanel}</li>
+ *     <li>Triggers a repaint of the changed screen regions through {@link GamePanel}</li>
  * </ul>
  *
- * <p>The loop targets a refresh rate of approximately 60 FPS.</p>
+ * <p>When created with a {@link RenderThread}, the game runs in active rendering
+ * mode: this loop only updates the model and frames are drawn and presented
+ * by the render thread at its own pace, so no repaint is queued.</p>
+ *
+ * <p>The loop runs at the model's fixed tick rate ({@link GameModel#getTickRate()},
+ * 60 by default). Every update advances the simulation by exactly one tick
+ * duration, so the game plays at the same speed whatever rate is chosen.</p>
  *
  * <p><strong>Important:</strong>
  * The game loop only terminates when {@code gameThread} becomes {@code null},
@@ -31,6 +37,15 @@ public class Gamethread implements Runnable {
     /** Reference to the game's rendering panel. */
     private GamePanel gp;
 
+    /** Active-rendering loop, or null when frames are painted through Swing. */
+    private RenderThread renderer;
+
+    /** Target time between model updates in nanoseconds (1 second / tick rate). */
+    private final double drawInterval;
+
+    /** {@code System.nanoTime()} of the most recent model update. */
+    private volatile long lastTickTime = System.nanoTime();
+
     /**
      * Creates a new game loop thread bound to the given model and panel.
      *
@@ -40,30 +55,55 @@ public class Gamethread implements Runnable {
     public Gamethread(GameModel gm, GamePanel gp) {
         this.gm = gm;
         this.gp = gp;
+        this.drawInterval = 1000000000.0 / gm.getTickRate();
     }
 
     /**
-     * Starts the internal game loop thread.
+     * Creates a new game loop that leaves drawing to an active render thread.
+     *
+     * @param gm       the game model to be updated each frame
+     * @param gp       the panel holding the draw code
+     * @param renderer the render loop that presents frames
+     */
+    public Gamethread(GameModel gm, GamePanel gp, RenderThread renderer) {
+        this(gm, gp);
+        this.renderer = renderer;
+        renderer.setTickSource(this);
+    }
+
+    /**
+     * Returns how far the simulation has progressed towards its next update,
+     * as a fraction of the tick interval. Renderers use it to interpolate
+     * entity positions between the last two ticks.
+     *
+     * @return elapsed fraction of the current tick, clamped to 0..1
+     */
+    public double getInterpolationAlpha() {
+        double alpha = (System.nanoTime() - lastTickTime) / drawInterval;
+        return Math.max(0.0, Math.min(1.0, alpha));
+    }
+
+    /**
+     * Starts the internal game loop thread, and the render thread if one is attached.
      */
     public void startGameThread() {
         gameThread.start();
+        if (renderer != null) renderer.startRenderThread();
     }
 
     /**
      * The main game loop.
      *
-     * <p>This loop maintains a fixed update rate of ~60 updates per second.
-     * Game logic and physics are updated using {@code deltaBomb}, which
-     * represents the actual elapsed time between updates in seconds.</p>
+     * <p>This loop maintains a fixed update rate of {@code gm.getTickRate()}
+     * updates per second. Game logic and physics are always advanced by the
+     * fixed tick duration rather than the measured elapsed time, which keeps
+     * the simulation deterministic.</p>
      */
     @Override
     public void run() {
 
-        // Target time between frames (1 second / 60)
-        double drawInterval = 1000000000 / 60.0;
-
         double delta = 0;
-        double deltaBomb = 0;
+        double tickSeconds = gm.getTickSeconds();
 
         long lastTime = System.nanoTime();
         long currentTime;
@@ -75,7 +115,6 @@ public class Gamethread implements Runnable {
 
             // Time passed since last frame
             delta += (currentTime - lastTime) / drawInterval;
-            deltaBomb += (currentTime - lastTime) / 1000000000.0; // in seconds
 
             lastTime = currentTime;
 
@@ -83,14 +122,17 @@ public class Gamethread implements Runnable {
             if (delta >= 1) {
 
                 // Update game logic (movement, drones, bombs, collisions)
-                gm.update(deltaBomb);
+                synchronized (gm.stateLock) {
+                    gm.update(tickSeconds);
+                }
+                lastTickTime = System.nanoTime();
+                gp.perfStats.recordTick();
 
-                // Redraw visual components
-                gp.repaint();
+                // Redraw changed screen regions (active mode presents on its own)
+                if (renderer == null) gp.repaintDirty();
 
                 // Reset counters for next frame
                 delta--;
-                deltaBomb = 0;
             }
         }
     }
@@ -0,0 +1,145 @@
+package gamethread;
+
+import model.GameCanvas;
+
+/**
+ * The {@code RenderThread} class drives active rendering: it draws and presents
+ * frames on its own thread at a fixed pace instead of waiting for Swing's
+ * repaint requests to be processed on the event thread.
+ *
+ * <p>The frame interval matches the refresh rate of the display the
+ * {@link GameCanvas} is shown on, so presentation lines up with the monitor's
+ * vertical refresh. Each frame has a deadline; when a frame finishes more than
+ * one interval late the skipped refresh slots are counted as dropped frames
+ * (shown by the F3 overlay) and the schedule is moved forward instead of
+ * trying to catch up.</p>
+ *
+ * <p>Because the display usually refreshes faster than the simulation ticks,
+ * every frame is drawn with the fraction of the current tick that has elapsed
+ * (see {@link Gamethread#getInterpolationAlpha()}), letting moving entities be
+ * blended smoothly between their last two simulated positions.</p>
+ *
+ * <p>Like {@link Gamethread}, the loop terminates when {@code renderThread}
+ * becomes {@code null} (see {@link #stopRenderThread()}).</p>
+ */
+public class RenderThread implements Runnable {
+
+    /** Internal thread running the render loop. */
+    volatile Thread renderThread = new Thread(this, "render");
+
+    /** Canvas that draws and presents each frame. */
+    private final GameCanvas canvas;
+
+    /** Simulation loop queried for the interpolation fraction (null draws the latest tick). */
+    private volatile Gamethread tickSource;
+
+    /** Target time between presented frames, in nanoseconds. */
+    private final long frameInterval;
+
+    /**
+     * Creates a render loop paced to the display's refresh rate.
+     *
+     * @param canvas the canvas to render into (its buffer strategy must exist)
+     */
+    public RenderThread(GameCanvas canvas) {
+        this(canvas, canvas.getRefreshRate());
+    }
+
+    /**
+     * Creates a render loop with an explicit frame rate.
+     *
+     * @param canvas     the canvas to render into (its buffer strategy must exist)
+     * @param framesPerSecond target presentation rate
+     */
+    public RenderThread(GameCanvas canvas, int framesPerSecond) {
+        this.canvas = canvas;
+        this.frameInterval = 1000000000L / Math.max(1, framesPerSecond);
+    }
+
+    /**
+     * Attaches the simulation loop whose tick progress drives interpolation.
+     *
+     * @param tickSource the game loop updating the model
+     */
+    void setTickSource(Gamethread tickSource) {
+        this.tickSource = tickSource;
+    }
+
+    /**
+     * Starts the internal render thread.
+     */
+    public void startRenderThread() {
+        renderThread.start();
+    }
+
+    /**
+     * Asks the render loop to finish after the current frame.
+     */
+    public void stopRenderThread() {
+        renderThread = null;
+    }
+
+    /** @return target time between frames in nanoseconds */
+    public long getFrameInterval() {
+        return frameInterval;
+    }
+
+    /**
+     * The render loop.
+     *
+     * <p>Renders a frame, then sleeps until the next deadline. Most of the wait
+     * is spent in {@link Thread#sleep(long)}; the last millisecond is spent
+     * yielding so the wake-up is not delayed by coarse sleep granularity.</p>
+     */
+    @Override
+    public void run() {
+        long nextFrame = System.nanoTime() + frameInterval;
+
+        while (renderThread != null) {
+
+            Gamethread ticks = tickSource;
+            double alpha = (ticks != null) ? ticks.getInterpolationAlpha() : 1.0;
+
+            try {
+                // frames where nothing changed are skipped (and not counted by PerfStats)
+                canvas.renderFrame(alpha);
+            } catch (RuntimeException e) {
+                // one bad frame must not end rendering for good; the next one starts afresh
+                System.err.println("Frame failed: " + e);
+            }
+
+            long now = System.nanoTime();
+
+            // Finished past the following deadline: skip the missed slots
+            if (now > nextFrame + frameInterval) {
+                long missed = (now - nextFrame) / frameInterval;
+                canvas.framesDropped(missed);
+                nextFrame += missed * frameInterval;
+            }
+
+            waitUntil(nextFrame);
+            nextFrame += frameInterval;
+        }
+    }
+
+    /**
+     * Blocks until {@code System.nanoTime()} reaches the given deadline.
+     *
+     * @param deadline absolute time in nanoseconds
+     */
+    private void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            if (remaining > 2000000L) {
+                try {
+                    Thread.sleep((remaining - 1000000L) / 1000000L);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+}
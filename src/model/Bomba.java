@@ -58,6 +58,20 @@ public class Bomba {
         this(row, col, timeTilExplosion, gm, false);
     }
 
+    /**
+     * Copies the complete state of another bomb of the same model (saving and
+     * restoring a {@link GameState}).
+     *
+     * @param o bomb to copy
+     */
+    void copyFrom(Bomba o) {
+        row = o.row;
+        col = o.col;
+        timeTilExplosion = o.timeTilExplosion;
+        exploded = o.exploded;
+        powered = o.powered;
+    }
+
     /**
      * Causes the bomb to explode, damaging nearby tiles, drones, and the hero.
      * <p>
@@ -2,6 +2,7 @@ package model;
 
 import controller.KeyHandler;
 import gamethread.Gamethread;
+import gamethread.RenderThread;
 
 import javax.swing.*;
 
@@ -10,6 +11,13 @@ import javax.swing.*;
  * <p>
  * It initializes the game window, game model, key inputs, and game panel,
  * then starts the main game thread which handles updating and rendering.
+ * <p>
+ * By default frames are drawn with active rendering ({@link GameCanvas} plus a
+ * {@link RenderThread}). Start the JVM with {@code -Dboomberman.activeRendering=false}
+ * to fall back to Swing's repaint-driven {@link GamePanel}. The simulation rate
+ * defaults to 60 ticks per second and can be changed with {@code -Dboomberman.tickRate=N}.
+ * {@code -Dboomberman.renderer=software} composes frames on the CPU with
+ * {@link SoftwareRenderer} instead of Java2D.
  */
 public class Boomberman {
 
@@ -20,29 +28,71 @@ public class Boomberman {
      * <ul>
      *   <li>Creates the main application window</li>
      *   <li>Initializes the {@link GameModel}, {@link GamePanel}, and {@link KeyHandler}</li>
-     *   <li>Attaches the panel to the window and makes it visible</li>
+     *   <li>Attaches the panel (or its active-rendering canvas) to the window and makes it visible</li>
      *   <li>Starts the {@link Gamethread} which updates and renders the game</li>
      * </ul>
      *
      * @param args command-line arguments (not used)
      */
     public static void main(String[] args) {
+        KeyHandler keyH = new KeyHandler();
+        GameModel gameModel = new GameModel(keyH);
+        gameModel.setTickRate(Integer.getInteger("boomberman.tickRate", 60));
+        launch(gameModel, "Boomberman");
+    }
+
+    /**
+     * Opens the game window for a model and starts its game loop. Used for
+     * local play and, with a model set up by {@link GameModel#setRemote}, for
+     * rendering a networked game.
+     *
+     * @param gameModel model to run and draw; its KeyHandler receives the window's key events
+     * @param title     window title
+     */
+    public static void launch(GameModel gameModel, String title) {
         JFrame mainWindow = new JFrame();
-        mainWindow.setTitle("Boomberman");
+        mainWindow.setTitle(title);
         mainWindow.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         mainWindow.setResizable(false);
 
-        KeyHandler keyH = new KeyHandler();
-        GameModel gameModel = new GameModel(keyH);
         GamePanel gamePanel = new GamePanel(gameModel);
+        gamePanel.setSoftwareRendering("software".equals(System.getProperty("boomberman.renderer")));
+
+        // summary for tuning loop / rendering settings against input latency
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (gamePanel.perfStats.inputToPhoton.getCount() > 0) {
+                System.out.println("input->tick:   " + gamePanel.perfStats.inputToTick);
+                System.out.println("input->photon: " + gamePanel.perfStats.inputToPhoton);
+            }
+        }));
+
+        boolean activeRendering = !"false".equals(System.getProperty("boomberman.activeRendering"));
 
-        mainWindow.add(gamePanel);
+        if (!activeRendering) {
+            mainWindow.add(gamePanel);
+            mainWindow.pack();
+
+            mainWindow.setLocationRelativeTo(null);
+            mainWindow.setVisible(true);
+
+            Gamethread gamethread = new Gamethread(gameModel, gamePanel);
+            gamethread.startGameThread();
+            return;
+        }
+
+        GameCanvas canvas = new GameCanvas(gamePanel);
+        mainWindow.add(canvas);
         mainWindow.pack();
 
         mainWindow.setLocationRelativeTo(null);
         mainWindow.setVisible(true);
 
-        Gamethread gamethread = new Gamethread(gameModel, gamePanel);
+        // the buffer strategy can only be created once the canvas is displayable
+        canvas.createStrategy();
+        canvas.requestFocus();
+
+        RenderThread renderThread = new RenderThread(canvas);
+        Gamethread gamethread = new Gamethread(gameModel, gamePanel, renderThread);
         gamethread.startGameThread();
     }
 
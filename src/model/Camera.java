@@ -0,0 +1,113 @@
+package model;
+
+import java.awt.*;
+
+/**
+ * Viewport onto the tile map.
+ * <p>
+ * The camera holds the world-pixel position of the top-left corner of the
+ * screen. {@link #follow(int, int, int, int)} centers it on a target (the hero)
+ * and clamps it so the view never scrolls past the edge of the map; maps that
+ * are smaller than the screen are centered instead.
+ * <p>
+ * {@link GamePanel} translates the graphics by {@code (-x, -y)} before drawing
+ * the world, so all draw code keeps using world coordinates. The visible tile
+ * range and {@link #isVisible(int, int, int, int)} let the renderer skip
+ * everything outside the viewport before any draw call is made, so the cost of
+ * a frame depends on the screen size and not on the map size.
+ */
+public class Camera {
+
+    /** Width of the viewport in pixels. */
+    private final int viewWidth;
+
+    /** Height of the viewport in pixels. */
+    private final int viewHeight;
+
+    // world position of the top-left corner of the viewport; written by the
+    // thread preparing a frame, read while drawing it
+    private volatile int x;
+    private volatile int y;
+
+    /**
+     * Creates a camera with the given viewport size, positioned at the origin.
+     *
+     * @param viewWidth  viewport width in pixels
+     * @param viewHeight viewport height in pixels
+     */
+    public Camera(int viewWidth, int viewHeight) {
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+    }
+
+    /**
+     * Centers the viewport on a world position, clamped to the map.
+     *
+     * @param targetX     world x to center on
+     * @param targetY     world y to center on
+     * @param worldWidth  map width in pixels
+     * @param worldHeight map height in pixels
+     * @return true if the camera moved
+     */
+    public boolean follow(int targetX, int targetY, int worldWidth, int worldHeight) {
+        int nx = clamp(targetX - viewWidth / 2, worldWidth, viewWidth);
+        int ny = clamp(targetY - viewHeight / 2, worldHeight, viewHeight);
+        if (nx == x && ny == y) return false;
+        x = nx;
+        y = ny;
+        return true;
+    }
+
+    /**
+     * Keeps {@code pos} inside {@code 0..world-view}, or centers the map when
+     * it is smaller than the view.
+     */
+    private static int clamp(int pos, int world, int view) {
+        if (world <= view) return (world - view) / 2;
+        return Math.max(0, Math.min(pos, world - view));
+    }
+
+    /** @return world x of the left edge of the viewport */
+    public int getX() {
+        return x;
+    }
+
+    /** @return world y of the top edge of the viewport */
+    public int getY() {
+        return y;
+    }
+
+    /** @return viewport width in pixels */
+    public int getViewWidth() {
+        return viewWidth;
+    }
+
+    /** @return viewport height in pixels */
+    public int getViewHeight() {
+        return viewHeight;
+    }
+
+    /**
+     * Returns the viewport in world coordinates.
+     *
+     * @return a new rectangle covering the visible part of the world
+     */
+    public Rectangle getViewBounds() {
+        return new Rectangle(x, y, viewWidth, viewHeight);
+    }
+
+    /**
+     * Returns whether a world-space rectangle overlaps the viewport.
+     *
+     * @param wx world x
+     * @param wy world y
+     * @param w  width
+     * @param h  height
+     * @return true if any part of the rectangle is on screen
+     */
+    public boolean isVisible(int wx, int wy, int w, int h) {
+        int cx = x;
+        int cy = y;
+        return wx + w > cx && wy + h > cy && wx < cx + viewWidth && wy < cy + viewHeight;
+    }
+}
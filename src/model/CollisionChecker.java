@@ -22,7 +22,8 @@ public class CollisionChecker {
     }
 
     /**
-     * Checks which tiles the hero is about to move into based on their direction and speed.
+     * Checks which tiles the hero is about to move into based on their direction and
+     * the pixel distance of the current tick ({@link Hero#getStepPixels()}).
      * <p>
      * The method:
      * <ul>
@@ -52,28 +53,28 @@ public class CollisionChecker {
 
         switch (hero.direction) {
             case "up":
-                int nextTopRow = (heroTopY - hero.getHeroSpeed()) / tileSize;
+                int nextTopRow = (heroTopY - hero.getStepPixels()) / tileSize;
                 tile1 = gm.tiles[nextTopRow][heroLeftCol];
                 tile2 = gm.tiles[nextTopRow][heroRightCol];
                 if (!tile1.isWalkable() || !tile2.isWalkable()) hero.collision = true;
                 break;
 
             case "down":
-                int nextBottomRow = (heroBottomY + hero.getHeroSpeed()) / tileSize;
+                int nextBottomRow = (heroBottomY + hero.getStepPixels()) / tileSize;
                 tile1 = gm.tiles[nextBottomRow][heroLeftCol];
                 tile2 = gm.tiles[nextBottomRow][heroRightCol];
                 if (!tile1.isWalkable() || !tile2.isWalkable()) hero.collision = true;
                 break;
 
             case "left":
-                int nextLeftCol = (heroLeftX - hero.getHeroSpeed()) / tileSize;
+                int nextLeftCol = (heroLeftX - hero.getStepPixels()) / tileSize;
                 tile1 = gm.tiles[heroTopRow][nextLeftCol];
                 tile2 = gm.tiles[heroBottomRow][nextLeftCol];
                 if (!tile1.isWalkable() || !tile2.isWalkable()) hero.collision = true;
                 break;
 
             case "right":
-                int nextRightCol = (heroRightX + hero.getHeroSpeed()) / tileSize;
+                int nextRightCol = (heroRightX + hero.getStepPixels()) / tileSize;
                 tile1 = gm.tiles[heroTopRow][nextRightCol];
                 tile2 = gm.tiles[heroBottomRow][nextRightCol];
                 if (!tile1.isWalkable() || !tile2.isWalkable()) hero.collision = true;
@@ -0,0 +1,417 @@
+package model;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Works out which parts of the screen changed since the last presented frame.
+ * <p>
+ * Every call to {@link #collect(double)} compares the current {@link GameModel}
+ * against what was recorded for the previous frame and queues a rectangle for
+ * each difference:
+ * <ul>
+ *   <li>tiles whose type changed (crates destroyed, level reset),</li>
+ *   <li>old and new bounds of the hero, drones and walking bombs,</li>
+ *   <li>bombs, powerups and the exit appearing or disappearing,</li>
+ *   <li>HUD text, health icon and message banner when their values change,</li>
+ *   <li>time-based effects: the blinking invulnerable hero and the pulsing
+ *       danger highlight under the hero.</li>
+ * </ul>
+ * When nothing changed no rectangle is queued and the frame can be skipped.
+ * Large changes (level start, game over, the {@link Camera} scrolling) collapse
+ * into a single full-frame invalidation.
+ * <p>
+ * World changes are recorded in world coordinates and converted to screen
+ * coordinates through the camera; only tiles inside the viewport are compared,
+ * so the per-frame cost does not grow with the map size.
+ * <p>
+ * {@code collect} runs on the game or render thread while the queued regions
+ * are drained when painting, so all public methods are synchronized.
+ * <p>
+ * Nothing is allocated per frame once the scene has been seen: the records of
+ * tracked objects are updated in place, and queued rectangles come from a
+ * pool that {@link #drain()} refills with the ones handed out last time.
+ */
+public class DirtyRegionTracker {
+
+    /** More rectangles than this are merged into one full-frame repaint. */
+    private static final int MAX_REGIONS = 48;
+
+    /** Bounds of the score / level / crates text block in the top-left corner. */
+    private static final Rectangle HUD_TEXT = new Rectangle(0, 0, 320, 60);
+
+    /** Height of the centered message banner strip at the top of the screen. */
+    private static final int MESSAGE_STRIP = 44;
+
+    private final GameModel gm;
+    private final Camera camera;
+    private final int screenWidth;
+    private final int screenHeight;
+
+    /** Extra pixels around moving sprites, covering movement between collect and paint. */
+    private final int margin;
+
+    /** Regions waiting to be repainted. */
+    private List<Rectangle> pending = new ArrayList<>();
+
+    /** Regions returned by the last {@link #drain()}; recycled by the next one. */
+    private List<Rectangle> drained = new ArrayList<>();
+
+    /** Rectangles not in use, taken before allocating new ones. */
+    private final List<Rectangle> spare = new ArrayList<>();
+
+    /** True when the next frame must be redrawn completely. */
+    private boolean fullFrame = true;
+
+    // snapshot of what the previous frame showed
+    private char[][] tileTypes;
+    private final Map<Object, Shown> entities = new IdentityHashMap<>();
+    private final Map<Object, Shown> staticObjects = new IdentityHashMap<>();
+
+    /** Incremented by every collect; records not stamped with it have left the model. */
+    private int frame;
+    private int level, score, crates, requiredCrates, hearts;
+    private int exitRow = -1, exitCol = -1;
+    private int heroRow = -1, heroCol = -1;
+    private boolean radiusPowerup;
+    private String message;
+    private boolean ended;
+    private int cameraX = Integer.MIN_VALUE, cameraY = Integer.MIN_VALUE;
+
+    /**
+     * Creates a tracker for the given model, viewed through the given camera.
+     *
+     * @param gm     model to observe
+     * @param camera viewport whose size is the drawn area
+     */
+    public DirtyRegionTracker(GameModel gm, Camera camera) {
+        this.gm = gm;
+        this.camera = camera;
+        this.screenWidth = camera.getViewWidth();
+        this.screenHeight = camera.getViewHeight();
+        this.margin = gm.tileSize / 4;
+    }
+
+    /**
+     * Forces the next frame to be redrawn completely, e.g. after the window
+     * was exposed or the back buffer contents were lost.
+     */
+    public synchronized void invalidateAll() {
+        fullFrame = true;
+        recycle(pending);
+    }
+
+    /**
+     * Queues a screen region drawn by something the tracker does not observe
+     * (e.g. the performance overlay).
+     *
+     * @param r region in screen coordinates
+     */
+    public synchronized void invalidate(Rectangle r) {
+        addScreen(r.x, r.y, r.width, r.height);
+    }
+
+    /**
+     * Compares the model with the last recorded frame and queues the regions
+     * that differ. Positions are taken at the same interpolation fraction the
+     * renderer will use.
+     *
+     * @param alpha render interpolation fraction (see {@link GamePanel#setRenderAlpha(double)})
+     */
+    public synchronized void collect(double alpha) {
+        int ts = gm.tileSize;
+        frame++;
+
+        // game over / completion overlay covers the whole screen
+        boolean nowEnded = gm.gameOver || gm.finishedAllLevels;
+        if (nowEnded != ended) {
+            ended = nowEnded;
+            fullFrame = true;
+        }
+
+        // scrolling moves everything on screen
+        if (camera.getX() != cameraX || camera.getY() != cameraY) {
+            cameraX = camera.getX();
+            cameraY = camera.getY();
+            fullFrame = true;
+        }
+
+        // tiles inside the viewport; off-screen snapshots may go stale, which at
+        // worst queues one extra tile once it scrolls into view
+        Tile[][] tiles = gm.tiles;
+        if (tileTypes == null || tileTypes.length != tiles.length || tileTypes[0].length != tiles[0].length) {
+            tileTypes = new char[tiles.length][tiles[0].length];
+            fullFrame = true;
+        }
+        int firstRow = Math.max(0, cameraY / ts);
+        int lastRow = Math.min(tiles.length - 1, (cameraY + screenHeight - 1) / ts);
+        int firstCol = Math.max(0, cameraX / ts);
+        int lastCol = Math.min(tiles[0].length - 1, (cameraX + screenWidth - 1) / ts);
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstCol; c <= lastCol; c++) {
+                char t = (tiles[r][c] != null) ? tiles[r][c].getType() : 0;
+                if (t != tileTypes[r][c]) {
+                    tileTypes[r][c] = t;
+                    addTile(r, c);
+                }
+            }
+        }
+
+        // exit
+        if (gm.exitRow != exitRow || gm.exitCol != exitCol) {
+            addTile(exitRow, exitCol);
+            exitRow = gm.exitRow;
+            exitCol = gm.exitCol;
+            addTile(exitRow, exitCol);
+        }
+
+        // hero: sprite bounds, occupied-tile highlight, blinking and danger pulse
+        Hero hero = gm.hero;
+        if (hero != null) {
+            trackEntity(hero, hero.getRenderX(alpha), hero.getRenderY(alpha), hero.direction);
+            if (hero.isInvulnerable()) {
+                add(entities.get(hero).bounds);
+            }
+            int hr = hero.getTileRow();
+            int hc = hero.getTileCol();
+            if (hr != heroRow || hc != heroCol) {
+                addTile(heroRow, heroCol);
+                heroRow = hr;
+                heroCol = hc;
+                addTile(heroRow, heroCol);
+            }
+            if (hero.hasRadiusPowerup() != radiusPowerup) {
+                radiusPowerup = hero.hasRadiusPowerup();
+                // bomb range overlays grow or shrink
+                for (int i = 0; i < gm.bombs.size(); i++) {
+                    Bomba b = gm.bombs.get(i);
+                    addCross(b.getRow(), b.getCol());
+                }
+            }
+        }
+
+        // drones and walking bombs move every tick
+        if (gm.drones != null) {
+            for (int i = 0; i < gm.drones.size(); i++) {
+                drone d = gm.drones.get(i);
+                trackEntity(d, d.getRenderX(alpha), d.getRenderY(alpha), d.getCurrentSprite());
+            }
+        }
+        boolean liveBomb = false;
+        if (gm.walkingBombs != null) {
+            for (int i = 0; i < gm.walkingBombs.size(); i++) {
+                WalkingBomb wb = gm.walkingBombs.get(i);
+                if (trackEntity(wb, wb.getRenderX(alpha), wb.getRenderY(alpha), wb.getCurrentSprite())) {
+                    // its range overlay follows it around
+                    addCross(wb.getTileRow(), wb.getTileCol());
+                }
+                Shown s = shown(staticObjects, wb);
+                setCross(s.bounds, wb.getTileRow(), wb.getTileCol());
+                s.seenIn = frame;
+                liveBomb = true;
+            }
+        }
+        for (Iterator<Shown> it = entities.values().iterator(); it.hasNext(); ) {
+            Shown s = it.next();
+            if (s.seenIn == frame) continue;
+            add(s.bounds);
+            it.remove();
+        }
+
+        // bombs and powerups only change when they appear or disappear
+        for (int i = 0; i < gm.bombs.size(); i++) {
+            Bomba b = gm.bombs.get(i);
+            Shown s = staticObjects.get(b);
+            if (!b.exploded && s == null) {
+                s = shown(staticObjects, b);
+                setCross(s.bounds, b.getRow(), b.getCol());
+                addCross(b.getRow(), b.getCol());
+            }
+            if (!b.exploded) liveBomb = true;
+            if (s != null) s.seenIn = frame;
+        }
+        for (int i = 0; i < gm.powerups.size(); i++) {
+            PowerUp pu = gm.powerups.get(i);
+            Shown s = staticObjects.get(pu);
+            if (!pu.isPicked() && s == null) {
+                s = shown(staticObjects, pu);
+                s.bounds.setBounds(pu.col * ts, pu.row * ts, ts, ts);
+                addTile(pu.row, pu.col);
+            }
+            if (s != null) s.seenIn = frame;
+        }
+        for (Iterator<Shown> it = staticObjects.values().iterator(); it.hasNext(); ) {
+            Shown s = it.next();
+            if (s.seenIn == frame && !isGone(s.object)) continue;
+            add(s.bounds);
+            it.remove();
+        }
+
+        // the hero tile pulses red while any bomb is armed
+        if (liveBomb) addTile(heroRow, heroCol);
+
+        // HUD values
+        if (gm.level != level || gm.score != score
+                || gm.destroyedCratesCount != crates || gm.requiredCratesToUnlockExit != requiredCrates) {
+            level = gm.level;
+            score = gm.score;
+            crates = gm.destroyedCratesCount;
+            requiredCrates = gm.requiredCratesToUnlockExit;
+            addScreen(HUD_TEXT.x, HUD_TEXT.y, HUD_TEXT.width, HUD_TEXT.height);
+            if (ended) fullFrame = true; // final score is on the overlay
+        }
+        int h = (hero != null) ? hero.getHearts() : 0;
+        if (h != hearts) {
+            hearts = h;
+            addScreen(screenWidth - ts - 24, 0, ts + 24, ts + 16);
+        }
+        String msg = gm.message;
+        if (msg != message && (msg == null || !msg.equals(message))) {
+            message = msg;
+            addScreen(0, 0, screenWidth, MESSAGE_STRIP);
+        }
+
+        if (pending.size() > MAX_REGIONS) {
+            fullFrame = true;
+            recycle(pending);
+        }
+    }
+
+    /**
+     * Returns whether the last {@link #collect(double)} found anything to redraw.
+     *
+     * @return true if at least one region is dirty
+     */
+    public synchronized boolean isDirty() {
+        return fullFrame || !pending.isEmpty();
+    }
+
+    /**
+     * Returns and clears the queued regions. A full-frame invalidation is
+     * returned as a single rectangle covering the whole screen.
+     * <p>
+     * The list and its rectangles are reused by the next call, so they must
+     * be consumed before draining again.
+     *
+     * @return dirty regions in screen coordinates (empty if nothing changed)
+     */
+    public synchronized List<Rectangle> drain() {
+        recycle(drained);
+        if (fullFrame) {
+            recycle(pending);
+            pending.add(obtain(0, 0, screenWidth, screenHeight));
+        }
+        List<Rectangle> out = pending;
+        pending = drained;
+        drained = out;
+        fullFrame = false;
+        return out;
+    }
+
+    /** What the previous frame showed of one tracked object. */
+    private static final class Shown {
+        final Object object;
+        final Rectangle bounds = new Rectangle();
+        Object sprite;
+        /** {@link #frame} of the last collect that found the object in the model. */
+        int seenIn;
+
+        Shown(Object object) {
+            this.object = object;
+        }
+    }
+
+    /** @return the record of {@code o} in {@code map}, created empty if missing */
+    private static Shown shown(Map<Object, Shown> map, Object o) {
+        Shown s = map.get(o);
+        if (s == null) {
+            s = new Shown(o);
+            map.put(o, s);
+        }
+        return s;
+    }
+
+    /**
+     * Records an entity's drawn bounds and queues its old and new bounds when it
+     * moved or changed sprite.
+     *
+     * @return true if the entity is new or its bounds changed
+     */
+    private boolean trackEntity(Object e, int x, int y, Object sprite) {
+        int size = gm.tileSize + 2 * margin;
+        Shown s = entities.get(e);
+        boolean isNew = (s == null);
+        if (isNew) s = shown(entities, e);
+        s.seenIn = frame;
+        Rectangle b = s.bounds;
+        boolean moved = isNew || b.x != x - margin || b.y != y - margin || b.width != size || b.height != size;
+        if (!moved && s.sprite == sprite) return false;
+        if (!isNew) add(b);
+        b.setBounds(x - margin, y - margin, size, size);
+        s.sprite = sprite;
+        add(b);
+        return moved;
+    }
+
+    /** @return true if a tracked bomb/powerup no longer needs to be drawn */
+    private boolean isGone(Object o) {
+        if (o instanceof Bomba) return ((Bomba) o).exploded;
+        if (o instanceof PowerUp) return ((PowerUp) o).isPicked();
+        if (o instanceof WalkingBomb) return ((WalkingBomb) o).isExploded();
+        return false;
+    }
+
+    /** Queues the largest possible range overlay (radius 2) around a tile. */
+    private void addCross(int row, int col) {
+        int ts = gm.tileSize;
+        add((col - 2) * ts, row * ts, 5 * ts, ts);
+        add(col * ts, (row - 2) * ts, ts, 5 * ts);
+    }
+
+    /** Sets {@code r} to the bounding box of the radius-2 cross around a tile. */
+    private void setCross(Rectangle r, int row, int col) {
+        int ts = gm.tileSize;
+        r.setBounds((col - 2) * ts, (row - 2) * ts, 5 * ts, 5 * ts);
+    }
+
+    private void addTile(int row, int col) {
+        if (row < 0 || col < 0) return;
+        add(col * gm.tileSize, row * gm.tileSize, gm.tileSize, gm.tileSize);
+    }
+
+    private void add(Rectangle r) {
+        add(r.x, r.y, r.width, r.height);
+    }
+
+    /** Queues a region given in world coordinates. */
+    private void add(int x, int y, int width, int height) {
+        addScreen(x - cameraX, y - cameraY, width, height);
+    }
+
+    /** Queues a region given in screen coordinates (HUD), clipped to the screen. */
+    private void addScreen(int x, int y, int width, int height) {
+        if (fullFrame) return;
+        int x0 = Math.max(x, 0);
+        int y0 = Math.max(y, 0);
+        int x1 = Math.min(x + width, screenWidth);
+        int y1 = Math.min(y + height, screenHeight);
+        if (x1 > x0 && y1 > y0) pending.add(obtain(x0, y0, x1 - x0, y1 - y0));
+    }
+
+    /** @return a spare rectangle (or a new one) set to the given bounds */
+    private Rectangle obtain(int x, int y, int width, int height) {
+        Rectangle r = spare.isEmpty() ? new Rectangle() : spare.remove(spare.size() - 1);
+        r.setBounds(x, y, width, height);
+        return r;
+    }
+
+    /** Moves every rectangle of {@code list} to the spare pool. */
+    private void recycle(List<Rectangle> list) {
+        for (int i = 0; i < list.size(); i++) spare.add(list.get(i));
+        list.clear();
+    }
+}
@@ -1,7 +1,7 @@
 package model;
 
 /**
- * A faster variant of {@link drone}, moving approximately 20% faster and
+ * A faster variant of {@link drone}, moving 50% faster and
  * using a different sprite set assigned by {@link GamePanel}.
  * <p>
  * Aside from its increased speed, this class behaves exactly like a normal drone.
@@ -12,7 +12,7 @@ public class FastDrone extends drone {
      * Creates a new FastDrone at the given tile coordinates.
      * <p>
      * After calling the base {@link drone} constructor, this drone's speed
-     * is increased by 20% (rounded) while ensuring minimum speed of 1.
+     * is increased by half (3 px per tick at 60 Hz instead of 2).
      *
      * @param tileCol the tile column where the drone spawns
      * @param tileRow the tile row where the drone spawns
@@ -20,9 +20,17 @@ public class FastDrone extends drone {
      */
     public FastDrone(int tileCol, int tileRow, GameModel gm) {
         super(tileCol, tileRow, gm);
-        // increase speed by 20% (round to nearest int, ensure at least 1)
-        int newSpeed = Math.max(1, (int)Math.round(super.getSpeed() * 1.6));
-        super.setSpeed(newSpeed);
+        // speeds are in tiles per second; 1.5x keeps the old rounded 3 px/tick pace
+        super.setSpeed(super.getSpeed() * 1.5);
+    }
+
+    /**
+     * Creates a blank fast drone to copy state into (see {@link drone#copyFrom(drone)}).
+     *
+     * @param gm the game model the drone belongs to
+     */
+    FastDrone(GameModel gm) {
+        super(gm);
     }
 
     // no other overrides required — GamePanel will inject the appropriate sprites for FastDrone
@@ -0,0 +1,291 @@
+package model;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records gameplay to disk without a display.
+ * <p>
+ * {@link #capture(long)} only copies the model into a {@link StateSnapshot},
+ * so the simulation thread pays for a few arrays, not for a render. A
+ * background encoder thread applies each snapshot to a replica model, renders
+ * the replica offscreen with the {@link SoftwareRenderer} and writes either a
+ * numbered PNG sequence or a single raw frame file (see {@link Format}). The
+ * frames therefore show what a network replica would: timers and the HUD
+ * message are not part of a snapshot.
+ * <p>
+ * Frames travel through a fixed set of snapshots: one is taken from the free
+ * pool, filled, queued for the encoder and returned to the pool once it has
+ * been written. When the encoder falls behind the pool runs dry and
+ * {@code capture} drops the frame instead of waiting, so a slow disk or
+ * render costs frames, never simulation time. Dropped frames are counted in
+ * {@link #getFramesDropped()}.
+ * <p>
+ * {@link #main(String[])} runs a headless {@link GameModel} for a number of
+ * seconds and records it.
+ */
+public class FrameRecorder {
+
+    /** Output format of a recording. */
+    public enum Format {
+        /** One {@code frame_000000.png} per captured frame. */
+        PNG,
+        /**
+         * A single {@code frames.raw} file: header {@code int magic 'BMFR', int version,
+         * int width, int height}, then per frame {@code long tick} followed by
+         * {@code width*height} big-endian {@code int} RGB pixels.
+         */
+        RAW
+    }
+
+    private static final int RAW_MAGIC = 0x424D4652; // "BMFR"
+    private static final int RAW_VERSION = 1;
+
+    private final GameModel gm;
+
+    /** Replica drawn by the encoder thread (encoder only after construction). */
+    private final GameModel replica;
+    private final GamePanel replicaPanel;
+    private final SoftwareRenderer renderer;
+    private final File outDir;
+    private final Format format;
+    private final int width;
+    private final int height;
+
+    /** Empty snapshots ready to be filled by {@link #capture(long)}. */
+    private final BlockingQueue<Frame> free;
+
+    /** Filled snapshots waiting for the encoder. */
+    private final BlockingQueue<Frame> pending;
+
+    private final Thread encoder;
+    private volatile boolean stopping = false;
+    private volatile IOException failure;
+
+    private final AtomicLong framesCaptured = new AtomicLong();
+    private final AtomicLong framesWritten = new AtomicLong();
+    private final AtomicLong framesDropped = new AtomicLong();
+
+    /** Sentinel telling the encoder to finish. */
+    private static final Frame END = new Frame(null);
+
+    /**
+     * One captured frame: the model state plus the simulation tick it shows.
+     */
+    private static final class Frame {
+        final StateSnapshot state;
+        long tick;
+
+        Frame(StateSnapshot state) {
+            this.state = state;
+        }
+    }
+
+    /**
+     * Creates a recorder and starts its encoder thread.
+     *
+     * @param gm       model whose scene is recorded (usually headless)
+     * @param outDir   directory the frames are written to (created if missing)
+     * @param format   output format
+     * @param capacity number of frames that may wait for the encoder before
+     *                 further captures are dropped
+     * @throws IOException if the output directory or raw file cannot be created
+     */
+    public FrameRecorder(GameModel gm, File outDir, Format format, int capacity) throws IOException {
+        if (!outDir.isDirectory() && !outDir.mkdirs()) {
+            throw new IOException("Cannot create output directory " + outDir);
+        }
+        this.gm = gm;
+        this.replica = new GameModel(new controller.KeyHandler());
+        this.replicaPanel = new GamePanel(replica);
+        this.renderer = new SoftwareRenderer(replicaPanel);
+        this.outDir = outDir;
+        this.format = format;
+        this.width = replicaPanel.screenWidth;
+        this.height = replicaPanel.screenHeight;
+
+        int n = Math.max(1, capacity);
+        this.free = new ArrayBlockingQueue<>(n);
+        this.pending = new ArrayBlockingQueue<>(n + 1); // + END
+        for (int i = 0; i < n; i++) free.add(new Frame(new StateSnapshot()));
+
+        FileChannel raw = (format == Format.RAW)
+                ? FileChannel.open(new File(outDir, "frames.raw").toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+                : null;
+        this.encoder = new Thread(() -> encodeLoop(raw), "frame-encoder");
+        this.encoder.setDaemon(true);
+        this.encoder.start();
+    }
+
+    /**
+     * Copies the current state and queues it for rendering and writing. Must
+     * run on the thread that updates the model. Never blocks: if no snapshot
+     * is free because the encoder is behind, the frame is dropped.
+     *
+     * @param tick simulation tick the frame belongs to (used for ordering and naming)
+     * @return true if the frame was queued, false if it was dropped
+     */
+    public boolean capture(long tick) {
+        if (stopping) return false;
+        Frame f = free.poll();
+        if (f == null) {
+            framesDropped.incrementAndGet();
+            return false;
+        }
+        f.state.capture(gm, (int) tick);
+        f.tick = tick;
+        pending.add(f); // cannot fail: at most 'capacity' frames are ever out of the pool
+        framesCaptured.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Writes all queued frames, stops the encoder and releases the renderer.
+     *
+     * @throws IOException if writing any frame failed
+     */
+    public void stop() throws IOException {
+        if (!stopping) {
+            stopping = true;
+            pending.add(END);
+            try {
+                encoder.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            renderer.shutdown();
+        }
+        if (failure != null) throw failure;
+    }
+
+    /** @return frames handed to the encoder so far */
+    public long getFramesCaptured() {
+        return framesCaptured.get();
+    }
+
+    /** @return frames written to disk so far */
+    public long getFramesWritten() {
+        return framesWritten.get();
+    }
+
+    /** @return frames skipped because the encoder could not keep up */
+    public long getFramesDropped() {
+        return framesDropped.get();
+    }
+
+    private void encodeLoop(FileChannel raw) {
+        ByteBuffer out = (format == Format.RAW) ? ByteBuffer.allocateDirect(8 + width * height * 4) : null;
+
+        try {
+            if (raw != null) {
+                ByteBuffer header = ByteBuffer.allocate(16);
+                header.putInt(RAW_MAGIC).putInt(RAW_VERSION).putInt(width).putInt(height).flip();
+                while (header.hasRemaining()) raw.write(header);
+            }
+
+            while (true) {
+                Frame f = pending.take();
+                if (f == END) break;
+                try {
+                    if (failure == null) {
+                        f.state.applyTo(replica, true);
+                        replicaPanel.updateCamera();
+                        BufferedImage img = renderer.render();
+                        if (format == Format.PNG) {
+                            ImageIO.write(img, "png", new File(outDir, String.format("frame_%06d.png", f.tick)));
+                        } else {
+                            int[] pixels = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+                            out.clear();
+                            out.putLong(f.tick);
+                            out.asIntBuffer().put(pixels);
+                            out.position(out.position() + pixels.length * 4);
+                            out.flip();
+                            while (out.hasRemaining()) raw.write(out);
+                        }
+                        framesWritten.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    // keep draining so capture() keeps getting buffers back; report in stop()
+                    failure = e;
+                } finally {
+                    free.add(f);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            if (raw != null) {
+                try {
+                    raw.close();
+                } catch (IOException e) {
+                    if (failure == null) failure = e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Records a headless game.
+     * <p>
+     * Usage: {@code FrameRecorder <outDir> [seconds=10] [fps=30] [png|raw]}.
+     * The model is stepped in real time at its tick rate, as the live game
+     * would be, and a frame is captured every {@code tickRate / fps} ticks.
+     *
+     * @param args command-line arguments as above
+     * @throws IOException if the output cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: FrameRecorder <outDir> [seconds] [fps] [png|raw]");
+            return;
+        }
+        File dir = new File(args[0]);
+        int seconds = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+        int fps = (args.length > 2) ? Integer.parseInt(args[2]) : 30;
+        Format format = (args.length > 3 && args[3].equalsIgnoreCase("raw")) ? Format.RAW : Format.PNG;
+
+        System.setProperty("java.awt.headless", "true");
+        GameModel gm = new GameModel(new controller.KeyHandler());
+        gm.setTickRate(Integer.getInteger("boomberman.tickRate", 60));
+
+        FrameRecorder recorder = new FrameRecorder(gm, dir, format, 8);
+        int ticks = seconds * gm.getTickRate();
+        int every = Math.max(1, gm.getTickRate() / Math.max(1, fps));
+
+        long tickNanos = 1000000000L / gm.getTickRate();
+        long start = System.nanoTime();
+        long busy = 0;
+        for (int tick = 0; tick < ticks; tick++) {
+            long t0 = System.nanoTime();
+            gm.update(gm.getTickSeconds());
+            if (tick % every == 0) recorder.capture(tick);
+            busy += System.nanoTime() - t0;
+
+            long wait = start + (tick + 1) * tickNanos - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        recorder.stop();
+
+        System.out.printf("%d ticks (%.3f ms/tick incl. capture), %d frames written, %d dropped -> %s%n",
+                ticks, busy / 1e6 / ticks, recorder.getFramesWritten(), recorder.getFramesDropped(), dir);
+    }
+}
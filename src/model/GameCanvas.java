@@ -0,0 +1,158 @@
+package model;
+
+import java.awt.*;
+import java.awt.image.BufferStrategy;
+
+/**
+ * Heavyweight drawing surface used for active rendering.
+ * <p>
+ * Instead of asking Swing to repaint {@link GamePanel} on the event thread,
+ * the render thread draws each frame straight into this canvas'
+ * {@link BufferStrategy} and presents it with {@link #renderFrame(double)}. When the
+ * graphics pipeline supports it the strategy uses page flipping; otherwise
+ * Java2D falls back to a back-buffer blit.
+ * <p>
+ * The canvas does not draw anything itself: {@link GamePanel#render(Graphics2D)}
+ * is reused so both rendering modes produce identical frames.
+ */
+public class GameCanvas extends Canvas {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Panel whose draw methods and sprites are used to build each frame. */
+    private final GamePanel gp;
+
+    /** Buffer strategy created by {@link #createStrategy()}. */
+    private BufferStrategy strategy;
+
+    /** A full frame is presented at least this often, even if nothing changed. */
+    private static final long REFRESH_NANOS = 1000000000L;
+
+    /** {@code System.nanoTime()} of the last presented frame. */
+    private long lastPresent = 0L;
+
+    /**
+     * Creates a canvas that renders the given panel's scene.
+     *
+     * @param gp the panel providing the draw code and sprites
+     */
+    public GameCanvas(GamePanel gp) {
+        this.gp = gp;
+        this.setPreferredSize(gp.getPreferredSize());
+        this.setBackground(Color.black);
+        // we present frames ourselves; ignore OS-triggered repaints
+        this.setIgnoreRepaint(true);
+        this.addKeyListener(gp.gm.keyH);
+        this.setFocusable(true);
+    }
+
+    /**
+     * Creates the double-buffered strategy used for presenting frames.
+     * <p>
+     * Must be called after the canvas is displayable (i.e. after the window
+     * has been packed). Page flipping is requested first; if the pipeline
+     * rejects it a regular two-buffer strategy is created instead.
+     */
+    public void createStrategy() {
+        BufferCapabilities flip = new BufferCapabilities(
+                new ImageCapabilities(true), new ImageCapabilities(true),
+                BufferCapabilities.FlipContents.UNDEFINED);
+        try {
+            createBufferStrategy(2, flip);
+        } catch (AWTException e) {
+            createBufferStrategy(2);
+        }
+        strategy = getBufferStrategy();
+        gp.perfStats.setPageFlipping(isPageFlipping());
+    }
+
+    /**
+     * Returns whether frames are presented by flipping video pages.
+     *
+     * @return true if the active strategy uses page flipping
+     */
+    public boolean isPageFlipping() {
+        return strategy != null && strategy.getCapabilities().isPageFlipping();
+    }
+
+    /**
+     * Reports refresh slots the render loop missed, for the performance overlay.
+     *
+     * @param slots number of missed slots
+     */
+    public void framesDropped(long slots) {
+        gp.perfStats.recordDropped(slots);
+    }
+
+    /**
+     * Returns the refresh rate of the display this canvas is shown on.
+     *
+     * @return refresh rate in Hz, or 60 if the display does not report one
+     */
+    public int getRefreshRate() {
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        if (gc != null) {
+            int hz = gc.getDevice().getDisplayMode().getRefreshRate();
+            if (hz != DisplayMode.REFRESH_RATE_UNKNOWN) return hz;
+        }
+        return 60;
+    }
+
+    /**
+     * Draws one frame into the back buffer and presents it.
+     * <p>
+     * Follows the usual {@link BufferStrategy} contract: the frame is redrawn
+     * if the buffer contents were restored or lost while drawing.
+     * <p>
+     * When {@link DirtyRegionTracker} reports that nothing on screen changed the
+     * frame is skipped entirely and the previously presented image stays up.
+     * Page flipping leaves the back buffer undefined, so frames that are drawn
+     * are always drawn in full. A refresh is still forced about once a second
+     * so a window that was covered and exposed does not stay stale.
+     * <p>
+     * The model is only read while holding {@link GameModel#stateLock}, so
+     * the game loop cannot change it mid-frame; presenting happens outside it.
+     *
+     * @param alpha fraction of a simulation tick elapsed since the last update,
+     *              used to interpolate moving entities
+     * @return true if a frame was presented, false if no strategy exists yet
+     *         or the frame was skipped because nothing changed
+     */
+    public boolean renderFrame(double alpha) {
+        if (strategy == null) return false;
+
+        gp.setRenderAlpha(alpha);
+
+        long now = System.nanoTime();
+        synchronized (gp.gm.stateLock) {
+            gp.collectDirty();
+            if (!gp.dirtyRegions.isDirty() && now - lastPresent < REFRESH_NANOS) {
+                return false;
+            }
+            gp.dirtyRegions.drain();
+        }
+        lastPresent = now;
+
+        do {
+            do {
+                Graphics2D g2d = (Graphics2D) strategy.getDrawGraphics();
+                try {
+                    g2d.setColor(Color.black);
+                    g2d.fillRect(0, 0, getWidth(), getHeight());
+                    synchronized (gp.gm.stateLock) {
+                        gp.render(g2d);
+                    }
+                } finally {
+                    g2d.dispose();
+                }
+            } while (strategy.contentsRestored());
+
+            strategy.show();
+        } while (strategy.contentsLost());
+
+        // flush the window system queue so the frame appears now, not later
+        Toolkit.getDefaultToolkit().sync();
+        gp.framePresented();
+        return true;
+    }
+}
@@ -23,21 +23,32 @@ import java.util.Random;
  * (e.g., tile destruction) so rendering and scoring are kept consistent.
  */
 public class GameModel {
+
+    /**
+     * Held by the game loop while it updates the model and by the render
+     * thread while it reads the model to draw a frame, so a frame never sees
+     * the entity lists in the middle of a change.
+     */
+    public final Object stateLock = new Object();
+
     public CollisionChecker cChecker;
     public ArrayList<Bomba> bombs = new ArrayList<>();
     Tile tiles[][];
-    final int originalTileSize = 32;
-    final int scale = 3;
+    static final int originalTileSize = 32;
+    static final int scale = 3;
     KeyHandler keyH;
 
-    public final int tileSize = originalTileSize * scale; // 48x48 tile
+    /** Edge length of a tile in pixels, also the size sprites are scaled to. */
+    static final int TILE_SIZE = originalTileSize * scale;
+
+    public final int tileSize = TILE_SIZE; // 48x48 tile
     public Hero hero;
 
     // powerup & walking bomb collections
     public ArrayList<PowerUp> powerups = new ArrayList<>();
     public ArrayList<WalkingBomb> walkingBombs = new ArrayList<>();
-    private int powerupsToPlace = 0;
-    private int powerupsPlaced = 0;
+    int powerupsToPlace = 0;
+    int powerupsPlaced = 0;
 
     // NEW: set true when player finishes the final level
     public boolean finishedAllLevels = false;
@@ -53,7 +64,7 @@ public class GameModel {
     public int exitCol = -1;
 
     public String message = null;
-    private long messageUntil = 0L; // System.currentTimeMillis() until which message is shown
+    long messageUntil = 0L; // getTimeMillis() until which message is shown
     private static final long MESSAGE_MS = 5000L; // show for 5 seconds
 
     // Score
@@ -62,6 +73,25 @@ public class GameModel {
     // Game/lives state
     public boolean gameOver = false; // true when hero has 0 hearts
 
+    /**
+     * Number of fractional bits in entity positions. Moving entities keep a
+     * 1/256-pixel remainder next to their integer pixel position so speeds that
+     * are not a whole number of pixels per tick still add up exactly.
+     */
+    public static final int SUBPIXEL_BITS = 8;
+
+    /** Mask selecting the fractional part of a fixed-point position. */
+    public static final int SUBPIXEL_MASK = (1 << SUBPIXEL_BITS) - 1;
+
+    /** Simulation rate in ticks per second; movement speeds are scaled by it. */
+    private int tickRate = 60;
+
+    /** Ticks simulated so far; the game clock (see {@link #getTimeMillis()}). */
+    long ticks = 0;
+
+    /** State of the game's random generator (see {@link #nextRandom(int)}). */
+    long randomState;
+
     private static final java.util.Set<String> FORBIDDEN_DESTRUCT = java.util.Set.of(
         "5,3",  // (row=5, col=3)  <- {3,5}
         "3,13", // (row=3, col=13) <- {13,3}
@@ -79,12 +109,72 @@ public class GameModel {
     public void showMessage(String txt) {
         if (txt == null) return;
         this.message = txt;
-        this.messageUntil = System.currentTimeMillis() + MESSAGE_MS;
+        this.messageUntil = getTimeMillis() + MESSAGE_MS;
         System.out.println("MESSAGE: " + txt);
     }
 
     /**
-     * Constructs the GameModel with the provided KeyHandler.
+     * Sets the fixed simulation rate. Entity speeds are defined in tiles per
+     * second, so changing the rate changes smoothness and cost but not how fast
+     * things move.
+     *
+     * @param ticksPerSecond number of {@link #update(double)} calls per second (must be > 0)
+     */
+    public void setTickRate(int ticksPerSecond) {
+        if (ticksPerSecond > 0) tickRate = ticksPerSecond;
+    }
+
+    /** @return the simulation rate in ticks per second */
+    public int getTickRate() {
+        return tickRate;
+    }
+
+    /** @return the duration of one simulation tick in seconds */
+    public double getTickSeconds() {
+        return 1.0 / tickRate;
+    }
+
+    /**
+     * Converts a speed in tiles per second into the fixed-point distance
+     * (1/256 pixel units) covered during one tick at the current tick rate.
+     *
+     * @param tilesPerSecond movement speed
+     * @return distance per tick in subpixels
+     */
+    public int subpixelsPerTick(double tilesPerSecond) {
+        return (int) Math.round(tilesPerSecond * tileSize * (1 << SUBPIXEL_BITS) / tickRate);
+    }
+
+    /**
+     * Returns the game clock: simulated time since the model was created. Game
+     * rules (invulnerability, death animations) use it instead of the wall
+     * clock, so a replayed tick behaves exactly like the original.
+     *
+     * @return milliseconds of simulated time
+     */
+    public long getTimeMillis() {
+        return ticks * 1000L / tickRate;
+    }
+
+    /**
+     * Draws from the game's own random generator. All game randomness goes
+     * through it, so two models built with the same seed and fed the same
+     * input stay identical, and its state is saved with {@link GameState}.
+     *
+     * @param bound upper bound (exclusive, must be &gt; 0)
+     * @return a value in 0..bound-1
+     */
+    int nextRandom(int bound) {
+        // SplitMix64
+        long z = (randomState += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return (int) ((z >>> 1) % bound);
+    }
+
+    /**
+     * Constructs the GameModel with the provided KeyHandler and a random seed.
      * <p>
      * This initializes the tile map from {@link #inputMap}, the hero,
      * collision checker, and immediately starts the level setup.
@@ -92,6 +182,19 @@ public class GameModel {
      * @param keyH the KeyHandler used to read player input
      */
     public GameModel(KeyHandler keyH) {
+        this(keyH, System.nanoTime());
+    }
+
+    /**
+     * Constructs the GameModel with a fixed seed for its random generator.
+     * Models built with the same seed start identical and, given the same
+     * input each tick, stay identical (used by lockstep play).
+     *
+     * @param keyH the KeyHandler used to read player input
+     * @param seed seed of the game's random generator
+     */
+    public GameModel(KeyHandler keyH, long seed) {
+        this.randomState = seed;
         this.keyH = keyH;
         this.tiles = new Tile[inputMap.length][inputMap[0].length];
         this.hero = new Hero(4,3,3,this, keyH);
@@ -128,71 +231,124 @@ public class GameModel {
 
         for (int i = 0; i < tiles.length; i++) {
             for (int j = 0; j < tiles[i].length; j++) {
+                tiles[i][j] = newTile(inputMap[i][j], i, j);
+                if (tiles[i][j] == null) System.out.println("Unknown char at (" + i + "," + j + ")");
+            }
+        }
+    }
 
-                char c = inputMap[i][j];
+    /**
+     * Blends one coordinate of a moving entity between its previous and
+     * current tick for drawing. Jumps longer than a tile (respawns, level
+     * changes) are not blended.
+     *
+     * @param prev  pixel position after the previous tick
+     * @param cur   pixel position after the current tick
+     * @param alpha fraction of a tick elapsed since the last update (0..1)
+     * @return interpolated pixel position
+     */
+    static int lerp(int prev, int cur, double alpha) {
+        if (Math.abs(cur - prev) > TILE_SIZE) return cur;
+        return (int) Math.round(prev + (cur - prev) * alpha);
+    }
 
-                if (c == 'I') {
-                    tiles[i][j] = new IndestructibleTile(i, j);
-                }
-                else if (c == 'D') {
-                    tiles[i][j] = new DestructibleTile(i, j);
-                }
-                else if (c == ' ') {
-                    tiles[i][j] = new WalkableTile(i, j);
-                }
-                else if (c == 'B') {
-                    tiles[i][j] = new BarrierTile(i, j);
-                    tiles[i][j].setBarrierType(c);
-                }
-                else if (c == 'L') {
-                    tiles[i][j] = new BarrierTile(i, j);
-                    tiles[i][j].setBarrierType(c);
-                }
-                else if (c == 'R') {
-                    tiles[i][j] = new BarrierTile(i, j);
-                    tiles[i][j].setBarrierType(c);
-                }
-                else if (c == 'T') {
-                    tiles[i][j] = new BarrierTile(i, j);
-                    tiles[i][j].setBarrierType(c);
-                }
-                else if (c == '1') {
-                    tiles[i][j] = new BarrierTile(i, j);
-                    tiles[i][j].setBarrierType(c);
-                }
-                else if (c == '2') {
-                    tiles[i][j] = new BarrierTile(i, j);
-                    tiles[i][j].setBarrierType(c);
-                }
-                else if (c == '3') {
-                    tiles[i][j] = new BarrierTile(i, j);
-                    tiles[i][j].setBarrierType(c);
-                }
-                else if (c == '4') {
-                    tiles[i][j] = new BarrierTile(i, j);
-                    tiles[i][j].setBarrierType(c);
-                }
-                else {
-                    System.out.println("Unknown char at (" + i + "," + j + ")");
-                    tiles[i][j] = null;
-                }
-            }
+    /**
+     * Creates the tile for a map character.
+     *
+     * @param c   map character (also the {@link Tile#getType()} of the result)
+     * @param row tile row
+     * @param col tile column
+     * @return the tile, or null for an unknown character
+     */
+    static Tile newTile(char c, int row, int col) {
+        switch (c) {
+            case 'I':
+                return new IndestructibleTile(row, col);
+            case 'D':
+                return new DestructibleTile(row, col);
+            case ' ':
+                return new WalkableTile(row, col);
+            case 'B': case 'L': case 'R': case 'T':
+            case '1': case '2': case '3': case '4':
+                Tile t = new BarrierTile(row, col);
+                t.setBarrierType(c);
+                return t;
+            default:
+                return null;
         }
     }
 
+    /**
+     * Replaces the local simulation when another process is authoritative,
+     * e.g. a {@code network.GameServer}. While set, {@link #update(double)}
+     * still applies queued key events and saves render positions, then hands
+     * the tick to the remote instead of running the game logic.
+     */
+    public interface Remote {
+
+        /**
+         * Advances the replica by one tick: send input, apply received state.
+         *
+         * @param gm the replica model
+         */
+        void tick(GameModel gm);
+    }
+
+    /** Authoritative remote, or null to simulate locally. */
+    private Remote remote;
+
+    /**
+     * Turns this model into a replica of a remote simulation.
+     *
+     * @param remote source of state and sink of input, or null to simulate locally
+     */
+    public void setRemote(Remote remote) {
+        this.remote = remote;
+    }
 
+    /** @return the KeyHandler this model reads input from */
+    public KeyHandler getKeyHandler() {
+        return keyH;
+    }
 
     /**
      * Updates the entire game model each frame tick.
      * <p>
-     * The update includes hero updates, drone updates and collision checks,
-     * walking bomb updates, bomb countdowns, powerup pickup handling, and
-     * housekeeping such as removing exploded bombs.
+     * Applies the key events queued since the last tick, then runs one tick
+     * of game logic ({@link #simulate(double)}), or hands the tick to the
+     * {@link Remote} if one is set.
      *
-     * @param delta time elapsed since last update (game time unit)
+     * @param delta duration of one tick in seconds (see {@link #getTickSeconds()})
      */
     public void update(double delta) {
-    
+
+        // apply key events queued by the EDT since the last tick
+        if (keyH != null) keyH.pollInputs();
+
+        if (remote != null) {
+            savePreviousPositions();
+            remote.tick(this);
+            return;
+        }
+        simulate(delta);
+    }
+
+    /**
+     * Runs one tick of game logic with the current key flags.
+     * <p>
+     * The tick includes hero updates, drone updates and collision checks,
+     * walking bomb updates, bomb countdowns, powerup pickup handling, and
+     * housekeeping such as removing exploded bombs. It reads no wall clock
+     * and no shared random generator, so it can be replayed (see {@link GameState}).
+     *
+     * @param delta duration of one tick in seconds (see {@link #getTickSeconds()})
+     */
+    public void simulate(double delta) {
+
+        // snapshot positions so the renderer can blend between this tick and the last
+        savePreviousPositions();
+        ticks++;
+
         if (gameOver || finishedAllLevels) {
     return; // stop hero, drones, bombs, everything
     }
@@ -200,7 +356,7 @@ public class GameModel {
     hero.update();
     int hr = hero.getTileRow();
     int hc = hero.getTileCol();
-    if (message != null && System.currentTimeMillis() > messageUntil) {
+    if (message != null && getTimeMillis() > messageUntil) {
         message = null;
     }
     // update drones (if any)
@@ -263,7 +419,7 @@ public class GameModel {
                 }
                 // remove exploded ones (walkingBombs.removeIf(wb -> wb.isExploded()) happens later)
             }
-            // consume the detonate press so it's not repeated (Game loop will set it false after handling)
+            // consume the detonate press so it's not repeated
             keyH.detonatePressed = false;
             // If the powerup should be consumed on detonation:
             if (hero != null) hero.setHasWalkingBombPowerup(false);
@@ -319,10 +475,29 @@ public class GameModel {
     bombs.removeIf(b -> b.exploded);
 
     // NOTE: do NOT remove dead drones here — they should persist until level end/exit.
+
+    // check if hero is standing on exit and advance (previously done while painting,
+    // which no longer happens every tick once only changed regions are redrawn)
+    onHeroReachExit();
     }
 
 
 
+    /**
+     * Stores the current position of every moving entity as its "previous"
+     * position. Rendering interpolates from these towards the positions
+     * produced by the tick that follows.
+     */
+    private void savePreviousPositions() {
+        if (hero != null) hero.savePreviousPosition();
+        if (drones != null) {
+            for (int i = 0; i < drones.size(); i++) drones.get(i).savePreviousPosition();
+        }
+        if (walkingBombs != null) {
+            for (int i = 0; i < walkingBombs.size(); i++) walkingBombs.get(i).savePreviousPosition();
+        }
+    }
+
     /**
      * Handles hero death: decrement hearts, respawn if possible, or end the game.
      * <p>
@@ -371,10 +546,9 @@ public void destroyTile(int row, int col) {
 
             // If we still need to place powerups this level, ALWAYS spawn one here
             if (powerupsPlaced < powerupsToPlace) {
-                java.util.Random r = new java.util.Random();
                 // pick which powerup randomly or by weighted chance (kept previous weights)
                 PowerUp.Type chosen;
-                int pick = r.nextInt(100);
+                int pick = nextRandom(100);
                 if (pick < 45) {
                     chosen = PowerUp.Type.WALKING; // most common
                 } else if (pick < 80) {
@@ -1,9 +1,9 @@
 package model;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.util.List;
 
 /**
  * JPanel responsible for rendering the game view.
@@ -48,6 +48,77 @@ public class GamePanel extends JPanel {
     public BufferedImage powerUpIcon;
     public BufferedImage power1Icon, power2Icon;
 
+    // sprites are decoded and scaled to tileSize once, then drawn unscaled
+    final SpriteAtlas atlas;
+
+    /** Every sprite resource the panel draws; preloaded in parallel by {@link SpriteAtlas}. */
+    public static final List<String> SPRITE_PATHS = List.of(
+            "/hero/heroUp.png",
+            "/hero/heroDown.png",
+            "/hero/heroLeft.png",
+            "/hero/heroRight.png",
+            "/drone/droneUp.png",
+            "/drone/droneDown.png",
+            "/drone/droneLeft1.png",
+            "/drone/droneRight1.png",
+            "/drone/drone2Up.png",
+            "/drone/drone2Down.png",
+            "/drone/drone2Left1.png",
+            "/drone/drone2Right1.png",
+            "/drone/droneDeath.png",
+            "/powerup/powerup.png",
+            "/powerup/powerdown.png",
+            "/powerup/powerleft.png",
+            "/powerup/powerright.png",
+            "/powerup/power.png",
+            "/blocks/tile.png",
+            "/blocks/slipperyTile.png",
+            "/blocks/breakableTile.png",
+            "/blocks/indestructibleTile.png",
+            "/blocks/borderTopLeft.png",
+            "/blocks/borderTopRight.png",
+            "/blocks/borderLeftLine.png",
+            "/blocks/borderRightLine.png",
+            "/blocks/borderBottomLeft.png",
+            "/blocks/borderBottomRight.png",
+            "/blocks/borderBottom.png",
+            "/blocks/borderTop.png",
+            "/blocks/exit.png",
+            "/blocks/playertile.png",
+            "/objects/normalBomb.png",
+            "/blocks/Health3.png",
+            "/blocks/Health2.png",
+            "/blocks/Health1.png",
+            "/powerup/power1.png",
+            "/powerup/power2.png"
+    );
+
+    // HUD text with cached fonts and glyphs
+    final HudRenderer hud = new HudRenderer();
+
+    // screen regions that changed since the last presented frame
+    final DirtyRegionTracker dirtyRegions;
+
+    // viewport onto the map; follows the hero, world is drawn translated by its position
+    final Camera camera;
+
+    /** Frame, tick and GC counters shown by the performance overlay (F3). */
+    public final PerfStats perfStats = new PerfStats();
+
+    // whether the overlay was shown in the last prepared frame
+    private boolean perfOverlayShown;
+
+    // latency tracing: hero input drawn by the last render, and the last one reported
+    private volatile Hero.InputTrace renderedInput;
+    private Hero.InputTrace reportedInput;
+
+    // optional CPU raster backend (-Dboomberman.renderer=software); null draws through Java2D
+    private SoftwareRenderer softwareRenderer;
+
+    // fraction of a simulation tick elapsed when the current frame is drawn (0..1);
+    // 1 draws entities exactly at their last simulated position
+    private volatile double renderAlpha = 1.0;
+
     /**
      * Constructs a GamePanel bound to the given {@link GameModel}.
      * <p>
@@ -67,13 +138,100 @@ public class GamePanel extends JPanel {
         this.setDoubleBuffered(true);
         this.addKeyListener(gm.keyH);
         this.setFocusable(true);
+        this.camera = new Camera(screenWidth, screenHeight);
+        this.dirtyRegions = new DirtyRegionTracker(gm, camera);
 
+        // shared with MainMenu, which may already have started (or finished) loading
+        this.atlas = SpriteAtlas.shared(gm.tileSize);
+        atlas.preload(SPRITE_PATHS, null);
         getHeroImage();
         getBlocksImage();
         getObjectImage();
 
     }
 
+    /**
+     * Sets how far between the previous and the latest simulation tick the next
+     * frame should be drawn. Moving entities are interpolated by this amount so
+     * the display can run faster than the simulation.
+     *
+     * @param alpha fraction of a tick, clamped to 0..1
+     */
+    public void setRenderAlpha(double alpha) {
+        renderAlpha = Math.max(0.0, Math.min(1.0, alpha));
+    }
+
+    /** @return the interpolation fraction the next frame is drawn at */
+    public double getRenderAlpha() {
+        return renderAlpha;
+    }
+
+    /**
+     * Switches between the Java2D backend and the direct-raster
+     * {@link SoftwareRenderer}, which composes frames on the CPU for headless
+     * recording and machines without accelerated Java2D.
+     *
+     * @param enabled true to render through {@link SoftwareRenderer}
+     */
+    public void setSoftwareRendering(boolean enabled) {
+        if (enabled == (softwareRenderer != null)) return;
+        if (softwareRenderer != null) softwareRenderer.shutdown();
+        softwareRenderer = enabled ? new SoftwareRenderer(this) : null;
+    }
+
+    /**
+     * Centers the camera on the hero's interpolated position for the next
+     * frame. The map never scrolls past its edges; a map that fits on the
+     * screen stays centered.
+     *
+     * @return true if the camera moved
+     */
+    public boolean updateCamera() {
+        if (gm.hero == null) return false;
+        int ts = gm.tileSize;
+        return camera.follow(gm.hero.getRenderX(renderAlpha) + ts / 2,
+                gm.hero.getRenderY(renderAlpha) + ts / 2,
+                tiles[0].length * ts, tiles.length * ts);
+    }
+
+    /**
+     * Prepares the next frame: moves the camera, records what changed in
+     * {@link #dirtyRegions} and refreshes the performance overlay when a new
+     * sample is due. Called by both rendering modes before drawing.
+     */
+    public void collectDirty() {
+        updateCamera();
+        dirtyRegions.collect(renderAlpha);
+
+        boolean overlay = isPerfOverlayVisible();
+        boolean sampled = perfStats.sampleIfDue(System.nanoTime());
+        if ((sampled && overlay) || overlay != perfOverlayShown) {
+            perfOverlayShown = overlay;
+            dirtyRegions.invalidate(HudRenderer.PERF_AREA);
+        }
+    }
+
+    /** @return true if the performance overlay is toggled on (F3) */
+    public boolean isPerfOverlayVisible() {
+        return gm.keyH != null && gm.keyH.perfOverlay;
+    }
+
+    /**
+     * Requests a repaint of only the screen regions that changed since the last
+     * frame. Does nothing when the scene is static (idle menus, paused or
+     * finished games), so such frames cost no fill or blit work.
+     * <p>
+     * Used instead of {@link #repaint()} by the game loop in Swing rendering mode.
+     */
+    public void repaintDirty() {
+        collectDirty();
+        if (!dirtyRegions.isDirty()) return;
+        List<Rectangle> regions = dirtyRegions.drain();
+        for (int i = 0; i < regions.size(); i++) {
+            repaint(regions.get(i));
+        }
+    }
+
     /**
      * Draws the hero sprite at the hero's current position.
      * <p>
@@ -90,51 +248,53 @@ public class GamePanel extends JPanel {
             case "left": image = heroLeft; break;
             case "right": image = heroRight; break;
         }
+        int hx = gm.hero.getRenderX(renderAlpha);
+        int hy = gm.hero.getRenderY(renderAlpha);
         // blinking while invulnerable
-        if (gm.hero.isDrawnThisFrame()) {
-            g.drawImage(image, gm.hero.getX(), gm.hero.getY(), gm.tileSize, gm.tileSize, null);
+        if (gm.hero.isDrawnThisFrame() && camera.isVisible(hx, hy, gm.tileSize, gm.tileSize)) {
+            g.drawImage(image, hx, hy, null);
         }
     }
 
     /**
-     * Loads hero and drone sprite images from resources.
+     * Loads hero and drone sprite images from resources through the {@link SpriteAtlas}.
      * <p>
      * Silently falls back (leaves images null) if assets are missing so the game remains robust.
      */
     public void getHeroImage () {
         try {
             // HERO SPRITES
-            heroUp = ImageIO.read(getClass().getResourceAsStream("/hero/heroUp.png"));
-            heroDown = ImageIO.read(getClass().getResourceAsStream("/hero/heroDown.png"));
-            heroLeft = ImageIO.read(getClass().getResourceAsStream("/hero/heroLeft.png"));
-            heroRight = ImageIO.read(getClass().getResourceAsStream("/hero/heroRight.png"));
+            heroUp = atlas.load("/hero/heroUp.png");
+            heroDown = atlas.load("/hero/heroDown.png");
+            heroLeft = atlas.load("/hero/heroLeft.png");
+            heroRight = atlas.load("/hero/heroRight.png");
 
             // DRONE SPRITES
             try {
-                droneUp = ImageIO.read(getClass().getResourceAsStream("/drone/droneUp.png"));
-                droneDown = ImageIO.read(getClass().getResourceAsStream("/drone/droneDown.png"));
-                droneLeft = ImageIO.read(getClass().getResourceAsStream("/drone/droneLeft1.png"));
-                droneRight = ImageIO.read(getClass().getResourceAsStream("/drone/droneRight1.png"));
+                droneUp = atlas.load("/drone/droneUp.png");
+                droneDown = atlas.load("/drone/droneDown.png");
+                droneLeft = atlas.load("/drone/droneLeft1.png");
+                droneRight = atlas.load("/drone/droneRight1.png");
                 try {
-                drone2Up = ImageIO.read(getClass().getResourceAsStream("/drone/drone2Up.png"));
-                drone2Down = ImageIO.read(getClass().getResourceAsStream("/drone/drone2Down.png"));
-                drone2Left = ImageIO.read(getClass().getResourceAsStream("/drone/drone2Left1.png"));
-                drone2Right = ImageIO.read(getClass().getResourceAsStream("/drone/drone2Right1.png"));
+                drone2Up = atlas.load("/drone/drone2Up.png");
+                drone2Down = atlas.load("/drone/drone2Down.png");
+                drone2Left = atlas.load("/drone/drone2Left1.png");
+                drone2Right = atlas.load("/drone/drone2Right1.png");
                 }catch (Exception ex2) {
                 // If the second set is missing, leave null so it will fall back to original sprites
                 drone2Up = drone2Down = drone2Left = drone2Right = null;}
                 // DRONE DEATH
                 try {
-                    droneDeath = ImageIO.read(getClass().getResourceAsStream("/drone/droneDeath.png"));
+                    droneDeath = atlas.load("/drone/droneDeath.png");
                 } catch (Exception ex) {
                     droneDeath = null;
                 }
                 // load walking-bomb movement sprites (used by WalkingBomb)
                 try {
-                    walkingBombUp    = ImageIO.read(getClass().getResourceAsStream("/powerup/powerup.png"));
-                    walkingBombDown  = ImageIO.read(getClass().getResourceAsStream("/powerup/powerdown.png"));
-                    walkingBombLeft  = ImageIO.read(getClass().getResourceAsStream("/powerup/powerleft.png"));
-                    walkingBombRight = ImageIO.read(getClass().getResourceAsStream("/powerup/powerright.png"));
+                    walkingBombUp    = atlas.load("/powerup/powerup.png");
+                    walkingBombDown  = atlas.load("/powerup/powerdown.png");
+                    walkingBombLeft  = atlas.load("/powerup/powerleft.png");
+                    walkingBombRight = atlas.load("/powerup/powerright.png");
                 } catch (Exception ex) {
                     walkingBombUp = walkingBombDown = walkingBombLeft = walkingBombRight = null;
                 }
@@ -147,7 +307,7 @@ public class GamePanel extends JPanel {
 
             // ⭐ POWER-UP ITEM SPRITE (the pickup itself)
             try {
-                powerUpIcon = ImageIO.read(getClass().getResourceAsStream("/powerup/power.png"));
+                powerUpIcon = atlas.load("/powerup/power.png");
             } catch (Exception ex) {
                 powerUpIcon = null;
             }
@@ -164,29 +324,29 @@ public class GamePanel extends JPanel {
      */
     public void getBlocksImage () {
         try {
-            basicTile = ImageIO.read(getClass().getResourceAsStream("/blocks/tile.png"));
-            slipperyTile = ImageIO.read(getClass().getResourceAsStream("/blocks/slipperyTile.png"));
-            breakableTile = ImageIO.read(getClass().getResourceAsStream("/blocks/breakableTile.png"));
-            indestructibleTile = ImageIO.read(getClass().getResourceAsStream("/blocks/indestructibleTile.png"));
-            borderTopLeft = ImageIO.read(getClass().getResourceAsStream("/blocks/borderTopLeft.png"));
-            borderTopRight = ImageIO.read(getClass().getResourceAsStream("/blocks/borderTopRight.png"));
-            borderLeftLine = ImageIO.read(getClass().getResourceAsStream("/blocks/borderLeftLine.png"));
-            borderRightLine = ImageIO.read(getClass().getResourceAsStream("/blocks/borderRightLine.png"));
-            borderBottomLeft = ImageIO.read(getClass().getResourceAsStream("/blocks/borderBottomLeft.png"));
-            borderBottomRight = ImageIO.read(getClass().getResourceAsStream("/blocks/borderBottomRight.png"));
-            borderBottom = ImageIO.read(getClass().getResourceAsStream("/blocks/borderBottom.png"));
-            borderTop = ImageIO.read(getClass().getResourceAsStream("/blocks/borderTop.png"));
+            basicTile = atlas.load("/blocks/tile.png");
+            slipperyTile = atlas.load("/blocks/slipperyTile.png");
+            breakableTile = atlas.load("/blocks/breakableTile.png");
+            indestructibleTile = atlas.load("/blocks/indestructibleTile.png");
+            borderTopLeft = atlas.load("/blocks/borderTopLeft.png");
+            borderTopRight = atlas.load("/blocks/borderTopRight.png");
+            borderLeftLine = atlas.load("/blocks/borderLeftLine.png");
+            borderRightLine = atlas.load("/blocks/borderRightLine.png");
+            borderBottomLeft = atlas.load("/blocks/borderBottomLeft.png");
+            borderBottomRight = atlas.load("/blocks/borderBottomRight.png");
+            borderBottom = atlas.load("/blocks/borderBottom.png");
+            borderTop = atlas.load("/blocks/borderTop.png");
 
             // exit image
             try {
-                exitImg = ImageIO.read(getClass().getResourceAsStream("/blocks/exit.png"));
+                exitImg = atlas.load("/blocks/exit.png");
             } catch (Exception e) {
                 exitImg = null;
             }
 
             // load player-highlight tile (base tile to show hero occupancy)
             try {
-                playerTile = ImageIO.read(getClass().getResourceAsStream("/blocks/playertile.png"));
+                playerTile = atlas.load("/blocks/playertile.png");
             } catch (Exception e) {
                 // if playertile not found, leave null and fallback overlay will be used when drawing
                 playerTile = null;
@@ -205,7 +365,7 @@ public class GamePanel extends JPanel {
      */
     public void getObjectImage () {
         try {
-            normalBomb = ImageIO.read(getClass().getResourceAsStream("/objects/normalBomb.png"));
+            normalBomb = atlas.load("/objects/normalBomb.png");
         }
         catch (Exception e) {
             e.printStackTrace();
@@ -213,28 +373,28 @@ public class GamePanel extends JPanel {
 
         // load health icons; wrapped in individual try/catch so missing files don't break app
         try {
-            health3 = ImageIO.read(getClass().getResourceAsStream("/blocks/Health3.png"));
+            health3 = atlas.load("/blocks/Health3.png");
         } catch (Exception e) {
             health3 = null;
         }
         try {
-            health2 = ImageIO.read(getClass().getResourceAsStream("/blocks/Health2.png"));
+            health2 = atlas.load("/blocks/Health2.png");
         } catch (Exception e) {
             health2 = null;
         }
         try {
-            health1 = ImageIO.read(getClass().getResourceAsStream("/blocks/Health1.png"));
+            health1 = atlas.load("/blocks/Health1.png");
         } catch (Exception e) {
             health1 = null;
         }
         try {
-            power1Icon = ImageIO.read(getClass().getResourceAsStream("/powerup/power1.png"));
+            power1Icon = atlas.load("/powerup/power1.png");
         } catch (Exception e) {
             power1Icon = null;
         }
 
         try {
-            power2Icon = ImageIO.read(getClass().getResourceAsStream("/powerup/power2.png"));
+            power2Icon = atlas.load("/powerup/power2.png");
         } catch (Exception e) {
             power2Icon = null;
         }
@@ -257,41 +417,21 @@ public class GamePanel extends JPanel {
             for (int i = 0; i < gm.drones.size(); i++) {
                 drone d = gm.drones.get(i);
 
-                // Choose which sprite set to inject
-                if (d.spriteUp == null) {
-                    if (d instanceof FastDrone) {
-                        // inject fast-drone sprites if available, otherwise fall back to normal set
-                        if (drone2Up != null || drone2Down != null || drone2Left != null || drone2Right != null) {
-                            d.setSprites(drone2Up != null ? drone2Up : droneUp,
-                                        drone2Down != null ? drone2Down : droneDown,
-                                        drone2Left != null ? drone2Left : droneLeft,
-                                        drone2Right != null ? drone2Right : droneRight);
-                        } else if (droneUp != null) {
-                            // fallback to original set
-                            d.setSprites(droneUp, droneDown, droneLeft, droneRight);
-                        }
-                    } else {
-                        // normal drone: inject default sprite set if present
-                        if (droneUp != null) {
-                            d.setSprites(droneUp, droneDown, droneLeft, droneRight);
-                        }
-                    }
-                }
+                ensureSprites(d);
 
-                // Ensure death sprite injected (shared)
-                if (d.spriteDeath == null && droneDeath != null) {
-                    d.setDeathSprite(droneDeath);
-                }
+                int dx = d.getRenderX(renderAlpha);
+                int dy = d.getRenderY(renderAlpha);
+                if (!camera.isVisible(dx, dy, gm.tileSize, gm.tileSize)) continue;
 
                 // Ask drone which sprite to draw
                 BufferedImage spr = d.getCurrentSprite();
 
                 if (spr != null) {
-                    g.drawImage(spr, d.getX(), d.getY(), gm.tileSize, gm.tileSize, null);
+                    g.drawImage(spr, dx, dy, null);
                 } else {
                     // fallback box
                     g.setColor(Color.MAGENTA);
-                    g.fillRect(d.getX(), d.getY(), gm.tileSize, gm.tileSize);
+                    g.fillRect(dx, dy, gm.tileSize, gm.tileSize);
                 }
             }
         } catch (Exception e) {
@@ -300,11 +440,47 @@ public class GamePanel extends JPanel {
         }
     }
 
+    /**
+     * Injects the drone's sprite set (normal or fast) and the shared death
+     * sprite if it has none yet.
+     *
+     * @param d drone about to be drawn
+     */
+    void ensureSprites(drone d) {
+        // Choose which sprite set to inject
+        if (d.spriteUp == null) {
+            if (d instanceof FastDrone) {
+                // inject fast-drone sprites if available, otherwise fall back to normal set
+                if (drone2Up != null || drone2Down != null || drone2Left != null || drone2Right != null) {
+                    d.setSprites(drone2Up != null ? drone2Up : droneUp,
+                                drone2Down != null ? drone2Down : droneDown,
+                                drone2Left != null ? drone2Left : droneLeft,
+                                drone2Right != null ? drone2Right : droneRight);
+                } else if (droneUp != null) {
+                    // fallback to original set
+                    d.setSprites(droneUp, droneDown, droneLeft, droneRight);
+                }
+            } else {
+                // normal drone: inject default sprite set if present
+                if (droneUp != null) {
+                    d.setSprites(droneUp, droneDown, droneLeft, droneRight);
+                }
+            }
+        }
+
+        // Ensure death sprite injected (shared)
+        if (d.spriteDeath == null && droneDeath != null) {
+            d.setDeathSprite(droneDeath);
+        }
+    }
+
     /**
      * Draws all tiles, overlays (bomb ranges), powerups, exit and hero highlight.
      * <p>
      * This method computes whether tiles are in bomb ranges (both timed and walking bombs),
      * whether the hero is in danger to change highlight color, and draws tiles accordingly.
+     * Only the rows and columns inside both the camera viewport and the graphics
+     * clip (partial repaints) are visited, so off-screen tiles cost nothing.
      *
      * @param g the Graphics context to draw on
      */
@@ -319,110 +495,22 @@ public class GamePanel extends JPanel {
         }
 
         // decide if hero is in danger from any currently active bomb (timed bombs radius depends on hero powerup, walking bombs radius=2)
-        boolean heroInDanger = false;
-        if (gm != null && gm.hero != null) {
-            // timed bombs: radius depends on hero's radius powerup
-            if (gm.bombs != null) {
-                for (Bomba b : gm.bombs) {
-                    if (!b.exploded) {
-                        int br = b.getRow();
-                        int bc = b.getCol();
-                        int radius = (gm.hero.hasRadiusPowerup() ? 2 : 1);
-
-                        // center
-                        if (heroRow == br && heroCol == bc) {
-                            if (br >= 0 && br < tiles.length && bc >= 0 && bc < tiles[0].length) {
-                                char t = tiles[br][bc].getType();
-                                if (t == ' ' || t == 'D') { heroInDanger = true; break; }
-                            }
-                        }
+        boolean heroInDanger = isTileInBombRange(heroRow, heroCol);
 
-                        // check cross up to radius
-                        for (int d = 1; d <= radius; d++) {
-                            // left
-                            if (heroRow == br && heroCol == bc - d) {
-                                int rr = br, cc = bc - d;
-                                if (rr >= 0 && rr < tiles.length && cc >= 0 && cc < tiles[0].length) {
-                                    char t = tiles[rr][cc].getType();
-                                    if (t == ' ' || t == 'D') { heroInDanger = true; break; }
-                                }
-                            }
-                            // right
-                            if (heroRow == br && heroCol == bc + d) {
-                                int rr = br, cc = bc + d;
-                                if (rr >= 0 && rr < tiles.length && cc >= 0 && cc < tiles[0].length) {
-                                    char t = tiles[rr][cc].getType();
-                                    if (t == ' ' || t == 'D') { heroInDanger = true; break; }
-                                }
-                            }
-                            // up
-                            if (heroCol == bc && heroRow == br - d) {
-                                int rr = br - d, cc = bc;
-                                if (rr >= 0 && rr < tiles.length && cc >= 0 && cc < tiles[0].length) {
-                                    char t = tiles[rr][cc].getType();
-                                    if (t == ' ' || t == 'D') { heroInDanger = true; break; }
-                                }
-                            }
-                            // down
-                            if (heroCol == bc && heroRow == br + d) {
-                                int rr = br + d, cc = bc;
-                                if (rr >= 0 && rr < tiles.length && cc >= 0 && cc < tiles[0].length) {
-                                    char t = tiles[rr][cc].getType();
-                                    if (t == ' ' || t == 'D') { heroInDanger = true; break; }
-                                }
-                            }
-                        } // end for d
-                        if (heroInDanger) break;
-                    }
-                }
-            }
+        // visible area in world coordinates: viewport, narrowed by the repaint clip
+        Rectangle visible = camera.getViewBounds();
+        Rectangle clip = g.getClipBounds();
+        if (clip != null) visible = visible.intersection(clip);
+        if (visible.isEmpty()) return;
 
-            // walking bombs (radius = 2) — unchanged
-            if (!heroInDanger && gm.walkingBombs != null) {
-                for (WalkingBomb wb : gm.walkingBombs) {
-                    if (wb == null || wb.isExploded()) continue;
-                    int br = wb.getTileRow();
-                    int bc = wb.getTileCol();
-
-                    // center
-                    if (heroRow == br && heroCol == bc) {
-                        if (br >= 0 && br < tiles.length && bc >= 0 && bc < tiles[0].length) {
-                            char t = tiles[br][bc].getType();
-                            if (t == ' ' || t == 'D') { heroInDanger = true; break; }
-                        }
-                    }
-                    // distance 1 on cross
-                    if (heroRow == br && Math.abs(heroCol - bc) == 1) {
-                        int rr = br, cc = heroCol;
-                        char t = tiles[rr][cc].getType();
-                        if (t == ' ' || t == 'D') { heroInDanger = true; break; }
-                    }
-                    if (heroCol == bc && Math.abs(heroRow - br) == 1) {
-                        int rr = heroRow, cc = bc;
-                        char t = tiles[rr][cc].getType();
-                        if (t == ' ' || t == 'D') { heroInDanger = true; break; }
-                    }
-                    // distance 2 on cross
-                    if (heroRow == br && Math.abs(heroCol - bc) == 2) {
-                        int rr = br, cc = heroCol;
-                        if (rr >= 0 && rr < tiles.length && cc >= 0 && cc < tiles[0].length) {
-                            char t = tiles[rr][cc].getType();
-                            if (t == ' ' || t == 'D') { heroInDanger = true; break; }
-                        }
-                    }
-                    if (heroCol == bc && Math.abs(heroRow - br) == 2) {
-                        int rr = heroRow, cc = bc;
-                        if (rr >= 0 && rr < tiles.length && cc >= 0 && cc < tiles[0].length) {
-                            char t = tiles[rr][cc].getType();
-                            if (t == ' ' || t == 'D') { heroInDanger = true; break; }
-                        }
-                    }
-                }
-            }
-        }
+        int ts = gm.tileSize;
+        int firstRow = Math.max(0, visible.y / ts);
+        int lastRow = Math.min(tiles.length - 1, (visible.y + visible.height - 1) / ts);
+        int firstCol = Math.max(0, visible.x / ts);
+        int lastCol = Math.min(tiles[0].length - 1, (visible.x + visible.width - 1) / ts);
 
-        for (int i = 0; i < tiles.length; i++) {
-            for (int j = 0; j < tiles[i].length; j++) {
+        for (int i = firstRow; i <= lastRow; i++) {
+            for (int j = firstCol; j <= lastCol; j++) {
 
                 char c = tiles[i][j].getType();
 
@@ -431,170 +519,41 @@ public class GamePanel extends JPanel {
 
                 // determine if this tile is within any bomb's range (explosion radius overlay)
                 // but only if the tile being considered can actually be affected (walkable or destructible)
-                boolean tileInBombRange = false;
-
-                // normal timed bombs (variable radius: 1 or 2 depending on hero powerup)
-                if (gm != null && gm.bombs != null) {
-                    for (Bomba b : gm.bombs) {
-                        if (!b.exploded) {
-                            int br = b.getRow();
-                            int bc = b.getCol();
-                            int radius = (gm.hero != null && gm.hero.hasRadiusPowerup()) ? 2 : 1;
-
-                            // center
-                            if (i == br && j == bc) {
-                                if (br >= 0 && br < tiles.length && bc >= 0 && bc < tiles[0].length) {
-                                    char t = tiles[br][bc].getType();
-                                    if (t == ' ' || t == 'D') { tileInBombRange = true; break; }
-                                }
-                            }
-
-                            // check cross up to radius
-                            for (int d = 1; d <= radius; d++) {
-                                // down
-                                if (i == br + d && j == bc) {
-                                    int rr = br + d, cc = bc;
-                                    if (rr >= 0 && rr < tiles.length && cc >= 0 && cc < tiles[0].length) {
-                                        char t = tiles[rr][cc].getType();
-                                        if (t == ' ' || t == 'D') { tileInBombRange = true; break; }
-                                    }
-                                }
-                                // up
-                                if (i == br - d && j == bc) {
-                                    int rr = br - d, cc = bc;
-                                    if (rr >= 0 && rr < tiles.length && cc >= 0 && cc < tiles[0].length) {
-                                        char t = tiles[rr][cc].getType();
-                                        if (t == ' ' || t == 'D') { tileInBombRange = true; break; }
-                                    }
-                                }
-                                // right
-                                if (i == br && j == bc + d) {
-                                    int rr = br, cc = bc + d;
-                                    if (rr >= 0 && rr < tiles.length && cc >= 0 && cc < tiles[0].length) {
-                                        char t = tiles[rr][cc].getType();
-                                        if (t == ' ' || t == 'D') { tileInBombRange = true; break; }
-                                    }
-                                }
-                                // left
-                                if (i == br && j == bc - d) {
-                                    int rr = br, cc = bc - d;
-                                    if (rr >= 0 && rr < tiles.length && cc >= 0 && cc < tiles[0].length) {
-                                        char t = tiles[rr][cc].getType();
-                                        if (t == ' ' || t == 'D') { tileInBombRange = true; break; }
-                                    }
-                                }
-                            } // end for d
-
-                            if (tileInBombRange) break;
-                        }
-                    }
-                }
-
-                // walking bombs (expanded radius = 2) - unchanged
-                if (!tileInBombRange && gm != null && gm.walkingBombs != null) {
-                    for (WalkingBomb wb : gm.walkingBombs) {
-                        if (wb == null || wb.isExploded()) continue;
-                        int br = wb.getTileRow();
-                        int bc = wb.getTileCol();
-
-                        // center and cross up to distance 2
-                        if (i == br && j == bc) {
-                            char t = tiles[br][bc].getType();
-                            if (t == ' ' || t == 'D') { tileInBombRange = true; break; }
-                        }
-                        if (i == br + 1 && j == bc) {
-                            int rr = br + 1, cc = bc;
-                            if (rr >= 0 && rr < tiles.length && cc >= 0 && cc < tiles[0].length) {
-                                char t = tiles[rr][cc].getType();
-                                if (t == ' ' || t == 'D') { tileInBombRange = true; break; }
-                            }
-                        }
-                        if (i == br - 1 && j == bc) {
-                            int rr = br - 1, cc = bc;
-                            if (rr >= 0 && rr < tiles.length && cc >= 0 && cc < tiles[0].length) {
-                                char t = tiles[rr][cc].getType();
-                                if (t == ' ' || t == 'D') { tileInBombRange = true; break; }
-                            }
-                        }
-                        if (i == br && j == bc + 1) {
-                            int rr = br, cc = bc + 1;
-                            if (rr >= 0 && rr < tiles.length && cc >= 0 && cc < tiles[0].length) {
-                                char t = tiles[rr][cc].getType();
-                                if (t == ' ' || t == 'D') { tileInBombRange = true; break; }
-                            }
-                        }
-                        if (i == br && j == bc - 1) {
-                            int rr = br, cc = bc - 1;
-                            if (rr >= 0 && rr < tiles.length && cc >= 0 && cc < tiles[0].length) {
-                                char t = tiles[rr][cc].getType();
-                                if (t == ' ' || t == 'D') { tileInBombRange = true; break; }
-                            }
-                        }
-                        // distance 2
-                        if (i == br + 2 && j == bc) {
-                            int rr = br + 2, cc = bc;
-                            if (rr >= 0 && rr < tiles.length && cc >= 0 && cc < tiles[0].length) {
-                                char t = tiles[rr][cc].getType();
-                                if (t == ' ' || t == 'D') { tileInBombRange = true; break; }
-                            }
-                        }
-                        if (i == br - 2 && j == bc) {
-                            int rr = br - 2, cc = bc;
-                            if (rr >= 0 && rr < tiles.length && cc >= 0 && cc < tiles[0].length) {
-                                char t = tiles[rr][cc].getType();
-                                if (t == ' ' || t == 'D') { tileInBombRange = true; break; }
-                            }
-                        }
-                        if (i == br && j == bc + 2) {
-                            int rr = br, cc = bc + 2;
-                            if (rr >= 0 && rr < tiles.length && cc >= 0 && cc < tiles[0].length) {
-                                char t = tiles[rr][cc].getType();
-                                if (t == ' ' || t == 'D') { tileInBombRange = true; break; }
-                            }
-                        }
-                        if (i == br && j == bc - 2) {
-                            int rr = br, cc = bc - 2;
-                            if (rr >= 0 && rr < tiles.length && cc >= 0 && cc < tiles[0].length) {
-                                char t = tiles[rr][cc].getType();
-                                if (t == ' ' || t == 'D') { tileInBombRange = true; break; }
-                            }
-                        }
-                    }
-                }
+                boolean tileInBombRange = isTileInBombRange(i, j);
 
                 // When drawing the base "basicTile", if hero stands on it we draw playerTile instead.
                 BufferedImage baseForBasic = isHeroTile && playerTile != null ? playerTile : basicTile;
 
                 if (c == 'I') {
-                    g.drawImage(baseForBasic, j * gm.tileSize, i * gm.tileSize, gm.tileSize, gm.tileSize, null);
-                    g.drawImage(indestructibleTile, j * gm.tileSize, i * gm.tileSize, gm.tileSize, gm.tileSize, null);
+                    g.drawImage(baseForBasic, j * gm.tileSize, i * gm.tileSize, null);
+                    g.drawImage(indestructibleTile, j * gm.tileSize, i * gm.tileSize, null);
                 } else if (c == 'D') {
-                    g.drawImage(baseForBasic, j * gm.tileSize, i * gm.tileSize, gm.tileSize, gm.tileSize, null);
+                    g.drawImage(baseForBasic, j * gm.tileSize, i * gm.tileSize, null);
                     if (tiles[i][j].getDestroyedStatus() == false)
-                        g.drawImage(breakableTile, j * gm.tileSize, i * gm.tileSize, gm.tileSize, gm.tileSize, null);
+                        g.drawImage(breakableTile, j * gm.tileSize, i * gm.tileSize, null);
                 } else if (c == ' ') {
-                    g.drawImage(baseForBasic, j * gm.tileSize, i * gm.tileSize, gm.tileSize, gm.tileSize, null);
+                    g.drawImage(baseForBasic, j * gm.tileSize, i * gm.tileSize, null);
                 } else if (c == 'B') {
-                    g.drawImage(borderBottom, j * gm.tileSize, i * gm.tileSize, gm.tileSize, gm.tileSize, null);
+                    g.drawImage(borderBottom, j * gm.tileSize, i * gm.tileSize, null);
                 } else if (c == 'L') {
-                    g.drawImage(borderLeftLine, j * gm.tileSize, i * gm.tileSize, gm.tileSize, gm.tileSize, null);
+                    g.drawImage(borderLeftLine, j * gm.tileSize, i * gm.tileSize, null);
                 } else if (c == 'R') {
-                    g.drawImage(borderRightLine, j * gm.tileSize, i * gm.tileSize, gm.tileSize, gm.tileSize, null);
+                    g.drawImage(borderRightLine, j * gm.tileSize, i * gm.tileSize, null);
                 } else if (c == 'T') {
-                    g.drawImage(borderTop, j * gm.tileSize, i * gm.tileSize, gm.tileSize, gm.tileSize, null);
+                    g.drawImage(borderTop, j * gm.tileSize, i * gm.tileSize, null);
                 } else if (c == '1') {
-                    g.drawImage(borderTopLeft, j * gm.tileSize, i * gm.tileSize, gm.tileSize, gm.tileSize, null);
+                    g.drawImage(borderTopLeft, j * gm.tileSize, i * gm.tileSize, null);
                 } else if (c == '2') {
-                    g.drawImage(borderTopRight, j * gm.tileSize, i * gm.tileSize, gm.tileSize, gm.tileSize, null);
+                    g.drawImage(borderTopRight, j * gm.tileSize, i * gm.tileSize, null);
                 } else if (c == '3') {
-                    g.drawImage(borderBottomLeft, j * gm.tileSize, i * gm.tileSize, gm.tileSize, gm.tileSize, null);
+                    g.drawImage(borderBottomLeft, j * gm.tileSize, i * gm.tileSize, null);
                 } else if (c == '4') {
-                    g.drawImage(borderBottomRight, j * gm.tileSize, i * gm.tileSize, gm.tileSize, gm.tileSize, null);
+                    g.drawImage(borderBottomRight, j * gm.tileSize, i * gm.tileSize, null);
                 }
 
                 // draw exit image if placed here
                 if (gm.exitRow == i && gm.exitCol == j && exitImg != null) {
-                    g.drawImage(exitImg, j * gm.tileSize, i * gm.tileSize, gm.tileSize, gm.tileSize, null);
+                    g.drawImage(exitImg, j * gm.tileSize, i * gm.tileSize, null);
                 }
                 // draw powerup icon if present here (visual pickup)
                 if (gm.powerups != null) {
@@ -615,7 +574,7 @@ public class GamePanel extends JPanel {
                             }
 
                             if (icon != null) {
-                                g.drawImage(icon, j * gm.tileSize, i * gm.tileSize, gm.tileSize, gm.tileSize, null);
+                                g.drawImage(icon, j * gm.tileSize, i * gm.tileSize, null);
                             }
                             break;
                         }
@@ -673,6 +632,40 @@ public class GamePanel extends JPanel {
 
 
 
+    /**
+     * Returns whether a tile lies in the blast cross of any armed bomb and can
+     * actually be hit (walkable or destructible). Timed bombs reach one tile,
+     * or two with the hero's radius powerup; walking bombs always reach two.
+     *
+     * @param row tile row
+     * @param col tile column
+     * @return true if the tile is in range of an armed bomb
+     */
+    boolean isTileInBombRange(int row, int col) {
+        if (row < 0 || row >= tiles.length || col < 0 || col >= tiles[0].length) return false;
+        char t = tiles[row][col].getType();
+        if (t != ' ' && t != 'D') return false;
+
+        if (gm.bombs != null) {
+            int radius = (gm.hero != null && gm.hero.hasRadiusPowerup()) ? 2 : 1;
+            for (Bomba b : gm.bombs) {
+                if (!b.exploded && inCross(row, col, b.getRow(), b.getCol(), radius)) return true;
+            }
+        }
+        if (gm.walkingBombs != null) {
+            for (WalkingBomb wb : gm.walkingBombs) {
+                if (wb == null || wb.isExploded()) continue;
+                if (inCross(row, col, wb.getTileRow(), wb.getTileCol(), 2)) return true;
+            }
+        }
+        return false;
+    }
+
+    /** @return true if (row, col) is on the cross of the given radius around (br, bc) */
+    private static boolean inCross(int row, int col, int br, int bc, int radius) {
+        return (row == br && Math.abs(col - bc) <= radius) || (col == bc && Math.abs(row - br) <= radius);
+    }
+
     /**
      * Draws a bomb (normal or powered) at its tile location.
      *
@@ -680,17 +673,20 @@ public class GamePanel extends JPanel {
      * @param b the bomb to draw
      */
     public void drawBomb(Graphics2D g2, Bomba b) {
+        int bx = b.getCol() * gm.tileSize;
+        int by = b.getRow() * gm.tileSize;
+        if (!camera.isVisible(bx, by, gm.tileSize, gm.tileSize)) return;
         // If the bomb has the powered flag and powerUpIcon exists, draw that image
         if (b.isPowered()) {
-            g2.drawImage(powerUpIcon, b.getCol() * gm.tileSize, b.getRow() * gm.tileSize, gm.tileSize, gm.tileSize, null);
+            g2.drawImage(powerUpIcon, bx, by, null);
         } else {
-            g2.drawImage(normalBomb, b.getCol() * gm.tileSize, b.getRow() * gm.tileSize, gm.tileSize, gm.tileSize, null);
+            g2.drawImage(normalBomb, bx, by, null);
         }
     }
 
     /**
-     * Paints the entire game scene. This method orchestrates calls to drawTiles,
-     * drawDrones, drawWalkingBombs, drawHero, and renders HUD elements.
+     * Paints the entire game scene through Swing's passive repaint path.
+     * The actual drawing is done by {@link #render(Graphics2D)}.
      *
      * @param g the Graphics context provided by Swing
      */
@@ -699,6 +695,69 @@ public class GamePanel extends JPanel {
         super.paint(g);
         Graphics2D g2d = (Graphics2D) g;
 
+        synchronized (gm.stateLock) {
+            render(g2d);
+        }
+        framePresented();
+
+        g2d.dispose();
+
+    }
+
+    /**
+     * Draws one complete frame. This method orchestrates calls to drawTiles,
+     * drawDrones, drawWalkingBombs, drawHero, and renders HUD elements.
+     * <p>
+     * Used both by {@link #paint(Graphics)} and by {@link GameCanvas} when the
+     * game runs in active rendering mode. The caller owns {@code g2d} and is
+     * responsible for clearing the background and disposing it.
+     * <p>
+     * The world (tiles, entities, bombs) is drawn in world coordinates with the
+     * graphics translated by the {@link Camera} position; the HUD is drawn
+     * afterwards in screen coordinates. Bombs and walking bombs are part of
+     * the world and so lie below the HUD: as the map scrolls under it, they
+     * must not cover the score or the health icon, as they did when drawn
+     * after the stats.
+     *
+     * @param g2d the Graphics2D context to draw the frame on
+     */
+    public void render(Graphics2D g2d) {
+        long start = System.nanoTime();
+        if (gm.hero != null) renderedInput = gm.hero.getInputTrace();
+        if (softwareRenderer != null) {
+            g2d.drawImage(softwareRenderer.render(), 0, 0, null);
+        } else {
+            renderJava2D(g2d);
+        }
+        perfStats.recordFrame(System.nanoTime() - start);
+    }
+
+    /**
+     * Reports that the last frame drawn by {@link #render(Graphics2D)} is now
+     * on its way to the display: the time since the previous one is recorded
+     * as the frame interval, and if that frame is the first to show a new hero
+     * movement input, the input's latencies are recorded in {@link #perfStats}.
+     * Called by whoever presents the frame, right after presenting it.
+     */
+    public void framePresented() {
+        perfStats.recordPresent(System.nanoTime());
+        Hero.InputTrace input = renderedInput;
+        if (input == null || input == reportedInput) return;
+        reportedInput = input;
+        perfStats.inputToTick.record(input.tickNanos - input.inputNanos);
+        perfStats.inputToPhoton.record(System.nanoTime() - input.inputNanos);
+    }
+
+    /**
+     * Draws one frame through Java2D: the world translated by the camera,
+     * then the HUD.
+     */
+    private void renderJava2D(Graphics2D g2d) {
+
+        int camX = camera.getX();
+        int camY = camera.getY();
+        g2d.translate(-camX, -camY);
+
         drawTiles(g2d);
 
         // draw drones (below hero, change order if you want drones over hero)
@@ -711,30 +770,32 @@ public class GamePanel extends JPanel {
         // draw hero
         drawHero(g2d);
 
-        // draw remote exit tile text / info overlay
-        // display score & level
-        g2d.setColor(Color.WHITE);
-        g2d.setFont(new Font(Font.MONOSPACED, Font.BOLD, 14));
-        g2d.drawString("Level: " + gm.level, 8, 16);
-        g2d.drawString("Score: " + gm.score, 8, 34);
-        g2d.drawString("Crates: " + gm.destroyedCratesCount + "/" + gm.requiredCratesToUnlockExit, 8, 52);
-
-        if (gm.message != null) {
-            g2d.setFont(new Font(Font.MONOSPACED, Font.BOLD, 16));
-            FontMetrics fm = g2d.getFontMetrics();
-            int mw = fm.stringWidth(gm.message);
-            int mx = (screenWidth - mw) / 2;
-            int my = 28;
-            // translucent bg
-            Composite oldc = g2d.getComposite();
-            g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.7f));
-            g2d.setColor(Color.BLACK);
-            g2d.fillRoundRect(mx - 8, my - fm.getAscent(), mw + 16, fm.getAscent() + 8, 8, 8);
-            g2d.setComposite(oldc);
-
-            g2d.setColor(Color.WHITE);
-            g2d.drawString(gm.message, mx, my);
+        for (int i = 0; i < gm.bombs.size(); i++) {
+            Bomba b = gm.bombs.get(i);
+            if (b.exploded == false) {
+                drawBomb(g2d, b);
+            }
         }
+        // draw walking bombs (visible, movement sprites)
+        drawWalkingBombs(g2d);
+
+        // the HUD goes on top of everything in the world, bombs included
+        g2d.translate(camX, camY);
+
+        drawHud(g2d);
+    }
+
+    /**
+     * Draws the HUD in screen coordinates: score/level text, message banner,
+     * health icon and the end-of-game overlay.
+     *
+     * @param g2d the Graphics2D context to draw on
+     */
+    public void drawHud(Graphics2D g2d) {
+        // display score & level (cached glyphs, see HudRenderer)
+        hud.drawStats(g2d, gm);
+        hud.drawMessage(g2d, gm.message, screenWidth);
+
         // Draw health icon top-right
         int iconSize = gm.tileSize; // 48
         int padding = 8;
@@ -748,61 +809,31 @@ public class GamePanel extends JPanel {
         else if (hearts == 1) healthImg = health1;
         // If health images missing, draw simple text fallback
         if (healthImg != null) {
-            g2d.drawImage(healthImg, hx, hy, iconSize, iconSize, null);
+            g2d.drawImage(healthImg, hx, hy, null);
         } else {
-            g2d.setFont(new Font(Font.MONOSPACED, Font.BOLD, 16));
-            g2d.drawString("Lives: " + hearts, hx - 8, hy + 20);
-        }
-
-        for (int i = 0; i < gm.bombs.size(); i++) {
-            Bomba b = gm.bombs.get(i);
-            if (b.exploded == false) {
-                drawBomb(g2d, b);
-            }
+            hud.drawLives(g2d, hearts, hx - 8, hy + 20);
         }
-        // draw walking bombs (visible, movement sprites)
-        drawWalkingBombs(g2d);
-        // check if hero is standing on exit and advance
-        gm.onHeroReachExit();
 
         // If game over, overlay message
-          if (gm.gameOver || gm.finishedAllLevels) {
-            Graphics2D g2 = (Graphics2D) g2d;
-            Composite old = g2.getComposite();
-            g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.8f));
-            g2.setColor(new Color(0, 0, 0, 200));
-            g2.fillRect(0, 0, screenWidth, screenHeight);
-            g2.setComposite(old);
-
-            g2.setColor(Color.WHITE);
-            g2.setFont(new Font(Font.MONOSPACED, Font.BOLD, 48));
-
-            String title;
-            if (gm.gameOver) {
-                title = "GAME OVER";
-            } else {
-                title = "CONGRATULATIONS";
-            }
-
-            FontMetrics fm = g2.getFontMetrics();
-            int tx = (screenWidth - fm.stringWidth(title)) / 2;
-            int ty = (screenHeight / 2);
-            g2.drawString(title, tx, ty);
-
-            g2.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 20));
-            String sub;
-            if (gm.gameOver) {
-                sub = "Final score: " + gm.score;
-            } else {
-                sub = "You completed all levels! Final score: " + gm.score;
-            }
-            int sx = (screenWidth - g2.getFontMetrics().stringWidth(sub)) / 2;
-            g2.drawString(sub, sx, ty + 36);
+        if (gm.gameOver || gm.finishedAllLevels) {
+            hud.drawEndScreen(g2d, gm, screenWidth, screenHeight);
         }
 
-        g2d.dispose();
-
+        if (isPerfOverlayVisible()) {
+            hud.drawPerfOverlay(g2d, perfStats, gm);
+        }
+    }
+    /**
+     * Injects the walking bomb movement sprites if not set already.
+     *
+     * @param wb walking bomb about to be drawn
+     */
+    void ensureSprites(WalkingBomb wb) {
+        if (wb.spriteUp == null && walkingBombUp != null) {
+            wb.setSprites(walkingBombUp, walkingBombDown, walkingBombLeft, walkingBombRight);
+        }
     }
+
     /**
      * Draws all walking bombs (movable bombs) and injects their movement sprites if needed.
      *
@@ -812,16 +843,16 @@ public class GamePanel extends JPanel {
         if (gm == null || gm.walkingBombs == null) return;
         for (WalkingBomb wb : gm.walkingBombs) {
             if (wb == null) continue;
-            // inject sprites from GamePanel if not set already
-            if (wb.spriteUp == null && walkingBombUp != null) {
-                wb.setSprites(walkingBombUp, walkingBombDown, walkingBombLeft, walkingBombRight);
-            }
+            ensureSprites(wb);
+            int wx = wb.getRenderX(renderAlpha);
+            int wy = wb.getRenderY(renderAlpha);
+            if (!camera.isVisible(wx, wy, gm.tileSize, gm.tileSize)) continue;
             BufferedImage spr = wb.getCurrentSprite();
             if (spr != null) {
-                g.drawImage(spr, wb.getX(), wb.getY(), gm.tileSize, gm.tileSize, null);
+                g.drawImage(spr, wx, wy, null);
             } else {
                 // default: draw normal bomb if movement sprite missing
-                g.drawImage(normalBomb, wb.getTileCol() * gm.tileSize, wb.getTileRow() * gm.tileSize, gm.tileSize, gm.tileSize, null);
+                g.drawImage(normalBomb, wb.getTileCol() * gm.tileSize, wb.getTileRow() * gm.tileSize, null);
             }
         }
     }
@@ -0,0 +1,261 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Complete, restorable copy of a {@link GameModel}'s simulation state, used
+ * to roll the game back to an earlier tick and replay it (see
+ * {@code network.RollbackSession}).
+ * <p>
+ * Unlike {@link StateSnapshot}, which is a lossy summary for replication, a
+ * saved state holds everything {@link GameModel#simulate(double)} reads:
+ * sub-pixel remainders, bomb timers, drone movement axes, the game clock and
+ * the random generator. Restoring it and simulating the same input again
+ * therefore produces exactly the same ticks.
+ * <p>
+ * Saving is cheap enough to do every tick. Tiles are never modified once
+ * created (destroying one replaces it), so the tile grid is saved as
+ * references. Entities are copied field by field into mirror objects owned by
+ * the state and reused from one save to the next. Restoring copies back into
+ * the model's own objects wherever the entity still exists. Nothing is
+ * allocated in steady state.
+ * <p>
+ * A state belongs to the model it was created for and must only be used on
+ * the thread that updates that model.
+ */
+public final class GameState {
+
+    private final GameModel owner;
+
+    private long ticks = -1;
+    private long randomState;
+
+    private Tile[][] tiles;
+
+    private int level, score, destroyedCrates, requiredCrates, exitRow, exitCol;
+    private int powerupsToPlace, powerupsPlaced;
+    private boolean gameOver, finishedAllLevels;
+    private String message;
+    private long messageUntil;
+
+    private final Hero hero;
+    private final List<drone> drones = new ArrayList<>();
+    private final List<WalkingBomb> walkingBombs = new ArrayList<>();
+    private final List<Bomba> bombs = new ArrayList<>();
+    private final List<PowerUp> powerups = new ArrayList<>();
+    private int droneCount, walkingBombCount, bombCount, powerupCount;
+
+    /**
+     * Creates an empty state for a model.
+     *
+     * @param gm the model whose states this will hold
+     */
+    public GameState(GameModel gm) {
+        this.owner = gm;
+        this.hero = new Hero(0, 0, 0, gm, gm.keyH);
+        this.tiles = new Tile[gm.tiles.length][gm.tiles[0].length];
+    }
+
+    /**
+     * Copies the model's current state into this one.
+     *
+     * @param gm the model this state was created for
+     */
+    public void save(GameModel gm) {
+        checkOwner(gm);
+        ticks = gm.ticks;
+        randomState = gm.randomState;
+
+        if (tiles.length != gm.tiles.length || tiles[0].length != gm.tiles[0].length) {
+            tiles = new Tile[gm.tiles.length][gm.tiles[0].length];
+        }
+        for (int r = 0; r < tiles.length; r++) {
+            System.arraycopy(gm.tiles[r], 0, tiles[r], 0, tiles[r].length);
+        }
+
+        level = gm.level;
+        score = gm.score;
+        destroyedCrates = gm.destroyedCratesCount;
+        requiredCrates = gm.requiredCratesToUnlockExit;
+        exitRow = gm.exitRow;
+        exitCol = gm.exitCol;
+        powerupsToPlace = gm.powerupsToPlace;
+        powerupsPlaced = gm.powerupsPlaced;
+        gameOver = gm.gameOver;
+        finishedAllLevels = gm.finishedAllLevels;
+        message = gm.message;
+        messageUntil = gm.messageUntil;
+
+        hero.copyFrom(gm.hero);
+
+        droneCount = gm.drones.size();
+        for (int i = 0; i < droneCount; i++) {
+            drone src = gm.drones.get(i);
+            drone dst = (i < drones.size()) ? drones.get(i) : null;
+            if (dst == null || dst.getClass() != src.getClass()) {
+                dst = blankDrone(src);
+                if (i < drones.size()) drones.set(i, dst);
+                else drones.add(dst);
+            }
+            dst.copyFrom(src);
+        }
+
+        walkingBombCount = gm.walkingBombs.size();
+        for (int i = 0; i < walkingBombCount; i++) {
+            if (i == walkingBombs.size()) walkingBombs.add(new WalkingBomb(0, 0, gm, gm.keyH));
+            walkingBombs.get(i).copyFrom(gm.walkingBombs.get(i));
+        }
+
+        bombCount = gm.bombs.size();
+        for (int i = 0; i < bombCount; i++) {
+            if (i == bombs.size()) bombs.add(new Bomba(0, 0, 0, gm));
+            bombs.get(i).copyFrom(gm.bombs.get(i));
+        }
+
+        powerupCount = gm.powerups.size();
+        for (int i = 0; i < powerupCount; i++) {
+            PowerUp src = gm.powerups.get(i);
+            PowerUp dst = (i < powerups.size()) ? powerups.get(i) : null;
+            if (dst == null || !samePlace(dst, src)) {
+                dst = new PowerUp(src.row, src.col, src.type);
+                if (i < powerups.size()) powerups.set(i, dst);
+                else powerups.add(dst);
+            }
+            dst.copyFlagsFrom(src);
+        }
+    }
+
+    /**
+     * Puts the model back into this state.
+     *
+     * @param gm the model this state was created for
+     * @throws IllegalStateException if nothing has been saved yet
+     */
+    public void restore(GameModel gm) {
+        checkOwner(gm);
+        if (ticks < 0) throw new IllegalStateException("no state saved");
+        gm.ticks = ticks;
+        gm.randomState = randomState;
+
+        for (int r = 0; r < tiles.length; r++) {
+            System.arraycopy(tiles[r], 0, gm.tiles[r], 0, tiles[r].length);
+        }
+
+        gm.level = level;
+        gm.score = score;
+        gm.destroyedCratesCount = destroyedCrates;
+        gm.requiredCratesToUnlockExit = requiredCrates;
+        gm.exitRow = exitRow;
+        gm.exitCol = exitCol;
+        gm.powerupsToPlace = powerupsToPlace;
+        gm.powerupsPlaced = powerupsPlaced;
+        gm.gameOver = gameOver;
+        gm.finishedAllLevels = finishedAllLevels;
+        gm.message = message;
+        gm.messageUntil = messageUntil;
+
+        gm.hero.copyFrom(hero);
+
+        for (int i = 0; i < droneCount; i++) {
+            drone src = drones.get(i);
+            drone dst = (i < gm.drones.size()) ? gm.drones.get(i) : null;
+            if (dst == null || dst.getClass() != src.getClass()) {
+                dst = blankDrone(src);
+                if (i < gm.drones.size()) gm.drones.set(i, dst);
+                else gm.drones.add(dst);
+            }
+            dst.copyFrom(src);
+        }
+        truncate(gm.drones, droneCount);
+
+        for (int i = 0; i < walkingBombCount; i++) {
+            if (i == gm.walkingBombs.size()) gm.walkingBombs.add(new WalkingBomb(0, 0, gm, gm.keyH));
+            gm.walkingBombs.get(i).copyFrom(walkingBombs.get(i));
+        }
+        truncate(gm.walkingBombs, walkingBombCount);
+
+        for (int i = 0; i < bombCount; i++) {
+            if (i == gm.bombs.size()) gm.bombs.add(new Bomba(0, 0, 0, gm));
+            gm.bombs.get(i).copyFrom(bombs.get(i));
+        }
+        truncate(gm.bombs, bombCount);
+
+        for (int i = 0; i < powerupCount; i++) {
+            PowerUp src = powerups.get(i);
+            PowerUp dst = (i < gm.powerups.size()) ? gm.powerups.get(i) : null;
+            if (dst == null || !samePlace(dst, src)) {
+                dst = new PowerUp(src.row, src.col, src.type);
+                if (i < gm.powerups.size()) gm.powerups.set(i, dst);
+                else gm.powerups.add(dst);
+            }
+            dst.copyFlagsFrom(src);
+        }
+        truncate(gm.powerups, powerupCount);
+    }
+
+    /** @return the game tick the state was saved at ({@link GameModel} tick count), or -1 */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Hashes the saved state, for checking that two peers simulating the same
+     * input are still identical.
+     *
+     * @return 64-bit FNV-1a style hash
+     */
+    public long checksum() {
+        long h = 0xCBF29CE484222325L;
+        h = mix(h, ticks);
+        h = mix(h, randomState);
+        for (Tile[] row : tiles) {
+            for (Tile t : row) h = mix(h, (t == null) ? 0 : t.getType());
+        }
+        h = mix(h, level);
+        h = mix(h, score);
+        h = mix(h, destroyedCrates);
+        h = mix(h, exitRow * 31 + exitCol);
+        h = mix(h, (gameOver ? 1 : 0) | (finishedAllLevels ? 2 : 0));
+        h = mix(h, hero.getX());
+        h = mix(h, hero.getY());
+        h = mix(h, hero.getHearts());
+        for (int i = 0; i < droneCount; i++) {
+            drone d = drones.get(i);
+            h = mix(h, d.getX());
+            h = mix(h, d.getY());
+            h = mix(h, d.isDead() ? 1 : 0);
+        }
+        for (int i = 0; i < walkingBombCount; i++) {
+            h = mix(h, walkingBombs.get(i).getX());
+            h = mix(h, walkingBombs.get(i).getY());
+        }
+        for (int i = 0; i < bombCount; i++) {
+            h = mix(h, bombs.get(i).getRow() * 31 + bombs.get(i).getCol());
+        }
+        for (int i = 0; i < powerupCount; i++) {
+            h = mix(h, powerups.get(i).row * 31 + powerups.get(i).col);
+        }
+        return h;
+    }
+
+    private static long mix(long h, long v) {
+        return (h ^ v) * 0x100000001B3L;
+    }
+
+    private drone blankDrone(drone like) {
+        return (like instanceof FastDrone) ? new FastDrone(owner) : new drone(owner);
+    }
+
+    private static boolean samePlace(PowerUp a, PowerUp b) {
+        return a.row == b.row && a.col == b.col && a.type == b.type;
+    }
+
+    private static void truncate(List<?> list, int size) {
+        while (list.size() > size) list.remove(list.size() - 1);
+    }
+
+    private void checkOwner(GameModel gm) {
+        if (gm != owner) throw new IllegalArgumentException("state belongs to another model");
+    }
+}
@@ -19,11 +19,42 @@ public class Hero {
     /** Vertical pixel position (Y). Row = y / tileSize */
     private int y;
 
+    /** Pixel position at the start of the current tick, used for render interpolation. */
+    private int prevX, prevY;
+
     /** Number of hearts (lives) remaining for the hero. */
     private int hearts = 3;
 
-    // ADDED
-    private int heroSpeed = 5;
+    /** Sub-pixel remainders of the position (1/256 px, see {@link GameModel#SUBPIXEL_BITS}). */
+    private int fracX, fracY;
+
+    /** Movement speed in tiles per second (5 px per tick at 60 Hz with 96 px tiles). */
+    private double heroSpeed = 3.125;
+
+    /** Whole pixels the hero will move during the current tick (used by collision checks). */
+    private int stepPixels = 0;
+
+    // latency tracing: the latest input the hero acted on. Written by the game thread,
+    // read by the renderer; both times are replaced together, so a reader never mixes two inputs.
+    private volatile InputTrace inputTrace;
+
+    /**
+     * When a movement key press was received and when the tick that applied
+     * it ran, both {@code System.nanoTime()}. Immutable, so the pair is
+     * always consistent.
+     */
+    public static final class InputTrace {
+        /** Time the key event was received. */
+        public final long inputNanos;
+        /** Time the tick that moved the hero ran. */
+        public final long tickNanos;
+
+        InputTrace(long inputNanos, long tickNanos) {
+            this.inputNanos = inputNanos;
+            this.tickNanos = tickNanos;
+        }
+    }
+
     public String direction = "left";
     private boolean hasWalkingBombPowerup = false;
 
@@ -40,7 +71,7 @@ public class Hero {
     private boolean hasRadiusPowerup = false;
 
     // invulnerability
-    private long invulnerableUntil = 0L; // System.currentTimeMillis() until which hero is invulnerable
+    private long invulnerableUntil = 0L; // game time (GameModel.getTimeMillis()) until which hero is invulnerable
 
     /**
      * Constructs a Hero placed at the given tile coordinates (x,y) and starting with the specified hearts.
@@ -59,6 +90,8 @@ public class Hero {
         this.spawnRow = y;
         this.x = x * gm.tileSize;
         this.y = y * gm.tileSize;
+        this.prevX = this.x;
+        this.prevY = this.y;
         this.gm = gm;
         this.keyH = keyH;
     }
@@ -99,15 +132,77 @@ public class Hero {
         return y;
     }
 
+    /**
+     * Remembers the current position as the start point for render interpolation.
+     * Called by {@link GameModel#update(double)} at the beginning of every tick.
+     */
+    public void savePreviousPosition() {
+        prevX = x;
+        prevY = y;
+    }
+
+    /**
+     * Returns the X position to draw at, blended between the previous and
+     * current tick by {@code alpha}. Jumps longer than a tile (respawns,
+     * level changes) are not blended.
+     *
+     * @param alpha fraction of a tick elapsed since the last update (0..1)
+     * @return interpolated pixel X
+     */
+    public int getRenderX(double alpha) {
+        return GameModel.lerp(prevX, x, alpha);
+    }
+
+    /**
+     * Returns the Y position to draw at, blended between the previous and
+     * current tick by {@code alpha}.
+     *
+     * @param alpha fraction of a tick elapsed since the last update (0..1)
+     * @return interpolated pixel Y
+     */
+    public int getRenderY(double alpha) {
+        return GameModel.lerp(prevY, y, alpha);
+    }
+
     // setters for external updates (network, remoteHero, etc)
-    public void setX(int x) { this.x = x; }
-    public void setY(int y) { this.y = y; }
+    public void setX(int x) { this.x = x; this.fracX = 0; }
+    public void setY(int y) { this.y = y; this.fracY = 0; }
 
     /** @return the remaining hearts of the hero */
     public int getHearts() {
         return hearts;
     }
 
+    /**
+     * Copies the complete simulation state of another hero of the same model
+     * (saving and restoring a {@link GameState}).
+     *
+     * @param o hero to copy
+     */
+    void copyFrom(Hero o) {
+        x = o.x;
+        y = o.y;
+        prevX = o.prevX;
+        prevY = o.prevY;
+        hearts = o.hearts;
+        fracX = o.fracX;
+        fracY = o.fracY;
+        heroSpeed = o.heroSpeed;
+        stepPixels = o.stepPixels;
+        direction = o.direction;
+        hasWalkingBombPowerup = o.hasWalkingBombPowerup;
+        collision = o.collision;
+        spawnCol = o.spawnCol;
+        spawnRow = o.spawnRow;
+        hasRadiusPowerup = o.hasRadiusPowerup;
+        invulnerableUntil = o.invulnerableUntil;
+    }
+
+    /** Sets the hearts directly (replicas mirroring a remote simulation). */
+    void setHearts(int hearts) {
+        this.hearts = hearts;
+    }
+
     /** Decrements the hero's hearts by one. */
     public void loseHeart() {
         hearts--;
@@ -122,40 +217,12 @@ public class Hero {
      */
     public void update() {
 
-        if (keyH.upPressed  == true || keyH.downPressed == true || keyH.leftPressed == true || keyH.rightPressed == true) {
-            if (keyH.upPressed) {
-                direction = "up";
-            }
-            else if (keyH.downPressed) {
-                direction = "down";
-            }
-            else if (keyH.leftPressed) {
-                direction = "left";
-            }
-            else if (keyH.rightPressed) {
-                direction = "right";
-            }
+        // oldest movement press since the last tick, traced through to the frame that shows it
+        long input = keyH.takeMoveInputNanos();
 
-            collision = false;
-            gm.cChecker.checkTile(this);
-
-
-            if (collision == false) {
-                switch (direction) {
-                    case "up":
-                        y -= heroSpeed;
-                        break;
-                    case "down":
-                        y += heroSpeed;
-                        break;
-                    case "left":
-                        x -= heroSpeed;
-                        break;
-                    case "right":
-                        x += heroSpeed;
-                        break;
-                }
-            }
+        if (move(keyH.upPressed, keyH.downPressed, keyH.leftPressed, keyH.rightPressed)) {
+            // the direction sprite changes even when blocked, so the input is visible either way
+            if (input != 0) inputTrace = new InputTrace(input, System.nanoTime());
         }
 
        if (keyH.placePressed == true) {
@@ -205,6 +272,66 @@ public class Hero {
 
     }
 
+    /**
+     * Applies one tick of movement for the given held directions, with the
+     * same priority and collision rules as keyboard play. Used by
+     * {@link #update()} and by client-side prediction to replay inputs.
+     *
+     * @param up    up held
+     * @param down  down held
+     * @param left  left held
+     * @param right right held
+     * @return true if any direction was held (the hero may still be blocked)
+     */
+    public boolean move(boolean up, boolean down, boolean left, boolean right) {
+        if (!up && !down && !left && !right) return false;
+
+        if (up) {
+            direction = "up";
+        }
+        else if (down) {
+            direction = "down";
+        }
+        else if (left) {
+            direction = "left";
+        }
+        else {
+            direction = "right";
+        }
+
+        // fixed-point step for this tick: sign by direction, whole pixels + remainder
+        boolean horizontal = direction.equals("left") || direction.equals("right");
+        int sign = (direction.equals("up") || direction.equals("left")) ? -1 : 1;
+        int total = (horizontal ? fracX : fracY) + sign * gm.subpixelsPerTick(heroSpeed);
+        int moved = total >> GameModel.SUBPIXEL_BITS;
+        stepPixels = Math.abs(moved);
+
+        collision = false;
+        gm.cChecker.checkTile(this);
+
+
+        if (collision == false) {
+            if (horizontal) {
+                x += moved;
+                fracX = total & GameModel.SUBPIXEL_MASK;
+            } else {
+                y += moved;
+                fracY = total & GameModel.SUBPIXEL_MASK;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the key press behind the hero's latest movement and the tick
+     * that applied it. Any thread may call this.
+     *
+     * @return the latest input, or null if none yet
+     */
+    public InputTrace getInputTrace() {
+        return inputTrace;
+    }
+
     // Helper getters for clarity (pixel vs tile coords)
 
     /**
@@ -260,21 +387,31 @@ public class Hero {
     }
 
     /**
-     * Returns the hero's movement speed in pixels per update.
+     * Returns the hero's movement speed in tiles per second.
      *
      * @return hero movement speed
      */
-    public int getHeroSpeed() {
+    public double getHeroSpeed() {
         return heroSpeed;
     }
 
+    /**
+     * Returns how many whole pixels the hero moves during the current tick.
+     * Depends on the speed, the tick rate and the accumulated sub-pixel remainder.
+     *
+     * @return pixels moved this tick
+     */
+    public int getStepPixels() {
+        return stepPixels;
+    }
+
     /**
      * Grants the hero invulnerability for the specified duration (seconds).
      *
      * @param seconds duration in seconds
      */
     public void makeInvulnerableForSeconds(double seconds) {
-        invulnerableUntil = System.currentTimeMillis() + (long)(seconds * 1000.0);
+        invulnerableUntil = gm.getTimeMillis() + (long)(seconds * 1000.0);
     }
 
     /**
@@ -283,7 +420,17 @@ public class Hero {
      * @return true if invulnerable, false otherwise
      */
     public boolean isInvulnerable() {
-        return System.currentTimeMillis() < invulnerableUntil;
+        return gm.getTimeMillis() < invulnerableUntil;
+    }
+
+    /**
+     * Turns invulnerability on indefinitely or off (replicas mirroring a
+     * remote simulation, where the remote decides when it ends).
+     *
+     * @param v true to make the hero invulnerable
+     */
+    void setInvulnerable(boolean v) {
+        invulnerableUntil = v ? Long.MAX_VALUE : 0L;
     }
 
     /**
@@ -292,6 +439,10 @@ public class Hero {
     public void respawnAtSpawnWithInvulnerability() {
         this.x = spawnCol * gm.tileSize;
         this.y = spawnRow * gm.tileSize;
+        this.fracX = 0;
+        this.fracY = 0;
+        // teleport: do not interpolate from the old position
+        savePreviousPosition();
         makeInvulnerableForSeconds(3.0);
     }
 
@@ -0,0 +1,277 @@
+package model;
+
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+
+/**
+ * Draws the text parts of the HUD (level, score, crates, lives fallback,
+ * message banner and the end-of-game overlay) without per-frame garbage.
+ * <p>
+ * Fonts and composites are created once. Every piece of text is kept as a
+ * laid-out {@link GlyphVector} together with the values it was built from;
+ * the glyphs are only rebuilt when those values change, otherwise the cached
+ * vector is drawn directly. Numbers are formatted into a reused
+ * {@link StringBuilder} instead of concatenating strings, so the only
+ * allocations happen on the frames where a value actually changed.
+ * <p>
+ * The optional performance overlay ({@link #drawPerfOverlay}) is laid out the
+ * same way; its text only changes when a new {@link PerfStats.Snapshot} is
+ * published, twice a second.
+ */
+public class HudRenderer {
+
+    private static final Font STATS_FONT = new Font(Font.MONOSPACED, Font.BOLD, 14);
+    private static final Font MESSAGE_FONT = new Font(Font.MONOSPACED, Font.BOLD, 16);
+    private static final Font TITLE_FONT = new Font(Font.MONOSPACED, Font.BOLD, 48);
+    private static final Font SUBTITLE_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 20);
+
+    private static final Composite MESSAGE_BG = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.7f);
+    private static final Composite OVERLAY_BG = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.8f);
+    private static final Color OVERLAY_COLOR = new Color(0, 0, 0, 200);
+    private static final Color PERF_BG = new Color(0, 0, 0, 160);
+    private static final Color PERF_TEXT = new Color(120, 255, 120);
+
+    /** Screen area covered by the performance overlay. */
+    public static final Rectangle PERF_AREA = new Rectangle(0, 60, 380, 120);
+
+    private final HudText level = new HudText(STATS_FONT);
+    private final HudText score = new HudText(STATS_FONT);
+    private final HudText crates = new HudText(STATS_FONT);
+    private final HudText lives = new HudText(MESSAGE_FONT);
+    private final HudText message = new HudText(MESSAGE_FONT);
+    private final HudText title = new HudText(TITLE_FONT);
+    private final HudText subtitle = new HudText(SUBTITLE_FONT);
+    private final HudText[] perf = {
+            new HudText(STATS_FONT), new HudText(STATS_FONT), new HudText(STATS_FONT), new HudText(STATS_FONT),
+            new HudText(STATS_FONT), new HudText(STATS_FONT)
+    };
+
+    // inputs the performance overlay lines were formatted from
+    private PerfStats.Snapshot perfSnapshot;
+    private int perfDrones = -1, perfBombs = -1, perfPowerups = -1, perfWalking = -1;
+
+    /**
+     * Draws the level, score and crate counters in the top-left corner.
+     *
+     * @param g2d graphics to draw on
+     * @param gm  model supplying the values
+     */
+    public void drawStats(Graphics2D g2d, GameModel gm) {
+        FontRenderContext frc = g2d.getFontRenderContext();
+        g2d.setColor(Color.WHITE);
+        level.set(frc, "Level: ", gm.level);
+        level.draw(g2d, 8, 16);
+        score.set(frc, "Score: ", gm.score);
+        score.draw(g2d, 8, 34);
+        crates.set(frc, "Crates: ", gm.destroyedCratesCount, gm.requiredCratesToUnlockExit);
+        crates.draw(g2d, 8, 52);
+    }
+
+    /**
+     * Draws the centered message banner with its translucent background.
+     *
+     * @param g2d         graphics to draw on
+     * @param text        message to show (nothing is drawn if null)
+     * @param screenWidth width of the screen used for centering
+     */
+    public void drawMessage(Graphics2D g2d, String text, int screenWidth) {
+        if (text == null) return;
+        message.set(g2d.getFontRenderContext(), text);
+        int mw = message.getWidth();
+        int mx = (screenWidth - mw) / 2;
+        int my = 28;
+        int ascent = message.getAscent();
+
+        // translucent bg
+        Composite oldc = g2d.getComposite();
+        g2d.setComposite(MESSAGE_BG);
+        g2d.setColor(Color.BLACK);
+        g2d.fillRoundRect(mx - 8, my - ascent, mw + 16, ascent + 8, 8, 8);
+        g2d.setComposite(oldc);
+
+        g2d.setColor(Color.WHITE);
+        message.draw(g2d, mx, my);
+    }
+
+    /**
+     * Draws the textual lives counter used when the health icons are missing.
+     *
+     * @param g2d    graphics to draw on
+     * @param hearts remaining hearts
+     * @param x      baseline x
+     * @param y      baseline y
+     */
+    public void drawLives(Graphics2D g2d, int hearts, int x, int y) {
+        lives.set(g2d.getFontRenderContext(), "Lives: ", hearts);
+        lives.draw(g2d, x, y);
+    }
+
+    /**
+     * Draws the game-over / congratulations overlay.
+     *
+     * @param g2d          graphics to draw on
+     * @param gm           model supplying the final score and end state
+     * @param screenWidth  width of the screen
+     * @param screenHeight height of the screen
+     */
+    public void drawEndScreen(Graphics2D g2d, GameModel gm, int screenWidth, int screenHeight) {
+        Composite old = g2d.getComposite();
+        g2d.setComposite(OVERLAY_BG);
+        g2d.setColor(OVERLAY_COLOR);
+        g2d.fillRect(0, 0, screenWidth, screenHeight);
+        g2d.setComposite(old);
+
+        FontRenderContext frc = g2d.getFontRenderContext();
+        g2d.setColor(Color.WHITE);
+
+        title.set(frc, gm.gameOver ? "GAME OVER" : "CONGRATULATIONS");
+        int tx = (screenWidth - title.getWidth()) / 2;
+        int ty = (screenHeight / 2);
+        title.draw(g2d, tx, ty);
+
+        subtitle.set(frc, gm.gameOver ? "Final score: " : "You completed all levels! Final score: ", gm.score);
+        int sx = (screenWidth - subtitle.getWidth()) / 2;
+        subtitle.draw(g2d, sx, ty + 36);
+    }
+
+    /**
+     * Draws the performance overlay below the stats block: frame and tick
+     * rates, percentiles of the time between presented frames and of the draw
+     * time, entity counts, garbage collections and input-to-photon latency.
+     *
+     * @param g2d   graphics to draw on
+     * @param stats counters to show
+     * @param gm    model supplying the entity counts
+     */
+    public void drawPerfOverlay(Graphics2D g2d, PerfStats stats, GameModel gm) {
+        PerfStats.Snapshot s = stats.getSnapshot();
+        int drones = (gm.drones != null) ? gm.drones.size() : 0;
+        int bombs = gm.bombs.size();
+        int walking = (gm.walkingBombs != null) ? gm.walkingBombs.size() : 0;
+        int powerups = 0;
+        if (gm.powerups != null) {
+            for (int i = 0; i < gm.powerups.size(); i++) {
+                if (!gm.powerups.get(i).isPicked()) powerups++;
+            }
+        }
+
+        FontRenderContext frc = g2d.getFontRenderContext();
+        if (s != perfSnapshot) {
+            perfSnapshot = s;
+            perf[0].set(frc, String.format("FPS %6.1f  TPS %5.1f  dropped %d %s", s.fps, s.tps,
+                    s.framesDropped, s.pageFlipping ? "flip" : "blit"));
+            perf[1].set(frc, String.format("frame p50 %5.2f ms  p99 %5.2f ms", s.intervalP50Millis, s.intervalP99Millis));
+            perf[2].set(frc, String.format("draw  p50 %5.2f ms  p99 %5.2f ms", s.p50Millis, s.p99Millis));
+            perf[4].set(frc, String.format("GC %d (%d ms) last 0.5 s, %d total", s.gcCount, s.gcMillis, s.gcTotal));
+            LatencyHistogram lat = stats.inputToPhoton;
+            perf[5].set(frc, String.format("input->photon p50 %.1f  p99 %.1f ms (%d)",
+                    lat.getPercentileMillis(0.50), lat.getPercentileMillis(0.99), lat.getCount()));
+        }
+        if (drones != perfDrones || bombs != perfBombs || powerups != perfPowerups || walking != perfWalking) {
+            perfDrones = drones;
+            perfBombs = bombs;
+            perfPowerups = powerups;
+            perfWalking = walking;
+            perf[3].set(frc, String.format("drones %d  bombs %d  powerups %d  walking %d",
+                    drones, bombs, powerups, walking));
+        }
+
+        Rectangle r = PERF_AREA;
+        g2d.setColor(PERF_BG);
+        g2d.fillRect(r.x, r.y, r.width, r.height);
+        g2d.setColor(PERF_TEXT);
+        for (int i = 0; i < perf.length; i++) {
+            perf[i].draw(g2d, r.x + 8, r.y + 18 + i * 18);
+        }
+    }
+
+    /**
+     * One cached line of HUD text: the glyphs plus the inputs they were built from.
+     */
+    private static final class HudText {
+
+        /** Sentinel meaning "no number in this text". */
+        private static final long NONE = Long.MIN_VALUE;
+
+        private final Font font;
+        private final StringBuilder sb = new StringBuilder(64);
+
+        // inputs of the cached glyphs
+        private String label;
+        private long a = NONE, b = NONE;
+        private FontRenderContext frc;
+
+        private GlyphVector glyphs;
+        private int width;
+        private int ascent;
+
+        HudText(Font font) {
+            this.font = font;
+        }
+
+        /** Shows {@code text} as-is. */
+        void set(FontRenderContext frc, String text) {
+            if (glyphs != null && frc.equals(this.frc) && a == NONE
+                    && (text == label || text.equals(label))) {
+                return;
+            }
+            label = text;
+            a = NONE;
+            b = NONE;
+            sb.setLength(0);
+            sb.append(text);
+            rebuild(frc);
+        }
+
+        /** Shows {@code label} followed by a number. */
+        void set(FontRenderContext frc, String label, int value) {
+            if (glyphs != null && frc.equals(this.frc) && label == this.label
+                    && a == value && b == NONE) {
+                return;
+            }
+            this.label = label;
+            a = value;
+            b = NONE;
+            sb.setLength(0);
+            sb.append(label).append(value);
+            rebuild(frc);
+        }
+
+        /** Shows {@code label} followed by {@code first/second}. */
+        void set(FontRenderContext frc, String label, int first, int second) {
+            if (glyphs != null && frc.equals(this.frc) && label == this.label
+                    && a == first && b == second) {
+                return;
+            }
+            this.label = label;
+            a = first;
+            b = second;
+            sb.setLength(0);
+            sb.append(label).append(first).append('/').append(second);
+            rebuild(frc);
+        }
+
+        private void rebuild(FontRenderContext frc) {
+            this.frc = frc;
+            int n = sb.length();
+            char[] chars = new char[n];
+            sb.getChars(0, n, chars, 0);
+            glyphs = font.createGlyphVector(frc, chars);
+            width = (int) Math.round(glyphs.getLogicalBounds().getWidth());
+            ascent = Math.round(font.getLineMetrics(chars, 0, n, frc).getAscent());
+        }
+
+        void draw(Graphics2D g2d, int x, int y) {
+            g2d.drawGlyphVector(glyphs, x, y);
+        }
+
+        int getWidth() {
+            return width;
+        }
+
+        int getAscent() {
+            return ascent;
+        }
+    }
+}
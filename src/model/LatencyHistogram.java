@@ -0,0 +1,96 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cumulative, lock-free histogram of latencies.
+ * <p>
+ * Values are counted in {@value #BUCKET_MICROS} µs buckets up to
+ * {@value #BUCKETS} buckets (0..250 ms); anything slower is counted in the
+ * last bucket, while the exact maximum is tracked separately. Recording only
+ * touches atomics, so any thread may record while another reads percentiles.
+ */
+public class LatencyHistogram {
+
+    /** Width of one bucket in microseconds. */
+    private static final int BUCKET_MICROS = 500;
+
+    /** Number of buckets. */
+    private static final int BUCKETS = 500;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records one latency. Negative values are ignored.
+     *
+     * @param nanos latency in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) return;
+        int bucket = (int) Math.min(BUCKETS - 1, nanos / (BUCKET_MICROS * 1000L));
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /** @return number of recorded values */
+    public long getCount() {
+        return count.get();
+    }
+
+    /** @return mean latency in milliseconds (0 if empty) */
+    public double getMeanMillis() {
+        long n = count.get();
+        return (n == 0) ? 0.0 : totalNanos.get() / 1e6 / n;
+    }
+
+    /** @return largest recorded latency in milliseconds */
+    public double getMaxMillis() {
+        return maxNanos.get() / 1e6;
+    }
+
+    /**
+     * Returns the upper edge of the bucket holding the given quantile.
+     *
+     * @param q quantile in 0..1 (e.g. 0.99)
+     * @return latency in milliseconds, 0 if nothing was recorded
+     */
+    public double getPercentileMillis(double q) {
+        long[] copy = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = buckets.get(i);
+            n += copy[i];
+        }
+        if (n == 0) return 0.0;
+        long rank = Math.max(1, (long) Math.ceil(q * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += copy[i];
+            if (seen >= rank) return (i + 1) * BUCKET_MICROS / 1000.0;
+        }
+        return getMaxMillis();
+    }
+
+    /**
+     * Clears all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) buckets.set(i, 0);
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d mean=%.2fms p50=%.1fms p90=%.1fms p99=%.1fms max=%.2fms",
+                getCount(), getMeanMillis(), getPercentileMillis(0.50),
+                getPercentileMillis(0.90), getPercentileMillis(0.99), getMaxMillis());
+    }
+}
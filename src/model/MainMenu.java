@@ -1,7 +1,8 @@
 package model;
 
-import network.*;
-import model.Boomberman;
+import controller.KeyHandler;
+import network.GameServer;
+import network.RemoteGame;
 
 import javax.swing.*;
 import java.awt.*;
@@ -16,18 +17,27 @@ import java.awt.*;
  *   <li>Quit</li>
  * </ul>
  * <p>
- * Networking is supported via {@link NetworkServer} and {@link NetworkClient}, and
- * incoming messages are delivered to {@link #onNetworkMessage(String)}.
+ * Hosting starts a headless {@link GameServer} that runs the authoritative
+ * game; the host and every joining player then play through a
+ * {@link RemoteGame} replica that predicts the local hero and renders the
+ * server's state.
+ * <p>
+ * While the menu is open the game sprites are preloaded in the background
+ * (see {@link SpriteAtlas#preload(java.util.List, SpriteAtlas.ProgressListener)}),
+ * with a progress bar at the bottom of the window.
  */
 public class MainMenu {
 
     private JFrame frame;
-    private NetworkServer server;
-    private NetworkClient client;
+    private GameServer server;
+    private RemoteGame remote;
 
     // Default port
     private final int PORT = 55555;
 
+    // Sprite edge length used by the game (GameModel.tileSize)
+    private static final int SPRITE_TILE_SIZE = GameModel.TILE_SIZE;
+
     /**
      * Creates and shows the main menu on the Swing event thread.
      */
@@ -77,13 +87,20 @@ public class MainMenu {
         buttons.add(quit);
 
         root.add(buttons, BorderLayout.CENTER);
+
+        JProgressBar loading = new JProgressBar(0, GamePanel.SPRITE_PATHS.size());
+        loading.setStringPainted(true);
+        loading.setString("Loading sprites...");
+        root.add(loading, BorderLayout.SOUTH);
         frame.setContentPane(root);
 
+        preloadSprites(loading);
+
         // Button actions
         pvp.addActionListener(ev -> showPvPDialog());
         pvb.addActionListener(ev -> startPlayerVsBot());
         quit.addActionListener(ev -> {
-            if (client != null) client.close();
+            if (remote != null) remote.close();
             if (server != null) server.stop();
             System.exit(0);
         });
@@ -91,6 +108,24 @@ public class MainMenu {
         frame.setVisible(true);
     }
 
+    /**
+     * Starts decoding the game sprites while the menu is shown and reports
+     * progress on the given bar, which is hidden once everything is loaded.
+     *
+     * @param bar progress bar to update on the event thread
+     */
+    private void preloadSprites(JProgressBar bar) {
+        SpriteAtlas.shared(SPRITE_TILE_SIZE)
+                .preload(GamePanel.SPRITE_PATHS, (done, total) -> SwingUtilities.invokeLater(() -> {
+                    bar.setValue(done);
+                    bar.setString("Loading sprites " + done + "/" + total);
+                }))
+                .whenComplete((ok, err) -> SwingUtilities.invokeLater(() -> {
+                    bar.setVisible(false);
+                    frame.revalidate();
+                }));
+    }
+
     /**
      * Shows a dialog asking whether to Host or Join a multiplayer game.
      * <p>
@@ -112,34 +147,23 @@ public class MainMenu {
     }
 
     /**
-     * Starts a local server and connects a local client to it (localhost).
+     * Starts a local game server and joins it (localhost).
      * <p>
      * On failure the server is stopped and an error dialog is shown.
      */
     private void hostGame() {
-        // Start server
-        server = new NetworkServer(PORT);
+        server = new GameServer(PORT, tickRate());
         server.start();
 
-        // Local client connects to host
-        String host = "127.0.0.1";
-        MultiplayerListener listener = this::onNetworkMessage;
-
-        client = new NetworkClient(host, PORT, listener);
-        boolean ok = client.connect();
-
-        if (!ok) {
+        if (!startRemoteGame("127.0.0.1", "Boomberman - Host")) {
             JOptionPane.showMessageDialog(frame, "Failed to connect local client to host.", "Error", JOptionPane.ERROR_MESSAGE);
             server.stop();
             server = null;
-            return;
         }
-
-        JOptionPane.showMessageDialog(frame, "Hosting server started.\nMultiplayer gameplay setup pending.", "Hosting", JOptionPane.INFORMATION_MESSAGE);
     }
 
     /**
-     * Prompts the user for a host IP and attempts to connect as a client.
+     * Prompts the user for a host IP and attempts to join its game.
      * On connection failure, notifies the user with an error dialog.
      */
     private void joinGame() {
@@ -147,17 +171,37 @@ public class MainMenu {
 
         if (host == null || host.trim().isEmpty()) return;
 
-        MultiplayerListener listener = this::onNetworkMessage;
-        client = new NetworkClient(host.trim(), PORT, listener);
-
-        boolean ok = client.connect();
-        if (!ok) {
+        if (!startRemoteGame(host.trim(), "Boomberman - " + host.trim())) {
             JOptionPane.showMessageDialog(frame, "Could not connect to host.", "Error", JOptionPane.ERROR_MESSAGE);
-            client = null;
-            return;
         }
+    }
+
+    /**
+     * Connects to a game server and opens the game window on a replica model
+     * driven by it.
+     *
+     * @param host  server host
+     * @param title window title
+     * @return false if the connection failed
+     */
+    private boolean startRemoteGame(String host, String title) {
+        remote = new RemoteGame(host, PORT);
+        if (!remote.connect()) {
+            remote = null;
+            return false;
+        }
+        GameModel replica = new GameModel(new KeyHandler());
+        replica.setTickRate(tickRate());
+        replica.setRemote(remote);
+
+        frame.dispose();
+        Boomberman.launch(replica, title);
+        return true;
+    }
 
-        JOptionPane.showMessageDialog(frame, "Connected to host.\nMultiplayer gameplay setup pending.", "Connected", JOptionPane.INFORMATION_MESSAGE);
+    /** @return the simulation rate shared by server and clients */
+    private static int tickRate() {
+        return Integer.getInteger("boomberman.tickRate", 60);
     }
 
     /**
@@ -179,18 +223,6 @@ public class MainMenu {
         }
     }
 
-    /**
-     * Callback invoked when a network message is received from a remote player.
-     * <p>
-     * TODO: integrate network messages into the game model / remote player handling.
-     *
-     * @param msg received textual message from network
-     */
-    private void onNetworkMessage(String msg) {
-        System.out.println("NetMsg: " + msg);
-        // TODO: integrate with GameModel + remoteHero
-    }
-
     /**
      * Launches the MainMenu application.
      *
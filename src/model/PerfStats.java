@@ -0,0 +1,225 @@
+package model;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Performance counters for the in-game statistics overlay.
+ * <p>
+ * The game loop calls {@link #recordTick()} after every simulation update and
+ * the paint path calls {@link #recordFrame(long)} with the time each frame took
+ * to draw and {@link #recordPresent(long)} once the frame has been shown. All
+ * three only touch atomics, so the writers never block each other or the
+ * reader.
+ * <p>
+ * Draw times and the intervals between presented frames are kept in
+ * histograms of {@value #BUCKET_MICROS} µs buckets, up to {@value #BUCKETS}
+ * buckets; longer times land in the last bucket. The interval is what the
+ * player sees: it includes waiting for the simulation, the buffer flip and
+ * any stall outside the draw itself. Twice a second the thread preparing
+ * frames calls {@link #sampleIfDue(long)}, which drains the histograms and
+ * the counters into an immutable {@link Snapshot} with rates, p50/p99 frame
+ * times and the garbage collections reported by the
+ * {@link GarbageCollectorMXBean}s during the window.
+ * <p>
+ * Input latency is traced separately in two cumulative histograms: from the
+ * key event to the tick that applied it ({@link #inputToTick}) and to the
+ * presentation of the first frame showing it ({@link #inputToPhoton}).
+ */
+public class PerfStats {
+
+    /** Length of one sampling window in nanoseconds. */
+    private static final long WINDOW_NANOS = 500000000L;
+
+    /** Width of one frame-time histogram bucket in microseconds. */
+    private static final int BUCKET_MICROS = 250;
+
+    /** Number of histogram buckets (covers 0..64 ms). */
+    private static final int BUCKETS = 256;
+
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLongArray frameTimes = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray frameIntervals = new AtomicLongArray(BUCKETS);
+    private final AtomicLong lastPresentNanos = new AtomicLong();
+    private final AtomicLong framesDropped = new AtomicLong();
+    private volatile boolean pageFlipping;
+
+    /** Key press to the simulation tick that moved the hero. */
+    public final LatencyHistogram inputToTick = new LatencyHistogram();
+
+    /** Key press to the presented frame that shows the moved hero. */
+    public final LatencyHistogram inputToPhoton = new LatencyHistogram();
+
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+    // reader-side state, only touched by the thread calling sampleIfDue
+    private long windowStart = System.nanoTime();
+    private long lastTicks, lastFrames, lastGcCount, lastGcMillis;
+    private final long[] bucketCopy = new long[BUCKETS];
+    private final long[] intervalCopy = new long[BUCKETS];
+
+    private volatile Snapshot latest = new Snapshot(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, false);
+
+    /**
+     * Rates and percentiles of one sampling window.
+     */
+    public static final class Snapshot {
+        /** Frames drawn per second. */
+        public final double fps;
+        /** Simulation updates per second. */
+        public final double tps;
+        /** Median frame draw time in milliseconds. */
+        public final double p50Millis;
+        /** 99th percentile frame draw time in milliseconds. */
+        public final double p99Millis;
+        /** Median time between presented frames in milliseconds. */
+        public final double intervalP50Millis;
+        /** 99th percentile time between presented frames in milliseconds. */
+        public final double intervalP99Millis;
+        /** Garbage collections during the window. */
+        public final long gcCount;
+        /** Time spent in garbage collection during the window, in milliseconds. */
+        public final long gcMillis;
+        /** Garbage collections since the JVM started. */
+        public final long gcTotal;
+        /** Refresh slots missed by the render thread since it started. */
+        public final long framesDropped;
+        /** Whether frames are presented by flipping video pages. */
+        public final boolean pageFlipping;
+
+        Snapshot(double fps, double tps, double p50Millis, double p99Millis,
+                 double intervalP50Millis, double intervalP99Millis,
+                 long gcCount, long gcMillis, long gcTotal, long framesDropped, boolean pageFlipping) {
+            this.fps = fps;
+            this.tps = tps;
+            this.p50Millis = p50Millis;
+            this.p99Millis = p99Millis;
+            this.intervalP50Millis = intervalP50Millis;
+            this.intervalP99Millis = intervalP99Millis;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+            this.gcTotal = gcTotal;
+            this.framesDropped = framesDropped;
+            this.pageFlipping = pageFlipping;
+        }
+    }
+
+    /**
+     * Counts one simulation update. Called by the game loop.
+     */
+    public void recordTick() {
+        ticks.incrementAndGet();
+    }
+
+    /**
+     * Counts one drawn frame and its draw time. Called by the paint path.
+     *
+     * @param nanos time spent drawing the frame
+     */
+    public void recordFrame(long nanos) {
+        frames.incrementAndGet();
+        frameTimes.incrementAndGet(bucket(nanos));
+    }
+
+    /**
+     * Records the time since the previously presented frame. Called by
+     * whoever presents frames, right after presenting one.
+     *
+     * @param now current {@code System.nanoTime()}
+     */
+    public void recordPresent(long now) {
+        long prev = lastPresentNanos.getAndSet(now);
+        if (prev != 0) frameIntervals.incrementAndGet(bucket(now - prev));
+    }
+
+    /**
+     * Counts refresh slots the render thread missed because a frame finished
+     * too late.
+     *
+     * @param slots number of missed slots
+     */
+    public void recordDropped(long slots) {
+        framesDropped.addAndGet(slots);
+    }
+
+    /**
+     * Records how frames are presented, for the overlay.
+     *
+     * @param pageFlipping true if the buffer strategy flips video pages
+     */
+    public void setPageFlipping(boolean pageFlipping) {
+        this.pageFlipping = pageFlipping;
+    }
+
+    private static int bucket(long nanos) {
+        return (int) Math.min(BUCKETS - 1, Math.max(0, nanos) / (BUCKET_MICROS * 1000L));
+    }
+
+    /**
+     * Closes the current window and publishes a new {@link Snapshot} if at
+     * least half a second has passed. Must always be called from the same thread.
+     *
+     * @param now current {@code System.nanoTime()}
+     * @return true if a new snapshot was published
+     */
+    public boolean sampleIfDue(long now) {
+        long elapsed = now - windowStart;
+        if (elapsed < WINDOW_NANOS) return false;
+        windowStart = now;
+        double seconds = elapsed / 1e9;
+
+        long t = ticks.get();
+        long f = frames.get();
+        double tps = (t - lastTicks) / seconds;
+        double fps = (f - lastFrames) / seconds;
+        lastTicks = t;
+        lastFrames = f;
+
+        long count = 0, intervals = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            bucketCopy[i] = frameTimes.getAndSet(i, 0);
+            count += bucketCopy[i];
+            intervalCopy[i] = frameIntervals.getAndSet(i, 0);
+            intervals += intervalCopy[i];
+        }
+
+        long gcCount = 0, gcMillis = 0;
+        for (GarbageCollectorMXBean gc : collectors) {
+            gcCount += Math.max(0, gc.getCollectionCount());
+            gcMillis += Math.max(0, gc.getCollectionTime());
+        }
+
+        latest = new Snapshot(fps, tps,
+                percentile(bucketCopy, count, 0.50), percentile(bucketCopy, count, 0.99),
+                percentile(intervalCopy, intervals, 0.50), percentile(intervalCopy, intervals, 0.99),
+                gcCount - lastGcCount, gcMillis - lastGcMillis, gcCount, framesDropped.get(), pageFlipping);
+        lastGcCount = gcCount;
+        lastGcMillis = gcMillis;
+        return true;
+    }
+
+    /** @return the upper edge in ms of the bucket holding the given quantile */
+    private static double percentile(long[] buckets, long count, double q) {
+        if (count == 0) return 0.0;
+        long rank = (long) Math.ceil(q * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= rank) return (i + 1) * BUCKET_MICROS / 1000.0;
+        }
+        return BUCKETS * BUCKET_MICROS / 1000.0;
+    }
+
+    /**
+     * Returns the most recently published window.
+     *
+     * @return the latest snapshot (never null)
+     */
+    public Snapshot getSnapshot() {
+        return latest;
+    }
+}
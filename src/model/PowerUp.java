@@ -55,6 +55,17 @@ public class PowerUp {
         this.type = t;
     }
 
+    /**
+     * Copies the pickup flags of another power-up on the same tile (saving and
+     * restoring a {@link GameState}).
+     *
+     * @param o power-up to copy
+     */
+    void copyFlagsFrom(PowerUp o) {
+        picked = o.picked;
+        instructionShown = o.instructionShown;
+    }
+
     /**
      * Returns whether this power-up has already been picked up by the hero.
      *
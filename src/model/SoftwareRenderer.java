@@ -0,0 +1,400 @@
+package model;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * CPU rendering backend that writes sprite pixels straight into an {@code int[]}
+ * raster instead of going through Java2D.
+ * <p>
+ * Meant for headless recording and machines without an accelerated Java2D
+ * pipeline. A frame is built in two steps:
+ * <ol>
+ *   <li>On the calling thread the scene is walked in the same order as
+ *       {@link GamePanel#render(Graphics2D)} (tiles, drones, walking bombs, hero,
+ *       bombs) and every visible sprite or translucent overlay is recorded in a
+ *       flat draw list, in screen coordinates.</li>
+ *   <li>The screen is cut into horizontal strips which are filled in parallel on
+ *       a {@link ForkJoinPool}. Each strip replays the whole draw list, clipped
+ *       to its own rows, so strips never write to the same pixels and need no
+ *       locking.</li>
+ * </ol>
+ * Sprite pixels are taken once from the pre-scaled {@link SpriteAtlas} images
+ * and kept as ARGB arrays. Text is not rasterized by hand: the HUD is drawn on
+ * top of the finished raster with {@link GamePanel#drawHud(Graphics2D)}.
+ * <p>
+ * {@link #main(String[])} renders a number of frames with both backends and
+ * prints the average time per frame.
+ */
+public class SoftwareRenderer {
+
+    /** Strips are not split below this many rows. */
+    private static final int MIN_STRIP_ROWS = 32;
+
+    // overlay colours (ARGB with the alpha the Java2D path uses)
+    private static final int RANGE_OVERLAY = argb(0.25f, Color.RED);
+    private static final int HERO_TILE_OVERLAY = argb(0.35f, Color.CYAN);
+    private static final int MISSING_SPRITE = Color.MAGENTA.getRGB();
+
+    private final GamePanel gp;
+    private final int width;
+    private final int height;
+
+    /** Frame the strips are written into (opaque RGB). */
+    private final BufferedImage frame;
+    private final int[] pixels;
+
+    private final ForkJoinPool pool;
+
+    /** ARGB pixels of every sprite seen so far, keyed by image identity. */
+    private final Map<BufferedImage, int[]> spritePixels = new IdentityHashMap<>();
+
+    // draw list of the current frame (struct-of-arrays, reused between frames)
+    private int opCount;
+    private int[][] opSrc = new int[256][];
+    private int[] opX = new int[256];
+    private int[] opY = new int[256];
+    private int[] opW = new int[256];
+    private int[] opH = new int[256];
+    private int[] opColor = new int[256];
+
+    /**
+     * Creates a renderer for the panel's scene and screen size.
+     *
+     * @param gp panel supplying the model, camera, sprites and HUD
+     */
+    public SoftwareRenderer(GamePanel gp) {
+        this.gp = gp;
+        this.width = gp.screenWidth;
+        this.height = gp.screenHeight;
+        this.frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        this.pixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+        this.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Renders the current scene into the internal raster and returns it.
+     * The returned image is reused by the next call.
+     *
+     * @return the rendered frame
+     */
+    public BufferedImage render() {
+        opCount = 0;
+        buildDrawList();
+        pool.invoke(new Strip(0, height));
+
+        Graphics2D g2d = frame.createGraphics();
+        try {
+            gp.drawHud(g2d);
+        } finally {
+            g2d.dispose();
+        }
+        return frame;
+    }
+
+    /**
+     * Stops the strip worker threads.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Records the world part of the frame in {@link GamePanel#render(Graphics2D)}
+     * order, skipping everything outside the camera viewport.
+     */
+    private void buildDrawList() {
+        GameModel gm = gp.gm;
+        Tile[][] tiles = gp.tiles;
+        int ts = gm.tileSize;
+        double alpha = gp.getRenderAlpha();
+        int camX = gp.camera.getX();
+        int camY = gp.camera.getY();
+
+        // tiles
+        int heroRow = (gm.hero != null) ? gm.hero.getTileRow() : -1;
+        int heroCol = (gm.hero != null) ? gm.hero.getTileCol() : -1;
+        boolean heroInDanger = gp.isTileInBombRange(heroRow, heroCol);
+
+        int firstRow = Math.max(0, camY / ts);
+        int lastRow = Math.min(tiles.length - 1, (camY + height - 1) / ts);
+        int firstCol = Math.max(0, camX / ts);
+        int lastCol = Math.min(tiles[0].length - 1, (camX + width - 1) / ts);
+
+        for (int i = firstRow; i <= lastRow; i++) {
+            for (int j = firstCol; j <= lastCol; j++) {
+                int x = j * ts - camX;
+                int y = i * ts - camY;
+                char c = tiles[i][j].getType();
+                boolean isHeroTile = (i == heroRow && j == heroCol);
+                BufferedImage base = isHeroTile && gp.playerTile != null ? gp.playerTile : gp.basicTile;
+
+                switch (c) {
+                    case 'I': sprite(base, x, y); sprite(gp.indestructibleTile, x, y); break;
+                    case 'D':
+                        sprite(base, x, y);
+                        if (!tiles[i][j].getDestroyedStatus()) sprite(gp.breakableTile, x, y);
+                        break;
+                    case ' ': sprite(base, x, y); break;
+                    case 'B': sprite(gp.borderBottom, x, y); break;
+                    case 'L': sprite(gp.borderLeftLine, x, y); break;
+                    case 'R': sprite(gp.borderRightLine, x, y); break;
+                    case 'T': sprite(gp.borderTop, x, y); break;
+                    case '1': sprite(gp.borderTopLeft, x, y); break;
+                    case '2': sprite(gp.borderTopRight, x, y); break;
+                    case '3': sprite(gp.borderBottomLeft, x, y); break;
+                    case '4': sprite(gp.borderBottomRight, x, y); break;
+                    default: break;
+                }
+
+                if (gm.exitRow == i && gm.exitCol == j && gp.exitImg != null) sprite(gp.exitImg, x, y);
+
+                if (gm.powerups != null) {
+                    for (PowerUp pu : gm.powerups) {
+                        if (pu != null && !pu.isPicked() && pu.row == i && pu.col == j) {
+                            switch (pu.type) {
+                                case WALKING: sprite(gp.powerUpIcon, x, y); break;
+                                case RADIUS: sprite(gp.power1Icon, x, y); break;
+                                case EXTRA_LIFE: sprite(gp.power2Icon, x, y); break;
+                            }
+                            break;
+                        }
+                    }
+                }
+
+                if (gp.isTileInBombRange(i, j)) fill(x, y, ts, ts, RANGE_OVERLAY);
+
+                if (isHeroTile && gp.playerTile == null) {
+                    fill(x, y, ts, ts, heroInDanger ? dangerPulse(0.35f, 0.35f) : HERO_TILE_OVERLAY);
+                }
+                if (isHeroTile && gp.playerTile != null && heroInDanger) {
+                    fill(x, y, ts, ts, dangerPulse(0.25f, 0.45f));
+                }
+            }
+        }
+
+        // drones
+        if (gm.drones != null) {
+            for (int i = 0; i < gm.drones.size(); i++) {
+                drone d = gm.drones.get(i);
+                gp.ensureSprites(d);
+                int x = d.getRenderX(alpha) - camX;
+                int y = d.getRenderY(alpha) - camY;
+                BufferedImage spr = d.getCurrentSprite();
+                if (spr != null) sprite(spr, x, y);
+                else fill(x, y, ts, ts, MISSING_SPRITE);
+            }
+        }
+
+        walkingBombs(gm, alpha, camX, camY);
+
+        // hero
+        Hero hero = gm.hero;
+        if (hero != null && hero.isDrawnThisFrame()) {
+            BufferedImage image = gp.heroIdle;
+            switch (hero.direction) {
+                case "up": image = gp.heroUp; break;
+                case "down": image = gp.heroDown; break;
+                case "left": image = gp.heroLeft; break;
+                case "right": image = gp.heroRight; break;
+            }
+            sprite(image, hero.getRenderX(alpha) - camX, hero.getRenderY(alpha) - camY);
+        }
+
+        // bombs
+        for (int i = 0; i < gm.bombs.size(); i++) {
+            Bomba b = gm.bombs.get(i);
+            if (!b.exploded) {
+                sprite(b.isPowered() ? gp.powerUpIcon : gp.normalBomb, b.getCol() * ts - camX, b.getRow() * ts - camY);
+            }
+        }
+
+        // the Java2D path draws walking bombs a second time on top of the bombs
+        walkingBombs(gm, alpha, camX, camY);
+    }
+
+    private void walkingBombs(GameModel gm, double alpha, int camX, int camY) {
+        if (gm.walkingBombs == null) return;
+        int ts = gm.tileSize;
+        for (WalkingBomb wb : gm.walkingBombs) {
+            if (wb == null) continue;
+            gp.ensureSprites(wb);
+            BufferedImage spr = wb.getCurrentSprite();
+            if (spr != null) {
+                sprite(spr, wb.getRenderX(alpha) - camX, wb.getRenderY(alpha) - camY);
+            } else {
+                sprite(gp.normalBomb, wb.getTileCol() * ts - camX, wb.getTileRow() * ts - camY);
+            }
+        }
+    }
+
+    /** @return the pulsing red used for the hero tile while a bomb threatens it */
+    private static int dangerPulse(float base, float amplitude) {
+        double t = System.currentTimeMillis() / 200.0;
+        float pulse = (float) ((Math.sin(t) + 1.0) / 2.0);
+        return argb(base + amplitude * pulse, Color.RED);
+    }
+
+    private static int argb(float alpha, Color c) {
+        return (Math.round(alpha * 255) << 24) | (c.getRGB() & 0xFFFFFF);
+    }
+
+    /** Queues a sprite copy; null sprites and sprites off screen are dropped. */
+    private void sprite(BufferedImage img, int x, int y) {
+        if (img == null) return;
+        int w = img.getWidth();
+        int h = img.getHeight();
+        if (x >= width || y >= height || x + w <= 0 || y + h <= 0) return;
+        int[] src = spritePixels.get(img);
+        if (src == null) {
+            src = img.getRGB(0, 0, w, h, null, 0, w);
+            spritePixels.put(img, src);
+        }
+        push(src, x, y, w, h, 0);
+    }
+
+    /** Queues a solid or translucent rectangle. */
+    private void fill(int x, int y, int w, int h, int color) {
+        if (x >= width || y >= height || x + w <= 0 || y + h <= 0) return;
+        push(null, x, y, w, h, color);
+    }
+
+    private void push(int[] src, int x, int y, int w, int h, int color) {
+        if (opCount == opX.length) {
+            int n = opCount * 2;
+            opSrc = Arrays.copyOf(opSrc, n);
+            opX = Arrays.copyOf(opX, n);
+            opY = Arrays.copyOf(opY, n);
+            opW = Arrays.copyOf(opW, n);
+            opH = Arrays.copyOf(opH, n);
+            opColor = Arrays.copyOf(opColor, n);
+        }
+        opSrc[opCount] = src;
+        opX[opCount] = x;
+        opY[opCount] = y;
+        opW[opCount] = w;
+        opH[opCount] = h;
+        opColor[opCount] = color;
+        opCount++;
+    }
+
+    /**
+     * Clears and fills the rows {@code y0..y1-1} of the frame, splitting in
+     * halves until strips are small enough. Never serialized.
+     */
+    @SuppressWarnings("serial")
+    private final class Strip extends RecursiveAction {
+
+        private final int y0, y1;
+
+        Strip(int y0, int y1) {
+            this.y0 = y0;
+            this.y1 = y1;
+        }
+
+        @Override
+        protected void compute() {
+            if (y1 - y0 > 2 * MIN_STRIP_ROWS) {
+                int mid = (y0 + y1) >>> 1;
+                invokeAll(new Strip(y0, mid), new Strip(mid, y1));
+                return;
+            }
+
+            Arrays.fill(pixels, y0 * width, y1 * width, 0xFF000000);
+            for (int op = 0; op < opCount; op++) {
+                int top = Math.max(y0, opY[op]);
+                int bottom = Math.min(y1, opY[op] + opH[op]);
+                if (top >= bottom) continue;
+                int left = Math.max(0, opX[op]);
+                int right = Math.min(width, opX[op] + opW[op]);
+
+                int[] src = opSrc[op];
+                if (src == null) {
+                    fillRows(top, bottom, left, right, opColor[op]);
+                } else {
+                    blitRows(src, opX[op], opY[op], opW[op], top, bottom, left, right);
+                }
+            }
+        }
+
+        private void blitRows(int[] src, int sx, int sy, int sw, int top, int bottom, int left, int right) {
+            for (int y = top; y < bottom; y++) {
+                int s = (y - sy) * sw + (left - sx);
+                int d = y * width + left;
+                for (int x = left; x < right; x++, s++, d++) {
+                    int p = src[s];
+                    int a = p >>> 24;
+                    if (a == 0xFF) pixels[d] = p;
+                    else if (a != 0) pixels[d] = blend(p, a, pixels[d]);
+                }
+            }
+        }
+
+        private void fillRows(int top, int bottom, int left, int right, int color) {
+            int a = color >>> 24;
+            for (int y = top; y < bottom; y++) {
+                int d = y * width + left;
+                for (int x = left; x < right; x++, d++) {
+                    pixels[d] = (a == 0xFF) ? color : blend(color, a, pixels[d]);
+                }
+            }
+        }
+    }
+
+    /** Source-over blend of a non-premultiplied ARGB pixel onto an opaque one. */
+    private static int blend(int src, int a, int dst) {
+        int ia = 255 - a;
+        int r = (((src >> 16) & 0xFF) * a + ((dst >> 16) & 0xFF) * ia) / 255;
+        int g = (((src >> 8) & 0xFF) * a + ((dst >> 8) & 0xFF) * ia) / 255;
+        int b = ((src & 0xFF) * a + (dst & 0xFF) * ia) / 255;
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Renders frames with the Java2D and the software backend into an offscreen
+     * image and prints the average cost of each.
+     *
+     * @param args optional frame count (default 300)
+     */
+    public static void main(String[] args) {
+        int frames = (args.length > 0) ? Integer.parseInt(args[0]) : 300;
+        GameModel gm = new GameModel(new controller.KeyHandler());
+        GamePanel gp = new GamePanel(gm);
+        gp.updateCamera();
+
+        BufferedImage target = new BufferedImage(gp.screenWidth, gp.screenHeight, BufferedImage.TYPE_INT_RGB);
+        SoftwareRenderer sw = new SoftwareRenderer(gp);
+
+        for (int pass = 0; pass < 2; pass++) { // first pass warms up the JIT
+            long java2d = 0, software = 0;
+            for (int i = 0; i < frames; i++) {
+                gm.update(gm.getTickSeconds());
+
+                long t0 = System.nanoTime();
+                Graphics2D g2d = target.createGraphics();
+                g2d.setColor(Color.black);
+                g2d.fillRect(0, 0, gp.screenWidth, gp.screenHeight);
+                gp.render(g2d);
+                g2d.dispose();
+                long t1 = System.nanoTime();
+                sw.render();
+                long t2 = System.nanoTime();
+
+                java2d += t1 - t0;
+                software += t2 - t1;
+            }
+            if (pass == 1) {
+                System.out.printf("%d frames %dx%d: java2d %.3f ms/frame, software %.3f ms/frame (%d threads)%n",
+                        frames, gp.screenWidth, gp.screenHeight,
+                        java2d / 1e6 / frames, software / 1e6 / frames, sw.pool.getParallelism());
+            }
+        }
+        sw.shutdown();
+    }
+}
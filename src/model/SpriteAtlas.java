@@ -0,0 +1,258 @@
+package model;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads sprite images once and keeps them pre-scaled to the on-screen tile size.
+ * <p>
+ * The source PNGs are 32x32 while the board is drawn with {@code tileSize}
+ * (96 px) tiles. Scaling on every {@code drawImage} call forces Java2D off its
+ * fast blit path, so each sprite is scaled exactly once here and copied into an
+ * image created by {@link GraphicsConfiguration#createCompatibleImage(int, int, int)}.
+ * Such images share the screen's pixel layout and can be cached in video memory,
+ * letting {@link GamePanel} draw them with a plain unscaled copy.
+ * <p>
+ * Loaded sprites are cached by resource path, so asking for the same path twice
+ * returns the same image instance. {@link #preload(List, ProgressListener)}
+ * fills the cache on a thread pool, reading already scaled pixels from the
+ * {@link SpriteCache} file when possible; {@link #load(String)} waits for a
+ * sprite that is still being loaded instead of decoding it a second time.
+ */
+public class SpriteAtlas {
+
+    /**
+     * Receives preload progress. Called from loader threads.
+     */
+    public interface ProgressListener {
+
+        /**
+         * Called after each sprite finished loading (successfully or not).
+         *
+         * @param done  sprites finished so far
+         * @param total sprites requested
+         */
+        void onProgress(int done, int total);
+    }
+
+    /** One atlas per tile size, shared by the menu preloader and {@link GamePanel}. */
+    private static final Map<Integer, SpriteAtlas> SHARED = new HashMap<>();
+
+    /** Edge length in pixels every sprite is scaled to. */
+    private final int tileSize;
+
+    /** Screen configuration used to create display-compatible images (null when headless). */
+    private final GraphicsConfiguration gc;
+
+    /** Sprites keyed by resource path; a task is completed once the sprite is ready. */
+    private final ConcurrentHashMap<String, FutureTask<BufferedImage>> sprites = new ConcurrentHashMap<>();
+
+    /** Set once a preload has been started, so repeated calls do not reload. */
+    private final AtomicBoolean preloadStarted = new AtomicBoolean(false);
+
+    /** Completes when the first preload has finished. */
+    private final CompletableFuture<Void> preloaded = new CompletableFuture<>();
+
+    /**
+     * Creates an atlas that scales sprites to the given tile size.
+     *
+     * @param tileSize target width and height of every sprite in pixels
+     */
+    public SpriteAtlas(int tileSize) {
+        this.tileSize = tileSize;
+        this.gc = GraphicsEnvironment.isHeadless() ? null
+                : GraphicsEnvironment.getLocalGraphicsEnvironment()
+                        .getDefaultScreenDevice().getDefaultConfiguration();
+    }
+
+    /**
+     * Returns the process-wide atlas for a tile size.
+     *
+     * @param tileSize target width and height of every sprite in pixels
+     * @return the shared atlas
+     */
+    public static synchronized SpriteAtlas shared(int tileSize) {
+        return SHARED.computeIfAbsent(tileSize, SpriteAtlas::new);
+    }
+
+    /**
+     * Returns the edge length sprites are scaled to.
+     *
+     * @return the tile size in pixels
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Returns the sprite at the given classpath resource, pre-scaled.
+     * <p>
+     * Behaves like {@code ImageIO.read(getResourceAsStream(path))}: a missing
+     * resource or undecodable file throws, so callers can keep their existing
+     * fallback handling. If the sprite is being preloaded on another thread
+     * this call waits for it.
+     *
+     * @param path resource path such as {@code "/hero/heroUp.png"}
+     * @return the scaled, display-compatible sprite
+     * @throws IOException if the resource is missing or cannot be decoded
+     */
+    public BufferedImage load(String path) throws IOException {
+        FutureTask<BufferedImage> task = sprites.get(path);
+        if (task == null) {
+            FutureTask<BufferedImage> created = new FutureTask<>(() -> decode(path));
+            task = sprites.putIfAbsent(path, created);
+            if (task == null) {
+                task = created;
+                task.run();
+            }
+        }
+        return await(task);
+    }
+
+    /**
+     * Loads all given sprites in parallel.
+     * <p>
+     * Sprites found in the on-disk {@link SpriteCache} (with matching source
+     * stamps) are built from the memory-mapped pixels; the rest are decoded
+     * from PNG on a pool sized to the number of CPUs. When anything had to be
+     * decoded, the cache file is rewritten afterwards so the next launch can
+     * skip decoding. Only the first call does any work; later calls return
+     * the same future.
+     *
+     * @param paths    resource paths to load
+     * @param listener optional progress callback (may be null)
+     * @return a future completed when every sprite has been loaded or failed
+     */
+    public CompletableFuture<Void> preload(List<String> paths, ProgressListener listener) {
+        if (!preloadStarted.compareAndSet(false, true)) return preloaded;
+
+        int total = paths.size();
+        AtomicInteger done = new AtomicInteger();
+        AtomicBoolean decodedAny = new AtomicBoolean(false);
+        ExecutorService pool = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(total, Runtime.getRuntime().availableProcessors())),
+                r -> {
+                    Thread t = new Thread(r, "sprite-loader");
+                    t.setDaemon(true);
+                    return t;
+                });
+
+        // stamps and the mapped cache file are read once, by the first sprite job that needs them
+        SpriteCache cache = SpriteCache.defaultFor(tileSize);
+        Map<String, Long> stamps = new ConcurrentHashMap<>();
+        CompletableFuture<Map<String, BufferedImage>> cached = CompletableFuture.supplyAsync(() -> {
+            for (String p : paths) stamps.put(p, SpriteCache.stampOf(p));
+            return cache.read(stamps);
+        }, pool);
+
+        // register every task up front so load() waits for it instead of decoding again
+        List<FutureTask<BufferedImage>> tasks = new java.util.ArrayList<>(total);
+        for (String path : paths) {
+            FutureTask<BufferedImage> task = new FutureTask<>(() -> {
+                BufferedImage raw = cached.join().get(path);
+                if (raw != null) return toCompatible(raw);
+                BufferedImage decoded = decode(path);
+                decodedAny.set(true); // only sprites that decoded are worth rewriting the cache for
+                return decoded;
+            });
+            FutureTask<BufferedImage> existing = sprites.putIfAbsent(path, task);
+            if (existing != null) {
+                tasks.add(existing);
+                if (listener != null) listener.onProgress(done.incrementAndGet(), total);
+                continue;
+            }
+            tasks.add(task);
+            pool.execute(() -> {
+                task.run();
+                if (listener != null) listener.onProgress(done.incrementAndGet(), total);
+            });
+        }
+
+        // once everything is in, rewrite the cache file if anything had to be decoded from PNG
+        Thread finisher = new Thread(() -> {
+            try {
+                Map<String, BufferedImage> ready = new HashMap<>();
+                for (int i = 0; i < total; i++) {
+                    try {
+                        ready.put(paths.get(i), await(tasks.get(i)));
+                    } catch (IOException ignored) {
+                        // reported to whoever loads that sprite; simply not cached
+                    }
+                }
+                if (decodedAny.get()) cache.write(ready, stamps);
+                preloaded.complete(null);
+            } catch (RuntimeException e) {
+                preloaded.completeExceptionally(e);
+            } finally {
+                pool.shutdown();
+            }
+        }, "sprite-preload");
+        finisher.setDaemon(true);
+        finisher.start();
+        return preloaded;
+    }
+
+    /**
+     * Decodes a PNG resource and scales it to the tile size.
+     */
+    private BufferedImage decode(String path) throws IOException {
+        BufferedImage src;
+        try (InputStream in = SpriteAtlas.class.getResourceAsStream(path)) {
+            if (in == null) throw new IOException("Missing sprite resource: " + path);
+            src = ImageIO.read(in);
+        }
+        if (src == null) throw new IOException("Unreadable sprite resource: " + path);
+        return toCompatible(src);
+    }
+
+    /**
+     * Waits for a load task and unwraps its failure into an {@link IOException}.
+     */
+    private static BufferedImage await(FutureTask<BufferedImage> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading sprite", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Scales an already decoded image to the tile size and converts it into the
+     * display-compatible format.
+     * <p>
+     * Nearest-neighbour sampling is used so the pixel-art look matches what the
+     * old per-frame scaled draws produced.
+     *
+     * @param src the decoded source image
+     * @return a new {@code tileSize x tileSize} translucent image
+     */
+    public BufferedImage toCompatible(BufferedImage src) {
+        BufferedImage dst = (gc != null)
+                ? gc.createCompatibleImage(tileSize, tileSize, Transparency.TRANSLUCENT)
+                : new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_ARGB);
+
+        Graphics2D g2 = dst.createGraphics();
+        try {
+            g2.setComposite(AlphaComposite.Src);
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                    RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            g2.drawImage(src, 0, 0, tileSize, tileSize, null);
+        } finally {
+            g2.dispose();
+        }
+        return dst;
+    }
+}
@@ -0,0 +1,193 @@
+package model;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.*;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * On-disk cache of decoded, pre-scaled sprite pixels.
+ * <p>
+ * Decoding ~40 PNGs with {@code ImageIO} dominates cold start. After the first
+ * launch the scaled ARGB pixels are written to a single binary file; later
+ * launches memory-map it and build images straight from the mapped ints,
+ * skipping PNG decoding entirely.
+ * <p>
+ * File layout (big-endian):
+ * <pre>
+ * int    magic ('BMSC')
+ * int    format version
+ * int    tile size the sprites were scaled to
+ * int    entry count
+ * entry* {
+ *     short  path length, byte[] UTF-8 path
+ *     long   source stamp (last-modified and size of the PNG)
+ *     int    width, int height
+ *     int[]  width*height ARGB pixels
+ * }
+ * </pre>
+ * Entries whose source stamp no longer matches the PNG on the classpath, or
+ * whose size is not the tile size, are ignored, and a file with a different
+ * version or tile size is ignored as a whole, so stale caches are never used.
+ */
+public class SpriteCache {
+
+    private static final int MAGIC = 0x424D5343; // "BMSC"
+    private static final int VERSION = 1;
+
+    /** Location of the cache file. */
+    private final File file;
+
+    /** Tile size the cached pixels must have been scaled to. */
+    private final int tileSize;
+
+    /**
+     * Creates a cache bound to a file and a tile size.
+     *
+     * @param file     cache file location
+     * @param tileSize sprite edge length the cache is valid for
+     */
+    public SpriteCache(File file, int tileSize) {
+        this.file = file;
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Returns the default cache location: {@code ~/.boomberman/sprites-<tileSize>.bin}.
+     *
+     * @param tileSize sprite edge length
+     * @return the cache for that tile size in the user's home directory
+     */
+    public static SpriteCache defaultFor(int tileSize) {
+        File dir = new File(System.getProperty("user.home"), ".boomberman");
+        return new SpriteCache(new File(dir, "sprites-" + tileSize + ".bin"), tileSize);
+    }
+
+    /**
+     * Computes a stamp identifying the current version of a sprite resource.
+     *
+     * @param path classpath resource path
+     * @return a value that changes when the resource changes (0 if unknown)
+     */
+    public static long stampOf(String path) {
+        URL url = SpriteCache.class.getResource(path);
+        if (url == null) return 0L;
+        try {
+            URLConnection c = url.openConnection();
+            c.setUseCaches(false);
+            long stamp = (c.getLastModified() * 31) ^ c.getContentLengthLong();
+            // jar connections keep the stream open until it is closed
+            c.getInputStream().close();
+            return stamp;
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * Memory-maps the cache file and returns every entry whose stamp matches
+     * the given one and whose pixels are {@code tileSize x tileSize}.
+     *
+     * @param stamps expected source stamp per resource path
+     * @return cached pixels per path (width = height = tile size); empty if the
+     *         file is missing, outdated or unreadable
+     */
+    public Map<String, BufferedImage> read(Map<String, Long> stamps) {
+        Map<String, BufferedImage> out = new HashMap<>();
+        if (!file.isFile()) return out;
+
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION || buf.getInt() != tileSize) {
+                return out;
+            }
+            int count = buf.getInt();
+            for (int i = 0; i < count; i++) {
+                byte[] name = new byte[buf.getShort()];
+                buf.get(name);
+                String path = new String(name, StandardCharsets.UTF_8);
+                long stamp = buf.getLong();
+                int w = buf.getInt();
+                int h = buf.getInt();
+
+                Long expected = stamps.get(path);
+                if (w == tileSize && h == tileSize
+                        && expected != null && expected == stamp && stamp != 0L) {
+                    BufferedImage img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+                    int[] dst = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+                    IntBuffer pixels = buf.asIntBuffer();
+                    pixels.get(dst, 0, w * h);
+                    out.put(path, img);
+                }
+                buf.position(buf.position() + w * h * 4);
+            }
+        } catch (IOException | RuntimeException e) {
+            // corrupt or truncated cache: fall back to decoding everything
+            System.err.println("Ignoring sprite cache " + file + ": " + e);
+            out.clear();
+        }
+        return out;
+    }
+
+    /**
+     * Writes the given sprites to the cache file, replacing it atomically.
+     *
+     * @param sprites scaled sprites per resource path
+     * @param stamps  source stamp per resource path
+     */
+    public void write(Map<String, BufferedImage> sprites, Map<String, Long> stamps) {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) return;
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(tileSize);
+            out.writeInt(sprites.size());
+
+            ByteBuffer row = null;
+            for (Map.Entry<String, BufferedImage> e : sprites.entrySet()) {
+                BufferedImage img = e.getValue();
+                int w = img.getWidth();
+                int h = img.getHeight();
+                byte[] name = e.getKey().getBytes(StandardCharsets.UTF_8);
+
+                out.writeShort(name.length);
+                out.write(name);
+                out.writeLong(stamps.getOrDefault(e.getKey(), 0L));
+                out.writeInt(w);
+                out.writeInt(h);
+
+                int[] argb = img.getRGB(0, 0, w, h, null, 0, w);
+                if (row == null || row.capacity() < argb.length * 4) row = ByteBuffer.allocate(argb.length * 4);
+                row.clear();
+                row.asIntBuffer().put(argb);
+                out.write(row.array(), 0, argb.length * 4);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not write sprite cache " + file + ": " + e);
+            tmp.delete();
+            return;
+        }
+
+        try {
+            Files.move(tmp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            tmp.delete();
+        }
+    }
+}
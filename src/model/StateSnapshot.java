@@ -0,0 +1,422 @@
+package model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Flat, replicable copy of the state of a {@link GameModel} at one tick.
+ * <p>
+ * A snapshot holds three parts, all in primitive arrays so it can be captured
+ * every tick into the same instance and compared field by field:
+ * <ul>
+ *   <li>one type byte per tile (the {@link Tile#getType()} character),</li>
+ *   <li>{@value #GLOBALS} global values (level, score, hearts, ...),</li>
+ *   <li>a list of entities, each with a stable key and
+ *       {@value #ENTITY_FIELDS} int fields, sorted by key.</li>
+ * </ul>
+ * The key combines the entity kind with an id that stays the same while the
+ * entity exists: the list index for drones and walking bombs, the tile for
+ * bombs and powerups. The network layer encodes snapshots as deltas against
+ * an earlier one (see {@code network.SnapshotEncoder}).
+ */
+public final class StateSnapshot {
+
+    /** Index of a global value. */
+    public static final int G_LEVEL = 0, G_SCORE = 1, G_HEARTS = 2, G_FLAGS = 3,
+            G_EXIT_ROW = 4, G_EXIT_COL = 5, G_CRATES = 6, G_CRATES_REQUIRED = 7;
+
+    /** Number of global values. */
+    public static final int GLOBALS = 8;
+
+    /** Bits of {@link #G_FLAGS}. */
+    public static final int FLAG_GAME_OVER = 1, FLAG_FINISHED = 2;
+
+    /** Entity kinds, stored in the top byte of the key. */
+    public static final int KIND_HERO = 0, KIND_DRONE = 1, KIND_WALKING_BOMB = 2,
+            KIND_BOMB = 3, KIND_POWERUP = 4;
+
+    /**
+     * Index of an entity field. Moving entities store their pixel position in
+     * X/Y; bombs and powerups store their column and row.
+     */
+    public static final int F_X = 0, F_Y = 1, F_DIR = 2, F_STATE = 3;
+
+    /** Number of fields per entity. */
+    public static final int ENTITY_FIELDS = 4;
+
+    /** Bits of {@link #F_STATE} for the hero. */
+    public static final int HERO_INVULNERABLE = 1, HERO_WALKING_BOMB = 2, HERO_RADIUS = 4;
+
+    /** Bits of {@link #F_STATE} for drones. */
+    public static final int DRONE_DEAD = 1, DRONE_FAST = 2;
+
+    /** Bit of {@link #F_STATE} for bombs. */
+    public static final int BOMB_POWERED = 1;
+
+    private static final PowerUp.Type[] POWERUP_TYPES = PowerUp.Type.values();
+
+    private int tick = -1;
+    private int rows, cols;
+    private byte[] tiles = new byte[0];
+    private final int[] globals = new int[GLOBALS];
+
+    private int entityCount;
+    private int[] keys = new int[32];
+    private int[] fields = new int[32 * ENTITY_FIELDS];
+
+    /**
+     * Builds an entity key.
+     *
+     * @param kind one of the KIND_* constants
+     * @param id   id within the kind (0 .. 2^24-1)
+     * @return the key
+     */
+    public static int key(int kind, int id) {
+        return (kind << 24) | (id & 0xFFFFFF);
+    }
+
+    /** @return the kind stored in an entity key */
+    public static int kindOf(int key) {
+        return key >>> 24;
+    }
+
+    /**
+     * Overwrites this snapshot with the current state of a model. Must run on
+     * the thread that updates the model.
+     *
+     * @param gm   model to copy
+     * @param tick simulation tick the state belongs to
+     */
+    public void capture(GameModel gm, int tick) {
+        Tile[][] t = gm.tiles;
+        reset(tick, t.length, t[0].length);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                tiles[r * cols + c] = (t[r][c] == null) ? 0 : (byte) t[r][c].getType();
+            }
+        }
+
+        Hero hero = gm.hero;
+        globals[G_LEVEL] = gm.level;
+        globals[G_SCORE] = gm.score;
+        globals[G_HEARTS] = hero.getHearts();
+        globals[G_FLAGS] = (gm.gameOver ? FLAG_GAME_OVER : 0) | (gm.finishedAllLevels ? FLAG_FINISHED : 0);
+        globals[G_EXIT_ROW] = gm.exitRow;
+        globals[G_EXIT_COL] = gm.exitCol;
+        globals[G_CRATES] = gm.destroyedCratesCount;
+        globals[G_CRATES_REQUIRED] = gm.requiredCratesToUnlockExit;
+
+        int heroState = (hero.isInvulnerable() ? HERO_INVULNERABLE : 0)
+                | (hero.hasWalkingBombPowerup() ? HERO_WALKING_BOMB : 0)
+                | (hero.hasRadiusPowerup() ? HERO_RADIUS : 0);
+        addEntity(key(KIND_HERO, 0), hero.getX(), hero.getY(), dirCode(hero.direction), heroState);
+
+        for (int i = 0; i < gm.drones.size(); i++) {
+            drone d = gm.drones.get(i);
+            int state = (d.isDead() ? DRONE_DEAD : 0) | ((d instanceof FastDrone) ? DRONE_FAST : 0);
+            addEntity(key(KIND_DRONE, i), d.getX(), d.getY(), dirCode(d.direction), state);
+        }
+        for (int i = 0; i < gm.walkingBombs.size(); i++) {
+            WalkingBomb wb = gm.walkingBombs.get(i);
+            addEntity(key(KIND_WALKING_BOMB, i), wb.getX(), wb.getY(), 0, 0);
+        }
+        for (int i = 0; i < gm.bombs.size(); i++) {
+            Bomba b = gm.bombs.get(i);
+            if (b.exploded) continue;
+            addEntity(key(KIND_BOMB, b.getRow() * cols + b.getCol()), b.getCol(), b.getRow(), 0,
+                    b.isPowered() ? BOMB_POWERED : 0);
+        }
+        for (int i = 0; i < gm.powerups.size(); i++) {
+            PowerUp p = gm.powerups.get(i);
+            if (p.isPicked()) continue;
+            addEntity(key(KIND_POWERUP, p.row * cols + p.col), p.col, p.row, p.type.ordinal(), 0);
+        }
+        sortEntities();
+    }
+
+    /**
+     * Makes a replica model show this snapshot: tiles, globals and every
+     * entity are overwritten. Objects that are still present (same drone
+     * slot, same bomb tile) are updated in place, so only appearing entities
+     * are allocated. Must run on the thread that updates the replica.
+     *
+     * @param gm           replica model (see {@link GameModel#setRemote})
+     * @param heroPosition whether to move the hero too; false when the caller
+     *                     predicts it locally (see {@code network.HeroPredictor})
+     */
+    public void applyTo(GameModel gm, boolean heroPosition) {
+        Tile[][] t = gm.tiles;
+        if (t.length == rows && t[0].length == cols) {
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < cols; c++) {
+                    char type = (char) (tiles[r * cols + c] & 0xFF);
+                    if (t[r][c] != null && t[r][c].getType() == type) continue;
+                    Tile tile = GameModel.newTile(type, r, c);
+                    if (tile != null) t[r][c] = tile;
+                }
+            }
+        }
+
+        Hero hero = gm.hero;
+        gm.level = globals[G_LEVEL];
+        gm.score = globals[G_SCORE];
+        hero.setHearts(globals[G_HEARTS]);
+        gm.gameOver = (globals[G_FLAGS] & FLAG_GAME_OVER) != 0;
+        gm.finishedAllLevels = (globals[G_FLAGS] & FLAG_FINISHED) != 0;
+        gm.exitRow = globals[G_EXIT_ROW];
+        gm.exitCol = globals[G_EXIT_COL];
+        gm.destroyedCratesCount = globals[G_CRATES];
+        gm.requiredCratesToUnlockExit = globals[G_CRATES_REQUIRED];
+
+        int drones = 0, walking = 0, bombs = 0, powerups = 0;
+        for (int i = 0; i < entityCount; i++) {
+            int f = i * ENTITY_FIELDS;
+            int x = fields[f + F_X], y = fields[f + F_Y], dir = fields[f + F_DIR], state = fields[f + F_STATE];
+            switch (kindOf(keys[i])) {
+                case KIND_HERO:
+                    hero.setInvulnerable((state & HERO_INVULNERABLE) != 0);
+                    hero.setHasWalkingBombPowerup((state & HERO_WALKING_BOMB) != 0);
+                    hero.setHasRadiusPowerup((state & HERO_RADIUS) != 0);
+                    if (heroPosition) {
+                        hero.setX(x);
+                        hero.setY(y);
+                        hero.direction = dirName(dir);
+                    }
+                    break;
+                case KIND_DRONE: {
+                    boolean fast = (state & DRONE_FAST) != 0, dead = (state & DRONE_DEAD) != 0;
+                    drone d = (drones < gm.drones.size()) ? gm.drones.get(drones) : null;
+                    if (d == null || (d instanceof FastDrone) != fast || (d.isDead() && !dead)) {
+                        d = fast ? new FastDrone(gm) : new drone(gm);
+                        d.setReplicaState(x, y, dirName(dir));
+                        d.savePreviousPosition();
+                        if (drones < gm.drones.size()) gm.drones.set(drones, d);
+                        else gm.drones.add(d);
+                    } else {
+                        d.setReplicaState(x, y, dirName(dir));
+                    }
+                    if (dead) d.markAsDead();
+                    drones++;
+                    break;
+                }
+                case KIND_WALKING_BOMB: {
+                    WalkingBomb wb = (walking < gm.walkingBombs.size()) ? gm.walkingBombs.get(walking) : null;
+                    if (wb == null) {
+                        wb = new WalkingBomb(0, 0, gm, null);
+                        wb.setReplicaPosition(x, y);
+                        wb.savePreviousPosition();
+                        gm.walkingBombs.add(wb);
+                    } else {
+                        wb.setReplicaPosition(x, y);
+                    }
+                    walking++;
+                    break;
+                }
+                case KIND_BOMB: {
+                    boolean powered = (state & BOMB_POWERED) != 0;
+                    Bomba b = (bombs < gm.bombs.size()) ? gm.bombs.get(bombs) : null;
+                    if (b == null || b.getCol() != x || b.getRow() != y || b.isPowered() != powered) {
+                        // the replica never counts down; the remote removes the bomb when it explodes
+                        b = new Bomba(y, x, Double.MAX_VALUE, gm, powered);
+                        if (bombs < gm.bombs.size()) gm.bombs.set(bombs, b);
+                        else gm.bombs.add(b);
+                    }
+                    bombs++;
+                    break;
+                }
+                case KIND_POWERUP: {
+                    PowerUp.Type type = POWERUP_TYPES[dir];
+                    PowerUp p = (powerups < gm.powerups.size()) ? gm.powerups.get(powerups) : null;
+                    if (p == null || p.col != x || p.row != y || p.type != type) {
+                        p = new PowerUp(y, x, type);
+                        if (powerups < gm.powerups.size()) gm.powerups.set(powerups, p);
+                        else gm.powerups.add(p);
+                    }
+                    powerups++;
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+        truncate(gm.drones, drones);
+        truncate(gm.walkingBombs, walking);
+        truncate(gm.bombs, bombs);
+        truncate(gm.powerups, powerups);
+    }
+
+    private static void truncate(List<?> list, int size) {
+        while (list.size() > size) list.remove(list.size() - 1);
+    }
+
+    /** Maps a {@link #F_DIR} code back to its direction name. */
+    private static String dirName(int code) {
+        switch (code) {
+            case 1: return "down";
+            case 2: return "left";
+            case 3: return "right";
+            default: return "up";
+        }
+    }
+
+    /** Maps a direction name to the code used in {@link #F_DIR}. */
+    private static int dirCode(String dir) {
+        if (dir == null) return 0;
+        switch (dir) {
+            case "down": return 1;
+            case "left": return 2;
+            case "right": return 3;
+            default: return 0;
+        }
+    }
+
+    /**
+     * Clears the snapshot and sizes the tile array.
+     *
+     * @param tick tick the new content belongs to
+     * @param rows map rows
+     * @param cols map columns
+     */
+    public void reset(int tick, int rows, int cols) {
+        this.tick = tick;
+        this.rows = rows;
+        this.cols = cols;
+        if (tiles.length != rows * cols) tiles = new byte[rows * cols];
+        else Arrays.fill(tiles, (byte) 0);
+        Arrays.fill(globals, 0);
+        entityCount = 0;
+    }
+
+    /**
+     * Makes this snapshot an exact copy of another.
+     *
+     * @param other snapshot to copy
+     */
+    public void copyFrom(StateSnapshot other) {
+        tick = other.tick;
+        rows = other.rows;
+        cols = other.cols;
+        if (tiles.length != other.tiles.length) tiles = new byte[other.tiles.length];
+        System.arraycopy(other.tiles, 0, tiles, 0, tiles.length);
+        System.arraycopy(other.globals, 0, globals, 0, GLOBALS);
+        entityCount = 0;
+        ensureEntityCapacity(other.entityCount);
+        System.arraycopy(other.keys, 0, keys, 0, other.entityCount);
+        System.arraycopy(other.fields, 0, fields, 0, other.entityCount * ENTITY_FIELDS);
+        entityCount = other.entityCount;
+    }
+
+    /**
+     * Appends an entity. Callers adding entities out of key order must call
+     * {@link #sortEntities()} afterwards.
+     *
+     * @return index of the new entity
+     */
+    public int addEntity(int key, int x, int y, int dir, int state) {
+        ensureEntityCapacity(entityCount + 1);
+        int i = entityCount++;
+        keys[i] = key;
+        int f = i * ENTITY_FIELDS;
+        fields[f + F_X] = x;
+        fields[f + F_Y] = y;
+        fields[f + F_DIR] = dir;
+        fields[f + F_STATE] = state;
+        return i;
+    }
+
+    /**
+     * Removes an entity, keeping the rest in key order.
+     *
+     * @param i index of the entity
+     */
+    public void removeEntity(int i) {
+        int tail = entityCount - i - 1;
+        System.arraycopy(keys, i + 1, keys, i, tail);
+        System.arraycopy(fields, (i + 1) * ENTITY_FIELDS, fields, i * ENTITY_FIELDS, tail * ENTITY_FIELDS);
+        entityCount--;
+    }
+
+    /** Sorts entities by key (insertion sort: the capture order is almost sorted). */
+    public void sortEntities() {
+        for (int i = 1; i < entityCount; i++) {
+            int k = keys[i];
+            if (keys[i - 1] <= k) continue;
+            int f0 = fields[i * ENTITY_FIELDS], f1 = fields[i * ENTITY_FIELDS + 1],
+                    f2 = fields[i * ENTITY_FIELDS + 2], f3 = fields[i * ENTITY_FIELDS + 3];
+            int j = i - 1;
+            while (j >= 0 && keys[j] > k) {
+                keys[j + 1] = keys[j];
+                System.arraycopy(fields, j * ENTITY_FIELDS, fields, (j + 1) * ENTITY_FIELDS, ENTITY_FIELDS);
+                j--;
+            }
+            keys[j + 1] = k;
+            int f = (j + 1) * ENTITY_FIELDS;
+            fields[f] = f0;
+            fields[f + 1] = f1;
+            fields[f + 2] = f2;
+            fields[f + 3] = f3;
+        }
+    }
+
+    private void ensureEntityCapacity(int n) {
+        if (n <= keys.length) return;
+        int cap = Math.max(n, keys.length * 2);
+        keys = Arrays.copyOf(keys, cap);
+        fields = Arrays.copyOf(fields, cap * ENTITY_FIELDS);
+    }
+
+    /** @return the tick this snapshot was captured at, or -1 if empty */
+    public int getTick() { return tick; }
+
+    /** Sets the tick the content belongs to. */
+    public void setTick(int tick) { this.tick = tick; }
+
+    /** @return number of map rows */
+    public int getRows() { return rows; }
+
+    /** @return number of map columns */
+    public int getCols() { return cols; }
+
+    /** @return number of tiles (rows * cols) */
+    public int getTileCount() { return tiles.length; }
+
+    /** @return tile type at {@code row * cols + col} */
+    public byte getTile(int index) { return tiles[index]; }
+
+    /** Sets the tile type at {@code row * cols + col}. */
+    public void setTile(int index, byte type) { tiles[index] = type; }
+
+    /** @return global value {@code g} (one of the G_* constants) */
+    public int getGlobal(int g) { return globals[g]; }
+
+    /** Sets global value {@code g}. */
+    public void setGlobal(int g, int value) { globals[g] = value; }
+
+    /** @return number of entities */
+    public int getEntityCount() { return entityCount; }
+
+    /** @return key of entity {@code i} */
+    public int getEntityKey(int i) { return keys[i]; }
+
+    /** @return field {@code f} (one of the F_* constants) of entity {@code i} */
+    public int getEntityField(int i, int f) { return fields[i * ENTITY_FIELDS + f]; }
+
+    /** Sets field {@code f} of entity {@code i}. */
+    public void setEntityField(int i, int f, int value) { fields[i * ENTITY_FIELDS + f] = value; }
+
+    /**
+     * Finds an entity by key.
+     *
+     * @param key entity key
+     * @return its index, or a negative value if absent
+     */
+    public int indexOf(int key) {
+        return Arrays.binarySearch(keys, 0, entityCount, key);
+    }
+
+    @Override
+    public String toString() {
+        return "StateSnapshot[tick=" + tick + ", " + rows + "x" + cols + ", entities=" + entityCount
+                + ", level=" + globals[G_LEVEL] + ", score=" + globals[G_SCORE] + "]";
+    }
+}
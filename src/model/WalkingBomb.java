@@ -26,6 +26,9 @@ public class WalkingBomb {
     /** Vertical pixel position (top–left of the sprite). */
     private int y;
 
+    /** Pixel position at the start of the current tick, used for render interpolation. */
+    private int prevX, prevY;
+
     /** Column index of the bomb on the tile grid, based on its center position. */
     private int tileCol;
 
@@ -44,8 +47,11 @@ public class WalkingBomb {
     /** Key handler used to move the walking bomb independently of the hero. */
     private final KeyHandler keyH;
 
-    /** Movement speed in pixels per update. */
-    private final int speed = 4;
+    /** Movement speed in tiles per second (4 px per tick at 60 Hz with 96 px tiles). */
+    private final double speed = 2.5;
+
+    /** Sub-pixel remainders of the position (1/256 px, see {@link GameModel#SUBPIXEL_BITS}). */
+    private int fracX, fracY;
 
     /** True once the bomb has exploded (prevents further movement or updates). */
     private boolean exploded = false;
@@ -77,6 +83,8 @@ public class WalkingBomb {
         this.tileRow = startRow;
         this.x = startCol * gm.tileSize;
         this.y = startRow * gm.tileSize;
+        this.prevX = this.x;
+        this.prevY = this.y;
         this.spriteCurrent = null; // default until movement occurs
     }
 
@@ -114,6 +122,72 @@ public class WalkingBomb {
     /** @return the bomb's pixel Y position */
     public int getY() { return y; }
 
+    /**
+     * Remembers the current position as the start point for render interpolation.
+     * Called by {@link GameModel#update(double)} at the beginning of every tick.
+     */
+    public void savePreviousPosition() {
+        prevX = x;
+        prevY = y;
+    }
+
+    /**
+     * Returns the X position to draw at, blended between the previous and
+     * current tick by {@code alpha}. Jumps longer than a tile (respawns,
+     * level changes) are not blended.
+     *
+     * @param alpha fraction of a tick elapsed since the last update (0..1)
+     * @return interpolated pixel X
+     */
+    public int getRenderX(double alpha) {
+        return GameModel.lerp(prevX, x, alpha);
+    }
+
+    /**
+     * Returns the Y position to draw at, blended between the previous and
+     * current tick by {@code alpha}.
+     *
+     * @param alpha fraction of a tick elapsed since the last update (0..1)
+     * @return interpolated pixel Y
+     */
+    public int getRenderY(double alpha) {
+        return GameModel.lerp(prevY, y, alpha);
+    }
+
+    /**
+     * Copies the complete simulation state of another walking bomb of the
+     * same model (saving and restoring a {@link GameState}).
+     *
+     * @param o walking bomb to copy
+     */
+    void copyFrom(WalkingBomb o) {
+        x = o.x;
+        y = o.y;
+        prevX = o.prevX;
+        prevY = o.prevY;
+        tileCol = o.tileCol;
+        tileRow = o.tileRow;
+        fracX = o.fracX;
+        fracY = o.fracY;
+        exploded = o.exploded;
+        spriteCurrent = o.spriteCurrent;
+    }
+
+    /**
+     * Places the bomb as a remote simulation reported it (replicas only).
+     *
+     * @param x pixel X
+     * @param y pixel Y
+     */
+    void setReplicaPosition(int x, int y) {
+        this.x = x;
+        this.y = y;
+        this.fracX = 0;
+        this.fracY = 0;
+        tileCol = (x + hitBox.x + hitBox.width / 2) / gm.tileSize;
+        tileRow = (y + hitBox.y + hitBox.height / 2) / gm.tileSize;
+    }
+
     /** @return true if the bomb has already exploded */
     public boolean isExploded() { return exploded; }
 
@@ -131,19 +205,30 @@ public class WalkingBomb {
 
         int nextX = x;
         int nextY = y;
+        int nextFracX = fracX;
+        int nextFracY = fracY;
+        int step = gm.subpixelsPerTick(speed);
 
-        // Movement based on bomb-specific arrow keys
+        // Movement based on bomb-specific arrow keys (fixed-point, see GameModel.SUBPIXEL_BITS)
         if (keyH.bombUpPressed) {
-            nextY -= speed;
+            int total = fracY - step;
+            nextY += total >> GameModel.SUBPIXEL_BITS;
+            nextFracY = total & GameModel.SUBPIXEL_MASK;
             if (spriteUp != null) spriteCurrent = spriteUp;
         } else if (keyH.bombDownPressed) {
-            nextY += speed;
+            int total = fracY + step;
+            nextY += total >> GameModel.SUBPIXEL_BITS;
+            nextFracY = total & GameModel.SUBPIXEL_MASK;
             if (spriteDown != null) spriteCurrent = spriteDown;
         } else if (keyH.bombLeftPressed) {
-            nextX -= speed;
+            int total = fracX - step;
+            nextX += total >> GameModel.SUBPIXEL_BITS;
+            nextFracX = total & GameModel.SUBPIXEL_MASK;
             if (spriteLeft != null) spriteCurrent = spriteLeft;
         } else if (keyH.bombRightPressed) {
-            nextX += speed;
+            int total = fracX + step;
+            nextX += total >> GameModel.SUBPIXEL_BITS;
+            nextFracX = total & GameModel.SUBPIXEL_MASK;
             if (spriteRight != null) spriteCurrent = spriteRight;
         }
 
@@ -151,7 +236,11 @@ public class WalkingBomb {
         if (canMoveTo(nextX, nextY)) {
             x = nextX;
             y = nextY;
+            fracX = nextFracX;
+            fracY = nextFracY;
         } else {
+            fracX = 0;
+            fracY = 0;
             // Prevent clipping into walls
             snapToTileIfClose();
         }
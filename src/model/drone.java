@@ -2,7 +2,6 @@ package model;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.util.Random;
 
 /**
  * Represents an enemy drone that moves either horizontally or vertically across the board.
@@ -23,8 +22,14 @@ public class drone {
     /** Drone's pixel Y position. */
     private int y;
 
-    /** Movement speed in pixels per update. */
-    protected int speed = 2;
+    /** Pixel position at the start of the current tick, used for render interpolation. */
+    private int prevX, prevY;
+
+    /** Movement speed in tiles per second (2 px per tick at 60 Hz with 96 px tiles). */
+    protected double speed = 1.25;
+
+    /** Sub-pixel remainders of the position (1/256 px, see {@link GameModel#SUBPIXEL_BITS}). */
+    private int fracX, fracY;
 
     /** Current movement direction: "up", "down", "left", or "right". */
     public String direction;
@@ -47,9 +52,6 @@ public class drone {
     /** Sprite used when the drone is killed. */
     public BufferedImage spriteDeath;
 
-    /** Random generator for movement initialization. */
-    private final Random rand = new Random();
-
     /** Whether the drone is dead. */
     private boolean dead = false;
 
@@ -72,34 +74,69 @@ public class drone {
         // convert tile → pixel
         this.x = tileCol * gm.tileSize;
         this.y = tileRow * gm.tileSize;
+        this.prevX = this.x;
+        this.prevY = this.y;
 
         // determine if this drone moves horizontally or vertically
-        horizontalMode = rand.nextBoolean(); // 50% horizontal, 50% vertical
+        horizontalMode = gm.nextRandom(2) == 0; // 50% horizontal, 50% vertical
 
         if (horizontalMode) {
-            direction = rand.nextBoolean() ? "left" : "right";
+            direction = gm.nextRandom(2) == 0 ? "left" : "right";
         } else {
-            direction = rand.nextBoolean() ? "up" : "down";
+            direction = gm.nextRandom(2) == 0 ? "up" : "down";
         }
     }
 
+    /**
+     * Creates a blank drone to copy state into (see {@link #copyFrom(drone)});
+     * unlike the public constructor it draws nothing from the game's random
+     * generator.
+     *
+     * @param gm the game model the drone belongs to
+     */
+    drone(GameModel gm) {
+        this.gm = gm;
+        this.direction = "left";
+    }
+
+    /**
+     * Copies the complete simulation state of another drone of the same model
+     * (saving and restoring a {@link GameState}). Sprites are kept.
+     *
+     * @param o drone to copy
+     */
+    void copyFrom(drone o) {
+        x = o.x;
+        y = o.y;
+        prevX = o.prevX;
+        prevY = o.prevY;
+        speed = o.speed;
+        fracX = o.fracX;
+        fracY = o.fracY;
+        direction = o.direction;
+        horizontalMode = o.horizontalMode;
+        collision = o.collision;
+        dead = o.dead;
+        deathAt = o.deathAt;
+    }
+
     // getters
 
     /**
      * Sets the drone's movement speed.
      *
-     * @param s speed value (must be > 0)
+     * @param s speed in tiles per second (must be > 0)
      */
-    public void setSpeed(int s) {
+    public void setSpeed(double s) {
         if (s > 0) speed = s;
     }
 
     /**
      * Returns the movement speed.
      *
-     * @return current speed value
+     * @return current speed in tiles per second
      */
-    public int getSpeed() {
+    public double getSpeed() {
         return speed;
     }
 
@@ -109,6 +146,38 @@ public class drone {
     /** @return drone's pixel Y coordinate */
     public int getY() { return y; }
 
+    /**
+     * Remembers the current position as the start point for render interpolation.
+     * Called by {@link GameModel#update(double)} at the beginning of every tick.
+     */
+    public void savePreviousPosition() {
+        prevX = x;
+        prevY = y;
+    }
+
+    /**
+     * Returns the X position to draw at, blended between the previous and
+     * current tick by {@code alpha}. Jumps longer than a tile (respawns,
+     * level changes) are not blended.
+     *
+     * @param alpha fraction of a tick elapsed since the last update (0..1)
+     * @return interpolated pixel X
+     */
+    public int getRenderX(double alpha) {
+        return GameModel.lerp(prevX, x, alpha);
+    }
+
+    /**
+     * Returns the Y position to draw at, blended between the previous and
+     * current tick by {@code alpha}.
+     *
+     * @param alpha fraction of a tick elapsed since the last update (0..1)
+     * @return interpolated pixel Y
+     */
+    public int getRenderY(double alpha) {
+        return GameModel.lerp(prevY, y, alpha);
+    }
+
     /** @return center X pixel coordinate based on hitbox */
     public int getCenterPixelX() {
         return this.x + hitBox.x + (hitBox.width / 2);
@@ -138,28 +207,25 @@ public class drone {
         int nextX = x;
         int nextY = y;
 
-        // move only along chosen axis
-        switch (direction) {
-            case "left":
-                nextX -= speed;
-                break;
-            case "right":
-                nextX += speed;
-                break;
-            case "up":
-                nextY -= speed;
-                break;
-            case "down":
-                nextY += speed;
-                break;
-        }
+        // fixed-point step along the chosen axis
+        boolean horizontal = direction.equals("left") || direction.equals("right");
+        int sign = (direction.equals("up") || direction.equals("left")) ? -1 : 1;
+        int total = (horizontal ? fracX : fracY) + sign * gm.subpixelsPerTick(speed);
+        int moved = total >> GameModel.SUBPIXEL_BITS;
+
+        if (horizontal) nextX += moved;
+        else nextY += moved;
 
         // check collision
         if (!canMoveTo(nextX, nextY)) {
             reverseDirection();  // bounce back
+            fracX = 0;
+            fracY = 0;
         } else {
             x = nextX;
             y = nextY;
+            if (horizontal) fracX = total & GameModel.SUBPIXEL_MASK;
+            else fracY = total & GameModel.SUBPIXEL_MASK;
         }
     }
 
@@ -243,13 +309,28 @@ public class drone {
         this.spriteDeath = death;
     }
 
+    /**
+     * Places the drone as a remote simulation reported it (replicas only).
+     *
+     * @param x         pixel X
+     * @param y         pixel Y
+     * @param direction direction name
+     */
+    void setReplicaState(int x, int y, String direction) {
+        this.x = x;
+        this.y = y;
+        this.fracX = 0;
+        this.fracY = 0;
+        if (!dead) this.direction = direction;
+    }
+
     /**
      * Marks the drone as dead, starts death timer, and stops movement.
      */
     public void markAsDead() {
         if (dead) return;
         dead = true;
-        deathAt = System.currentTimeMillis();
+        deathAt = gm.getTimeMillis();
         direction = "dead";
     }
 
@@ -269,7 +350,7 @@ public class drone {
      */
     public boolean isDeathExpired() {
         if (!dead) return false;
-        return (System.currentTimeMillis() - deathAt) >= DEATH_MS;
+        return (gm.getTimeMillis() - deathAt) >= DEATH_MS;
     }
 
     /**
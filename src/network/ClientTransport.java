@@ -0,0 +1,38 @@
+package network;
+
+/**
+ * Client end of a connection to a game server, as used by {@link RemoteGame}.
+ *
+ * <p>Implemented by the TCP {@link NetworkClient} and by the in-process
+ * {@link LoopbackClient}, so the multiplayer stack can be tested without
+ * sockets. Incoming messages go to the {@link MultiplayerListener} the
+ * transport was created with.</p>
+ */
+public interface ClientTransport {
+
+    /**
+     * Connects to the server.
+     *
+     * @return true if connected
+     */
+    boolean connect();
+
+    /**
+     * Adds a message to the current tick's batch; nothing is sent until
+     * {@link #flush()}.
+     *
+     * @param msg message to send; not retained
+     */
+    void send(Message msg);
+
+    /**
+     * Sends everything added since the last flush. Call once at the end of
+     * every tick.
+     */
+    void flush();
+
+    /**
+     * Closes the connection.
+     */
+    void close();
+}
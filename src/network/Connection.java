@@ -0,0 +1,360 @@
+package network;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * One client connected to a {@link NetworkServer}, or to a {@link RoomLoop}
+ * after it joined a lobby room, or to a {@link LoopbackServer} in tests.
+ *
+ * <p>Each connection owns its own read buffer, which collects bytes until a
+ * complete {@link WireProtocol} frame has arrived, and its own outbound batch.
+ * {@link #send(Message)} may be called from any thread and only adds to the
+ * batch (merging position updates, see {@link OutboundBatch}); when the tick
+ * ends ({@link NetworkServer#flush()}) the batch is sealed into one buffer and
+ * written by the event loop in a single write.</p>
+ *
+ * <p>A client that stops reading would make sealed batches pile up without
+ * bound, so once more than {@link #MAX_QUEUED_BYTES} are waiting to be
+ * written the connection is closed instead of sealing another one.</p>
+ */
+public final class Connection {
+
+    /** Initial size of the per-connection read buffer. */
+    private static final int READ_BUFFER_SIZE = 4096;
+
+    /** Largest read buffer needed to hold one maximal frame. */
+    private static final int MAX_READ_BUFFER = WireProtocol.MAX_HEADER_BYTES + WireProtocol.MAX_FRAME_BYTES;
+
+    /** Most bytes sealed but not yet written before a client is considered stalled. */
+    static final int MAX_QUEUED_BYTES = 256 * 1024;
+
+    private final int id;
+    private final SocketChannel channel;
+    private final SocketAddress remoteAddress;
+
+    /** Loop that owns the connection; null while it is handed to another loop. */
+    private volatile ConnectionHost host;
+    private volatile SelectionKey key;
+    private volatile boolean closeRequested;
+
+    /** Set by the owning loop when the connection is to move to another loop (owner only). */
+    private boolean leaving;
+
+    /** Bytes received but not yet decoded (loop thread only). */
+    private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+    /** Every inbound frame is decoded into this instance (loop thread only). */
+    private final Message inMsg = new Message();
+
+    /** Messages of the current tick; guarded by itself. */
+    private final OutboundBatch batch = new OutboundBatch();
+
+    /** Sealed batches waiting to be written, possibly from other threads. */
+    private final Queue<ByteBuffer> outbox = new ConcurrentLinkedQueue<>();
+
+    /** Buffers taken from the outbox that are partly written (loop thread only). */
+    private final Queue<ByteBuffer> writing = new ArrayDeque<>();
+
+    /** Bytes in the outbox and in {@link #writing} not yet written (loop thread only). */
+    private long queuedBytes;
+
+    private volatile boolean open = true;
+
+    /** Free for the game logic to attach per-client state (e.g. a player). */
+    private volatile Object attachment;
+
+    Connection(int id, ConnectionHost host, SocketChannel channel, SelectionKey key) {
+        this.id = id;
+        this.host = host;
+        this.channel = channel;
+        this.key = key;
+        this.remoteAddress = channel.socket().getRemoteSocketAddress();
+    }
+
+    /** Creates a connection without a socket, whose host moves the outbox itself. */
+    Connection(int id, ConnectionHost host, SocketAddress remoteAddress) {
+        this.id = id;
+        this.host = host;
+        this.channel = null;
+        this.key = null;
+        this.remoteAddress = remoteAddress;
+    }
+
+    /** @return server-assigned id, unique for the lifetime of the server */
+    public int getId() {
+        return id;
+    }
+
+    /** @return the client's address, as seen when it connected */
+    public SocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    /** @return true until the connection has been closed */
+    public boolean isOpen() {
+        return open;
+    }
+
+    /** @return the object attached with {@link #setAttachment(Object)} */
+    public Object getAttachment() {
+        return attachment;
+    }
+
+    /**
+     * Attaches arbitrary game state to this connection.
+     *
+     * @param attachment object to attach (may be null)
+     */
+    public void setAttachment(Object attachment) {
+        this.attachment = attachment;
+    }
+
+    /**
+     * Adds a message to this client's batch for the current tick. Thread-safe;
+     * the message is encoded immediately and written after the next
+     * {@link NetworkServer#flush()} (or at the end of the current event-loop
+     * iteration when called from a {@link ServerListener} callback).
+     *
+     * @param msg message to send; not retained
+     */
+    public void send(Message msg) {
+        send(msg, null);
+    }
+
+    /**
+     * Adds a message relayed on behalf of another client. Positions are
+     * coalesced per origin, so the latest position of every sender goes out.
+     *
+     * @param msg  message to send; not retained
+     * @param from connection the message came from, or null for the server's own
+     */
+    public void send(Message msg, Connection from) {
+        if (!open) return;
+        boolean first;
+        synchronized (batch) {
+            first = batch.isEmpty();
+            batch.add(msg, (from == null) ? OutboundBatch.LOCAL : from.getId());
+        }
+        if (first) markDirty();
+    }
+
+    /**
+     * Queues a free-text message ({@link WireProtocol#TYPE_TEXT}).
+     *
+     * @param text text to send
+     */
+    public void send(String text) {
+        send(new Message().clear(WireProtocol.TYPE_TEXT).setText(text));
+    }
+
+    /** Adds an already encoded frame to the batch; the frame's position is not changed. */
+    void sendEncoded(ByteBuffer frame) {
+        if (!open) return;
+        boolean first;
+        synchronized (batch) {
+            first = batch.isEmpty();
+            batch.addEncoded(frame);
+        }
+        if (first) markDirty();
+    }
+
+    private void markDirty() {
+        // in transit the new owner picks the batch up when it adopts the connection
+        ConnectionHost h = host;
+        if (h != null) h.markDirty(this);
+    }
+
+    /**
+     * Moves the current batch to the outbox as one buffer. Call on the owning
+     * loop. If the client has fallen more than {@link #MAX_QUEUED_BYTES} behind,
+     * the batch is discarded and the connection closed instead.
+     *
+     * @return true if there was anything to seal
+     */
+    boolean seal() {
+        ByteBuffer sealed;
+        synchronized (batch) {
+            if (batch.isEmpty()) return false;
+            sealed = batch.seal();
+        }
+        if (closeRequested) return false;
+        if (queuedBytes + sealed.remaining() > MAX_QUEUED_BYTES) {
+            System.err.println(this + " dropped: not reading, " + queuedBytes + " bytes queued");
+            close();
+            return false;
+        }
+        queuedBytes += sealed.remaining();
+        outbox.add(sealed);
+        return true;
+    }
+
+    /** @return position updates merged into a newer one before being sent */
+    public long getMessagesCoalesced() {
+        synchronized (batch) {
+            return batch.getCoalesced();
+        }
+    }
+
+    /**
+     * Closes the connection. Thread-safe; {@link ServerListener#onDisconnect}
+     * is called on the event loop.
+     */
+    public void close() {
+        closeRequested = true;
+        ConnectionHost h = host;
+        if (h != null) h.requestClose(this);
+    }
+
+    // ---------------------------------------------------------------
+    // event-loop side
+    // ---------------------------------------------------------------
+
+    SelectionKey key() {
+        return key;
+    }
+
+    ConnectionHost host() {
+        return host;
+    }
+
+    SocketChannel channel() {
+        return channel;
+    }
+
+    /** @return true if {@link #close()} was called */
+    boolean isCloseRequested() {
+        return closeRequested;
+    }
+
+    /**
+     * Stops decoding: the frames still buffered are left for the loop the
+     * connection is about to be handed to. Call on the owning loop, from a
+     * listener callback; the hand-off itself must wait until decoding has
+     * returned, as the read buffer is in use until then.
+     */
+    void leave() {
+        leaving = true;
+    }
+
+    /**
+     * Releases the connection from its loop without closing it, so another
+     * loop can {@link #adopt} it. Call on the owning loop, outside of
+     * decoding; frames still buffered are left for the new owner to decode.
+     */
+    void detach() {
+        key.cancel();
+        host = null;
+    }
+
+    /**
+     * Makes a loop the owner of a detached connection. Call on that loop.
+     *
+     * @param host the new owner
+     * @param key  the channel's registration with the new owner's selector
+     */
+    void adopt(ConnectionHost host, SelectionKey key) {
+        this.leaving = false;
+        this.key = key;
+        this.host = host;
+    }
+
+    /**
+     * Reads what is available and hands every complete frame to {@code listener}.
+     * Stops early, leaving the rest buffered, if the listener calls {@link #leave()}.
+     *
+     * @return false if the client closed the connection or broke the framing
+     */
+    boolean readFrames(ServerListener listener) throws IOException {
+        ConnectionHost owner = host;
+        int n;
+        while ((n = channel.read(readBuffer)) > 0) {
+            if (!decodeBuffered(listener)) return false;
+            if (leaving || host != owner) return true;
+            if (!readBuffer.hasRemaining()) {
+                // a partial frame fills the buffer; decode() already rejected oversized frames
+                if (readBuffer.capacity() >= MAX_READ_BUFFER) return false;
+                ByteBuffer bigger = ByteBuffer.allocate(Math.min(MAX_READ_BUFFER, readBuffer.capacity() * 2));
+                readBuffer.flip();
+                bigger.put(readBuffer);
+                readBuffer = bigger;
+            }
+        }
+        return n >= 0;
+    }
+
+    /**
+     * Hands every complete frame already in the read buffer to {@code listener}.
+     *
+     * @return false if the connection was closed or broke the framing
+     */
+    boolean decodeBuffered(ServerListener listener) {
+        ConnectionHost owner = host;
+        readBuffer.flip();
+        try {
+            while (WireProtocol.decode(readBuffer, inMsg)) {
+                if (listener != null) listener.onMessage(this, inMsg);
+                if (!open) return false;
+                if (leaving || host != owner) break;
+            }
+        } catch (ProtocolException e) {
+            System.err.println(this + " sent a bad frame: " + e.getMessage());
+            return false;
+        }
+        readBuffer.compact();
+        return true;
+    }
+
+    /**
+     * Writes queued buffers until done or the socket buffer is full.
+     *
+     * @return true if everything queued has been written
+     */
+    boolean flush() throws IOException {
+        ByteBuffer buf;
+        while ((buf = outbox.poll()) != null) writing.add(buf);
+        while ((buf = writing.peek()) != null) {
+            queuedBytes -= channel.write(buf);
+            if (buf.hasRemaining()) return false;
+            writing.poll();
+        }
+        return outbox.isEmpty();
+    }
+
+    /** @return the oldest sealed batch not yet taken, or null (for hosts without a socket) */
+    ByteBuffer pollOutbox() {
+        ByteBuffer buf = outbox.poll();
+        if (buf != null) queuedBytes -= buf.remaining();
+        return buf;
+    }
+
+    /** Closes the channel; returns false if it was already closed. */
+    boolean closeChannel() {
+        if (!open) return false;
+        open = false;
+        SelectionKey k = key;
+        if (k != null) k.cancel();
+        try {
+            if (channel != null) channel.close();
+        } catch (IOException ignored) {}
+        outbox.clear();
+        writing.clear();
+        queuedBytes = 0;
+        synchronized (batch) {
+            batch.clear();
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "Connection#" + id + "(" + remoteAddress + ")";
+    }
+}
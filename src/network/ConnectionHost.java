@@ -0,0 +1,24 @@
+package network;
+
+/**
+ * Event loop that currently owns a {@link Connection}: the one that writes
+ * its batches and closes it. A {@link NetworkServer} owns the connections it
+ * accepts; a {@link LobbyServer} hands them over to a {@link RoomLoop} when
+ * they join a room.
+ */
+abstract class ConnectionHost {
+
+    /**
+     * Records that a connection's batch became non-empty. Thread-safe.
+     *
+     * @param conn the connection
+     */
+    abstract void markDirty(Connection conn);
+
+    /**
+     * Asks the loop to close a connection. Thread-safe.
+     *
+     * @param conn the connection
+     */
+    abstract void requestClose(Connection conn);
+}
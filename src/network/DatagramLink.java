@@ -0,0 +1,38 @@
+package network;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * Sends and receives whole datagrams without blocking.
+ *
+ * <p>{@link UdpTransport} talks to the network only through this interface,
+ * so the real socket ({@link UdpLink}) can be swapped for a simulated one
+ * such as {@link LossyLink} in tests.</p>
+ */
+public interface DatagramLink {
+
+    /**
+     * Sends one datagram. Datagrams may be lost, duplicated or reordered.
+     *
+     * @param packet bytes from position to limit; consumed by the call
+     * @param to     destination address
+     * @throws IOException if the link is broken
+     */
+    void send(ByteBuffer packet, SocketAddress to) throws IOException;
+
+    /**
+     * Receives one datagram if one is waiting.
+     *
+     * @param into buffer to receive into (cleared by the caller)
+     * @return the sender, or null if nothing was waiting
+     * @throws IOException if the link is broken
+     */
+    SocketAddress receive(ByteBuffer into) throws IOException;
+
+    /**
+     * Closes the link.
+     */
+    void close();
+}
@@ -0,0 +1,195 @@
+package network;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Headless, authoritative game host: runs the real {@link model.GameModel} at a
+ * fixed tick rate next to a {@link NetworkServer} and streams its state to
+ * every client, so clients only predict their own hero and render (see
+ * {@link RemoteGame}). No window or graphics are needed, so a dedicated
+ * machine can host matches: {@code java network.GameServer [port]}.
+ *
+ * <p>Each tick the server thread advances the {@link Match} (apply the
+ * controlling client's input, simulate, send every client a delta snapshot)
+ * and then flushes the network batches. The game has one hero, so the first
+ * client to connect controls it and later clients watch. Client and server
+ * must run at the same tick rate, as movement per input depends on it.</p>
+ *
+ * <p>The network thread only stores inputs and acknowledgements; the model is
+ * touched by the tick thread alone. To host many matches in one process, see
+ * {@link LobbyServer}.</p>
+ *
+ * <p>Tests can run the server over a {@link LoopbackNetwork} instead of TCP
+ * and call {@link #step()} in place of {@link #start()}, so that every tick
+ * happens on the test's own thread.</p>
+ *
+ * Usage:
+ * <pre>
+ * GameServer server = new GameServer(55555, 60);
+ * server.start();
+ * ...
+ * server.stop();
+ * </pre>
+ */
+public class GameServer {
+
+    /** Inputs a client may have waiting before the surplus is applied at once. */
+    public static final int MAX_QUEUED_INPUTS = 3;
+
+    /** Ticks a loop may fall behind before it skips ahead instead of catching up. */
+    static final int MAX_LAG_TICKS = 5;
+
+    private final ServerTransport net;
+    private final Match match;
+
+    private final long tickNanos;
+    private volatile boolean running;
+    private Thread thread;
+
+    private volatile long lastTickWorkNanos;
+    private long skippedTicks;
+
+    /**
+     * Creates a server that will listen on {@code port}.
+     *
+     * @param port     TCP port
+     * @param tickRate simulation ticks (and snapshots) per second
+     */
+    public GameServer(int port, int tickRate) {
+        this(new NetworkServer(port), tickRate);
+    }
+
+    /**
+     * Creates a server on any transport, e.g. a {@link LoopbackServer}.
+     *
+     * @param net      the transport; started by {@link #start()}
+     * @param tickRate simulation ticks (and snapshots) per second
+     */
+    public GameServer(ServerTransport net, int tickRate) {
+        this(net, tickRate, System.nanoTime());
+    }
+
+    /**
+     * Creates a server on any transport whose game is seeded, so that a test
+     * replaying the same inputs over a {@link LoopbackNetwork} with the same
+     * seed gets the same match.
+     *
+     * @param net      the transport; started by {@link #start()}
+     * @param tickRate simulation ticks (and snapshots) per second
+     * @param seed     seed of the game's random generator
+     */
+    public GameServer(ServerTransport net, int tickRate, long seed) {
+        this.net = net;
+        this.match = new Match(tickRate, seed);
+        this.tickNanos = 1_000_000_000L / match.getTickRate();
+        net.setListener(match);
+    }
+
+    /**
+     * Starts the network event loop and the tick thread.
+     */
+    public void start() {
+        net.start();
+        running = true;
+        thread = new Thread(this::runTicks, "game-server-tick");
+        thread.start();
+    }
+
+    /**
+     * Stops ticking and closes every connection.
+     */
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        net.stop();
+    }
+
+    /**
+     * Runs one tick on the calling thread and flushes the transport, without
+     * the tick thread. For tests that drive the server and a
+     * {@link LoopbackNetwork} by hand; the transport must have been started.
+     */
+    public void step() {
+        match.tick();
+        net.flush();
+    }
+
+    /**
+     * Limits what each client is sent to the area around the hero, for maps
+     * larger than the screen. Off by default.
+     *
+     * @param tiles view radius in tiles, or -1 to send everything
+     */
+    public void setViewRadius(int tiles) {
+        match.setViewRadius(tiles);
+    }
+
+    private void runTicks() {
+        long next = System.nanoTime();
+        while (running) {
+            long now = System.nanoTime();
+            if (now < next) {
+                LockSupport.parkNanos(next - now);
+                continue;
+            }
+            if (now - next > MAX_LAG_TICKS * tickNanos) {
+                // stalled (GC, suspended VM): skip ahead instead of running a burst of ticks
+                skippedTicks += (now - next) / tickNanos;
+                next = now;
+            }
+            try {
+                match.tick();
+                net.flush();
+            } catch (RuntimeException e) {
+                e.printStackTrace(); // keep hosting even if one tick fails
+            }
+            lastTickWorkNanos = System.nanoTime() - now;
+            next += tickNanos;
+        }
+    }
+
+    // ---------------------------------------------------------------
+    // metrics
+    // ---------------------------------------------------------------
+
+    /** @return ticks simulated so far */
+    public int getTick() {
+        return match.getTick();
+    }
+
+    /** @return time the last tick took to simulate and encode, in nanoseconds */
+    public long getLastTickWorkNanos() {
+        return lastTickWorkNanos;
+    }
+
+    /** @return ticks skipped because the loop fell too far behind */
+    public long getSkippedTicks() {
+        return skippedTicks;
+    }
+
+    /** @return payload bytes of all snapshots sent so far */
+    public long getSnapshotBytes() {
+        return match.getSnapshotBytes();
+    }
+
+    /**
+     * Runs a dedicated server until the process is killed.
+     *
+     * @param args optional port (default 55555); the tick rate comes from
+     *             {@code -Dboomberman.tickRate=N} (default 60) and the view
+     *             radius from {@code -Dboomberman.viewRadius=N} (default: everything)
+     */
+    public static void main(String[] args) {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : 55555;
+        GameServer server = new GameServer(port, Integer.getInteger("boomberman.tickRate", 60));
+        server.setViewRadius(Integer.getInteger("boomberman.viewRadius", -1));
+        server.start();
+    }
+}
@@ -0,0 +1,186 @@
+package network;
+
+import controller.KeyHandler;
+import model.Hero;
+
+/**
+ * Client-side prediction and server reconciliation for the local hero.
+ *
+ * <p>When another process runs the authoritative simulation, waiting for its
+ * snapshots before moving the hero makes every key press take a full round
+ * trip. Instead the client moves its own hero immediately with
+ * {@link Hero#move}, the same movement and collision code the server runs, and
+ * sends the input to the server tagged with a sequence number.</p>
+ *
+ * <p>Inputs the server has not confirmed yet are kept in a ring together with
+ * the position predicted after each of them. Every snapshot names the last
+ * input the server applied ({@code inputSeq}). If the server's hero position
+ * matches the prediction for that input, nothing happens. Otherwise the hero is
+ * reset to the server's position and the unconfirmed inputs are replayed on
+ * top, so a misprediction (a drone kill, a bomb the client did not know about)
+ * is corrected without undoing the input still in flight.</p>
+ *
+ * <p>Positions are compared in whole pixels. After a correction the subpixel
+ * remainder restarts at zero, which can leave the replay up to one pixel off
+ * until the next snapshot.</p>
+ *
+ * <p>All methods must be called on the client's game thread.</p>
+ */
+public class HeroPredictor {
+
+    /** Number of unconfirmed inputs kept (about four seconds at 60 ticks/s). */
+    public static final int CAPACITY = 256;
+
+    private static final int MASK = CAPACITY - 1;
+
+    private final int[] inputs = new int[CAPACITY];
+    private final int[] predX = new int[CAPACITY];
+    private final int[] predY = new int[CAPACITY];
+
+    /** Sequence number of the next input. */
+    private int nextSeq = 0;
+
+    /** Oldest input not yet confirmed by the server. */
+    private int oldestSeq = 0;
+
+    private long corrections;
+    private long replayedInputs;
+
+    /**
+     * Reads the current hero, walking-bomb and bomb keys as {@link WireProtocol#TYPE_INPUT}
+     * bits. The one-shot bomb flags are consumed, since the server handles them.
+     *
+     * @param keyH key state after {@link KeyHandler#pollInputs()}
+     * @return INPUT_* bits
+     */
+    public static int readInput(KeyHandler keyH) {
+        int bits = 0;
+        if (keyH.upPressed) bits |= WireProtocol.INPUT_UP;
+        if (keyH.downPressed) bits |= WireProtocol.INPUT_DOWN;
+        if (keyH.leftPressed) bits |= WireProtocol.INPUT_LEFT;
+        if (keyH.rightPressed) bits |= WireProtocol.INPUT_RIGHT;
+        if (keyH.placePressed) bits |= WireProtocol.INPUT_PLACE;
+        if (keyH.detonatePressed) bits |= WireProtocol.INPUT_DETONATE;
+        if (keyH.bombUpPressed) bits |= WireProtocol.INPUT_BOMB_UP;
+        if (keyH.bombDownPressed) bits |= WireProtocol.INPUT_BOMB_DOWN;
+        if (keyH.bombLeftPressed) bits |= WireProtocol.INPUT_BOMB_LEFT;
+        if (keyH.bombRightPressed) bits |= WireProtocol.INPUT_BOMB_RIGHT;
+        keyH.placePressed = false;
+        keyH.detonatePressed = false;
+        return bits;
+    }
+
+    /**
+     * Sets a key handler's flags from input bits, as if the keys had been
+     * pressed locally. Used by the server to feed a client's input to the
+     * simulation.
+     *
+     * @param keyH key handler of the simulated model
+     * @param bits INPUT_* bits
+     */
+    public static void writeInput(KeyHandler keyH, int bits) {
+        keyH.upPressed = (bits & WireProtocol.INPUT_UP) != 0;
+        keyH.downPressed = (bits & WireProtocol.INPUT_DOWN) != 0;
+        keyH.leftPressed = (bits & WireProtocol.INPUT_LEFT) != 0;
+        keyH.rightPressed = (bits & WireProtocol.INPUT_RIGHT) != 0;
+        keyH.bombUpPressed = (bits & WireProtocol.INPUT_BOMB_UP) != 0;
+        keyH.bombDownPressed = (bits & WireProtocol.INPUT_BOMB_DOWN) != 0;
+        keyH.bombLeftPressed = (bits & WireProtocol.INPUT_BOMB_LEFT) != 0;
+        keyH.bombRightPressed = (bits & WireProtocol.INPUT_BOMB_RIGHT) != 0;
+        // one-shot actions stay pending until the game consumes them
+        if ((bits & WireProtocol.INPUT_PLACE) != 0) keyH.placePressed = true;
+        if ((bits & WireProtocol.INPUT_DETONATE) != 0) keyH.detonatePressed = true;
+    }
+
+    /**
+     * Applies the movement part of an input to a hero.
+     *
+     * @param hero hero to move
+     * @param bits INPUT_* bits
+     */
+    public static void applyMovement(Hero hero, int bits) {
+        hero.move((bits & WireProtocol.INPUT_UP) != 0, (bits & WireProtocol.INPUT_DOWN) != 0,
+                (bits & WireProtocol.INPUT_LEFT) != 0, (bits & WireProtocol.INPUT_RIGHT) != 0);
+    }
+
+    /**
+     * Predicts one client tick: moves the hero locally, remembers the input
+     * and fills the message to send to the server.
+     *
+     * @param hero the local hero
+     * @param bits this tick's INPUT_* bits (see {@link #readInput(KeyHandler)})
+     * @param out  message to fill with the {@link WireProtocol#TYPE_INPUT}
+     * @return {@code out}
+     */
+    public Message step(Hero hero, int bits, Message out) {
+        if (nextSeq - oldestSeq == CAPACITY) oldestSeq++; // server far behind: forget the oldest
+        int i = nextSeq & MASK;
+        inputs[i] = bits;
+        applyMovement(hero, bits);
+        predX[i] = hero.getX();
+        predY[i] = hero.getY();
+        out.clear(WireProtocol.TYPE_INPUT).add(nextSeq).add(bits);
+        nextSeq++;
+        return out;
+    }
+
+    /**
+     * Reconciles the prediction with an authoritative hero state.
+     *
+     * @param hero   the local hero
+     * @param ackSeq last input the server applied ({@code inputSeq} of the snapshot)
+     * @param x      server hero pixel x
+     * @param y      server hero pixel y
+     * @param dir    server hero direction ({@link WireProtocol} DIR_* code)
+     * @return true if the hero had to be corrected
+     */
+    public boolean reconcile(Hero hero, int ackSeq, int x, int y, int dir) {
+        if (ackSeq < 0) {
+            // the server has none of our input yet; before the first input its word is final
+            if (nextSeq == 0 && (hero.getX() != x || hero.getY() != y)) {
+                snap(hero, x, y, dir);
+                return true;
+            }
+            return false;
+        }
+        if (ackSeq >= nextSeq || ackSeq < oldestSeq - 1 || nextSeq - ackSeq > CAPACITY) return false;
+
+        oldestSeq = ackSeq + 1;
+        int a = ackSeq & MASK;
+        if (predX[a] == x && predY[a] == y) return false;
+
+        corrections++;
+        snap(hero, x, y, dir);
+        predX[a] = x;
+        predY[a] = y;
+        for (int s = oldestSeq; s < nextSeq; s++) {
+            int i = s & MASK;
+            applyMovement(hero, inputs[i]);
+            predX[i] = hero.getX();
+            predY[i] = hero.getY();
+            replayedInputs++;
+        }
+        return true;
+    }
+
+    private static void snap(Hero hero, int x, int y, int dir) {
+        hero.setX(x);
+        hero.setY(y);
+        hero.direction = WireProtocol.dirName(dir);
+    }
+
+    /** @return number of inputs sent but not yet confirmed by the server */
+    public int getPendingCount() {
+        return nextSeq - oldestSeq;
+    }
+
+    /** @return number of mispredictions corrected so far */
+    public long getCorrections() {
+        return corrections;
+    }
+
+    /** @return number of inputs replayed during corrections */
+    public long getReplayedInputs() {
+        return replayedInputs;
+    }
+}
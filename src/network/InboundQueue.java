@@ -0,0 +1,144 @@
+package network;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded queue that carries received messages from network threads to the
+ * game thread, so game state is only ever touched by the thread that owns it.
+ *
+ * <p>Install the queue as the transport's {@link MultiplayerListener}: every
+ * frame the network thread decodes is copied into a free slot. The game thread
+ * then calls {@link #drain} once per tick to process the queued messages in
+ * arrival order. Each slot holds a preallocated {@link Message} whose payload
+ * storage is kept between uses ({@link Message#copyFrom}), and a slot is
+ * released for reuse as soon as its message has been processed. Once
+ * payloads have reached their largest size, neither side allocates.</p>
+ *
+ * <p>Any number of threads may offer messages; only one thread may drain.
+ * Slots are claimed with a compare-and-set on the tail and published through a
+ * per-slot sequence number, so producers never lock and the consumer never
+ * waits. If the game thread falls so far behind that every slot is taken, new
+ * messages are dropped and counted ({@link #getDropped()}). That suits
+ * snapshots, where the next one supersedes a lost one, but the capacity
+ * should cover a few ticks of traffic.</p>
+ *
+ * Usage:
+ * <pre>
+ * InboundQueue inbound = new InboundQueue(64);
+ * NetworkClient client = new NetworkClient(host, port, inbound);
+ * ...
+ * // game thread, every tick
+ * inbound.drain(handler);
+ * </pre>
+ */
+public final class InboundQueue implements MultiplayerListener {
+
+    private final Message[] slots;
+    private final int mask;
+
+    /**
+     * Per slot: equal to the position that may claim it while free, and one
+     * more than that position once its message is published.
+     */
+    private final AtomicLongArray sequence;
+
+    /** Next position to claim (producers). */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** Next position to process (consumer only). */
+    private long head;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Creates a queue with preallocated slots.
+     *
+     * @param capacity messages that can wait at once, rounded up to a power of two
+     * @throws IllegalArgumentException if {@code capacity} is less than 1
+     */
+    public InboundQueue(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be at least 1");
+        int n = 1;
+        while (n < capacity) n <<= 1;
+        slots = new Message[n];
+        sequence = new AtomicLongArray(n);
+        for (int i = 0; i < n; i++) {
+            slots[i] = new Message();
+            sequence.set(i, i);
+        }
+        mask = n - 1;
+    }
+
+    /**
+     * Queues a copy of a message. Thread-safe and lock-free.
+     *
+     * @param msg message to copy; not retained
+     * @return false if the queue was full and the message dropped
+     */
+    public boolean offer(Message msg) {
+        long pos = tail.get();
+        while (true) {
+            int i = (int) pos & mask;
+            long seq = sequence.get(i);
+            if (seq == pos) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots[i].copyFrom(msg);
+                    sequence.set(i, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (seq < pos) {
+                // the slot from one lap ago has not been processed yet
+                dropped.incrementAndGet();
+                return false;
+            } else {
+                pos = tail.get(); // another producer claimed it first
+            }
+        }
+    }
+
+    /** Network thread: queues the message for the game thread. */
+    @Override
+    public void onNetworkMessage(Message msg) {
+        offer(msg);
+    }
+
+    /**
+     * Passes the queued messages, oldest first, to {@code handler} and
+     * releases each slot once the handler returns. Processes at most one
+     * queue's worth, so producers cannot keep the caller here. Call on the
+     * consuming thread only.
+     *
+     * <p>As with any {@link MultiplayerListener}, a message is only valid
+     * during the call; copy out what must be kept.</p>
+     *
+     * @param handler processes each message
+     * @return number of messages processed
+     */
+    public int drain(MultiplayerListener handler) {
+        int n = 0;
+        while (n < slots.length) {
+            int i = (int) head & mask;
+            if (sequence.get(i) != head + 1) break;
+            try {
+                handler.onNetworkMessage(slots[i]);
+            } finally {
+                sequence.set(i, head + slots.length);
+                head++;
+            }
+            n++;
+        }
+        return n;
+    }
+
+    /** @return number of slots */
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /** @return messages dropped because the queue was full */
+    public long getDropped() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,110 @@
+package network;
+
+import model.StateSnapshot;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over the entities of a {@link StateSnapshot}, for finding
+ * those inside a client's view without testing every entity for every
+ * client.
+ *
+ * <p>Entities are bucketed by tile into square cells of {@value #CELL} tiles.
+ * A query visits only the cells overlapping the view rectangle and marks the
+ * entities inside it; the marks are stamped, so nothing has to be cleared
+ * between queries. The buckets are linked lists in int arrays that are
+ * reused from one {@link #build} to the next, so steady state allocates
+ * nothing.</p>
+ *
+ * <p>Not thread-safe.</p>
+ */
+final class InterestGrid {
+
+    /** Cell edge length in tiles. */
+    static final int CELL = 4;
+
+    private int rows, cols, cellRows, cellCols;
+    private int entityCount;
+
+    private int[] head = new int[0];   // first entity per cell, -1 = empty
+    private int[] next = new int[32];  // next entity in the same cell
+    private int[] col = new int[32];
+    private int[] row = new int[32];
+
+    private int[] marks = new int[32];
+    private int stamp;
+
+    /**
+     * Buckets the entities of a snapshot.
+     *
+     * @param s        the snapshot
+     * @param tileSize tile edge length in pixels, for entities stored in pixels
+     */
+    void build(StateSnapshot s, int tileSize) {
+        rows = s.getRows();
+        cols = s.getCols();
+        cellRows = (rows + CELL - 1) / CELL;
+        cellCols = (cols + CELL - 1) / CELL;
+        if (head.length < cellRows * cellCols) head = new int[cellRows * cellCols];
+        Arrays.fill(head, 0, cellRows * cellCols, -1);
+
+        entityCount = s.getEntityCount();
+        if (next.length < entityCount) {
+            int n = Math.max(entityCount, next.length * 2);
+            next = new int[n];
+            col = new int[n];
+            row = new int[n];
+            marks = new int[n];
+            stamp = 0;
+        }
+        for (int i = entityCount - 1; i >= 0; i--) {
+            int x = s.getEntityField(i, StateSnapshot.F_X);
+            int y = s.getEntityField(i, StateSnapshot.F_Y);
+            int kind = StateSnapshot.kindOf(s.getEntityKey(i));
+            if (kind != StateSnapshot.KIND_BOMB && kind != StateSnapshot.KIND_POWERUP) {
+                // pixel position of the top-left corner: use the tile under the centre
+                x = Math.floorDiv(x + tileSize / 2, tileSize);
+                y = Math.floorDiv(y + tileSize / 2, tileSize);
+            }
+            int c = clamp(x, cols), r = clamp(y, rows);
+            col[i] = c;
+            row[i] = r;
+            int cell = (r / CELL) * cellCols + c / CELL;
+            next[i] = head[cell];
+            head[cell] = i;
+        }
+    }
+
+    /**
+     * Marks every entity whose tile lies in the rectangle, replacing the
+     * marks of the previous query. Bounds are inclusive and may reach past
+     * the map.
+     */
+    void query(int minCol, int minRow, int maxCol, int maxRow) {
+        if (++stamp == 0) {
+            Arrays.fill(marks, 0);
+            stamp = 1;
+        }
+        if (entityCount == 0 || maxCol < 0 || maxRow < 0 || minCol >= cols || minRow >= rows) return;
+        int c0 = clamp(minCol, cols) / CELL, c1 = clamp(maxCol, cols) / CELL;
+        int r0 = clamp(minRow, rows) / CELL, r1 = clamp(maxRow, rows) / CELL;
+        for (int cr = r0; cr <= r1; cr++) {
+            for (int cc = c0; cc <= c1; cc++) {
+                for (int i = head[cr * cellCols + cc]; i >= 0; i = next[i]) {
+                    if (col[i] >= minCol && col[i] <= maxCol && row[i] >= minRow && row[i] <= maxRow) {
+                        marks[i] = stamp;
+                    }
+                }
+            }
+        }
+    }
+
+    /** @return true if entity {@code i} was inside the last query */
+    boolean contains(int i) {
+        return marks[i] == stamp;
+    }
+
+    private static int clamp(int v, int size) {
+        return Math.max(0, Math.min(size - 1, v));
+    }
+}
@@ -0,0 +1,258 @@
+package network;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hosts many matches in one process: a lobby on a {@link NetworkServer}
+ * where players list, create and join rooms, and a fixed set of
+ * {@link RoomLoop} threads that run the rooms.
+ *
+ * <p>Players connect to the lobby port and send {@link WireProtocol#TYPE_LOBBY}
+ * requests:</p>
+ * <ul>
+ *     <li>{@code LOBBY_LIST}: answered with {@code LOBBY_ROOMS} messages
+ *         (total room count, then up to seven room id / player count pairs each)</li>
+ *     <li>{@code LOBBY_CREATE}: opens a new room and joins it</li>
+ *     <li>{@code LOBBY_JOIN, id}: joins that room, or is answered with
+ *         {@code LOBBY_FULL, id}</li>
+ *     <li>{@code LOBBY_MATCH}: joins the fullest room that still has space,
+ *         or opens a new one</li>
+ * </ul>
+ * <p>A player who joins is answered with {@code LOBBY_JOINED, id}. From then
+ * on the connection belongs to the room and works exactly like one to a
+ * {@link GameServer}: the client sends input and receives snapshots (see
+ * {@link RemoteGame#requestMatch()}).</p>
+ *
+ * <p>Each new room goes to the loop with the fewest rooms and stays there.
+ * Its game and its players' connections are only ever touched by that loop,
+ * so rooms need no locks and loops never wait for each other. With one loop
+ * per core, hundreds of rooms fit in one process. {@link #getLoops()} reports
+ * each loop's rooms, players and tick load.</p>
+ *
+ * Usage:
+ * <pre>
+ * LobbyServer lobby = new LobbyServer(55555, Runtime.getRuntime().availableProcessors(), 60);
+ * lobby.start();
+ * </pre>
+ */
+public class LobbyServer implements ServerListener {
+
+    /** Players per room: one steers the hero, the others watch and take over. */
+    public static final int ROOM_CAPACITY = 4;
+
+    /** Room entries per {@code LOBBY_ROOMS} message, after the op and total. */
+    private static final int ROOMS_PER_MESSAGE = (Message.MAX_FIELDS - 2) / 2;
+
+    private final NetworkServer net;
+    private final RoomLoop[] loops;
+    private final List<RoomLoop> loopView;
+    private final int tickRate;
+
+    /** Open rooms by id; loops remove the rooms they close. */
+    private final Map<Integer, Room> rooms = new ConcurrentHashMap<>();
+
+    // lobby thread
+    private int nextRoomId = 1;
+    private final Message reply = new Message();
+
+    private volatile long roomsCreated;
+    private volatile int viewRadius = -1;
+
+    /**
+     * Creates a lobby that will listen on {@code port}.
+     *
+     * @param port     TCP port
+     * @param loops    number of room loop threads, usually one per core
+     * @param tickRate simulation ticks (and snapshots) per second of every room
+     * @throws IllegalArgumentException if {@code loops} is less than 1
+     */
+    public LobbyServer(int port, int loops, int tickRate) {
+        if (loops < 1) throw new IllegalArgumentException("loops must be at least 1");
+        this.net = new NetworkServer(port);
+        this.tickRate = tickRate;
+        this.loops = new RoomLoop[loops];
+        for (int i = 0; i < loops; i++) this.loops[i] = new RoomLoop(i, this, tickRate);
+        this.loopView = Collections.unmodifiableList(Arrays.asList(this.loops));
+        net.setListener(this);
+    }
+
+    /**
+     * Starts the room loops and the lobby.
+     */
+    public void start() {
+        try {
+            for (RoomLoop loop : loops) loop.start();
+        } catch (IOException e) {
+            e.printStackTrace();
+            stop();
+            return;
+        }
+        net.start();
+    }
+
+    /**
+     * Closes the lobby and every room.
+     */
+    public void stop() {
+        net.stop();
+        for (RoomLoop loop : loops) loop.stop();
+    }
+
+    /**
+     * Limits what each player is sent to the area around the hero in rooms
+     * opened from now on (see {@link GameServer#setViewRadius}).
+     *
+     * @param tiles view radius in tiles, or -1 to send everything
+     */
+    public void setViewRadius(int tiles) {
+        viewRadius = tiles;
+    }
+
+    // ---------------------------------------------------------------
+    // lobby thread
+    // ---------------------------------------------------------------
+
+    @Override
+    public void onMessage(Connection conn, Message msg) {
+        if (msg.getType() != WireProtocol.TYPE_LOBBY || msg.getFieldCount() < 1) return;
+        switch (msg.getInt(0)) {
+            case WireProtocol.LOBBY_LIST:
+                listRooms(conn);
+                break;
+            case WireProtocol.LOBBY_CREATE:
+                enter(conn, createRoom());
+                break;
+            case WireProtocol.LOBBY_JOIN: {
+                int id = (msg.getFieldCount() >= 2) ? msg.getInt(1) : -1;
+                Room room = rooms.get(id);
+                if (room != null && room.tryReserve(ROOM_CAPACITY)) {
+                    enter(conn, room);
+                } else {
+                    conn.send(reply.clear(WireProtocol.TYPE_LOBBY).add(WireProtocol.LOBBY_FULL).add(id));
+                }
+                break;
+            }
+            case WireProtocol.LOBBY_MATCH: {
+                Room room = reserveOpenRoom();
+                enter(conn, (room != null) ? room : createRoom());
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    private void listRooms(Connection conn) {
+        Room[] open = rooms.values().toArray(new Room[0]);
+        int i = 0;
+        do {
+            reply.clear(WireProtocol.TYPE_LOBBY).add(WireProtocol.LOBBY_ROOMS).add(open.length);
+            for (int n = 0; n < ROOMS_PER_MESSAGE && i < open.length; n++, i++) {
+                reply.add(open[i].id).add(open[i].getPlayers());
+            }
+            conn.send(reply);
+        } while (i < open.length);
+    }
+
+    /** @return the fullest open room with space, already reserved, or null */
+    private Room reserveOpenRoom() {
+        while (true) {
+            Room best = null;
+            for (Room r : rooms.values()) {
+                int n = r.getPlayers();
+                if (n > 0 && n < ROOM_CAPACITY && (best == null || n > best.getPlayers())) best = r;
+            }
+            if (best == null) return null;
+            if (best.tryReserve(ROOM_CAPACITY)) return best;
+            // filled or closed meanwhile: look again
+        }
+    }
+
+    /** Opens a room on the least busy loop, with one place reserved. */
+    private Room createRoom() {
+        RoomLoop loop = loops[0];
+        for (RoomLoop l : loops) {
+            if (l.getRoomCount() < loop.getRoomCount()) loop = l;
+        }
+        Room room = new Room(nextRoomId++, loop, tickRate);
+        room.match.setViewRadius(viewRadius);
+        room.tryReserve(ROOM_CAPACITY);
+        rooms.put(room.id, room);
+        roomsCreated++;
+        loop.addRoom(room);
+        return room;
+    }
+
+    /** Confirms the join and moves the connection to the room's loop. */
+    private void enter(Connection conn, Room room) {
+        conn.send(reply.clear(WireProtocol.TYPE_LOBBY).add(WireProtocol.LOBBY_JOINED).add(room.id));
+        net.handOff(conn, c -> room.loop.adopt(c, room));
+    }
+
+    /** Called by a loop when the last player of a room has left. */
+    void roomClosed(Room room) {
+        rooms.remove(room.id, room);
+    }
+
+    // ---------------------------------------------------------------
+    // metrics (any thread)
+    // ---------------------------------------------------------------
+
+    /** @return the room loops, for per-loop room, player and load figures */
+    public List<RoomLoop> getLoops() {
+        return loopView;
+    }
+
+    /** @return rooms currently open */
+    public int getRoomCount() {
+        return rooms.size();
+    }
+
+    /** @return players currently in rooms */
+    public int getPlayerCount() {
+        int n = 0;
+        for (RoomLoop loop : loops) n += loop.getConnectionCount();
+        return n;
+    }
+
+    /** @return rooms opened since start */
+    public long getRoomsCreated() {
+        return roomsCreated;
+    }
+
+    /** @return highest load of any loop (see {@link RoomLoop#getLoad()}) */
+    public double getMaxLoad() {
+        double max = 0;
+        for (RoomLoop loop : loops) max = Math.max(max, loop.getLoad());
+        return max;
+    }
+
+    /**
+     * Runs a lobby until the process is killed, printing the loop metrics
+     * every ten seconds.
+     *
+     * @param args optional port (default 55555); the loop count comes from
+     *             {@code -Dboomberman.loops=N} (default: one per core), the
+     *             tick rate from {@code -Dboomberman.tickRate=N} (default 60)
+     *             and the view radius from {@code -Dboomberman.viewRadius=N}
+     *             (default: everything)
+     * @throws InterruptedException if interrupted while sleeping
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : 55555;
+        int loops = Integer.getInteger("boomberman.loops", Runtime.getRuntime().availableProcessors());
+        LobbyServer lobby = new LobbyServer(port, loops, Integer.getInteger("boomberman.tickRate", 60));
+        lobby.setViewRadius(Integer.getInteger("boomberman.viewRadius", -1));
+        lobby.start();
+        while (true) {
+            Thread.sleep(10_000);
+            System.out.println("Lobby: " + lobby.getRoomCount() + " rooms, " + lobby.getPlayerCount() + " players");
+            for (RoomLoop loop : lobby.getLoops()) System.out.println("  " + loop);
+        }
+    }
+}
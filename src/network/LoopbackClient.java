@@ -0,0 +1,137 @@
+package network;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * Client end of a {@link LoopbackNetwork}: behaves like a
+ * {@link NetworkClient} towards its {@link MultiplayerListener}, without a
+ * socket or a listener thread.
+ *
+ * <p>Messages are batched per tick exactly as on TCP, and each
+ * {@link #flush()} puts one delivery on the network. Incoming messages are
+ * passed to the listener on the thread that advances the network.</p>
+ */
+public class LoopbackClient implements ClientTransport {
+
+    private final LoopbackNetwork network;
+    private final int port;
+    private final SocketAddress localAddress;
+    private final MultiplayerListener listener;
+
+    private final OutboundBatch batch = new OutboundBatch();
+    private final Message inMsg = new Message();
+
+    private LoopbackServer server;
+    private Connection serverSide;
+    private boolean connected;
+
+    // arrival time of the last delivery per direction, to keep them in order
+    private long lastDueToServer, lastDueToClient;
+
+    LoopbackClient(LoopbackNetwork network, int port, int localPort, MultiplayerListener listener) {
+        this.network = network;
+        this.port = port;
+        this.localAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), localPort);
+        this.listener = listener;
+    }
+
+    /**
+     * Connects to the server started on the port. The server sees the
+     * connection at once.
+     *
+     * @return true if connected, false if no server is started on the port
+     */
+    @Override
+    public boolean connect() {
+        if (connected) return true;
+        LoopbackServer s = network.lookup(port);
+        if (s == null) return false;
+        server = s;
+        serverSide = s.accept(this);
+        connected = serverSide != null && serverSide.isOpen();
+        return connected;
+    }
+
+    @Override
+    public void send(Message msg) {
+        if (connected) batch.add(msg);
+    }
+
+    @Override
+    public void flush() {
+        if (!connected || batch.isEmpty()) return;
+        network.send(this, true, batch.sealInPlace());
+        batch.clear();
+    }
+
+    /**
+     * Closes the connection; the server notices once everything sent before
+     * has arrived.
+     */
+    @Override
+    public void close() {
+        if (!connected) return;
+        connected = false;
+        batch.clear();
+        network.close(this, true);
+    }
+
+    /** @return true while connected */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /** @return the address the server sees for this client */
+    public SocketAddress getLocalAddress() {
+        return localAddress;
+    }
+
+    // ---------------------------------------------------------------
+    // called by the network
+    // ---------------------------------------------------------------
+
+    LoopbackServer server() {
+        return server;
+    }
+
+    Connection serverSide() {
+        return serverSide;
+    }
+
+    long lastDue(boolean toServer) {
+        return toServer ? lastDueToServer : lastDueToClient;
+    }
+
+    void setLastDue(boolean toServer, long due) {
+        if (toServer) lastDueToServer = due;
+        else lastDueToClient = due;
+    }
+
+    /** A delivery from the server arrives: a batch of frames, or null if it closed. */
+    void receive(byte[] data) {
+        if (!connected) return;
+        if (data == null) {
+            connected = false;
+            batch.clear();
+            return;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        try {
+            while (connected && WireProtocol.decode(buf, inMsg)) {
+                if (listener != null) listener.onNetworkMessage(inMsg);
+            }
+        } catch (ProtocolException e) {
+            System.err.println("Bad frame from server: " + e.getMessage());
+            close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LoopbackClient(" + localAddress + " -> " + port + ")";
+    }
+}
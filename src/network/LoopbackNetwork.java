@@ -0,0 +1,305 @@
+package network;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * In-process stand-in for the network, for reproducible multiplayer tests:
+ * {@link LoopbackServer}s and {@link LoopbackClient}s exchange the same
+ * frames as {@link NetworkServer} and {@link NetworkClient}, but through
+ * memory and on a virtual clock.
+ *
+ * <p>Every flushed batch is one delivery. It can be lost or duplicated, and it
+ * is delayed by a latency plus random jitter. Deliveries in one direction of
+ * a connection arrive in send order, like on TCP, unless reordering is
+ * enabled. Then a batch may overtake the ones sent before it. Closing is
+ * never lost and arrives after everything sent before it.</p>
+ *
+ * <p>Nothing is delivered until the test advances the clock with
+ * {@link #advance} or {@link #runUntilIdle}; deliveries then run on the
+ * calling thread in order of arrival time. With the same seed and the same
+ * sequence of calls, every run delivers the same bytes at the same virtual
+ * times. Not thread-safe: drive servers and clients from one thread (e.g. a
+ * {@link GameServer} through {@link GameServer#step()}).</p>
+ *
+ * Usage:
+ * <pre>
+ * LoopbackNetwork net = new LoopbackNetwork(42);
+ * net.setLatency(50, 20);
+ * net.setLoss(0.05);
+ * LoopbackServer transport = net.server(55555);
+ * GameServer server = new GameServer(transport, 60, 42);
+ * transport.start();
+ * RemoteGame remote = new RemoteGame(listener -&gt; net.client(55555, listener));
+ * remote.connect();
+ * for (int i = 0; i &lt; 600; i++) {
+ *     server.step();
+ *     remote.tick(replica);
+ *     net.advance(1_000_000_000L / 60);
+ * }
+ * </pre>
+ */
+public class LoopbackNetwork {
+
+    private final Random random;
+
+    private double loss;
+    private double duplicate;
+    private double reorder;
+    private long latencyNanos;
+    private long jitterNanos;
+
+    /** Virtual time in nanoseconds. */
+    private long now;
+
+    /** Deliveries on their way, earliest first. */
+    private final PriorityQueue<Delivery> inFlight = new PriorityQueue<>();
+    private long order;
+
+    /** Started servers by port. */
+    private final Map<Integer, LoopbackServer> servers = new HashMap<>();
+    private int nextClientPort = 40000;
+
+    private long sent, dropped, duplicated, reordered, delivered;
+
+    private static final class Delivery implements Comparable<Delivery> {
+        final long due;
+        final long order;
+        final LoopbackClient client;
+        final boolean toServer;
+        final byte[] data; // null = connection closed
+
+        Delivery(long due, long order, LoopbackClient client, boolean toServer, byte[] data) {
+            this.due = due;
+            this.order = order;
+            this.client = client;
+            this.toServer = toServer;
+            this.data = data;
+        }
+
+        @Override
+        public int compareTo(Delivery o) {
+            if (due != o.due) return Long.compare(due, o.due);
+            return Long.compare(order, o.order);
+        }
+    }
+
+    /**
+     * Creates a network. Until configured, batches arrive at once and intact.
+     *
+     * @param seed seed for the loss, jitter and reordering decisions
+     */
+    public LoopbackNetwork(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Sets the probability that a batch is lost.
+     *
+     * @param probability 0..1
+     */
+    public void setLoss(double probability) {
+        this.loss = probability;
+    }
+
+    /**
+     * Sets the probability that a batch is delivered twice.
+     *
+     * @param probability 0..1
+     */
+    public void setDuplicate(double probability) {
+        this.duplicate = probability;
+    }
+
+    /**
+     * Sets the probability that a batch whose jitter would let it overtake
+     * earlier ones does so; otherwise it waits for them.
+     *
+     * @param probability 0..1; 0 keeps every direction in order
+     */
+    public void setReorder(double probability) {
+        this.reorder = probability;
+    }
+
+    /**
+     * Sets the one-way delay.
+     *
+     * @param latencyMillis fixed delay
+     * @param jitterMillis  up to this much extra delay, uniformly distributed
+     */
+    public void setLatency(long latencyMillis, long jitterMillis) {
+        this.latencyNanos = latencyMillis * 1_000_000L;
+        this.jitterNanos = jitterMillis * 1_000_000L;
+    }
+
+    /**
+     * Creates a server that accepts clients of this network once started.
+     *
+     * @param port port clients connect to
+     * @return the server
+     */
+    public LoopbackServer server(int port) {
+        return new LoopbackServer(this, port);
+    }
+
+    /**
+     * Creates a client of this network; call {@link LoopbackClient#connect()} next.
+     *
+     * @param port     port of the server to connect to
+     * @param listener callback for messages from the server
+     * @return the client
+     */
+    public LoopbackClient client(int port, MultiplayerListener listener) {
+        return new LoopbackClient(this, port, nextClientPort++, listener);
+    }
+
+    // ---------------------------------------------------------------
+    // clock
+    // ---------------------------------------------------------------
+
+    /** @return virtual time in nanoseconds since creation */
+    public long getTimeNanos() {
+        return now;
+    }
+
+    /**
+     * Moves the clock forward, delivering everything that arrives meanwhile.
+     * Messages sent from the callbacks are delivered too if they arrive in time.
+     *
+     * @param nanos time to advance
+     * @return number of deliveries made
+     */
+    public int advance(long nanos) {
+        long until = now + nanos;
+        int n = 0;
+        Delivery d;
+        while ((d = inFlight.peek()) != null && d.due <= until) {
+            inFlight.poll();
+            now = d.due;
+            deliver(d);
+            n++;
+        }
+        now = until;
+        return n;
+    }
+
+    /**
+     * Delivers everything in flight, including replies sent from the
+     * callbacks, moving the clock to the last arrival.
+     *
+     * @return number of deliveries made
+     */
+    public int runUntilIdle() {
+        int n = 0;
+        Delivery d;
+        while ((d = inFlight.poll()) != null) {
+            now = Math.max(now, d.due);
+            deliver(d);
+            n++;
+        }
+        return n;
+    }
+
+    private void deliver(Delivery d) {
+        delivered++;
+        if (d.toServer) d.client.server().receive(d.client, d.data);
+        else d.client.receive(d.data);
+    }
+
+    // ---------------------------------------------------------------
+    // endpoints
+    // ---------------------------------------------------------------
+
+    void bind(int port, LoopbackServer server) {
+        if (servers.putIfAbsent(port, server) != null) {
+            throw new IllegalStateException("port " + port + " already in use");
+        }
+    }
+
+    void unbind(int port, LoopbackServer server) {
+        servers.remove(port, server);
+    }
+
+    /** @return the started server on {@code port}, or null */
+    LoopbackServer lookup(int port) {
+        return servers.get(port);
+    }
+
+    /**
+     * Puts a flushed batch on its way, subject to loss, duplication, delay
+     * and reordering.
+     *
+     * @param client   the connection, identified by its client end
+     * @param toServer direction
+     * @param batch    the batch, from position to limit; consumed
+     */
+    void send(LoopbackClient client, boolean toServer, ByteBuffer batch) {
+        sent++;
+        if (random.nextDouble() < loss) {
+            dropped++;
+            batch.position(batch.limit());
+            return;
+        }
+        byte[] data = new byte[batch.remaining()];
+        batch.get(data);
+        int copies = 1;
+        if (random.nextDouble() < duplicate) {
+            copies = 2;
+            duplicated++;
+        }
+        for (int i = 0; i < copies; i++) {
+            long due = now + latencyNanos + (jitterNanos > 0 ? (long) (random.nextDouble() * jitterNanos) : 0);
+            long last = client.lastDue(toServer);
+            if (due < last) {
+                if (random.nextDouble() < reorder) reordered++;
+                else due = last;
+            }
+            client.setLastDue(toServer, Math.max(last, due));
+            inFlight.add(new Delivery(due, order++, client, toServer, data));
+        }
+    }
+
+    /** Tells the other end that the connection was closed, after everything sent before. */
+    void close(LoopbackClient client, boolean toServer) {
+        long due = Math.max(now + latencyNanos, client.lastDue(toServer));
+        client.setLastDue(toServer, due);
+        inFlight.add(new Delivery(due, order++, client, toServer, null));
+    }
+
+    // ---------------------------------------------------------------
+    // metrics
+    // ---------------------------------------------------------------
+
+    /** @return batches handed to the network */
+    public long getSent() {
+        return sent;
+    }
+
+    /** @return batches dropped on purpose */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /** @return batches delivered twice on purpose */
+    public long getDuplicated() {
+        return duplicated;
+    }
+
+    /** @return batches allowed to overtake earlier ones */
+    public long getReordered() {
+        return reordered;
+    }
+
+    /** @return deliveries made, including closes */
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /** @return deliveries still on their way */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+}
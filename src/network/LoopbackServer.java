@@ -0,0 +1,196 @@
+package network;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Server end of a {@link LoopbackNetwork}: behaves like a
+ * {@link NetworkServer} towards its {@link ServerListener}, without sockets
+ * or threads.
+ *
+ * <p>Callbacks run on the thread that advances the network. Their
+ * {@link Connection}s batch messages exactly as on TCP. Replies sent from a
+ * callback go out when the callback returns, and everything else on
+ * {@link #flush()}.</p>
+ */
+public class LoopbackServer extends ConnectionHost implements ServerTransport {
+
+    private final LoopbackNetwork network;
+    private final int port;
+    private ServerListener listener;
+    private boolean started;
+
+    private final Map<Integer, Connection> clients = new LinkedHashMap<>();
+    private final Collection<Connection> clientView = Collections.unmodifiableCollection(clients.values());
+    private final Map<Integer, LoopbackClient> peers = new HashMap<>();
+    private int nextId = 1;
+
+    private final Queue<Connection> dirty = new ArrayDeque<>();
+    private final Queue<Connection> pendingClose = new ArrayDeque<>();
+    private boolean dispatching, replyPending;
+
+    /** Every inbound frame is decoded into this instance. */
+    private final Message inMsg = new Message();
+
+    LoopbackServer(LoopbackNetwork network, int port) {
+        this.network = network;
+        this.port = port;
+    }
+
+    /**
+     * Sets the handler for connection events and messages.
+     *
+     * @param listener the handler, or null to ignore everything
+     */
+    @Override
+    public void setListener(ServerListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts accepting clients on the port.
+     *
+     * @throws IllegalStateException if another server already uses the port
+     */
+    @Override
+    public void start() {
+        if (started) return;
+        network.bind(port, this);
+        started = true;
+    }
+
+    @Override
+    public Collection<Connection> getClients() {
+        return clientView;
+    }
+
+    @Override
+    public void broadcast(Message msg, Connection except) {
+        if (clients.isEmpty()) return;
+        if (OutboundBatch.isCoalesced(msg.getType())) {
+            // positions are coalesced per sender, so they cannot share one frame
+            for (Connection c : clients.values()) {
+                if (c != except) c.send(msg, except);
+            }
+            return;
+        }
+        ByteBuffer frame = ByteBuffer.allocate(WireProtocol.frameSize(msg));
+        WireProtocol.encode(msg, frame);
+        frame.flip();
+        for (Connection c : clients.values()) {
+            if (c != except) c.sendEncoded(frame);
+        }
+    }
+
+    /**
+     * Ends the current tick: every connection's batch is put on the network
+     * as one delivery.
+     */
+    @Override
+    public void flush() {
+        replyPending = false;
+        Connection c;
+        while ((c = pendingClose.poll()) != null) drop(c);
+        while ((c = dirty.poll()) != null) {
+            if (!c.isOpen() || !c.seal()) continue;
+            LoopbackClient peer = peers.get(c.getId());
+            ByteBuffer batch;
+            while ((batch = c.pollOutbox()) != null) network.send(peer, false, batch);
+        }
+    }
+
+    /**
+     * Closes every connection and frees the port.
+     */
+    @Override
+    public void stop() {
+        if (!started) return;
+        started = false;
+        network.unbind(port, this);
+        for (Connection c : clients.values().toArray(new Connection[0])) drop(c);
+    }
+
+    @Override
+    void markDirty(Connection conn) {
+        dirty.add(conn);
+        if (dispatching) replyPending = true;
+    }
+
+    @Override
+    void requestClose(Connection conn) {
+        if (!dispatching) {
+            drop(conn);
+            return;
+        }
+        // inside a callback: close when it returns
+        pendingClose.add(conn);
+        replyPending = true;
+    }
+
+    // ---------------------------------------------------------------
+    // called by the network
+    // ---------------------------------------------------------------
+
+    /** A client connects: returns its server-side connection, or null if stopped. */
+    Connection accept(LoopbackClient client) {
+        if (!started) return null;
+        Connection conn = new Connection(nextId++, this, client.getLocalAddress());
+        clients.put(conn.getId(), conn);
+        peers.put(conn.getId(), client);
+        dispatching = true;
+        try {
+            if (listener != null) listener.onConnect(conn);
+        } finally {
+            endDispatch();
+        }
+        return conn;
+    }
+
+    /** A delivery from a client arrives: a batch of frames, or null if it closed. */
+    void receive(LoopbackClient client, byte[] data) {
+        Connection conn = client.serverSide();
+        if (conn == null || !conn.isOpen() || conn.host() != this) return;
+        if (data == null) {
+            drop(conn);
+            return;
+        }
+        dispatching = true;
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(data);
+            while (WireProtocol.decode(buf, inMsg)) {
+                if (listener != null) listener.onMessage(conn, inMsg);
+                if (!conn.isOpen()) break;
+            }
+        } catch (ProtocolException e) {
+            System.err.println(conn + " sent a bad frame: " + e.getMessage());
+            requestClose(conn);
+        } finally {
+            endDispatch();
+        }
+    }
+
+    private void endDispatch() {
+        dispatching = false;
+        if (replyPending) flush();
+    }
+
+    private void drop(Connection conn) {
+        if (!conn.closeChannel()) return;
+        clients.remove(conn.getId());
+        LoopbackClient peer = peers.remove(conn.getId());
+        network.close(peer, false);
+        if (listener != null) listener.onDisconnect(conn);
+    }
+
+    @Override
+    public String toString() {
+        return "LoopbackServer(" + port + ", " + clients.size() + " clients)";
+    }
+}
@@ -0,0 +1,167 @@
+package network;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * {@link DatagramLink} decorator that simulates a bad network on the sending
+ * side: outgoing datagrams are dropped, duplicated or held back for a
+ * latency plus random jitter (which also reorders them) before being passed
+ * to the wrapped link.
+ *
+ * <p>Held-back datagrams are released whenever {@link #send} or
+ * {@link #receive} is called, so the owner must keep polling the link, which
+ * {@link UdpTransport} does every tick. With the same seed and the same call
+ * sequence the same datagrams are lost.</p>
+ *
+ * Usage:
+ * <pre>
+ * LossyLink link = new LossyLink(new UdpLink(0), 42);
+ * link.setLoss(0.2);
+ * link.setLatency(50, 20);
+ * UdpTransport transport = new UdpTransport(link, listener);
+ * </pre>
+ */
+public class LossyLink implements DatagramLink {
+
+    private final DatagramLink inner;
+    private final Random random;
+
+    private volatile double loss;
+    private volatile double duplicate;
+    private volatile long latencyNanos;
+    private volatile long jitterNanos;
+
+    /** Datagrams waiting for their release time, earliest first. */
+    private final PriorityQueue<Held> held = new PriorityQueue<>();
+    private long order;
+
+    private long sent, dropped, duplicated;
+
+    private static final class Held implements Comparable<Held> {
+        final long due;
+        final long order;
+        final byte[] data;
+        final SocketAddress to;
+
+        Held(long due, long order, byte[] data, SocketAddress to) {
+            this.due = due;
+            this.order = order;
+            this.data = data;
+            this.to = to;
+        }
+
+        @Override
+        public int compareTo(Held o) {
+            if (due != o.due) return Long.compare(due, o.due);
+            return Long.compare(order, o.order);
+        }
+    }
+
+    /**
+     * Wraps a link. Until configured, datagrams pass through unchanged.
+     *
+     * @param inner link that really sends
+     * @param seed  seed for the loss and jitter decisions
+     */
+    public LossyLink(DatagramLink inner, long seed) {
+        this.inner = inner;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Sets the probability that a datagram is lost.
+     *
+     * @param probability 0..1
+     */
+    public void setLoss(double probability) {
+        this.loss = probability;
+    }
+
+    /**
+     * Sets the probability that a datagram is delivered twice.
+     *
+     * @param probability 0..1
+     */
+    public void setDuplicate(double probability) {
+        this.duplicate = probability;
+    }
+
+    /**
+     * Sets the one-way delay.
+     *
+     * @param latencyMillis fixed delay
+     * @param jitterMillis  up to this much extra delay, uniformly distributed
+     */
+    public void setLatency(long latencyMillis, long jitterMillis) {
+        this.latencyNanos = latencyMillis * 1_000_000L;
+        this.jitterNanos = jitterMillis * 1_000_000L;
+    }
+
+    @Override
+    public synchronized void send(ByteBuffer packet, SocketAddress to) throws IOException {
+        long now = System.nanoTime();
+        release(now);
+        sent++;
+        if (random.nextDouble() < loss) {
+            dropped++;
+            packet.position(packet.limit());
+            return;
+        }
+        byte[] data = new byte[packet.remaining()];
+        packet.get(data);
+        int copies = 1;
+        if (random.nextDouble() < duplicate) {
+            copies = 2;
+            duplicated++;
+        }
+        for (int i = 0; i < copies; i++) {
+            long delay = latencyNanos + (jitterNanos > 0 ? (long) (random.nextDouble() * jitterNanos) : 0);
+            held.add(new Held(now + delay, order++, data, to));
+        }
+        release(now);
+    }
+
+    @Override
+    public SocketAddress receive(ByteBuffer into) throws IOException {
+        synchronized (this) {
+            release(System.nanoTime());
+        }
+        return inner.receive(into);
+    }
+
+    /** Passes every datagram whose time has come to the wrapped link. */
+    private void release(long now) throws IOException {
+        Held h;
+        while ((h = held.peek()) != null && h.due <= now) {
+            held.poll();
+            inner.send(ByteBuffer.wrap(h.data), h.to);
+        }
+    }
+
+    /** @return datagrams handed to {@link #send} */
+    public synchronized long getSent() {
+        return sent;
+    }
+
+    /** @return datagrams dropped on purpose */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /** @return datagrams delivered twice on purpose */
+    public synchronized long getDuplicated() {
+        return duplicated;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            held.clear();
+        }
+        inner.close();
+    }
+}
@@ -0,0 +1,260 @@
+package network;
+
+import controller.KeyHandler;
+import model.GameModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * One authoritative game and the clients playing it: the part of hosting
+ * shared by the dedicated {@link GameServer} and the rooms of a
+ * {@link LobbyServer}.
+ *
+ * <p>Each {@link #tick()}</p>
+ * <ol>
+ *     <li>applies the controlling client's next {@link WireProtocol#TYPE_INPUT},
+ *         in sequence-number order, through the model's {@link KeyHandler},</li>
+ *     <li>advances the model by one tick,</li>
+ *     <li>captures a {@link model.StateSnapshot} and sends every client a delta
+ *         against the snapshot it last acknowledged ({@link SnapshotEncoder}).</li>
+ * </ol>
+ * The caller flushes the network afterwards.
+ *
+ * <p>The game has one hero, so the first client to join controls it and
+ * later clients watch; when the controller leaves, the longest-connected
+ * watcher takes over. Inputs are buffered per client and applied one per tick.
+ * If network jitter delivers several at once, up to
+ * {@value GameServer#MAX_QUEUED_INPUTS} wait in line and older ones are applied
+ * in the same tick, so the hero never lags far behind the client's
+ * prediction.</p>
+ *
+ * <p>With a view radius set ({@link #setViewRadius}), every client is only
+ * sent what lies around the hero it watches, and receives
+ * {@link WireProtocol#TYPE_VIEW} messages as entities come into and go out of
+ * view (see {@link SnapshotEncoder}).</p>
+ *
+ * <p>The {@link ServerListener} callbacks only store inputs and
+ * acknowledgements, so they may run on another thread than {@link #tick()};
+ * the model is touched by the ticking thread alone.</p>
+ */
+final class Match implements ServerListener {
+
+    /**
+     * Server-side state of one connected client.
+     */
+    private static final class Player {
+        final Connection conn;
+        final SnapshotEncoder.Client replication = new SnapshotEncoder.Client();
+
+        // inputs received but not applied yet (guarded by this)
+        private final int[] seqs = new int[HeroPredictor.CAPACITY];
+        private final int[] bits = new int[HeroPredictor.CAPACITY];
+        private int head, size;
+        private int lastQueued = -1;
+
+        /** Newest snapshot tick the client acknowledged (network thread writes). */
+        volatile int ackedTick = -1;
+        volatile boolean left;
+
+        Player(Connection conn) {
+            this.conn = conn;
+        }
+
+        synchronized void queue(int seq, int input) {
+            if (seq <= lastQueued && lastQueued >= 0) return; // duplicate or stale
+            lastQueued = seq;
+            if (size == seqs.length) {
+                head = (head + 1) % seqs.length;
+                size--;
+            }
+            int i = (head + size) % seqs.length;
+            seqs[i] = seq;
+            bits[i] = input;
+            size++;
+        }
+
+        synchronized int queued() {
+            return size;
+        }
+
+        /** Removes the oldest input; returns its bits and records its sequence number. */
+        synchronized int take() {
+            int i = head;
+            head = (head + 1) % seqs.length;
+            size--;
+            replication.setInputSeq(seqs[i]);
+            return bits[i];
+        }
+
+        synchronized void clearInputs() {
+            head = 0;
+            size = 0;
+        }
+    }
+
+    private final KeyHandler keys = new KeyHandler();
+    private final GameModel gm;
+    private final SnapshotEncoder encoder = new SnapshotEncoder();
+    private final Message snapshot = new Message();
+    private final Message view = new Message();
+
+    /** Players connected on the network thread, picked up by the next tick. */
+    private final Queue<Player> joined = new ConcurrentLinkedQueue<>();
+
+    /** Connected players in connection order; the first one controls the hero (tick thread). */
+    private final List<Player> players = new ArrayList<>();
+    private Player controller;
+
+    private volatile int tick;
+    private volatile int viewRadius = -1;
+
+    /**
+     * Creates a match with a new game.
+     *
+     * @param tickRate simulation ticks (and snapshots) per second
+     */
+    Match(int tickRate) {
+        this(tickRate, System.nanoTime());
+    }
+
+    /**
+     * Creates a match whose game is seeded, so a run with the same inputs
+     * plays out the same way.
+     *
+     * @param tickRate simulation ticks (and snapshots) per second
+     * @param seed     seed of the game's random generator
+     */
+    Match(int tickRate, long seed) {
+        this.gm = new GameModel(keys, seed);
+        gm.setTickRate(tickRate);
+    }
+
+    // ---------------------------------------------------------------
+    // network thread
+    // ---------------------------------------------------------------
+
+    @Override
+    public void onConnect(Connection conn) {
+        Player p = new Player(conn);
+        conn.setAttachment(p);
+        joined.add(p);
+    }
+
+    @Override
+    public void onMessage(Connection conn, Message msg) {
+        Player p = (Player) conn.getAttachment();
+        switch (msg.getType()) {
+            case WireProtocol.TYPE_INPUT:
+                if (msg.getFieldCount() >= 2) p.queue(msg.getInt(0), msg.getInt(1));
+                break;
+            case WireProtocol.TYPE_SNAPSHOT_ACK:
+                if (msg.getFieldCount() >= 1 && msg.getInt(0) > p.ackedTick) p.ackedTick = msg.getInt(0);
+                break;
+            default:
+                break; // the host is authoritative: client state reports are ignored
+        }
+    }
+
+    @Override
+    public void onDisconnect(Connection conn) {
+        ((Player) conn.getAttachment()).left = true;
+    }
+
+    // ---------------------------------------------------------------
+    // tick thread
+    // ---------------------------------------------------------------
+
+    /** Runs one simulation tick and sends its snapshot; the caller flushes. */
+    void tick() {
+        updatePlayers();
+
+        if (controller != null) applyInput(controller);
+        gm.update(gm.getTickSeconds());
+
+        int t = tick;
+        encoder.capture(gm, t);
+        int radius = viewRadius;
+        for (int i = 0; i < players.size(); i++) {
+            Player p = players.get(i);
+            SnapshotEncoder.Client c = p.replication;
+            c.ack(p.ackedTick);
+            c.setControlling(p == controller);
+            // everyone watches the one hero
+            if (radius >= 0) c.setView(gm.hero.getTileCol(), gm.hero.getTileRow(), radius);
+            else c.clearView();
+            p.conn.send(encoder.encode(c, snapshot));
+            int changes = c.getEnteredCount() + c.getExitedCount();
+            for (int done = 0; done < changes; ) {
+                done = encoder.writeViewChanges(c, done, view);
+                p.conn.send(view);
+            }
+        }
+        tick = t + 1;
+    }
+
+    private void updatePlayers() {
+        Player p;
+        while ((p = joined.poll()) != null) players.add(p);
+        players.removeIf(q -> q.left);
+        Player first = players.isEmpty() ? null : players.get(0);
+        if (first != controller) {
+            controller = first;
+            // inputs sent while watching were never meant for the hero
+            if (first != null) first.clearInputs();
+            releaseKeys();
+        }
+    }
+
+    /** Feeds the controller's queued input to the model's key handler. */
+    private void applyInput(Player p) {
+        int n = p.queued();
+        if (n == 0) {
+            releaseKeys();
+            return;
+        }
+        // surplus beyond the jitter allowance: move the hero for those inputs now
+        for (int extra = n - GameServer.MAX_QUEUED_INPUTS; extra > 0; extra--) {
+            int bits = p.take();
+            HeroPredictor.applyMovement(gm.hero, bits);
+            HeroPredictor.writeInput(keys, bits & (WireProtocol.INPUT_PLACE | WireProtocol.INPUT_DETONATE));
+        }
+        HeroPredictor.writeInput(keys, p.take());
+    }
+
+    /** Releases every held key (no input this tick, or nobody steering). */
+    private void releaseKeys() {
+        HeroPredictor.writeInput(keys, 0);
+    }
+
+    /**
+     * Limits what each client is sent to a square around the hero. Thread-safe.
+     *
+     * @param tiles half the square's edge in tiles (see {@link SnapshotEncoder#VIEW_MARGIN}),
+     *              or -1 to send everything
+     */
+    void setViewRadius(int tiles) {
+        viewRadius = Math.max(-1, tiles);
+    }
+
+    // ---------------------------------------------------------------
+    // metrics
+    // ---------------------------------------------------------------
+
+    /** @return the simulation rate */
+    int getTickRate() {
+        return gm.getTickRate();
+    }
+
+    /** @return ticks simulated so far */
+    int getTick() {
+        return tick;
+    }
+
+    /** @return payload bytes of all snapshots sent so far */
+    long getSnapshotBytes() {
+        return encoder.getBytesEncoded();
+    }
+}
@@ -0,0 +1,247 @@
+package network;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A decoded (or to-be-encoded) network message: a type, up to
+ * {@value #MAX_FIELDS} int fields and an optional byte payload.
+ *
+ * <p>Messages are mutable and meant to be reused. The receive loops decode
+ * every frame into the same instance, so a listener must copy anything it
+ * wants to keep before returning. A decoded payload points into the receive
+ * buffer rather than being copied out of it.</p>
+ *
+ * <p>See {@link WireProtocol} for the frame layout and message types.</p>
+ */
+public final class Message {
+
+    /** Maximum number of int fields per message. */
+    public static final int MAX_FIELDS = 16;
+
+    private int type;
+    private final int[] fields = new int[MAX_FIELDS];
+    private int fieldCount;
+
+    // payload: either a byte[] or a region of a ByteBuffer
+    private byte[] payloadArray;
+    private ByteBuffer payloadBuffer;
+    private int payloadOffset;
+    private int payloadLength;
+
+    /** Payload storage owned by this message, reused by {@link #copyFrom}. */
+    private byte[] ownPayload;
+
+    /**
+     * Resets the message to the given type with no fields or payload.
+     *
+     * @param type message type (see the TYPE_* constants in {@link WireProtocol})
+     * @return this message
+     */
+    public Message clear(int type) {
+        this.type = type;
+        this.fieldCount = 0;
+        this.payloadArray = null;
+        this.payloadBuffer = null;
+        this.payloadOffset = 0;
+        this.payloadLength = 0;
+        return this;
+    }
+
+    /**
+     * Appends an int field.
+     *
+     * @param value field value
+     * @return this message
+     * @throws IllegalStateException if the message already has {@value #MAX_FIELDS} fields
+     */
+    public Message add(int value) {
+        if (fieldCount == MAX_FIELDS) throw new IllegalStateException("too many fields");
+        fields[fieldCount++] = value;
+        return this;
+    }
+
+    /**
+     * Sets the payload to a region of an array. The array is not copied.
+     *
+     * @param data   bytes to send
+     * @param offset first byte
+     * @param length number of bytes
+     * @return this message
+     */
+    public Message setPayload(byte[] data, int offset, int length) {
+        this.payloadArray = data;
+        this.payloadBuffer = null;
+        this.payloadOffset = offset;
+        this.payloadLength = length;
+        return this;
+    }
+
+    /**
+     * Sets the payload to a region of a buffer. The buffer is not copied and
+     * its position is not changed.
+     *
+     * @param buf    buffer holding the bytes
+     * @param offset absolute index of the first byte
+     * @param length number of bytes
+     * @return this message
+     */
+    public Message setPayload(ByteBuffer buf, int offset, int length) {
+        this.payloadArray = null;
+        this.payloadBuffer = buf;
+        this.payloadOffset = offset;
+        this.payloadLength = length;
+        return this;
+    }
+
+    /**
+     * Sets the payload to the UTF-8 bytes of a string.
+     *
+     * @param text text to send
+     * @return this message
+     */
+    public Message setText(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return setPayload(bytes, 0, bytes.length);
+    }
+
+    /** @return the message type */
+    public int getType() {
+        return type;
+    }
+
+    /** @return number of int fields */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Returns an int field.
+     *
+     * @param index field index
+     * @return the value, or 0 if the message has no such field
+     */
+    public int getInt(int index) {
+        return (index < fieldCount) ? fields[index] : 0;
+    }
+
+    /** @return payload size in bytes */
+    public int getPayloadLength() {
+        return payloadLength;
+    }
+
+    /**
+     * Returns one payload byte.
+     *
+     * @param index index within the payload
+     * @return the byte
+     */
+    public byte getPayloadByte(int index) {
+        if (index < 0 || index >= payloadLength) throw new IndexOutOfBoundsException(index);
+        int i = payloadOffset + index;
+        return (payloadArray != null) ? payloadArray[i] : payloadBuffer.get(i);
+    }
+
+    /**
+     * Copies the payload into an array.
+     *
+     * @param dst    target array
+     * @param offset index in {@code dst} of the first byte
+     * @return number of bytes copied
+     */
+    public int copyPayload(byte[] dst, int offset) {
+        if (payloadArray != null) {
+            System.arraycopy(payloadArray, payloadOffset, dst, offset, payloadLength);
+        } else if (payloadLength > 0) {
+            payloadBuffer.get(payloadOffset, dst, offset, payloadLength);
+        }
+        return payloadLength;
+    }
+
+    /**
+     * Decodes the payload as UTF-8. Allocates, so it is meant for
+     * {@link WireProtocol#TYPE_TEXT} messages only.
+     *
+     * @return the payload text
+     */
+    public String getText() {
+        byte[] bytes = new byte[payloadLength];
+        copyPayload(bytes, 0);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Writes the payload at the buffer's position (used by the encoder). */
+    void writePayload(ByteBuffer buf) {
+        if (payloadLength == 0) return;
+        if (payloadArray != null) {
+            buf.put(payloadArray, payloadOffset, payloadLength);
+        } else {
+            buf.put(buf.position(), payloadBuffer, payloadOffset, payloadLength);
+            buf.position(buf.position() + payloadLength);
+        }
+    }
+
+    /**
+     * Copies type, fields and payload reference of another message.
+     *
+     * @param other message to copy
+     * @return this message
+     */
+    public Message set(Message other) {
+        this.type = other.type;
+        this.fieldCount = other.fieldCount;
+        System.arraycopy(other.fields, 0, fields, 0, other.fieldCount);
+        this.payloadArray = other.payloadArray;
+        this.payloadBuffer = other.payloadBuffer;
+        this.payloadOffset = other.payloadOffset;
+        this.payloadLength = other.payloadLength;
+        return this;
+    }
+
+    /**
+     * Copies type, fields and payload bytes of another message, so the copy
+     * stays valid after the other message's receive buffer is reused. The
+     * payload goes into an array owned by this message, which is only
+     * replaced when a larger payload arrives.
+     *
+     * @param other message to copy
+     * @return this message
+     */
+    public Message copyFrom(Message other) {
+        if (other == this) return this;
+        int len = other.payloadLength;
+        if (len > 0) {
+            if (ownPayload == null || ownPayload.length < len) ownPayload = new byte[Math.max(len, 64)];
+            other.copyPayload(ownPayload, 0);
+        }
+        this.type = other.type;
+        this.fieldCount = other.fieldCount;
+        System.arraycopy(other.fields, 0, fields, 0, other.fieldCount);
+        this.payloadArray = (len > 0) ? ownPayload : null;
+        this.payloadBuffer = null;
+        this.payloadOffset = 0;
+        this.payloadLength = len;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        if (type == WireProtocol.TYPE_TEXT) return "TEXT," + getText();
+        StringBuilder sb = new StringBuilder();
+        switch (type) {
+            case WireProtocol.TYPE_POS: sb.append("POS"); break;
+            case WireProtocol.TYPE_PIX: sb.append("PIX"); break;
+            case WireProtocol.TYPE_BOMB: sb.append("BOMB"); break;
+            case WireProtocol.TYPE_SNAPSHOT: sb.append("SNAP"); break;
+            case WireProtocol.TYPE_SNAPSHOT_ACK: sb.append("ACK"); break;
+            case WireProtocol.TYPE_INPUT: sb.append("INPUT"); break;
+            case WireProtocol.TYPE_LOCKSTEP: sb.append("LOCKSTEP"); break;
+            case WireProtocol.TYPE_LOBBY: sb.append("LOBBY"); break;
+            case WireProtocol.TYPE_VIEW: sb.append("VIEW"); break;
+            default: sb.append("MSG").append(type);
+        }
+        for (int i = 0; i < fieldCount; i++) sb.append(',').append(fields[i]);
+        if (payloadLength > 0) sb.append(",+").append(payloadLength).append('B');
+        return sb.toString();
+    }
+}
@@ -11,9 +11,14 @@ package network;
 public interface MultiplayerListener {
 
     /**
-     * Called whenever a new line of text is received from the server.
+     * Called whenever a frame has been received from the server.
+     * <p>
+     * The same {@link Message} instance is reused for every frame, so it is
+     * only valid until this method returns; copy out what must be kept.
+     * Transports call this on their receive thread; an {@link InboundQueue}
+     * moves the messages to the game thread.
      *
-     * @param msg the message received from the network connection
+     * @param msg the decoded message
      */
-    void onNetworkMessage(String msg);
+    void onNetworkMessage(Message msg);
 }
@@ -1,32 +1,44 @@
 package network;
 
-import java.io.*;
-import java.net.*;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 /**
- * A minimal TCP client used for sending and receiving text-based
- * multiplayer messages.
+ * A minimal TCP client used for sending and receiving binary
+ * multiplayer messages (see {@link WireProtocol}).
  *
  * <p>This class handles:</p>
  * <ul>
  *     <li>Connecting to a remote server</li>
- *     <li>Sending formatted messages (movement, bomb placement, pixel coords)</li>
- *     <li>Listening for incoming messages on a background thread</li>
- *     <li>Forwarding received messages to {@link MultiplayerListener}</li>
+ *     <li>Encoding messages (movement, bomb placement, pixel coords) into a
+ *         per-tick batch, without formatting text; position updates within a
+ *         tick are merged down to the latest one</li>
+ *     <li>Writing the batch in one call when the game calls {@link #flush()}
+ *         at the end of its tick</li>
+ *     <li>Listening for incoming frames on a background thread</li>
+ *     <li>Decoding them into one reused {@link Message} for the {@link MultiplayerListener}</li>
  * </ul>
+ * <p>The listener runs on the background thread. To process messages on
+ * the game thread instead, pass an {@link InboundQueue} as the listener and
+ * drain it every tick; the receive path then allocates nothing.</p>
  *
  * Typical usage:
  * <pre>
  * MultiplayerListener listener = msg -> System.out.println(msg);
  * NetworkClient client = new NetworkClient("192.168.1.10", 55555, listener);
  * client.connect();
- * client.send("POS,5,3,left");
+ * client.sendPosition(5, 3, "left");
+ * client.flush();   // end of tick
  * client.close();
  * </pre>
  */
-public class NetworkClient {
+public class NetworkClient implements ClientTransport {
 
     /** Host address of the game server. */
     private final String host;
@@ -37,14 +49,19 @@ public class NetworkClient {
     /** Listener that receives incoming messages from server. */
     private final MultiplayerListener listener;
 
-    /** Underlying TCP socket. */
-    private Socket socket;
+    /** Underlying TCP channel (blocking mode). */
+    private SocketChannel channel;
 
-    /** Output stream (UTF-8, auto-flush). Sends messages to server. */
-    private PrintWriter out;
+    /** Outgoing messages of the current tick; guarded by {@code this}. */
+    private final OutboundBatch batch = new OutboundBatch();
+    private final Message outMsg = new Message();
 
-    /** Input stream used to read messages line-by-line. */
-    private BufferedReader in;
+    /** Number of socket writes issued by {@link #flush()}; guarded by {@code this}. */
+    private long writes;
+
+    /** Receive buffer and the message every frame is decoded into (listen thread only). */
+    private final ByteBuffer inBuf = ByteBuffer.allocateDirect(2 * (WireProtocol.MAX_HEADER_BYTES + WireProtocol.MAX_FRAME_BYTES));
+    private final Message inMsg = new Message();
 
     /** Dedicated background thread to listen for incoming messages. */
     private ExecutorService exec = Executors.newSingleThreadExecutor();
@@ -71,13 +88,12 @@ public class NetworkClient {
      *
      * @return true if successful, false otherwise
      */
+    @Override
     public boolean connect() {
         try {
-            socket = new Socket();
-            socket.connect(new InetSocketAddress(host, port), 3000); // 3s timeout
-
-            out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"), true);
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            channel = SocketChannel.open();
+            channel.socket().connect(new InetSocketAddress(host, port), 3000); // 3s timeout
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
 
             running = true;
             startListenLoop();
@@ -91,21 +107,27 @@ public class NetworkClient {
     }
 
     /**
-     * Starts an asynchronous loop that continuously reads messages from the server.
-     * Whenever a line is received, {@link MultiplayerListener#onNetworkMessage(String)}
-     * is invoked.
+     * Starts an asynchronous loop that continuously reads frames from the server.
+     * Every decoded frame is passed to {@link MultiplayerListener#onNetworkMessage(Message)}.
      */
     private void startListenLoop() {
         exec.submit(() -> {
             try {
-                String line;
-                while (running && (line = in.readLine()) != null) {
-                    if (listener != null) {
-                        listener.onNetworkMessage(line);
+                while (running && channel.read(inBuf) >= 0) {
+                    inBuf.flip();
+                    while (WireProtocol.decode(inBuf, inMsg)) {
+                        if (listener != null) {
+                            listener.onNetworkMessage(inMsg);
+                        }
                     }
+                    inBuf.compact();
                 }
+            } catch (ProtocolException e) {
+                System.err.println("Bad frame from server: " + e.getMessage());
             } catch (IOException e) {
                 if (running) e.printStackTrace();
+            } catch (RuntimeException e) {
+                e.printStackTrace(); // the executor would swallow it
             } finally {
                 close();
             }
@@ -113,64 +135,111 @@ public class NetworkClient {
     }
 
     /**
-     * Sends a raw string message to the server.
+     * Adds a message to the current tick's batch. Nothing is written until
+     * {@link #flush()}. Thread-safe.
      *
-     * @param msg a line of text (newline appended automatically)
+     * @param msg message to send; not retained
      */
-    public void send(String msg) {
-        if (out != null) {
-            out.println(msg);
-            out.flush();
+    @Override
+    public synchronized void send(Message msg) {
+        if (channel == null || !channel.isOpen()) return;
+        if (WireProtocol.frameSize(msg) > WireProtocol.MAX_HEADER_BYTES + WireProtocol.MAX_FRAME_BYTES) {
+            throw new IllegalArgumentException("message too large: " + WireProtocol.frameSize(msg) + " bytes");
         }
+        batch.add(msg);
+    }
+
+    /**
+     * Writes everything sent since the last flush in one socket write. Call
+     * once at the end of every tick. Thread-safe.
+     */
+    @Override
+    public synchronized void flush() {
+        if (channel == null || !channel.isOpen() || batch.isEmpty()) return;
+        ByteBuffer buf = batch.sealInPlace();
+        try {
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+                writes++;
+            }
+        } catch (IOException e) {
+            if (running) e.printStackTrace();
+            close();
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /** @return messages passed to {@code send} so far */
+    public synchronized long getMessagesSent() {
+        return batch.getMessages();
+    }
+
+    /** @return position updates merged into a newer one before being written */
+    public synchronized long getMessagesCoalesced() {
+        return batch.getCoalesced();
+    }
+
+    /** @return socket writes issued so far */
+    public synchronized long getWrites() {
+        return writes;
+    }
+
+    /**
+     * Sends a free-text message ({@link WireProtocol#TYPE_TEXT}).
+     *
+     * @param msg text to send
+     */
+    public synchronized void send(String msg) {
+        send(outMsg.clear(WireProtocol.TYPE_TEXT).setText(msg));
     }
 
     /**
      * Sends a tile-based position packet.
      *
-     * Format: {@code POS,row,col,direction}
+     * Format: {@link WireProtocol#TYPE_POS} with fields {@code row, col, direction}
      *
      * @param row hero/drone row index
      * @param col hero/drone col index
      * @param dir movement direction string
      */
-    public void sendPosition(int row, int col, String dir) {
-        send(String.format("POS,%d,%d,%s", row, col, dir));
+    public synchronized void sendPosition(int row, int col, String dir) {
+        send(outMsg.clear(WireProtocol.TYPE_POS).add(row).add(col).add(WireProtocol.dirCode(dir)));
     }
 
     /**
      * Sends pixel-based position (higher resolution).
      *
-     * Format: {@code PIX,x,y,direction}
+     * Format: {@link WireProtocol#TYPE_PIX} with fields {@code x, y, direction}
      *
      * @param x   pixel X
      * @param y   pixel Y
      * @param dir direction string
      */
-    public void sendPixelPosition(int x, int y, String dir) {
-        send(String.format("PIX,%d,%d,%s", x, y, dir));
+    public synchronized void sendPixelPosition(int x, int y, String dir) {
+        send(outMsg.clear(WireProtocol.TYPE_PIX).add(x).add(y).add(WireProtocol.dirCode(dir)));
     }
 
     /**
      * Sends a bomb placement event.
      *
-     * Format: {@code BOMB,row,col}
+     * Format: {@link WireProtocol#TYPE_BOMB} with fields {@code row, col}
      *
      * @param row tile row where the bomb is placed
      * @param col tile column where the bomb is placed
      */
-    public void sendBomb(int row, int col) {
-        send(String.format("BOMB,%d,%d", row, col));
+    public synchronized void sendBomb(int row, int col) {
+        send(outMsg.clear(WireProtocol.TYPE_BOMB).add(row).add(col));
     }
 
     /**
      * Closes the client connection, stops the listener, and frees all resources.
      */
+    @Override
     public void close() {
         running = false;
         try {
-            if (out != null) out.close();
-            if (in != null) in.close();
-            if (socket != null) socket.close();
+            if (channel != null) channel.close();
         } catch (IOException ignored) {}
 
         exec.shutdownNow();
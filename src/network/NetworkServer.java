@@ -1,49 +1,110 @@
 package network;
 
-import java.io.*;
-import java.net.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
 
 /**
- * A very simple single-client TCP server designed for multiplayer testing
- * in Bomberman-style games.
+ * Non-blocking multi-client TCP server for multiplayer games.
  *
- * <p>Responsibilities:</p>
+ * <p>A single event-loop thread runs a {@link Selector} over the listening
+ * channel and every client {@link SocketChannel}, so hundreds of clients cost
+ * one thread. On that thread the server:</p>
  * <ul>
- *     <li>Open a listening port</li>
- *     <li>Accept one incoming client</li>
- *     <li>Print or relay any received messages</li>
+ *     <li>Accepts new clients and wraps them in a {@link Connection}</li>
+ *     <li>Reads into each connection's own buffer and decodes
+ *         {@link WireProtocol} frames in place</li>
+ *     <li>Dispatches every message to the {@link ServerListener}</li>
+ *     <li>Writes each connection's sealed batches, waiting for
+ *         {@code OP_WRITE} only when the socket buffer is full</li>
  * </ul>
  *
- * This implementation is intentionally minimal. It can be expanded later
- * to support multiple clients or synchronized game state updates.
+ * <p>Outgoing messages are batched per connection and tick: {@link #flush()},
+ * called by the game at the end of a tick, seals every connection's batch so
+ * the whole tick goes out in one write per client. Messages sent from
+ * listener callbacks are flushed at the end of the event-loop iteration.</p>
+ *
+ * <p>Without a listener the server acts as a LAN relay: every message is
+ * printed and forwarded to all other connected clients.</p>
  *
  * Usage:
  * <pre>
  * NetworkServer server = new NetworkServer(55555);
+ * server.setListener((conn, msg) -&gt; server.broadcast(msg, conn));
  * server.start();
  * </pre>
  */
-public class NetworkServer {
+public class NetworkServer extends ConnectionHost implements ServerTransport {
 
     /** Port number this server listens on. */
     private final int port;
 
-    /** Underlying server socket. */
-    private ServerSocket serverSocket;
+    /** Receives connection events and messages, or null for the default relay. */
+    private volatile ServerListener listener;
 
-    /** Whether the server should continue accepting/reading messages. */
+    /** Whether the event loop should keep running. */
     private volatile boolean running = false;
 
-    /** Connected client socket (single connection). */
-    private Socket clientSocket;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private SelectionKey acceptKey;
+
+    /** How long to stop accepting after accept() fails, e.g. when out of file descriptors. */
+    private static final long ACCEPT_BACKOFF_NANOS = 100_000_000L;
+
+    /** When to accept again after a failure, or 0 while accepting (event loop only). */
+    private long acceptResumeNanos;
+
+    /** Event-loop thread. */
+    private Thread loop;
+
+    /** Connected clients by id (event loop only). */
+    private final Map<Integer, Connection> clients = new LinkedHashMap<>();
+
+    /** Read-only view of {@link #clients} for callbacks. */
+    private final Collection<Connection> clientView = Collections.unmodifiableCollection(clients.values());
+
+    /** Connections with a non-empty batch since the last flush. */
+    private final Queue<Connection> dirty = new ConcurrentLinkedQueue<>();
+
+    /** Set by {@link #flush()} (or a send on the loop) to seal the dirty batches. */
+    private volatile boolean flushRequested;
+
+    /** Connections asked to close from outside the loop. */
+    private final Queue<Connection> pendingClose = new ConcurrentLinkedQueue<>();
+
+    /** Connections given up from a callback, moved once decoding has returned (event loop only). */
+    private final Queue<HandOff> handOffs = new ArrayDeque<>();
 
-    /** Thread for accepting the client and listening to messages. */
-    private ExecutorService exec = Executors.newSingleThreadExecutor();
+    private int nextId = 1;
+
+    private static final class HandOff {
+        final Connection conn;
+        final Consumer<Connection> to;
+
+        HandOff(Connection conn, Consumer<Connection> to) {
+            this.conn = conn;
+            this.to = to;
+        }
+    }
 
     /**
-     * Creates a new socket server listening on the given port.
+     * Creates a new server listening on the given port.
      *
      * @param port TCP port to bind to
      */
@@ -52,56 +113,282 @@ public class NetworkServer {
     }
 
     /**
-     * Starts the server asynchronously.
-     * <p>
-     * The server:
-     * <ul>
-     *     <li>Binds the port</li>
-     *     <li>Waits for one client to connect</li>
-     *     <li>Prints all incoming messages to console</li>
-     * </ul>
+     * Sets the handler for connection events and messages. Must be set before
+     * {@link #start()} to see every message.
+     *
+     * @param listener the handler, or null to relay messages between clients
+     */
+    @Override
+    public void setListener(ServerListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Binds the port and starts the event loop thread.
      */
+    @Override
     public void start() {
-        exec.submit(() -> {
-            try {
-                serverSocket = new ServerSocket(port);
-                running = true;
+        try {
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.configureBlocking(false);
+            serverChannel.bind(new InetSocketAddress(port));
+            acceptKey = serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            e.printStackTrace();
+            stop();
+            return;
+        }
 
-                System.out.println("Server listening on port " + port);
+        running = true;
+        loop = new Thread(this::runLoop, "net-server-" + port);
+        loop.setDaemon(true);
+        loop.start();
+        System.out.println("Server listening on port " + port);
+    }
 
-                // Accept exactly one client
-                clientSocket = serverSocket.accept();
-                System.out.println("Client connected: " + clientSocket.getInetAddress());
+    /**
+     * Returns the connected clients. Only valid on the event-loop thread
+     * (i.e. inside {@link ServerListener} callbacks).
+     *
+     * @return unmodifiable view of the open connections
+     */
+    @Override
+    public Collection<Connection> getClients() {
+        return clientView;
+    }
 
-                BufferedReader in = new BufferedReader(
-                        new InputStreamReader(clientSocket.getInputStream()));
+    /**
+     * Sends a message to every connected client except {@code except}. The
+     * message is encoded once and the frame shared by all recipients; position
+     * updates are instead coalesced per sender in each recipient's batch. Only
+     * valid on the event-loop thread.
+     *
+     * @param msg    message to send; not retained
+     * @param except connection to skip (usually the sender), or null
+     */
+    @Override
+    public void broadcast(Message msg, Connection except) {
+        if (clients.isEmpty()) return;
+        if (OutboundBatch.isCoalesced(msg.getType())) {
+            // positions are coalesced per sender, so they cannot share one frame
+            for (Connection c : clients.values()) {
+                if (c != except) c.send(msg, except);
+            }
+            return;
+        }
+        ByteBuffer frame = ByteBuffer.allocate(WireProtocol.frameSize(msg));
+        WireProtocol.encode(msg, frame);
+        frame.flip();
+        for (Connection c : clients.values()) {
+            if (c != except) c.sendEncoded(frame);
+        }
+    }
 
-                String line;
-                while (running && (line = in.readLine()) != null) {
-                    System.out.println("From client: " + line);
-                    // TODO: Game logic could be added here.
-                }
+    /**
+     * Ends the current tick: every connection's batch is sealed and written
+     * by the event loop in one write. Thread-safe; call once per tick after
+     * the tick's messages have been sent.
+     */
+    @Override
+    public void flush() {
+        flushRequested = true;
+        if (Thread.currentThread() != loop && selector != null) selector.wakeup();
+    }
 
-            } catch (IOException e) {
-                if (running) e.printStackTrace();
-            } finally {
-                stop();
-            }
-        });
+    /**
+     * Gives up a connection without closing it, so another loop can adopt it
+     * (see {@link LobbyServer}). No callback is made. Only valid inside a
+     * {@link ServerListener} callback: no further frames are decoded, and once
+     * decoding has returned the connection is detached and passed to
+     * {@code to}, which must not touch its read buffer before that.
+     *
+     * @param conn an open connection of this server
+     * @param to   receives the detached connection, on the event-loop thread
+     */
+    void handOff(Connection conn, Consumer<Connection> to) {
+        conn.leave();
+        handOffs.add(new HandOff(conn, to));
+    }
+
+    /** Detaches the connections handed off during the last read and passes them on. */
+    private void completeHandOffs() {
+        HandOff h;
+        while ((h = handOffs.poll()) != null) {
+            // even if it closed meanwhile: the receiver holds a place for it and must release it
+            clients.remove(h.conn.getId());
+            h.conn.detach();
+            h.to.accept(h.conn);
+        }
     }
 
     /**
-     * Stops the server and releases all network resources.
-     * Also terminates the background executor.
+     * Stops the server and closes every connection.
      */
+    @Override
     public void stop() {
         running = false;
+        if (selector != null) selector.wakeup();
+        if (loop == null || loop == Thread.currentThread()) {
+            closeAll();
+        }
+    }
+
+    // ---------------------------------------------------------------
+    // event loop
+    // ---------------------------------------------------------------
+
+    private void runLoop() {
         try {
-            if (clientSocket != null) clientSocket.close();
-            if (serverSocket != null) serverSocket.close();
-        } catch (IOException ignored) {}
+            while (running) {
+                if (acceptResumeNanos == 0) {
+                    selector.select();
+                } else {
+                    long wait = acceptResumeNanos - System.nanoTime();
+                    if (wait > 0) selector.select((wait + 999_999) / 1_000_000);
+                    if (System.nanoTime() >= acceptResumeNanos) {
+                        acceptResumeNanos = 0;
+                        acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+                    }
+                }
+                if (!running) break;
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) continue;
+
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection conn = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable() && !conn.readFrames(dispatcher())) {
+                            drop(conn);
+                            continue;
+                        }
+                        if (key.isValid() && key.isWritable()) writeOut(conn);
+                    } catch (IOException e) {
+                        drop(conn);
+                    } catch (RuntimeException e) {
+                        // one broken client (or listener bug) must not stop the loop for everyone
+                        System.err.println(conn + " dropped: " + e);
+                        drop(conn);
+                    }
+                }
+                completeHandOffs();
+
+                Connection c;
+                while ((c = pendingClose.poll()) != null) {
+                    if (c.host() == this) drop(c);
+                }
+                if (flushRequested) {
+                    flushRequested = false;
+                    while ((c = dirty.poll()) != null) {
+                        if (c.host() != this || !c.seal()) continue; // handed off: the new owner writes
+                        try {
+                            writeOut(c);
+                        } catch (IOException e) {
+                            drop(c);
+                        }
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) e.printStackTrace();
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void accept() {
+        while (true) {
+            SocketChannel ch;
+            try {
+                ch = serverChannel.accept();
+            } catch (IOException e) {
+                // typically out of file descriptors: the key stays ready, so back off instead of spinning
+                System.err.println("Accept failed: " + e.getMessage());
+                acceptKey.interestOps(0);
+                acceptResumeNanos = System.nanoTime() + ACCEPT_BACKOFF_NANOS;
+                return;
+            }
+            if (ch == null) return;
 
-        exec.shutdownNow();
+            SelectionKey key;
+            try {
+                ch.configureBlocking(false);
+                ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                key = ch.register(selector, SelectionKey.OP_READ);
+            } catch (IOException e) {
+                // e.g. reset right after connecting: only this client is lost
+                System.err.println("Could not set up accepted client: " + e.getMessage());
+                try {
+                    ch.close();
+                } catch (IOException ignored) {}
+                continue;
+            }
+            Connection conn = new Connection(nextId++, this, ch, key);
+            key.attach(conn);
+            clients.put(conn.getId(), conn);
+            System.out.println("Client connected: " + conn);
+            dispatcher().onConnect(conn);
+        }
+    }
+
+    /** Flushes a connection and waits for OP_WRITE only while output is left. */
+    private void writeOut(Connection conn) throws IOException {
+        if (!conn.isOpen()) return;
+        boolean done = conn.flush();
+        SelectionKey key = conn.key();
+        int ops = done ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+        if (key.isValid() && key.interestOps() != ops) key.interestOps(ops);
+    }
+
+    private void drop(Connection conn) {
+        if (!conn.closeChannel()) return;
+        clients.remove(conn.getId());
+        System.out.println("Client disconnected: " + conn);
+        dispatcher().onDisconnect(conn);
+    }
+
+    private void closeAll() {
+        for (Connection c : clients.values().toArray(new Connection[0])) drop(c);
+        try {
+            if (serverChannel != null) serverChannel.close();
+            if (selector != null) selector.close();
+        } catch (IOException ignored) {}
         System.out.println("Server stopped.");
     }
+
+    /** @return the configured listener, or the default print-and-relay behaviour */
+    private ServerListener dispatcher() {
+        ServerListener l = listener;
+        if (l != null) return l;
+        return relay;
+    }
+
+    private final ServerListener relay = (conn, msg) -> {
+        System.out.println("From client " + conn.getId() + ": " + msg);
+        broadcast(msg, conn);
+    };
+
+    // ---------------------------------------------------------------
+    // requests from Connection (any thread)
+    // ---------------------------------------------------------------
+
+    @Override
+    void markDirty(Connection conn) {
+        dirty.add(conn);
+        // replies from listener callbacks go out at the end of this loop iteration
+        if (Thread.currentThread() == loop) flushRequested = true;
+    }
+
+    @Override
+    void requestClose(Connection conn) {
+        pendingClose.add(conn);
+        if (Thread.currentThread() != loop && selector != null) selector.wakeup();
+    }
 }
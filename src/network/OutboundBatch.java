@@ -0,0 +1,157 @@
+package network;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Outgoing messages of one connection for one tick, packed so the whole tick
+ * goes out in a single write.
+ *
+ * <p>Frames are appended to one growing buffer in send order. Position
+ * updates ({@link WireProtocol#TYPE_POS} and {@link WireProtocol#TYPE_PIX})
+ * are coalesced instead: a newer one replaces the pending one of the same
+ * type and origin, and the latest of each is appended when the batch is
+ * sealed. A position sent several times within a tick therefore costs one
+ * frame, and stale positions never queue up behind each other. The origin
+ * tells apart positions relayed for different players (a server relaying
+ * client A's and client B's positions to client C sends both); it is the
+ * sender's connection id, or {@link #LOCAL} for this end's own.</p>
+ *
+ * <p>Not thread-safe; owners synchronize on the batch.</p>
+ */
+final class OutboundBatch {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private ByteBuffer buf = ByteBuffer.allocate(INITIAL_CAPACITY);
+
+    /** Origin of the positions this end sends about itself. */
+    static final int LOCAL = 0;
+
+    // latest pending position per (origin, type), in order of first arrival; messages are reused
+    private int[] slotKeys = new int[4];
+    private Message[] slots = new Message[4];
+    private int slotCount;
+
+    private long messages, coalesced;
+
+    /** @return true if nothing is pending */
+    boolean isEmpty() {
+        return buf.position() == 0 && slotCount == 0;
+    }
+
+    /**
+     * Adds a message of this end, coalescing positions.
+     *
+     * @param msg message to add; not retained
+     */
+    void add(Message msg) {
+        add(msg, LOCAL);
+    }
+
+    /**
+     * Adds a message, coalescing positions with earlier ones of the same origin.
+     *
+     * @param msg    message to add; not retained
+     * @param origin id of the connection the message came from, or {@link #LOCAL}
+     */
+    void add(Message msg, int origin) {
+        messages++;
+        if (!isCoalesced(msg.getType())) {
+            ensure(WireProtocol.frameSize(msg));
+            WireProtocol.encode(msg, buf);
+            return;
+        }
+        int key = origin * 2 + (msg.getType() == WireProtocol.TYPE_PIX ? 1 : 0);
+        for (int i = 0; i < slotCount; i++) {
+            if (slotKeys[i] == key) {
+                slots[i].set(msg);
+                coalesced++;
+                return;
+            }
+        }
+        if (slotCount == slots.length) {
+            slotKeys = Arrays.copyOf(slotKeys, slotCount * 2);
+            slots = Arrays.copyOf(slots, slotCount * 2);
+        }
+        if (slots[slotCount] == null) slots[slotCount] = new Message();
+        slotKeys[slotCount] = key;
+        slots[slotCount++].set(msg);
+    }
+
+    /** @return true if messages of this type replace pending ones of the same origin */
+    static boolean isCoalesced(int type) {
+        return type == WireProtocol.TYPE_POS || type == WireProtocol.TYPE_PIX;
+    }
+
+    /**
+     * Adds a frame that is already encoded (e.g. one broadcast to many connections).
+     *
+     * @param frame the frame, from position to limit; its position is not changed
+     */
+    void addEncoded(ByteBuffer frame) {
+        messages++;
+        ensure(frame.remaining());
+        buf.put(buf.position(), frame, frame.position(), frame.remaining());
+        buf.position(buf.position() + frame.remaining());
+    }
+
+    /**
+     * Appends the pending positions and copies the whole batch into a new
+     * buffer of exactly its size, then clears the batch.
+     *
+     * @return the batch in read mode
+     */
+    ByteBuffer seal() {
+        appendPositions();
+        buf.flip();
+        ByteBuffer out = ByteBuffer.allocate(buf.remaining());
+        out.put(buf).flip();
+        buf.clear();
+        return out;
+    }
+
+    /**
+     * Appends the pending positions and returns the internal buffer in read
+     * mode. The caller must write it out and then call {@link #clear()}.
+     *
+     * @return the batch in read mode
+     */
+    ByteBuffer sealInPlace() {
+        appendPositions();
+        buf.flip();
+        return buf;
+    }
+
+    /** Empties the batch. */
+    void clear() {
+        buf.clear();
+        slotCount = 0;
+    }
+
+    private void appendPositions() {
+        for (int i = 0; i < slotCount; i++) {
+            ensure(WireProtocol.frameSize(slots[i]));
+            WireProtocol.encode(slots[i], buf);
+        }
+        slotCount = 0;
+    }
+
+    private void ensure(int bytes) {
+        if (buf.remaining() >= bytes) return;
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + bytes));
+        buf.flip();
+        bigger.put(buf);
+        buf = bigger;
+    }
+
+    /** @return messages added since creation */
+    long getMessages() {
+        return messages;
+    }
+
+    /** @return position updates replaced by a newer one before being sent */
+    long getCoalesced() {
+        return coalesced;
+    }
+}
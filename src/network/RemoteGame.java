@@ -0,0 +1,168 @@
+package network;
+
+import controller.KeyHandler;
+import model.GameModel;
+import model.StateSnapshot;
+
+import java.net.ProtocolException;
+import java.util.function.Function;
+
+/**
+ * Client of a {@link GameServer}: turns a local {@link GameModel} into a
+ * replica that renders the server's state.
+ *
+ * <p>Installed with {@link GameModel#setRemote}, it replaces the local game
+ * logic. Every tick it reads the keys, moves the local hero at once through
+ * {@link HeroPredictor} and sends the input. The network thread only copies
+ * incoming messages into an {@link InboundQueue}; the game thread drains it,
+ * decodes and acknowledges the snapshots, and applies the newest one to the
+ * model: everything except the hero's position, which is reconciled against
+ * the prediction instead. Drones, bombs, tiles and score are simply what the
+ * server says.</p>
+ *
+ * <p>Every snapshot that arrived since the last tick is decoded, so delta
+ * baselines stay complete, but only the newest is applied. The input and the
+ * acknowledgement of a tick go out in one batch.</p>
+ *
+ * <p>Only the client the server lets steer the hero predicts and sends input.
+ * Watchers send acknowledgements only and show the hero where the server
+ * says it is. Snapshots report which of the two a client is, so a watcher
+ * takes over as soon as the controller leaves.</p>
+ *
+ * Usage:
+ * <pre>
+ * RemoteGame remote = new RemoteGame(host, 55555);
+ * if (remote.connect()) gameModel.setRemote(remote);
+ * </pre>
+ */
+public class RemoteGame implements GameModel.Remote {
+
+    /** Messages received but not processed yet; a few ticks' worth of snapshots. */
+    private static final int INBOUND_CAPACITY = 64;
+
+    private final ClientTransport client;
+    private final InboundQueue inbound = new InboundQueue(INBOUND_CAPACITY);
+
+    // game thread
+    private final MultiplayerListener handler = this::onNetworkMessage;
+    private final SnapshotDecoder decoder = new SnapshotDecoder();
+    private final Message ack = new Message();
+    private final StateSnapshot current = new StateSnapshot();
+    private int currentInputSeq;
+    private boolean fresh;
+    /** Whether the newest snapshot said this client steers the hero. */
+    private boolean controlling;
+    private final HeroPredictor predictor = new HeroPredictor();
+    private final Message input = new Message();
+    private long snapshotsApplied;
+
+    /**
+     * Creates a client for a game server; call {@link #connect()} next.
+     *
+     * @param host server host name or IP
+     * @param port server port
+     */
+    public RemoteGame(String host, int port) {
+        this(listener -> new NetworkClient(host, port, listener));
+    }
+
+    /**
+     * Creates a client on any transport, e.g. a {@link LoopbackClient};
+     * call {@link #connect()} next.
+     *
+     * @param transport creates the transport for the given message listener
+     */
+    public RemoteGame(Function<MultiplayerListener, ClientTransport> transport) {
+        this.client = transport.apply(inbound);
+    }
+
+    /**
+     * Connects to the server.
+     *
+     * @return true if connected
+     */
+    public boolean connect() {
+        return client.connect();
+    }
+
+    /**
+     * Asks a {@link LobbyServer} for a place in any room with space. Call
+     * after {@link #connect()} and before installing the replica; the room's
+     * snapshots then arrive as from a {@link GameServer}.
+     */
+    public void requestMatch() {
+        client.send(new Message().clear(WireProtocol.TYPE_LOBBY).add(WireProtocol.LOBBY_MATCH));
+        client.flush();
+    }
+
+    /**
+     * Disconnects from the server.
+     */
+    public void close() {
+        client.close();
+    }
+
+    /** Game thread, for each queued message: decode and keep the newest snapshot. */
+    private void onNetworkMessage(Message msg) {
+        if (msg.getType() != WireProtocol.TYPE_SNAPSHOT) return;
+        StateSnapshot s;
+        try {
+            s = decoder.apply(msg);
+        } catch (ProtocolException e) {
+            System.err.println("Bad snapshot: " + e.getMessage());
+            return;
+        }
+        if (s == null) return;
+        current.copyFrom(s);
+        currentInputSeq = msg.getInt(4);
+        controlling = msg.getInt(5) != 0;
+        fresh = true;
+    }
+
+    /**
+     * Game thread: predicts and sends this tick's input (if this client steers
+     * the hero), processes the messages received since the last tick and
+     * applies the newest snapshot, if one arrived.
+     *
+     * @param gm the replica model
+     */
+    @Override
+    public void tick(GameModel gm) {
+        if (controlling) {
+            KeyHandler keyH = gm.getKeyHandler();
+            int bits = HeroPredictor.readInput(keyH);
+            client.send(predictor.step(gm.hero, bits, input));
+        }
+        inbound.drain(handler);
+        if (fresh) client.send(decoder.writeAck(ack));
+        client.flush();
+
+        if (!fresh) return;
+        fresh = false;
+        int inputSeq = currentInputSeq;
+        current.applyTo(gm, !controlling);
+        snapshotsApplied++;
+        if (!controlling) return;
+
+        int h = current.indexOf(StateSnapshot.key(StateSnapshot.KIND_HERO, 0));
+        if (h >= 0) {
+            predictor.reconcile(gm.hero, inputSeq, current.getEntityField(h, StateSnapshot.F_X),
+                    current.getEntityField(h, StateSnapshot.F_Y), current.getEntityField(h, StateSnapshot.F_DIR));
+        }
+    }
+
+    /** @return the hero predictor (for correction statistics) */
+    public HeroPredictor getPredictor() {
+        return predictor;
+    }
+
+    /** @return messages dropped because the game thread fell behind */
+    public long getMessagesDropped() {
+        return inbound.getDropped();
+    }
+
+    /** @return snapshots applied to the model so far */
+    public long getSnapshotsApplied() {
+        return snapshotsApplied;
+    }
+}
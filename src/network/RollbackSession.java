@@ -0,0 +1,270 @@
+package network;
+
+import controller.KeyHandler;
+import model.GameModel;
+import model.GameState;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+
+/**
+ * Two-player lockstep with rollback: both peers run the full simulation and
+ * exchange only their input, so a match costs a few bytes per tick and
+ * nobody waits for a server round trip.
+ *
+ * <p>Installed with {@link GameModel#setRemote}, it replaces the model's own
+ * tick. Local input is scheduled {@value #INPUT_DELAY} ticks ahead, which
+ * hides most of the network latency. When a tick must be simulated before
+ * the other peer's input for it has arrived, that input is predicted to be
+ * the same as the last one received. Every simulated tick starts with a
+ * {@link GameState} save, so when the real input turns out to differ from
+ * the prediction the model is restored to that tick and the ticks since are
+ * simulated again with the corrected input, all within one game tick. A peer
+ * that gets more than {@value #MAX_PREDICTION} ticks ahead of the other's
+ * input stops advancing until it catches up.</p>
+ *
+ * <p>The game has one hero, so the two players share it: player 0 steers the
+ * hero and places bombs, player 1 steers the walking bomb and detonates it.
+ * Each peer only sends the bits of its own role.</p>
+ *
+ * <p>Both peers must create their model with the same seed
+ * ({@link GameModel#GameModel(KeyHandler, long)}) and the same tick rate, and
+ * install the session before the first tick; the simulation is deterministic
+ * from there. Inputs travel on an unreliable stream and every message repeats
+ * all input the other peer has not confirmed yet, so lost packets cost no
+ * resends. {@link #getConfirmedChecksum()} can be compared between peers to
+ * detect a desync.</p>
+ *
+ * <p>Everything runs on the game thread, including the transport.</p>
+ *
+ * Usage:
+ * <pre>
+ * GameModel gm = new GameModel(keyH, sharedSeed);
+ * gm.setRemote(new RollbackSession(new UdpLink(55556), otherPeerAddress, 0));
+ * </pre>
+ */
+public class RollbackSession implements GameModel.Remote {
+
+    /** Ticks between reading local input and simulating it. */
+    public static final int INPUT_DELAY = 2;
+
+    /** Ticks the simulation may run ahead of the other peer's input. */
+    public static final int MAX_PREDICTION = 8;
+
+    /** Input bits each player contributes. */
+    private static final int[] ROLE_BITS = {
+            WireProtocol.INPUT_UP | WireProtocol.INPUT_DOWN | WireProtocol.INPUT_LEFT
+                    | WireProtocol.INPUT_RIGHT | WireProtocol.INPUT_PLACE,
+            WireProtocol.INPUT_BOMB_UP | WireProtocol.INPUT_BOMB_DOWN | WireProtocol.INPUT_BOMB_LEFT
+                    | WireProtocol.INPUT_BOMB_RIGHT | WireProtocol.INPUT_DETONATE
+    };
+
+    private static final int MOVEMENT_BITS = ~(WireProtocol.INPUT_PLACE | WireProtocol.INPUT_DETONATE);
+
+    private static final int CAPACITY = 256;
+    private static final int MASK = CAPACITY - 1;
+    private static final int STATES = 16;
+    private static final int STREAM = 0;
+
+    /** Inputs per message, after the two header fields. */
+    private static final int MAX_INPUTS_PER_MESSAGE = Message.MAX_FIELDS - 2;
+
+    private final UdpTransport transport;
+    private final UdpPeer peer;
+    private final int localMask, remoteMask;
+
+    // input per tick (index tick & MASK)
+    private final int[] localInput = new int[CAPACITY];
+    private final int[] remoteInput = new int[CAPACITY];
+    private final int[] predictedInput = new int[CAPACITY];
+
+    /** Newest tick with local input scheduled. */
+    private int localLast = INPUT_DELAY - 1;
+    /** Newest tick up to which the other peer's input has all arrived. */
+    private int remoteConfirmed = INPUT_DELAY - 1;
+    /** Newest tick of our input the other peer has confirmed. */
+    private int remoteAcked = INPUT_DELAY - 1;
+
+    /** Next tick to simulate. */
+    private int tick;
+    /** Earliest simulated tick whose prediction was wrong, or -1. */
+    private int rollbackTo = -1;
+
+    // state saved before simulating each tick (index tick % STATES)
+    private GameState[] states;
+    private GameModel model;
+
+    private final Message out = new Message();
+
+    private long rollbacks, resimulatedTicks, stalls;
+
+    /**
+     * Creates a session with the other peer.
+     *
+     * @param link   where datagrams go (a {@link UdpLink}, or a {@link LossyLink} for tests)
+     * @param remote address of the other peer
+     * @param player this peer's player number, 0 (hero) or 1 (walking bomb)
+     * @throws IllegalArgumentException if {@code player} is not 0 or 1
+     */
+    public RollbackSession(DatagramLink link, SocketAddress remote, int player) {
+        if (player != 0 && player != 1) throw new IllegalArgumentException("player must be 0 or 1");
+        this.localMask = ROLE_BITS[player];
+        this.remoteMask = ROLE_BITS[1 - player];
+        this.transport = new UdpTransport(link, this::onMessage);
+        this.peer = transport.connect(remote);
+    }
+
+    /**
+     * Closes the link.
+     */
+    public void close() {
+        transport.close();
+    }
+
+    private void onMessage(UdpPeer from, Message msg, boolean reliable) {
+        if (msg.getType() != WireProtocol.TYPE_LOCKSTEP || msg.getFieldCount() < 2) return;
+        remoteAcked = Math.max(remoteAcked, msg.getInt(0));
+        int first = msg.getInt(1);
+        for (int k = 2; k < msg.getFieldCount(); k++) {
+            int t = first + k - 2;
+            if (t <= remoteConfirmed) continue; // repeated
+            if (t != remoteConfirmed + 1 || t - tick >= CAPACITY) break; // gap: wait for the resend
+            int bits = msg.getInt(k) & remoteMask;
+            remoteInput[t & MASK] = bits;
+            remoteConfirmed = t;
+            if (t < tick && bits != predictedInput[t & MASK] && (rollbackTo < 0 || t < rollbackTo)) {
+                rollbackTo = t;
+            }
+        }
+    }
+
+    /**
+     * Game thread: receives the other peer's input, rolls back if a
+     * prediction was wrong, simulates the next tick and sends the local input.
+     *
+     * @param gm the model, which must have been created with the shared seed
+     */
+    @Override
+    public void tick(GameModel gm) {
+        if (states == null) {
+            model = gm;
+            states = new GameState[STATES];
+            for (int i = 0; i < STATES; i++) states[i] = new GameState(gm);
+        } else if (gm != model) {
+            throw new IllegalArgumentException("session belongs to another model");
+        }
+
+        try {
+            transport.poll();
+        } catch (IOException e) {
+            System.err.println("Lockstep receive failed: " + e.getMessage());
+        }
+
+        KeyHandler keyH = gm.getKeyHandler();
+        if (rollbackTo >= 0) {
+            rollbacks++;
+            int from = rollbackTo;
+            rollbackTo = -1;
+            states[from % STATES].restore(gm);
+            for (int t = from; t < tick; t++) {
+                simulate(gm, keyH, t);
+                resimulatedTicks++;
+            }
+        }
+
+        if (tick - remoteConfirmed > MAX_PREDICTION) {
+            stalls++; // too far ahead: wait, and leave the keys for a later tick
+        } else {
+            int live = HeroPredictor.readInput(keyH);
+            localLast++;
+            localInput[localLast & MASK] = live & localMask;
+            simulate(gm, keyH, tick);
+            tick++;
+            // the simulation consumed the key flags: put back what is still held
+            HeroPredictor.writeInput(keyH, live & MOVEMENT_BITS);
+            keyH.placePressed = false;
+            keyH.detonatePressed = false;
+        }
+
+        sendInput();
+    }
+
+    /** Saves the state before tick {@code t}, then simulates it with both players' input. */
+    private void simulate(GameModel gm, KeyHandler keyH, int t) {
+        states[t % STATES].save(gm);
+        int remote;
+        if (t <= remoteConfirmed) {
+            remote = remoteInput[t & MASK];
+        } else {
+            // held keys stay held; a press is not repeated
+            remote = remoteInput[remoteConfirmed & MASK] & MOVEMENT_BITS;
+            predictedInput[t & MASK] = remote;
+        }
+        keyH.placePressed = false;
+        keyH.detonatePressed = false;
+        HeroPredictor.writeInput(keyH, localInput[t & MASK] | remote);
+        gm.simulate(gm.getTickSeconds());
+    }
+
+    /** Sends the local input the other peer has not confirmed, oldest first. */
+    private void sendInput() {
+        int first = remoteAcked + 1;
+        int last = Math.min(localLast, first + MAX_INPUTS_PER_MESSAGE - 1);
+        out.clear(WireProtocol.TYPE_LOCKSTEP).add(remoteConfirmed).add(first);
+        for (int t = first; t <= last; t++) out.add(localInput[t & MASK]);
+        peer.sendUnreliable(STREAM, out);
+        try {
+            transport.flush();
+        } catch (IOException e) {
+            System.err.println("Lockstep send failed: " + e.getMessage());
+        }
+    }
+
+    // ---------------------------------------------------------------
+    // metrics
+    // ---------------------------------------------------------------
+
+    /** @return ticks simulated so far (not counting re-simulation) */
+    public int getTick() {
+        return tick;
+    }
+
+    /**
+     * @return newest tick whose state depends on confirmed input only; the
+     *         state at its start is what {@link #getConfirmedChecksum()} hashes
+     */
+    public int getConfirmedTick() {
+        return Math.min(remoteConfirmed + 1, tick - 1);
+    }
+
+    /**
+     * Hashes the state at the start of {@link #getConfirmedTick()}. Two peers
+     * that report different checksums for the same tick have desynced.
+     *
+     * @return the checksum, or 0 before the first tick
+     */
+    public long getConfirmedChecksum() {
+        int t = getConfirmedTick();
+        return (t < 0) ? 0 : states[t % STATES].checksum();
+    }
+
+    /** @return number of times a wrong prediction rolled the model back */
+    public long getRollbacks() {
+        return rollbacks;
+    }
+
+    /** @return ticks simulated again after rollbacks */
+    public long getResimulatedTicks() {
+        return resimulatedTicks;
+    }
+
+    /** @return game ticks spent waiting for the other peer's input */
+    public long getStalls() {
+        return stalls;
+    }
+
+    /** @return the transport peer (round-trip time, packet counts) */
+    public UdpPeer getPeer() {
+        return peer;
+    }
+}
@@ -0,0 +1,61 @@
+package network;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A match hosted by a {@link LobbyServer}, pinned to one {@link RoomLoop}
+ * that ticks it and owns its connections.
+ *
+ * <p>The lobby thread reserves a place before handing a player over and the
+ * loop releases it when the player leaves; the room closes when the last
+ * place is released. Both sides use {@link #tryReserve} and {@link #leave},
+ * so a player can never be sent to a room that has just closed.</p>
+ */
+final class Room {
+
+    final int id;
+    final RoomLoop loop;
+    final Match match;
+
+    /** Players in the room or on their way to it; -1 once closed. */
+    private final AtomicInteger occupancy = new AtomicInteger();
+
+    Room(int id, RoomLoop loop, int tickRate) {
+        this.id = id;
+        this.loop = loop;
+        this.match = new Match(tickRate);
+    }
+
+    /**
+     * Takes a place in the room.
+     *
+     * @param capacity maximum number of players
+     * @return false if the room is full or closed
+     */
+    boolean tryReserve(int capacity) {
+        while (true) {
+            int n = occupancy.get();
+            if (n < 0 || n >= capacity) return false;
+            if (occupancy.compareAndSet(n, n + 1)) return true;
+        }
+    }
+
+    /**
+     * Releases a place.
+     *
+     * @return true if it was the last one and the room is now closed
+     */
+    boolean leave() {
+        return occupancy.decrementAndGet() == 0 && occupancy.compareAndSet(0, -1);
+    }
+
+    /** @return players in the room or joining it */
+    int getPlayers() {
+        return Math.max(0, occupancy.get());
+    }
+
+    /** @return true once the last player has left */
+    boolean isClosed() {
+        return occupancy.get() < 0;
+    }
+}
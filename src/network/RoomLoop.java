@@ -0,0 +1,329 @@
+package network;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One event-loop thread of a {@link LobbyServer}: ticks the rooms assigned to
+ * it and does all I/O for their players.
+ *
+ * <p>A room's game and its players' connections live on exactly one loop,
+ * so nothing in a room is ever shared between threads and a tick needs no
+ * locking. The loop waits on its {@link Selector} until the next tick is due.
+ * Then it ticks every room in turn and writes each connection's batch once.
+ * Players arrive already connected: the lobby
+ * {@linkplain NetworkServer#handOff hands} their connection over, and the
+ * loop registers it with its own selector.</p>
+ *
+ * <p>The loop keeps tick-load metrics: how much of each tick period went into
+ * simulating and encoding, averaged over about a second, and how many ticks
+ * were skipped because the loop fell behind.</p>
+ */
+public final class RoomLoop extends ConnectionHost {
+
+    /** A connection handed over by the lobby, with the room it joins. */
+    private static final class Arrival {
+        final Connection conn;
+        final Room room;
+
+        Arrival(Connection conn, Room room) {
+            this.conn = conn;
+            this.room = room;
+        }
+    }
+
+    private final int index;
+    private final LobbyServer lobby;
+    private final long tickNanos;
+    private final double loadSmoothing;
+
+    private Selector selector;
+    private Thread thread;
+    private volatile boolean running;
+
+    private final Queue<Room> newRooms = new ConcurrentLinkedQueue<>();
+    private final Queue<Arrival> arrivals = new ConcurrentLinkedQueue<>();
+    private final Queue<Connection> dirty = new ConcurrentLinkedQueue<>();
+    private final Queue<Connection> pendingClose = new ConcurrentLinkedQueue<>();
+    private volatile boolean flushRequested;
+
+    // loop thread only
+    private final List<Room> rooms = new ArrayList<>();
+    private final Map<Integer, Room> roomOf = new HashMap<>(); // by connection id
+
+    // metrics
+    private final AtomicInteger roomCount = new AtomicInteger();
+    private volatile int connectionCount;
+    private volatile long ticks;
+    private volatile long lastTickWorkNanos;
+    private volatile double load;
+    private volatile long skippedTicks;
+
+    RoomLoop(int index, LobbyServer lobby, int tickRate) {
+        this.index = index;
+        this.lobby = lobby;
+        this.tickNanos = 1_000_000_000L / tickRate;
+        this.loadSmoothing = 1.0 / tickRate;
+    }
+
+    void start() throws IOException {
+        selector = Selector.open();
+        running = true;
+        thread = new Thread(this::run, "room-loop-" + index);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        if (selector != null) selector.wakeup();
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------
+    // requests from the lobby (any thread)
+    // ---------------------------------------------------------------
+
+    /** Assigns a new room to this loop; it is ticked from the next iteration. */
+    void addRoom(Room room) {
+        roomCount.incrementAndGet();
+        newRooms.add(room);
+        selector.wakeup();
+    }
+
+    /**
+     * Takes over a connection the lobby has handed off, for a room of this
+     * loop whose place it has reserved.
+     */
+    void adopt(Connection conn, Room room) {
+        arrivals.add(new Arrival(conn, room));
+        selector.wakeup();
+    }
+
+    @Override
+    void markDirty(Connection conn) {
+        dirty.add(conn);
+        if (Thread.currentThread() == thread) flushRequested = true;
+    }
+
+    @Override
+    void requestClose(Connection conn) {
+        pendingClose.add(conn);
+        if (Thread.currentThread() != thread) selector.wakeup();
+    }
+
+    // ---------------------------------------------------------------
+    // event loop
+    // ---------------------------------------------------------------
+
+    private void run() {
+        long next = System.nanoTime();
+        try {
+            while (running) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) selector.select((wait + 999_999) / 1_000_000);
+                else selector.selectNow();
+                if (!running) break;
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) continue;
+                    Connection conn = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable() && !conn.readFrames(roomOf.get(conn.getId()).match)) {
+                            drop(conn);
+                            continue;
+                        }
+                        if (key.isValid() && key.isWritable()) writeOut(conn);
+                    } catch (IOException e) {
+                        drop(conn);
+                    } catch (RuntimeException e) {
+                        // one broken client must not stop the loop for every room
+                        System.err.println(conn + " dropped: " + e);
+                        drop(conn);
+                    }
+                }
+
+                Room room;
+                while ((room = newRooms.poll()) != null) rooms.add(room);
+                Arrival a;
+                while ((a = arrivals.poll()) != null) admit(a.conn, a.room);
+                Connection c;
+                while ((c = pendingClose.poll()) != null) {
+                    if (c.host() == this) drop(c);
+                }
+
+                long now = System.nanoTime();
+                if (now >= next) {
+                    if (now - next > GameServer.MAX_LAG_TICKS * tickNanos) {
+                        // stalled (GC, overloaded): skip ahead instead of running a burst of ticks
+                        skippedTicks += (now - next) / tickNanos;
+                        next = now;
+                    }
+                    tickRooms();
+                    long work = System.nanoTime() - now;
+                    lastTickWorkNanos = work;
+                    load += ((double) work / tickNanos - load) * loadSmoothing;
+                    ticks++;
+                    next += tickNanos;
+                    flushRequested = true;
+                }
+
+                if (flushRequested) {
+                    flushRequested = false;
+                    while ((c = dirty.poll()) != null) {
+                        if (c.host() != this || !c.seal()) continue;
+                        try {
+                            writeOut(c);
+                        } catch (IOException e) {
+                            drop(c);
+                        }
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) e.printStackTrace();
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void tickRooms() {
+        for (int i = 0; i < rooms.size(); i++) {
+            Room r = rooms.get(i);
+            try {
+                r.match.tick();
+            } catch (RuntimeException e) {
+                e.printStackTrace(); // one broken match must not stop the others
+            }
+        }
+    }
+
+    /** Registers a handed-off connection and joins it to its room. */
+    private void admit(Connection conn, Room room) {
+        try {
+            SelectionKey key = conn.channel().register(selector, SelectionKey.OP_READ, conn);
+            conn.adopt(this, key);
+        } catch (IOException e) {
+            conn.closeChannel();
+            if (room.leave()) closeRoom(room);
+            return;
+        }
+        roomOf.put(conn.getId(), room);
+        connectionCount++;
+        room.match.onConnect(conn);
+
+        // frames that arrived behind the join request, then the lobby's reply
+        if (conn.isCloseRequested() || !conn.decodeBuffered(room.match)) {
+            drop(conn);
+            return;
+        }
+        conn.seal();
+        try {
+            writeOut(conn);
+        } catch (IOException e) {
+            drop(conn);
+        }
+    }
+
+    /** Flushes a connection and waits for OP_WRITE only while output is left. */
+    private void writeOut(Connection conn) throws IOException {
+        if (!conn.isOpen()) return;
+        boolean done = conn.flush();
+        SelectionKey key = conn.key();
+        int ops = done ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+        if (key.isValid() && key.interestOps() != ops) key.interestOps(ops);
+    }
+
+    private void drop(Connection conn) {
+        if (!conn.closeChannel()) return;
+        Room room = roomOf.remove(conn.getId());
+        if (room == null) return;
+        connectionCount--;
+        room.match.onDisconnect(conn);
+        if (room.leave()) closeRoom(room);
+    }
+
+    private void closeRoom(Room room) {
+        rooms.remove(room);
+        roomCount.decrementAndGet();
+        lobby.roomClosed(room);
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys().toArray(new SelectionKey[0])) {
+            if (key.attachment() instanceof Connection) drop((Connection) key.attachment());
+        }
+        Arrival a;
+        while ((a = arrivals.poll()) != null) a.conn.closeChannel();
+        try {
+            selector.close();
+        } catch (IOException ignored) {}
+    }
+
+    // ---------------------------------------------------------------
+    // metrics (any thread)
+    // ---------------------------------------------------------------
+
+    /** @return position of this loop in {@link LobbyServer#getLoops()} */
+    public int getIndex() {
+        return index;
+    }
+
+    /** @return open rooms assigned to this loop */
+    public int getRoomCount() {
+        return roomCount.get();
+    }
+
+    /** @return players connected to this loop's rooms */
+    public int getConnectionCount() {
+        return connectionCount;
+    }
+
+    /** @return ticks run so far */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /** @return time the last tick of all rooms took, in nanoseconds */
+    public long getLastTickWorkNanos() {
+        return lastTickWorkNanos;
+    }
+
+    /**
+     * @return fraction of the tick period spent ticking rooms, averaged over
+     *         about a second; near or above 1 the loop cannot keep up
+     */
+    public double getLoad() {
+        return load;
+    }
+
+    /** @return ticks skipped because the loop fell too far behind */
+    public long getSkippedTicks() {
+        return skippedTicks;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("loop-%d: %d rooms, %d players, load %.0f%%, last tick %d us, skipped %d",
+                index, getRoomCount(), connectionCount, load * 100, lastTickWorkNanos / 1000, skippedTicks);
+    }
+}
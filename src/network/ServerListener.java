@@ -0,0 +1,38 @@
+package network;
+
+/**
+ * Callback interface used by {@link NetworkServer} to deliver connection
+ * events and incoming messages to the game logic.
+ *
+ * <p>All methods are called on the server's event-loop thread, one at a time.
+ * Implementations must return quickly: while a callback runs no other client
+ * is read or written. Replies can be sent directly with
+ * {@link Connection#send(Message)} or {@link NetworkServer#broadcast(Message, Connection)}.</p>
+ */
+public interface ServerListener {
+
+    /**
+     * Called when a client has connected.
+     *
+     * @param conn the new connection
+     */
+    default void onConnect(Connection conn) { }
+
+    /**
+     * Called for every complete frame received from a client.
+     * <p>
+     * The message instance is reused for the connection's next frame, so it
+     * is only valid until this method returns.
+     *
+     * @param conn the connection the frame came from
+     * @param msg  the decoded message
+     */
+    void onMessage(Connection conn, Message msg);
+
+    /**
+     * Called once when a client has disconnected or was dropped.
+     *
+     * @param conn the closed connection
+     */
+    default void onDisconnect(Connection conn) { }
+}
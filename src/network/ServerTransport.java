@@ -0,0 +1,54 @@
+package network;
+
+import java.util.Collection;
+
+/**
+ * Server end of the game's client connections, as used by {@link GameServer}.
+ *
+ * <p>Implemented by the TCP {@link NetworkServer} and by the in-process
+ * {@link LoopbackServer}, so the multiplayer stack can be tested without
+ * sockets. Connection events and messages go to the {@link ServerListener}.</p>
+ */
+public interface ServerTransport {
+
+    /**
+     * Sets the handler for connection events and messages. Must be set before
+     * {@link #start()} to see every message.
+     *
+     * @param listener the handler
+     */
+    void setListener(ServerListener listener);
+
+    /**
+     * Starts accepting clients.
+     */
+    void start();
+
+    /**
+     * Ends the current tick: every connection's batch is sent. Call once per
+     * tick after the tick's messages have been sent.
+     */
+    void flush();
+
+    /**
+     * Sends a message to every connected client except {@code except}. Only
+     * valid inside {@link ServerListener} callbacks.
+     *
+     * @param msg    message to send; not retained
+     * @param except connection to skip (usually the sender), or null
+     */
+    void broadcast(Message msg, Connection except);
+
+    /**
+     * Returns the connected clients. Only valid inside {@link ServerListener}
+     * callbacks.
+     *
+     * @return unmodifiable view of the open connections
+     */
+    Collection<Connection> getClients();
+
+    /**
+     * Closes every connection and stops accepting clients.
+     */
+    void stop();
+}
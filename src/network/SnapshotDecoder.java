@@ -0,0 +1,195 @@
+package network;
+
+import model.PowerUp;
+import model.StateSnapshot;
+
+import java.net.ProtocolException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Client side of state replication: rebuilds full {@link StateSnapshot}s from
+ * the deltas produced by {@link SnapshotEncoder}.
+ *
+ * <p>Received snapshots are kept in a ring of {@link SnapshotEncoder#HISTORY}
+ * entries so that any baseline the server may still refer to is available.
+ * After applying a snapshot the client acknowledges it with
+ * {@link #writeAck(Message)}; the server then encodes later snapshots
+ * against it.</p>
+ *
+ * <p>Entities are checked before a snapshot is accepted: an unknown kind, a
+ * powerup type this build does not have or a bomb or powerup off the grid
+ * is a {@link ProtocolException}, so nothing out of range reaches
+ * {@link StateSnapshot#applyTo} on the game thread.</p>
+ *
+ * <p>All methods must be called on one thread.</p>
+ */
+public class SnapshotDecoder {
+
+    private static final int POWERUP_TYPES = PowerUp.Type.values().length;
+
+    private final StateSnapshot[] history = new StateSnapshot[SnapshotEncoder.HISTORY];
+    private final StateSnapshot empty = new StateSnapshot();
+    private StateSnapshot latest;
+
+    private final byte[] scratch = new byte[WireProtocol.MAX_FRAME_BYTES];
+    private final ByteBuffer in = ByteBuffer.wrap(scratch);
+
+    // entities that are new in the snapshot being decoded
+    private int[] newKeys = new int[16];
+    private int[] newFields = new int[16 * StateSnapshot.ENTITY_FIELDS];
+
+    /**
+     * Creates a decoder with no snapshot yet.
+     */
+    public SnapshotDecoder() {
+        for (int i = 0; i < history.length; i++) history[i] = new StateSnapshot();
+    }
+
+    /** @return the newest applied snapshot, or null */
+    public StateSnapshot getLatest() {
+        return latest;
+    }
+
+    /**
+     * Applies a {@link WireProtocol#TYPE_SNAPSHOT} message.
+     *
+     * @param msg the message
+     * @return the rebuilt snapshot; null if it is older than the latest one or
+     *         its baseline is no longer known (the server will fall back to an
+     *         older baseline once the ack stops advancing)
+     * @throws ProtocolException if the payload is malformed
+     */
+    public StateSnapshot apply(Message msg) throws ProtocolException {
+        int tick = msg.getInt(0);
+        int baseTick = msg.getInt(1);
+        int rows = msg.getInt(2);
+        int cols = msg.getInt(3);
+        if (latest != null && tick <= latest.getTick()) return null; // late or duplicate
+
+        StateSnapshot base;
+        if (baseTick < 0) {
+            empty.reset(-1, rows, cols);
+            base = empty;
+        } else {
+            base = history[Math.floorMod(baseTick, history.length)];
+            if (base.getTick() != baseTick) return null;
+        }
+
+        if (base.getRows() != rows || base.getCols() != cols) {
+            throw new ProtocolException("snapshot size mismatch");
+        }
+
+        StateSnapshot out = history[Math.floorMod(tick, history.length)];
+        if (out == base) return null; // would overwrite its own baseline
+        out.copyFrom(base);
+
+        int len = msg.copyPayload(scratch, 0);
+        in.clear().limit(len);
+        try {
+            readDelta(out);
+            checkEntities(out);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            out.setTick(-1); // half-applied, never usable as a baseline
+            throw new ProtocolException("truncated snapshot");
+        } catch (ProtocolException e) {
+            out.setTick(-1);
+            throw e;
+        }
+        out.setTick(tick);
+        latest = out;
+        return out;
+    }
+
+    /** Applies the payload in {@link #in} on top of {@code out} (a copy of the baseline). */
+    private void readDelta(StateSnapshot out) throws ProtocolException {
+        int globalMask = in.get() & 0xFF;
+        for (int g = 0; g < StateSnapshot.GLOBALS; g++) {
+            if ((globalMask & (1 << g)) != 0) {
+                out.setGlobal(g, out.getGlobal(g) + WireProtocol.unzigzag(WireProtocol.getVarInt(in)));
+            }
+        }
+
+        int tileCount = WireProtocol.getVarInt(in);
+        int index = -1;
+        for (int i = 0; i < tileCount; i++) {
+            index += WireProtocol.getVarInt(in) + 1;
+            out.setTile(index, in.get());
+        }
+
+        int removed = WireProtocol.getVarInt(in);
+        int key = 0;
+        for (int i = 0; i < removed; i++) {
+            key += WireProtocol.getVarInt(in);
+            int idx = out.indexOf(key);
+            if (idx >= 0) out.removeEntity(idx);
+        }
+
+        int changed = WireProtocol.getVarInt(in);
+        int maskStart = in.position();
+        in.position(maskStart + (changed + 1) / 2);
+        int added = 0;
+        key = 0;
+        for (int i = 0; i < changed; i++) {
+            int mask = (in.get(maskStart + i / 2) >> ((i & 1) * 4)) & 0xF;
+            key += WireProtocol.getVarInt(in);
+            int idx = out.indexOf(key);
+            if (idx >= 0) {
+                for (int f = 0; f < StateSnapshot.ENTITY_FIELDS; f++) {
+                    if ((mask & (1 << f)) == 0) continue;
+                    out.setEntityField(idx, f, out.getEntityField(idx, f)
+                            + WireProtocol.unzigzag(WireProtocol.getVarInt(in)));
+                }
+            } else {
+                // new entity; added after the loop so indexOf keeps working on sorted keys
+                if (added == newKeys.length) {
+                    newKeys = Arrays.copyOf(newKeys, added * 2);
+                    newFields = Arrays.copyOf(newFields, added * 2 * StateSnapshot.ENTITY_FIELDS);
+                }
+                newKeys[added] = key;
+                for (int f = 0; f < StateSnapshot.ENTITY_FIELDS; f++) {
+                    newFields[added * StateSnapshot.ENTITY_FIELDS + f] = ((mask & (1 << f)) == 0)
+                            ? 0 : WireProtocol.unzigzag(WireProtocol.getVarInt(in));
+                }
+                added++;
+            }
+        }
+        for (int i = 0; i < added; i++) {
+            int f = i * StateSnapshot.ENTITY_FIELDS;
+            out.addEntity(newKeys[i], newFields[f], newFields[f + 1], newFields[f + 2], newFields[f + 3]);
+        }
+        if (added > 0) out.sortEntities();
+    }
+
+    /** Rejects entities that {@link StateSnapshot#applyTo} could not represent. */
+    private static void checkEntities(StateSnapshot s) throws ProtocolException {
+        for (int i = 0; i < s.getEntityCount(); i++) {
+            int kind = StateSnapshot.kindOf(s.getEntityKey(i));
+            if (kind > StateSnapshot.KIND_POWERUP) {
+                throw new ProtocolException("unknown entity kind " + kind);
+            }
+            if (kind != StateSnapshot.KIND_BOMB && kind != StateSnapshot.KIND_POWERUP) continue;
+            int col = s.getEntityField(i, StateSnapshot.F_X);
+            int row = s.getEntityField(i, StateSnapshot.F_Y);
+            if (col < 0 || col >= s.getCols() || row < 0 || row >= s.getRows()) {
+                throw new ProtocolException("entity off the grid at " + col + "," + row);
+            }
+            int type = s.getEntityField(i, StateSnapshot.F_DIR);
+            if (kind == StateSnapshot.KIND_POWERUP && (type < 0 || type >= POWERUP_TYPES)) {
+                throw new ProtocolException("unknown powerup type " + type);
+            }
+        }
+    }
+
+    /**
+     * Fills an acknowledgement for the latest applied snapshot.
+     *
+     * @param out message to fill
+     * @return {@code out}, or null if nothing has been applied yet
+     */
+    public Message writeAck(Message out) {
+        if (latest == null) return null;
+        return out.clear(WireProtocol.TYPE_SNAPSHOT_ACK).add(latest.getTick());
+    }
+}
@@ -0,0 +1,521 @@
+package network;
+
+import model.GameModel;
+import model.StateSnapshot;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Server side of state replication: captures the {@link GameModel} every tick
+ * and encodes it for each client as a delta against the last snapshot that
+ * client acknowledged.
+ *
+ * <p>The last {@value #HISTORY} snapshots are kept in a ring. A client whose
+ * acknowledged snapshot is still in the ring gets only what changed since
+ * then; a new client, or one that fell too far behind, gets a delta against
+ * the empty state, i.e. everything. Because clients acknowledge snapshots
+ * rather than individual changes, a lost or late snapshot costs nothing
+ * extra: the next one is simply encoded against an older baseline.</p>
+ *
+ * <p>Snapshot messages are {@link WireProtocol#TYPE_SNAPSHOT} with the int
+ * fields {@code tick, baselineTick (-1 = none), rows, cols, inputSeq, controlling}
+ * and the delta in the payload. {@code inputSeq} is the last {@link WireProtocol#TYPE_INPUT}
+ * of the receiving client that the snapshot includes (-1 = none), which the
+ * client needs for reconciling its prediction (see {@link HeroPredictor}).
+ * {@code controlling} is 1 if the client's input steers the hero and 0 if it
+ * only watches, in which case it takes the hero's position as sent.</p>
+ * <p>The payload layout is:</p>
+ * <pre>
+ * byte    globalMask        bit g set: global g changed
+ * varint  zigzag(delta) * popcount(globalMask)
+ * varint  tileCount         changed tiles
+ *         (varint gap, byte type) * tileCount       gap = index - previous index - 1
+ * varint  removedCount
+ *         varint keyGap * removedCount              gap = key - previous key
+ * varint  changedCount      changed or new entities
+ *         byte[(changedCount + 1) / 2]              4-bit field masks, two per byte
+ *         (varint keyGap, varint zigzag(delta) * popcount(mask)) * changedCount
+ * </pre>
+ * <p>Deltas are taken against the baseline value (0 for new entities), so a
+ * drone moving a few pixels costs about four bytes and a static map costs
+ * nothing: bandwidth follows what changed, not the size of the map.</p>
+ *
+ * <p>A client can also be given an area of interest with
+ * {@link Client#setView}: a square of tiles around a centre. It is then sent
+ * only the entities inside the square, widened by {@value #VIEW_MARGIN}
+ * tiles so that nothing pops in at the edge of the screen, and only the tile
+ * changes inside it. A tile changed outside the view is sent once the tile
+ * comes into view. The client decodes these snapshots like any others,
+ * because each one is a delta against the filtered snapshot the client
+ * acknowledged. An {@link InterestGrid} finds the entities in each view.
+ * Entities moving into or out of a client's view while they exist are also
+ * reported as {@link WireProtocol#TYPE_VIEW} messages (see
+ * {@link #writeViewChanges}); entities appearing or disappearing from the
+ * game are not.</p>
+ *
+ * <p>All methods must be called on one thread (the server's tick thread).</p>
+ */
+public class SnapshotEncoder {
+
+    /** Number of past snapshots kept as possible baselines. */
+    public static final int HISTORY = 32;
+
+    /** Tiles added around every view radius. */
+    public static final int VIEW_MARGIN = 2;
+
+    /** Largest payload that still fits in one frame. */
+    private static final int MAX_PAYLOAD = WireProtocol.MAX_FRAME_BYTES - 32;
+
+    /**
+     * Replication state of one client.
+     */
+    public static final class Client {
+        private int ackedTick = -1;
+        private int inputSeq = -1;
+        private boolean controlling;
+
+        // area of interest (radius -1 = everything)
+        private int viewCol, viewRow, viewRadius = -1;
+        private boolean viewModeChanged;
+        /** Snapshots before this tick were encoded in the other view mode and are no baseline. */
+        private int minBaselineTick = -1;
+        /** What the client was sent, per tick (filtered mode only). */
+        private StateSnapshot[] views;
+        private int lastViewTick = -1;
+
+        // view changes of the last encode
+        private int[] entered = new int[16];
+        private int[] exited = new int[16];
+        private int enteredCount, exitedCount;
+
+        /** @return the newest snapshot tick the client acknowledged, or -1 */
+        public int getAckedTick() {
+            return ackedTick;
+        }
+
+        /**
+         * Records an acknowledgement. Older or duplicate acks are ignored.
+         *
+         * @param tick tick of a snapshot the client has applied
+         */
+        public void ack(int tick) {
+            if (tick > ackedTick) ackedTick = tick;
+        }
+
+        /** @return the last input sequence number the simulation has applied, or -1 */
+        public int getInputSeq() {
+            return inputSeq;
+        }
+
+        /**
+         * Records that the simulation has applied the client's input up to {@code seq}.
+         *
+         * @param seq sequence number of the applied {@link WireProtocol#TYPE_INPUT}
+         */
+        public void setInputSeq(int seq) {
+            if (seq > inputSeq) inputSeq = seq;
+        }
+
+        /** @return true if the client's input steers the hero */
+        public boolean isControlling() {
+            return controlling;
+        }
+
+        /**
+         * Records whether the client's input steers the hero, which its
+         * snapshots report.
+         *
+         * @param controlling true for the controlling client, false for watchers
+         */
+        public void setControlling(boolean controlling) {
+            this.controlling = controlling;
+        }
+
+        /**
+         * Limits what the client is sent to a square around a tile.
+         *
+         * @param col    centre column
+         * @param row    centre row
+         * @param radius half the square's edge in tiles, not counting
+         *               {@value #VIEW_MARGIN}; must not be negative
+         */
+        public void setView(int col, int row, int radius) {
+            if (radius < 0) throw new IllegalArgumentException("radius must not be negative");
+            if (viewRadius < 0) viewModeChanged = true;
+            viewCol = col;
+            viewRow = row;
+            viewRadius = radius;
+        }
+
+        /** Sends the client everything again. */
+        public void clearView() {
+            if (viewRadius >= 0) viewModeChanged = true;
+            viewRadius = -1;
+        }
+
+        /** @return true if the client has an area of interest */
+        public boolean hasView() {
+            return viewRadius >= 0;
+        }
+
+        /** @return entities that moved into view in the last encode */
+        public int getEnteredCount() {
+            return enteredCount;
+        }
+
+        /** @return entities that moved out of view in the last encode */
+        public int getExitedCount() {
+            return exitedCount;
+        }
+
+        /** @return the snapshot sent for {@code tick}, if it is still known */
+        private StateSnapshot viewAt(int tick, int latestTick) {
+            if (tick < 0 || tick < minBaselineTick || views == null || latestTick - tick >= HISTORY) return null;
+            StateSnapshot s = views[Math.floorMod(tick, HISTORY)];
+            return (s.getTick() == tick) ? s : null;
+        }
+    }
+
+    private final StateSnapshot[] history = new StateSnapshot[HISTORY];
+    private final StateSnapshot empty = new StateSnapshot();
+    private StateSnapshot latest;
+
+    private final ByteBuffer payload = ByteBuffer.allocate(MAX_PAYLOAD);
+    private int[] masks = new int[64];
+
+    // entities of the latest snapshot by tile, built on first use per snapshot
+    private final InterestGrid grid = new InterestGrid();
+    private boolean gridValid;
+    private int tileSize = 1;
+
+    private long bytesEncoded;
+    private long snapshotsEncoded;
+
+    /**
+     * Creates an encoder with an empty history.
+     */
+    public SnapshotEncoder() {
+        for (int i = 0; i < HISTORY; i++) history[i] = new StateSnapshot();
+    }
+
+    /**
+     * Captures the model's state for the given tick into the history ring.
+     *
+     * @param gm   model to capture
+     * @param tick tick number, increasing by one per call
+     * @return the captured snapshot
+     */
+    public StateSnapshot capture(GameModel gm, int tick) {
+        StateSnapshot s = history[Math.floorMod(tick, HISTORY)];
+        s.capture(gm, tick);
+        latest = s;
+        tileSize = gm.tileSize;
+        gridValid = false;
+        return s;
+    }
+
+    /**
+     * Records an already filled snapshot as the latest one (e.g. from a
+     * simulation that builds snapshots itself). Views use the tile size of
+     * the last captured model.
+     *
+     * @param snapshot snapshot to copy into the history ring
+     * @return the stored copy
+     */
+    public StateSnapshot store(StateSnapshot snapshot) {
+        StateSnapshot s = history[Math.floorMod(snapshot.getTick(), HISTORY)];
+        s.copyFrom(snapshot);
+        latest = s;
+        gridValid = false;
+        return s;
+    }
+
+    /** @return the most recently captured snapshot, or null */
+    public StateSnapshot getLatest() {
+        return latest;
+    }
+
+    /**
+     * Returns the baseline to encode against for a client.
+     *
+     * @param client client state
+     * @return its acknowledged snapshot, or null if none is still in the ring
+     */
+    public StateSnapshot baselineFor(Client client) {
+        int acked = client.getAckedTick();
+        if (acked < 0 || acked < client.minBaselineTick || latest == null
+                || latest.getTick() - acked >= HISTORY) return null;
+        StateSnapshot s = history[Math.floorMod(acked, HISTORY)];
+        return (s.getTick() == acked) ? s : null;
+    }
+
+    /**
+     * Encodes the latest snapshot for one client into {@code out}. The
+     * message's payload refers to an internal buffer and is only valid until
+     * the next call, so send it before encoding for the next client.
+     *
+     * @param client client state
+     * @param out    message to fill
+     * @return {@code out}
+     */
+    public Message encode(Client client, Message out) {
+        StateSnapshot cur = latest;
+        if (client.viewModeChanged) {
+            client.minBaselineTick = cur.getTick();
+            client.viewModeChanged = false;
+        }
+        StateSnapshot base;
+        if (client.hasView()) {
+            base = client.viewAt(client.getAckedTick(), cur.getTick());
+            cur = filter(client, base, cur);
+        } else {
+            base = baselineFor(client);
+            client.enteredCount = client.exitedCount = 0;
+            client.lastViewTick = -1;
+        }
+        // after a level change the map may differ in size: send everything, and say so
+        if (base != null && !sameSize(base, cur)) base = null;
+        payload.clear();
+        writeDelta(base, cur, payload);
+        out.clear(WireProtocol.TYPE_SNAPSHOT)
+                .add(cur.getTick())
+                .add(base == null ? -1 : base.getTick())
+                .add(cur.getRows())
+                .add(cur.getCols())
+                .add(client.getInputSeq())
+                .add(client.isControlling() ? 1 : 0)
+                .setPayload(payload.array(), 0, payload.position());
+        bytesEncoded += payload.position();
+        snapshotsEncoded++;
+        return out;
+    }
+
+    /**
+     * Fills a {@link WireProtocol#TYPE_VIEW} message with the view changes of
+     * the client's last {@link #encode}, starting at change {@code from}:
+     * {@code tick, enteredCount}, then the keys of the entities that entered
+     * and of those that exited. Call repeatedly while the returned index is
+     * below {@code getEnteredCount() + getExitedCount()}.
+     *
+     * @param client client state
+     * @param from   index of the first change to write
+     * @param out    message to fill
+     * @return index of the first change not written
+     */
+    public int writeViewChanges(Client client, int from, Message out) {
+        int total = client.enteredCount + client.exitedCount;
+        int n = Math.min(Message.MAX_FIELDS - 2, total - from);
+        int enteredHere = Math.max(0, Math.min(n, client.enteredCount - from));
+        out.clear(WireProtocol.TYPE_VIEW).add(client.lastViewTick).add(enteredHere);
+        for (int i = from; i < from + n; i++) {
+            out.add(i < client.enteredCount ? client.entered[i] : client.exited[i - client.enteredCount]);
+        }
+        return from + n;
+    }
+
+    /** @return total payload bytes produced by {@link #encode} */
+    public long getBytesEncoded() {
+        return bytesEncoded;
+    }
+
+    /** @return number of snapshots produced by {@link #encode} */
+    public long getSnapshotsEncoded() {
+        return snapshotsEncoded;
+    }
+
+    /**
+     * Builds what a client with a view is sent for the latest snapshot: every
+     * entity inside the view, the tiles inside it, and the tiles outside it
+     * as the client last had them. Also records the view changes.
+     */
+    private StateSnapshot filter(Client client, StateSnapshot base, StateSnapshot cur) {
+        if (client.views == null) {
+            client.views = new StateSnapshot[HISTORY];
+            for (int i = 0; i < HISTORY; i++) client.views[i] = new StateSnapshot();
+        }
+        int rows = cur.getRows(), cols = cur.getCols();
+        StateSnapshot view = client.views[Math.floorMod(cur.getTick(), HISTORY)];
+        view.reset(cur.getTick(), rows, cols);
+        for (int g = 0; g < StateSnapshot.GLOBALS; g++) view.setGlobal(g, cur.getGlobal(g));
+
+        int r = client.viewRadius + VIEW_MARGIN;
+        int minCol = client.viewCol - r, maxCol = client.viewCol + r;
+        int minRow = client.viewRow - r, maxRow = client.viewRow + r;
+
+        // without a baseline (or after a level change) the client gets the whole map once
+        boolean keepOutside = base != null && sameSize(base, cur);
+        for (int row = 0, i = 0; row < rows; row++) {
+            boolean rowInside = row >= minRow && row <= maxRow;
+            for (int col = 0; col < cols; col++, i++) {
+                boolean inside = rowInside && col >= minCol && col <= maxCol;
+                view.setTile(i, (inside || !keepOutside) ? cur.getTile(i) : base.getTile(i));
+            }
+        }
+
+        if (!gridValid) {
+            grid.build(cur, tileSize);
+            gridValid = true;
+        }
+        grid.query(minCol, minRow, maxCol, maxRow);
+        for (int i = 0; i < cur.getEntityCount(); i++) {
+            if (!grid.contains(i)) continue;
+            view.addEntity(cur.getEntityKey(i),
+                    cur.getEntityField(i, StateSnapshot.F_X), cur.getEntityField(i, StateSnapshot.F_Y),
+                    cur.getEntityField(i, StateSnapshot.F_DIR), cur.getEntityField(i, StateSnapshot.F_STATE));
+        }
+
+        recordViewChanges(client, view, cur);
+        client.lastViewTick = cur.getTick();
+        return view;
+    }
+
+    /**
+     * Compares a client's new view with the one sent before: entities that
+     * existed before and are now visible entered, entities that are still in
+     * the game but no longer visible exited.
+     */
+    private void recordViewChanges(Client client, StateSnapshot view, StateSnapshot cur) {
+        client.enteredCount = client.exitedCount = 0;
+        StateSnapshot prev = client.viewAt(client.lastViewTick, cur.getTick());
+        if (prev == null || prev.getTick() == cur.getTick()) return;
+        StateSnapshot prevFull = history[Math.floorMod(prev.getTick(), HISTORY)];
+        if (prevFull.getTick() != prev.getTick()) return;
+
+        int n = view.getEntityCount(), m = prev.getEntityCount();
+        for (int i = 0, j = 0; i < n || j < m; ) {
+            int vk = (i < n) ? view.getEntityKey(i) : Integer.MAX_VALUE;
+            int pk = (j < m) ? prev.getEntityKey(j) : Integer.MAX_VALUE;
+            if (vk == pk) {
+                i++;
+                j++;
+            } else if (vk < pk) {
+                if (prevFull.indexOf(vk) >= 0) {
+                    client.entered = ensure(client.entered, client.enteredCount);
+                    client.entered[client.enteredCount++] = vk;
+                }
+                i++;
+            } else {
+                if (cur.indexOf(pk) >= 0) {
+                    client.exited = ensure(client.exited, client.exitedCount);
+                    client.exited[client.exitedCount++] = pk;
+                }
+                j++;
+            }
+        }
+    }
+
+    private static boolean sameSize(StateSnapshot a, StateSnapshot b) {
+        return a.getRows() == b.getRows() && a.getCols() == b.getCols();
+    }
+
+    /** @return {@code a}, or a copy twice as long if it has no room after {@code n} entries */
+    private static int[] ensure(int[] a, int n) {
+        return (n < a.length) ? a : Arrays.copyOf(a, a.length * 2);
+    }
+
+    /** Writes the delta from {@code base} (null = empty; same size as {@code cur} otherwise) to {@code cur}. */
+    private void writeDelta(StateSnapshot base, StateSnapshot cur, ByteBuffer out) {
+        if (base == null) {
+            empty.reset(-1, cur.getRows(), cur.getCols());
+            base = empty;
+        }
+
+        // globals
+        int globalMask = 0;
+        for (int g = 0; g < StateSnapshot.GLOBALS; g++) {
+            if (cur.getGlobal(g) != base.getGlobal(g)) globalMask |= 1 << g;
+        }
+        out.put((byte) globalMask);
+        for (int g = 0; g < StateSnapshot.GLOBALS; g++) {
+            if ((globalMask & (1 << g)) != 0) {
+                WireProtocol.putVarInt(out, WireProtocol.zigzag(cur.getGlobal(g) - base.getGlobal(g)));
+            }
+        }
+
+        // tiles
+        int tileCount = 0;
+        for (int i = 0; i < cur.getTileCount(); i++) {
+            if (cur.getTile(i) != base.getTile(i)) tileCount++;
+        }
+        WireProtocol.putVarInt(out, tileCount);
+        int prev = -1;
+        for (int i = 0; i < cur.getTileCount() && tileCount > 0; i++) {
+            if (cur.getTile(i) == base.getTile(i)) continue;
+            WireProtocol.putVarInt(out, i - prev - 1);
+            out.put(cur.getTile(i));
+            prev = i;
+        }
+
+        // removed entities: in base but not in cur
+        int n = cur.getEntityCount(), m = base.getEntityCount();
+        int removed = 0;
+        for (int i = 0, j = 0; j < m; ) {
+            int ck = (i < n) ? cur.getEntityKey(i) : Integer.MAX_VALUE;
+            int bk = base.getEntityKey(j);
+            if (bk < ck) { removed++; j++; }
+            else if (bk == ck) { i++; j++; }
+            else i++;
+        }
+        WireProtocol.putVarInt(out, removed);
+        int prevKey = 0;
+        for (int i = 0, j = 0; j < m && removed > 0; ) {
+            int ck = (i < n) ? cur.getEntityKey(i) : Integer.MAX_VALUE;
+            int bk = base.getEntityKey(j);
+            if (bk < ck) {
+                WireProtocol.putVarInt(out, bk - prevKey);
+                prevKey = bk;
+                j++;
+            } else if (bk == ck) { i++; j++; }
+            else i++;
+        }
+
+        // changed or new entities: first the masks, then keys and values
+        if (masks.length < n) masks = new int[Math.max(n, masks.length * 2)];
+        int changed = 0;
+        for (int i = 0, j = 0; i < n; i++) {
+            int ck = cur.getEntityKey(i);
+            while (j < m && base.getEntityKey(j) < ck) j++;
+            int b = (j < m && base.getEntityKey(j) == ck) ? j : -1;
+            int mask = 0;
+            for (int f = 0; f < StateSnapshot.ENTITY_FIELDS; f++) {
+                int bv = (b < 0) ? 0 : base.getEntityField(b, f);
+                if (cur.getEntityField(i, f) != bv) mask |= 1 << f;
+            }
+            if (mask != 0 || b < 0) {
+                // new entities are always listed, even if all their fields are 0
+                masks[i] = mask | 0x10;
+                changed++;
+            } else {
+                masks[i] = 0;
+            }
+        }
+        WireProtocol.putVarInt(out, changed);
+        int packed = 0, half = 0;
+        for (int i = 0; i < n; i++) {
+            if (masks[i] == 0) continue;
+            packed |= (masks[i] & 0xF) << (half * 4);
+            if (++half == 2) {
+                out.put((byte) packed);
+                packed = 0;
+                half = 0;
+            }
+        }
+        if (half != 0) out.put((byte) packed);
+
+        prevKey = 0;
+        for (int i = 0, j = 0; i < n; i++) {
+            if (masks[i] == 0) continue;
+            int ck = cur.getEntityKey(i);
+            while (j < m && base.getEntityKey(j) < ck) j++;
+            int b = (j < m && base.getEntityKey(j) == ck) ? j : -1;
+            WireProtocol.putVarInt(out, ck - prevKey);
+            prevKey = ck;
+            for (int f = 0; f < StateSnapshot.ENTITY_FIELDS; f++) {
+                if ((masks[i] & (1 << f)) == 0) continue;
+                int bv = (b < 0) ? 0 : base.getEntityField(b, f);
+                WireProtocol.putVarInt(out, WireProtocol.zigzag(cur.getEntityField(i, f) - bv));
+            }
+        }
+    }
+}
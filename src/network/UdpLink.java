@@ -0,0 +1,54 @@
+package network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * {@link DatagramLink} over a non-blocking {@link DatagramChannel}.
+ */
+public class UdpLink implements DatagramLink {
+
+    private final DatagramChannel channel;
+
+    /**
+     * Opens a UDP socket bound to the given port.
+     *
+     * @param port local port, or 0 for any free port
+     * @throws IOException if the socket cannot be opened
+     */
+    public UdpLink(int port) throws IOException {
+        channel = DatagramChannel.open();
+        channel.configureBlocking(false);
+        channel.bind(new InetSocketAddress(port));
+    }
+
+    /** @return the local address the socket is bound to */
+    public SocketAddress getLocalAddress() {
+        try {
+            return channel.getLocalAddress();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void send(ByteBuffer packet, SocketAddress to) throws IOException {
+        // a full socket buffer drops the datagram, exactly like the network would
+        channel.send(packet, to);
+    }
+
+    @Override
+    public SocketAddress receive(ByteBuffer into) throws IOException {
+        return channel.receive(into);
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {}
+    }
+}
@@ -0,0 +1,511 @@
+package network;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * One remote endpoint of a {@link UdpTransport}, with two kinds of delivery
+ * over the same datagrams:
+ * <ul>
+ *   <li><b>Unreliable sequenced</b> ({@link #sendUnreliable}): sent once,
+ *       and the receiver drops anything older than the newest message it has
+ *       seen on that stream. Meant for positions, where only the latest value
+ *       matters and a lost one is replaced by the next tick's.</li>
+ *   <li><b>Reliable ordered</b> ({@link #sendReliable}): resent until
+ *       acknowledged and delivered in send order. Meant for bomb placement and
+ *       level events.</li>
+ * </ul>
+ *
+ * <p>Every packet carries its own sequence number plus the newest sequence
+ * received from the other side and a 32-bit field acknowledging the 32
+ * packets before it, so one surviving packet acknowledges many. Acks give RTT
+ * samples, smoothed as in RFC 6298. A reliable message that has not been
+ * acknowledged within {@code srtt + 4 * rttvar} is resent in the next packet.
+ * Because reliable messages sit in their own ordered channel, a position
+ * update never waits for a retransmission.</p>
+ *
+ * <p>Packet layout:</p>
+ * <pre>
+ * short   magic 'BU'
+ * varint  seq
+ * varint  ack + 1        newest packet received from the peer (0 = none yet)
+ * int     ackBits        bit i: packet ack - 1 - i was received
+ * entries until the end:
+ *   byte 0, varint stream, varint streamSeq, frame     unreliable
+ *   byte 1, varint reliableSeq, frame                  reliable
+ * </pre>
+ * <p>Frames are {@link WireProtocol} frames. Sequence numbers are ints and
+ * are not expected to wrap (a year of packets at 60 Hz).</p>
+ *
+ * <p>A server only creates a peer for an address that has proven it receives
+ * what is sent to it. A packet from an unknown address is answered with a
+ * cookie ({@code short magic 'BK', int cookie}). The client then sends its
+ * packets as {@code short magic 'BC', int cookie} followed by the usual
+ * header, until it first hears back from the server.</p>
+ *
+ * <p>All methods must be called on the thread that drives the transport.</p>
+ */
+public class UdpPeer {
+
+    /** Largest datagram sent; stays under typical path MTUs. */
+    public static final int MAX_PACKET = 1200;
+
+    /** Number of unreliable streams. */
+    public static final int STREAMS = 8;
+
+    static final short MAGIC = 0x4255; // 'BU'
+    static final short MAGIC_COOKIE = 0x424B; // 'BK': cookie from a server to a new client
+    static final short MAGIC_HELLO = 0x4243; // 'BC': packet carrying the cookie
+
+    /** Largest packet header: magic, cookie, seq, ack + 1, ackBits. */
+    private static final int MAX_HEADER = 2 + 4 + 5 + 5 + 4;
+
+    private static final int ENTRY_UNRELIABLE = 0;
+    private static final int ENTRY_RELIABLE = 1;
+
+    /** Sent packets remembered for acks and RTT. */
+    private static final int SENT_WINDOW = 1024;
+
+    /** Reliable messages in flight (and buffered out of order on receive). */
+    private static final int RELIABLE_WINDOW = 256;
+
+    private static final long MIN_RTO_NANOS = 20_000_000L;
+    private static final long MAX_RTO_NANOS = 1_000_000_000L;
+    private static final long INITIAL_RTO_NANOS = 200_000_000L;
+
+    private final UdpTransport transport;
+    private final SocketAddress remote;
+
+    // ---- outgoing packets
+    private int nextSeq = 0;
+    private final int[] sentSeq = new int[SENT_WINDOW];
+    private final long[] sentNanos = new long[SENT_WINDOW];
+    private final int[][] sentReliable = new int[SENT_WINDOW][];
+    private final int[] sentReliableCount = new int[SENT_WINDOW];
+
+    // ---- outgoing reliable messages, indexed by reliableSeq % RELIABLE_WINDOW
+    private int reliableNext = 0;
+    private int reliableOldest = 0;
+    private final byte[][] reliableFrame = new byte[RELIABLE_WINDOW][];
+    private final long[] reliableSentNanos = new long[RELIABLE_WINDOW];
+    private final ArrayDeque<byte[]> reliableBacklog = new ArrayDeque<>();
+
+    /** Reliable seqs written into the packet being built. */
+    private int[] pendingReliable = new int[16];
+    private int pendingReliableCount;
+
+    // ---- outgoing unreliable entries of the current tick (allocated on first use)
+    private ByteBuffer unreliableOut;
+    private final int[] streamNextSeq = new int[STREAMS];
+
+    // ---- incoming
+    private int remoteSeq = -1;
+    private int remoteAckBits;
+    private boolean ackDue;
+    private int reliableExpected = 0;
+    private final byte[][] reliableReceived = new byte[RELIABLE_WINDOW][];
+    private final int[] streamLastSeq = new int[STREAMS];
+
+    // ---- RTT estimate (RFC 6298)
+    private double srttNanos = -1;
+    private double rttvarNanos;
+
+    private final Message inMsg = new Message();
+
+    // ---- handshake and liveness
+    private final boolean accepted;
+    private boolean established;
+    private boolean hasCookie;
+    private int cookie;
+    private long lastReceiveNanos;
+
+    private long packetsSent, packetsReceived, resends, staleDropped;
+
+    /** Application object attached to this peer. */
+    private Object attachment;
+
+    /**
+     * @param accepted true if created by a server for a client that presented
+     *                 a valid cookie, false if created by {@link UdpTransport#connect}
+     */
+    UdpPeer(UdpTransport transport, SocketAddress remote, boolean accepted, long now) {
+        this.transport = transport;
+        this.remote = remote;
+        this.accepted = accepted;
+        this.established = accepted;
+        this.lastReceiveNanos = now;
+        Arrays.fill(sentSeq, -1);
+        Arrays.fill(streamLastSeq, -1);
+    }
+
+    /** @return the peer's address */
+    public SocketAddress getRemoteAddress() {
+        return remote;
+    }
+
+    /** @return the object attached with {@link #setAttachment(Object)} */
+    public Object getAttachment() {
+        return attachment;
+    }
+
+    /**
+     * Attaches arbitrary game state to this peer.
+     *
+     * @param attachment object to attach (may be null)
+     */
+    public void setAttachment(Object attachment) {
+        this.attachment = attachment;
+    }
+
+    // ---------------------------------------------------------------
+    // sending
+    // ---------------------------------------------------------------
+
+    /**
+     * Queues a message on an unreliable, sequenced stream. It goes out with the
+     * next {@link UdpTransport#flush()} and is never resent. If too much is
+     * queued before a flush, the message is dropped.
+     *
+     * @param stream stream number (0 .. {@value #STREAMS}-1)
+     * @param msg    message to send; not retained
+     */
+    public void sendUnreliable(int stream, Message msg) {
+        int frame = WireProtocol.frameSize(msg);
+        int need = 1 + 5 + 5 + frame;
+        if (unreliableOut == null) unreliableOut = ByteBuffer.allocate(8 * MAX_PACKET);
+        if (unreliableOut.remaining() < need || need > MAX_PACKET - MAX_HEADER) {
+            staleDropped++;
+            return;
+        }
+        unreliableOut.put((byte) ENTRY_UNRELIABLE);
+        WireProtocol.putVarInt(unreliableOut, stream);
+        WireProtocol.putVarInt(unreliableOut, streamNextSeq[stream]++);
+        WireProtocol.encode(msg, unreliableOut);
+    }
+
+    /**
+     * Queues a message on the reliable, ordered channel.
+     *
+     * @param msg message to send; not retained
+     */
+    public void sendReliable(Message msg) {
+        int size = WireProtocol.frameSize(msg);
+        if (size > MAX_PACKET - 32) throw new IllegalArgumentException("reliable message too large: " + size);
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        WireProtocol.encode(msg, buf);
+        byte[] frame = buf.array();
+        if (reliableNext - reliableOldest == RELIABLE_WINDOW || !reliableBacklog.isEmpty()) {
+            reliableBacklog.add(frame);
+        } else {
+            admitReliable(frame);
+        }
+    }
+
+    private void admitReliable(byte[] frame) {
+        int i = reliableNext++ % RELIABLE_WINDOW;
+        reliableFrame[i] = frame;
+        reliableSentNanos[i] = 0; // not sent yet
+    }
+
+    /** @return current retransmission timeout in nanoseconds */
+    private long rtoNanos() {
+        if (srttNanos < 0) return INITIAL_RTO_NANOS;
+        long rto = (long) (srttNanos + 4 * rttvarNanos);
+        return Math.max(MIN_RTO_NANOS, Math.min(MAX_RTO_NANOS, rto));
+    }
+
+    /**
+     * Sends everything that is due: new and timed-out reliable messages, this
+     * tick's unreliable entries, or an ack-only packet if something was received.
+     */
+    void flush(long now) throws IOException {
+        ByteBuffer packet = transport.packetBuffer();
+        long rto = rtoNanos();
+        boolean any = false;
+
+        startPacket(packet);
+        for (int r = reliableOldest; r < reliableNext; r++) {
+            int i = r % RELIABLE_WINDOW;
+            byte[] frame = reliableFrame[i];
+            if (frame == null) continue; // acknowledged
+            if (reliableSentNanos[i] != 0 && now - reliableSentNanos[i] < rto) continue;
+            if (packet.remaining() < 1 + 5 + frame.length) {
+                sendPacket(packet, now);
+                startPacket(packet);
+            }
+            if (reliableSentNanos[i] != 0) resends++;
+            packet.put((byte) ENTRY_RELIABLE);
+            WireProtocol.putVarInt(packet, r);
+            packet.put(frame);
+            reliableSentNanos[i] = now;
+            recordReliable(r);
+            any = true;
+        }
+
+        if (unreliableOut != null) unreliableOut.flip();
+        while (unreliableOut != null && unreliableOut.hasRemaining()) {
+            int start = unreliableOut.position();
+            int len = unreliableEntryLength(unreliableOut);
+            if (packet.remaining() < len) {
+                sendPacket(packet, now);
+                startPacket(packet);
+            }
+            packet.put(packet.position(), unreliableOut, start, len);
+            packet.position(packet.position() + len);
+            unreliableOut.position(start + len);
+            any = true;
+        }
+        if (unreliableOut != null) unreliableOut.clear();
+
+        if (any || ackDue) sendPacket(packet, now);
+    }
+
+    private void recordReliable(int r) {
+        if (pendingReliableCount == pendingReliable.length) {
+            pendingReliable = Arrays.copyOf(pendingReliable, pendingReliableCount * 2);
+        }
+        pendingReliable[pendingReliableCount++] = r;
+    }
+
+    /** @return byte length of the unreliable entry at the buffer's position */
+    private static int unreliableEntryLength(ByteBuffer buf) {
+        int p = buf.position() + 1;                 // kind
+        for (int v = 0; v < 2; v++) {               // stream, streamSeq
+            while ((buf.get(p++) & 0x80) != 0) { }
+        }
+        int body = 0;                               // frame length prefix
+        for (int shift = 0; ; shift += 7) {
+            byte b = buf.get(p++);
+            body |= (b & 0x7F) << shift;
+            if (b >= 0) break;
+        }
+        return p - buf.position() + body;
+    }
+
+    private void startPacket(ByteBuffer packet) {
+        packet.clear();
+        if (hasCookie && !established) {
+            packet.putShort(MAGIC_HELLO);
+            packet.putInt(cookie);
+        } else {
+            packet.putShort(MAGIC);
+        }
+        WireProtocol.putVarInt(packet, nextSeq);
+        WireProtocol.putVarInt(packet, remoteSeq + 1);
+        packet.putInt(remoteAckBits);
+        pendingReliableCount = 0;
+    }
+
+    private void sendPacket(ByteBuffer packet, long now) throws IOException {
+        int slot = nextSeq % SENT_WINDOW;
+        sentSeq[slot] = nextSeq;
+        sentNanos[slot] = now;
+        if (sentReliable[slot] == null || sentReliable[slot].length < pendingReliableCount) {
+            sentReliable[slot] = new int[Math.max(8, pendingReliableCount)];
+        }
+        System.arraycopy(pendingReliable, 0, sentReliable[slot], 0, pendingReliableCount);
+        sentReliableCount[slot] = pendingReliableCount;
+        pendingReliableCount = 0;
+        nextSeq++;
+
+        packet.flip();
+        transport.link().send(packet, remote);
+        packetsSent++;
+        ackDue = false;
+    }
+
+    // ---------------------------------------------------------------
+    // receiving
+    // ---------------------------------------------------------------
+
+    /**
+     * Handles one datagram from this peer and delivers its messages.
+     *
+     * @param packet datagram in read mode, positioned after the magic (and cookie)
+     */
+    void receive(ByteBuffer packet, long now, UdpTransport.Listener listener) throws ProtocolException {
+        int seq = WireProtocol.getVarInt(packet);
+        int ack = WireProtocol.getVarInt(packet) - 1;
+        int ackBits = packet.getInt();
+        packetsReceived++;
+        lastReceiveNanos = now;
+        established = true;
+
+        // acknowledgements first: they only ever remove state
+        if (ack >= 0) {
+            acknowledge(ack, now, true);
+            for (int i = 0; i < 32; i++) {
+                // late acks from the bit field would inflate the RTT: no samples from them
+                if ((ackBits & (1 << i)) != 0) acknowledge(ack - 1 - i, now, false);
+            }
+        }
+
+        // remember the packet for our own acks; drop exact duplicates
+        if (seq > remoteSeq) {
+            int shift = seq - remoteSeq;
+            if (remoteSeq < 0 || shift > 32) {
+                remoteAckBits = 0;
+            } else {
+                // the previous newest packet becomes bit shift-1
+                remoteAckBits = ((shift == 32) ? 0 : remoteAckBits << shift) | (1 << (shift - 1));
+            }
+            remoteSeq = seq;
+        } else {
+            int back = remoteSeq - seq;
+            if (back == 0) return;
+            if (back <= 32) {
+                int bit = 1 << (back - 1);
+                if ((remoteAckBits & bit) != 0) return;
+                remoteAckBits |= bit;
+            }
+            // older than the ack window: still deliver, the channels drop what is stale
+        }
+        ackDue = true;
+
+        while (packet.hasRemaining()) {
+            int kind = packet.get();
+            if (kind == ENTRY_UNRELIABLE) {
+                int stream = WireProtocol.getVarInt(packet);
+                int streamSeq = WireProtocol.getVarInt(packet);
+                if (stream >= STREAMS) throw new ProtocolException("bad stream " + stream);
+                if (!WireProtocol.decode(packet, inMsg)) throw new ProtocolException("truncated entry");
+                if (streamSeq > streamLastSeq[stream]) {
+                    streamLastSeq[stream] = streamSeq;
+                    listener.onMessage(this, inMsg, false);
+                } else {
+                    staleDropped++;
+                }
+            } else if (kind == ENTRY_RELIABLE) {
+                int r = WireProtocol.getVarInt(packet);
+                int start = packet.position();
+                if (!WireProtocol.decode(packet, inMsg)) throw new ProtocolException("truncated entry");
+                if (r == reliableExpected) {
+                    reliableExpected++;
+                    listener.onMessage(this, inMsg, true);
+                    deliverBuffered(listener);
+                } else if (r > reliableExpected && r - reliableExpected < RELIABLE_WINDOW) {
+                    int i = r % RELIABLE_WINDOW;
+                    if (reliableReceived[i] == null) {
+                        byte[] copy = new byte[packet.position() - start];
+                        packet.get(start, copy);
+                        reliableReceived[i] = copy;
+                    }
+                }
+                // r < reliableExpected: a resend of something already delivered
+            } else {
+                throw new ProtocolException("bad entry kind " + kind);
+            }
+        }
+    }
+
+    /** Delivers reliable messages that arrived early and are now in order. */
+    private void deliverBuffered(UdpTransport.Listener listener) throws ProtocolException {
+        ByteBuffer scratch = transport.frameScratch();
+        byte[] frame;
+        while ((frame = reliableReceived[reliableExpected % RELIABLE_WINDOW]) != null) {
+            reliableReceived[reliableExpected % RELIABLE_WINDOW] = null;
+            reliableExpected++;
+            scratch.clear();
+            scratch.put(frame).flip();
+            WireProtocol.decode(scratch, inMsg);
+            listener.onMessage(this, inMsg, true);
+        }
+    }
+
+    /**
+     * Stores the cookie a server answered with; the next flush presents it.
+     *
+     * @param cookie the server's cookie for this client's address
+     */
+    void setCookie(int cookie) {
+        if (established) return;
+        this.cookie = cookie;
+        this.hasCookie = true;
+        ackDue = true; // send a packet carrying it even if nothing is queued
+    }
+
+    /** @return true if created by a server (and so subject to its idle timeout) */
+    boolean isAccepted() {
+        return accepted;
+    }
+
+    /** @return when the last packet from the peer arrived ({@link System#nanoTime()}) */
+    long getLastReceiveNanos() {
+        return lastReceiveNanos;
+    }
+
+    /** Handles the acknowledgement of one of our packets. */
+    private void acknowledge(int seq, long now, boolean sampleRtt) {
+        if (seq < 0) return;
+        int slot = seq % SENT_WINDOW;
+        if (sentSeq[slot] != seq) return; // already handled or too old
+        sentSeq[slot] = -1;
+
+        if (sampleRtt) {
+            double sample = now - sentNanos[slot];
+            if (srttNanos < 0) {
+                srttNanos = sample;
+                rttvarNanos = sample / 2;
+            } else {
+                rttvarNanos = 0.75 * rttvarNanos + 0.25 * Math.abs(srttNanos - sample);
+                srttNanos = 0.875 * srttNanos + 0.125 * sample;
+            }
+        }
+
+        int[] rel = sentReliable[slot];
+        for (int k = 0; k < sentReliableCount[slot]; k++) {
+            int r = rel[k];
+            if (r >= reliableOldest && r < reliableNext) reliableFrame[r % RELIABLE_WINDOW] = null;
+        }
+        sentReliableCount[slot] = 0;
+        while (reliableOldest < reliableNext && reliableFrame[reliableOldest % RELIABLE_WINDOW] == null) {
+            reliableOldest++;
+        }
+        while (!reliableBacklog.isEmpty() && reliableNext - reliableOldest < RELIABLE_WINDOW) {
+            admitReliable(reliableBacklog.poll());
+        }
+    }
+
+    // ---------------------------------------------------------------
+    // statistics
+    // ---------------------------------------------------------------
+
+    /** @return smoothed round-trip time in milliseconds, or -1 before the first ack */
+    public double getRttMillis() {
+        return srttNanos < 0 ? -1 : srttNanos / 1e6;
+    }
+
+    /** @return reliable messages sent but not yet acknowledged */
+    public int getReliableInFlight() {
+        return reliableNext - reliableOldest + reliableBacklog.size();
+    }
+
+    /** @return datagrams sent to this peer */
+    public long getPacketsSent() {
+        return packetsSent;
+    }
+
+    /** @return datagrams received from this peer */
+    public long getPacketsReceived() {
+        return packetsReceived;
+    }
+
+    /** @return reliable messages sent more than once */
+    public long getResends() {
+        return resends;
+    }
+
+    /** @return unreliable messages dropped as stale (or for lack of room) */
+    public long getStaleDropped() {
+        return staleDropped;
+    }
+
+    @Override
+    public String toString() {
+        return "UdpPeer(" + remote + ")";
+    }
+}
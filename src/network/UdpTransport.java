@@ -0,0 +1,323 @@
+package network;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.net.SocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * UDP transport with per-message choice between unreliable sequenced and
+ * reliable ordered delivery (see {@link UdpPeer}).
+ *
+ * <p>Unlike the TCP {@link NetworkClient}/{@link NetworkServer} pair, a lost
+ * datagram only delays the messages that were in it: the position updates
+ * of later ticks arrive on time, and only reliable messages wait for their
+ * resend.</p>
+ *
+ * <p>The transport has no thread of its own. The game loop calls
+ * {@link #poll()} at the start of a tick to receive and
+ * {@link #flush()} at the end to send, so messages are delivered on the game
+ * thread and no locking is needed. The same class serves as client (one peer,
+ * created with {@link #connect}) and as server (a peer is created for every
+ * new address that completes the cookie handshake, if
+ * {@link #setAcceptNewPeers} is on).</p>
+ *
+ * <p>A server keeps no state for an address until it has echoed a cookie
+ * derived from a secret, the address and the time, so datagrams with spoofed
+ * source addresses cost one small reply each and no memory. The cookie reply
+ * is never larger than the packet that prompted it. Accepted peers that stay
+ * silent for {@link #setPeerTimeout} are forgotten, and at most
+ * {@link #setMaxPeers} are kept at a time.</p>
+ *
+ * Usage:
+ * <pre>
+ * UdpTransport client = new UdpTransport(new UdpLink(0), (peer, msg, reliable) -&gt; handle(msg));
+ * UdpPeer server = client.connect(new InetSocketAddress(host, 55556));
+ * // every tick:
+ * client.poll();
+ * server.sendUnreliable(0, positionMsg);
+ * if (placedBomb) server.sendReliable(bombMsg);
+ * client.flush();
+ * </pre>
+ */
+public class UdpTransport {
+
+    /**
+     * Receives the messages of all peers, on the thread calling {@link #poll()}.
+     */
+    public interface Listener {
+
+        /**
+         * Called for every delivered message. The message instance is reused
+         * after this method returns.
+         *
+         * @param peer     the sender
+         * @param msg      the message
+         * @param reliable true if it came on the reliable channel
+         */
+        void onMessage(UdpPeer peer, Message msg, boolean reliable);
+
+        /**
+         * Called when a new peer has sent its first packet (server side).
+         *
+         * @param peer the new peer
+         */
+        default void onNewPeer(UdpPeer peer) { }
+
+        /**
+         * Called when an accepted peer has been forgotten because it stayed
+         * silent too long (server side).
+         *
+         * @param peer the removed peer
+         */
+        default void onPeerTimeout(UdpPeer peer) { }
+    }
+
+    /** How long a cookie stays valid: the current period and the one before. */
+    private static final long COOKIE_PERIOD_NANOS = 30_000_000_000L;
+
+    private final DatagramLink link;
+    private final Listener listener;
+    private final Map<SocketAddress, UdpPeer> peers = new LinkedHashMap<>();
+    private final Collection<UdpPeer> peerView = Collections.unmodifiableCollection(peers.values());
+    private boolean acceptNewPeers;
+    private int maxPeers = 256;
+    private long peerTimeoutNanos = 10_000_000_000L;
+    private final long cookieSecret = new SecureRandom().nextLong();
+
+    private final ByteBuffer in = ByteBuffer.allocate(UdpPeer.MAX_PACKET * 2);
+    private final ByteBuffer out = ByteBuffer.allocate(UdpPeer.MAX_PACKET);
+    private final ByteBuffer cookieOut = ByteBuffer.allocate(2 + 4);
+    private ByteBuffer frameScratch; // allocated when a reliable message first arrives
+
+    private long malformed, refused, timedOut;
+
+    /**
+     * Creates a transport on a link.
+     *
+     * @param link     where datagrams go (a {@link UdpLink}, or a {@link LossyLink} for tests)
+     * @param listener receives the messages
+     */
+    public UdpTransport(DatagramLink link, Listener listener) {
+        this.link = link;
+        this.listener = listener;
+    }
+
+    /**
+     * Whether packets from unknown addresses create new peers (server mode).
+     *
+     * @param accept true to accept new peers
+     */
+    public void setAcceptNewPeers(boolean accept) {
+        this.acceptNewPeers = accept;
+    }
+
+    /**
+     * Limits how many accepted peers are kept; clients beyond it are refused
+     * until a place frees up.
+     *
+     * @param maxPeers maximum number of accepted peers
+     */
+    public void setMaxPeers(int maxPeers) {
+        this.maxPeers = maxPeers;
+    }
+
+    /**
+     * Sets how long an accepted peer may stay silent before it is forgotten.
+     *
+     * @param millis idle time in milliseconds
+     */
+    public void setPeerTimeout(long millis) {
+        this.peerTimeoutNanos = millis * 1_000_000L;
+    }
+
+    /**
+     * Returns the peer for an address, creating it if needed.
+     *
+     * @param remote peer address
+     * @return the peer
+     */
+    public UdpPeer connect(SocketAddress remote) {
+        return peers.computeIfAbsent(remote, a -> new UdpPeer(this, a, false, System.nanoTime()));
+    }
+
+    /** @return the known peers (read-only view) */
+    public Collection<UdpPeer> getPeers() {
+        return peerView;
+    }
+
+    /**
+     * Forgets a peer; later packets from it are treated as from a new peer.
+     *
+     * @param peer peer to remove
+     */
+    public void disconnect(UdpPeer peer) {
+        peers.remove(peer.getRemoteAddress());
+    }
+
+    /**
+     * Receives every waiting datagram and delivers its messages.
+     *
+     * @throws IOException if the link fails
+     */
+    public void poll() throws IOException {
+        SocketAddress from;
+        while (true) {
+            in.clear();
+            from = link.receive(in);
+            if (from == null) return;
+            in.flip();
+            if (in.remaining() < 2) {
+                malformed++;
+                continue;
+            }
+            short magic = in.getShort();
+            UdpPeer peer = peers.get(from);
+            long now = System.nanoTime();
+            boolean isNew = false;
+            if (magic == UdpPeer.MAGIC_COOKIE) {
+                if (peer == null) continue;
+                if (in.remaining() < 4) {
+                    malformed++;
+                    continue;
+                }
+                peer.setCookie(in.getInt());
+                continue;
+            } else if (magic == UdpPeer.MAGIC_HELLO) {
+                if (in.remaining() < 4) {
+                    malformed++;
+                    continue;
+                }
+                int cookie = in.getInt();
+                if (peer == null) {
+                    if (!acceptNewPeers) continue;
+                    if (!isValidCookie(from, cookie, now)) {
+                        sendCookie(from, now); // expired: hand out a fresh one
+                        continue;
+                    }
+                    if (countAccepted() >= maxPeers) {
+                        refused++;
+                        continue;
+                    }
+                    peer = new UdpPeer(this, from, true, now);
+                    isNew = true;
+                }
+            } else if (magic == UdpPeer.MAGIC) {
+                if (peer == null) {
+                    // no state until the sender proves it receives at this address;
+                    // a valid packet is at least as long as the reply, so nothing is amplified
+                    if (acceptNewPeers && in.remaining() >= cookieOut.capacity()) sendCookie(from, now);
+                    continue;
+                }
+            } else {
+                malformed++;
+                continue;
+            }
+            try {
+                if (isNew) {
+                    peers.put(from, peer);
+                    listener.onNewPeer(peer);
+                }
+                peer.receive(in, now, listener);
+            } catch (ProtocolException | BufferUnderflowException | IndexOutOfBoundsException e) {
+                malformed++;
+            }
+        }
+    }
+
+    private void sendCookie(SocketAddress to, long now) throws IOException {
+        cookieOut.clear();
+        cookieOut.putShort(UdpPeer.MAGIC_COOKIE);
+        cookieOut.putInt(cookie(to, now / COOKIE_PERIOD_NANOS));
+        cookieOut.flip();
+        link.send(cookieOut, to);
+    }
+
+    private boolean isValidCookie(SocketAddress from, int cookie, long now) {
+        long period = now / COOKIE_PERIOD_NANOS;
+        return cookie == cookie(from, period) || cookie == cookie(from, period - 1);
+    }
+
+    /** Keyed hash of address and period; unpredictable without the secret. */
+    private int cookie(SocketAddress address, long period) {
+        long z = cookieSecret ^ (address.hashCode() * 0x9E3779B97F4A7C15L) ^ (period * 0xC2B2AE3D27D4EB4FL);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return (int) (z ^ (z >>> 32));
+    }
+
+    private int countAccepted() {
+        int n = 0;
+        for (UdpPeer p : peers.values()) {
+            if (p.isAccepted()) n++;
+        }
+        return n;
+    }
+
+    /**
+     * Sends what every peer has queued this tick, plus due resends and acks.
+     *
+     * @throws IOException if the link fails
+     */
+    public void flush() throws IOException {
+        long now = System.nanoTime();
+        Iterator<UdpPeer> it = peers.values().iterator();
+        while (it.hasNext()) {
+            UdpPeer p = it.next();
+            if (p.isAccepted() && now - p.getLastReceiveNanos() > peerTimeoutNanos) {
+                it.remove();
+                timedOut++;
+                listener.onPeerTimeout(p);
+                continue;
+            }
+            p.flush(now);
+        }
+    }
+
+    /** @return datagrams dropped because they could not be parsed */
+    public long getMalformed() {
+        return malformed;
+    }
+
+    /** @return clients with a valid cookie turned away because of {@link #setMaxPeers} */
+    public long getRefused() {
+        return refused;
+    }
+
+    /** @return accepted peers forgotten after {@link #setPeerTimeout} */
+    public long getTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Closes the underlying link.
+     */
+    public void close() {
+        link.close();
+    }
+
+    DatagramLink link() {
+        return link;
+    }
+
+    /** Shared buffer for building outgoing packets (one at a time). */
+    ByteBuffer packetBuffer() {
+        return out;
+    }
+
+    /** Shared buffer for decoding one buffered reliable frame at a time. */
+    ByteBuffer frameScratch() {
+        if (frameScratch == null) {
+            frameScratch = ByteBuffer.allocate(WireProtocol.MAX_HEADER_BYTES + WireProtocol.MAX_FRAME_BYTES);
+        }
+        return frameScratch;
+    }
+}
@@ -0,0 +1,268 @@
+package network;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary wire format shared by {@link NetworkClient} and {@link NetworkServer}.
+ *
+ * <p>Every message travels as one length-prefixed frame:</p>
+ * <pre>
+ * varint  length       bytes that follow (type .. end of payload)
+ * byte    type         one of the TYPE_* constants
+ * byte    fieldCount   number of int fields, at most {@link Message#MAX_FIELDS}
+ * varint  field * n    zigzag-encoded ints, so small negatives stay short
+ * byte[]  payload      the rest of the frame (text, snapshots, ...)
+ * </pre>
+ *
+ * <p>A pixel position update is therefore 8 bytes on the wire instead of a
+ * formatted line such as {@code "PIX,288,144,left\n"}. Encoding and decoding
+ * work directly on {@link ByteBuffer}s and never allocate.</p>
+ */
+public final class WireProtocol {
+
+    /** Tile position: row, col, direction. */
+    public static final int TYPE_POS = 1;
+
+    /** Pixel position: x, y, direction. */
+    public static final int TYPE_PIX = 2;
+
+    /** Bomb placed: row, col. */
+    public static final int TYPE_BOMB = 3;
+
+    /** Free text in the payload (UTF-8). */
+    public static final int TYPE_TEXT = 4;
+
+    /** State snapshot delta: tick, baseline tick, rows, cols + payload (see {@link SnapshotEncoder}). */
+    public static final int TYPE_SNAPSHOT = 5;
+
+    /** Client applied a snapshot: tick. */
+    public static final int TYPE_SNAPSHOT_ACK = 6;
+
+    /** One tick of client input: sequence number, INPUT_* bits. */
+    public static final int TYPE_INPUT = 7;
+
+    /** Lockstep input frames: newest remote tick received, first tick, then INPUT_* bits per tick (see {@link RollbackSession}). */
+    public static final int TYPE_LOCKSTEP = 8;
+
+    /** Lobby request or reply: a LOBBY_* operation, then its arguments (see {@link LobbyServer}). */
+    public static final int TYPE_LOBBY = 9;
+
+    /** Entities moved into or out of the client's view: tick, entered count, entered keys, exited keys. */
+    public static final int TYPE_VIEW = 10;
+
+    /** Direction codes used in position messages. */
+    public static final int DIR_UP = 0, DIR_DOWN = 1, DIR_LEFT = 2, DIR_RIGHT = 3;
+
+    /** Bits of a {@link #TYPE_INPUT} message. */
+    public static final int INPUT_UP = 1, INPUT_DOWN = 2, INPUT_LEFT = 4, INPUT_RIGHT = 8,
+            INPUT_PLACE = 16, INPUT_DETONATE = 32,
+            INPUT_BOMB_UP = 64, INPUT_BOMB_DOWN = 128, INPUT_BOMB_LEFT = 256, INPUT_BOMB_RIGHT = 512;
+
+    /**
+     * Operations of a {@link #TYPE_LOBBY} message. Requests: list rooms, create
+     * a room, join room id, join any room with space. Replies: rooms (total,
+     * then id and player count per room), joined room id, room id full.
+     */
+    public static final int LOBBY_LIST = 0, LOBBY_CREATE = 1, LOBBY_JOIN = 2, LOBBY_MATCH = 3,
+            LOBBY_ROOMS = 4, LOBBY_JOINED = 5, LOBBY_FULL = 6;
+
+    /** Largest accepted frame body; longer frames are a protocol error. */
+    public static final int MAX_FRAME_BYTES = 64 * 1024;
+
+    /** Largest possible length prefix (5 bytes for an int varint). */
+    public static final int MAX_HEADER_BYTES = 5;
+
+    private static final String[] DIR_NAMES = {"up", "down", "left", "right"};
+
+    private WireProtocol() {}
+
+    // ---------------------------------------------------------------
+    // directions
+    // ---------------------------------------------------------------
+
+    /**
+     * Maps a direction name as used by {@link model.Hero#direction} to its code.
+     *
+     * @param dir "up", "down", "left" or "right"
+     * @return the DIR_* code ({@link #DIR_LEFT} for anything unknown)
+     */
+    public static int dirCode(String dir) {
+        switch (dir) {
+            case "up": return DIR_UP;
+            case "down": return DIR_DOWN;
+            case "right": return DIR_RIGHT;
+            default: return DIR_LEFT;
+        }
+    }
+
+    /**
+     * Maps a direction code back to its interned name.
+     *
+     * @param code DIR_* code
+     * @return the direction name
+     */
+    public static String dirName(int code) {
+        return (code >= 0 && code < DIR_NAMES.length) ? DIR_NAMES[code] : "left";
+    }
+
+    // ---------------------------------------------------------------
+    // varints
+    // ---------------------------------------------------------------
+
+    /** @return number of bytes {@link #putVarInt} writes for {@code v} */
+    public static int varIntSize(int v) {
+        int n = 1;
+        while ((v & ~0x7F) != 0) {
+            v >>>= 7;
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Writes an unsigned LEB128 varint.
+     *
+     * @param buf target buffer
+     * @param v   value, treated as unsigned
+     */
+    public static void putVarInt(ByteBuffer buf, int v) {
+        while ((v & ~0x7F) != 0) {
+            buf.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buf.put((byte) v);
+    }
+
+    /**
+     * Reads an unsigned LEB128 varint at the buffer's position.
+     *
+     * @param buf source buffer
+     * @return the value
+     * @throws ProtocolException if the varint is longer than 5 bytes or
+     *                           runs past the buffer's limit
+     */
+    public static int getVarInt(ByteBuffer buf) throws ProtocolException {
+        return getVarInt(buf, buf.limit());
+    }
+
+    /**
+     * Reads an unsigned LEB128 varint at the buffer's position that must end
+     * before {@code end}.
+     *
+     * @param buf source buffer
+     * @param end index just past the last byte the varint may use
+     * @return the value
+     * @throws ProtocolException if the varint is longer than 5 bytes or
+     *                           runs past {@code end}
+     */
+    public static int getVarInt(ByteBuffer buf, int end) throws ProtocolException {
+        int v = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (buf.position() >= end) throw new ProtocolException("truncated varint");
+            byte b = buf.get();
+            v |= (b & 0x7F) << shift;
+            if (b >= 0) return v;
+        }
+        throw new ProtocolException("varint too long");
+    }
+
+    /** @return {@code v} mapped so that small magnitudes give small unsigned values */
+    public static int zigzag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    /** @return the inverse of {@link #zigzag(int)} */
+    public static int unzigzag(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    // ---------------------------------------------------------------
+    // frames
+    // ---------------------------------------------------------------
+
+    /** @return size of the frame body of {@code msg} (without the length prefix) */
+    static int bodySize(Message msg) {
+        int n = 2 + msg.getPayloadLength();
+        for (int i = 0; i < msg.getFieldCount(); i++) n += varIntSize(zigzag(msg.getInt(i)));
+        return n;
+    }
+
+    /**
+     * Returns the number of bytes {@link #encode} writes for a message.
+     *
+     * @param msg message to measure
+     * @return full frame size including the length prefix
+     */
+    public static int frameSize(Message msg) {
+        int body = bodySize(msg);
+        return varIntSize(body) + body;
+    }
+
+    /**
+     * Encodes one frame at the buffer's position.
+     *
+     * @param msg message to write
+     * @param buf target buffer
+     * @return false (with the buffer untouched) if the frame does not fit
+     */
+    public static boolean encode(Message msg, ByteBuffer buf) {
+        int body = bodySize(msg);
+        if (buf.remaining() < varIntSize(body) + body) return false;
+        putVarInt(buf, body);
+        buf.put((byte) msg.getType());
+        buf.put((byte) msg.getFieldCount());
+        for (int i = 0; i < msg.getFieldCount(); i++) putVarInt(buf, zigzag(msg.getInt(i)));
+        msg.writePayload(buf);
+        return true;
+    }
+
+    /**
+     * Decodes one frame at the buffer's position into {@code out}. The message's
+     * payload refers to {@code buf} and is only valid until the buffer is
+     * modified.
+     *
+     * @param buf source buffer in read mode
+     * @param out message to fill
+     * @return true if a frame was decoded; false if it is not complete yet,
+     *         in which case the buffer's position is unchanged
+     * @throws ProtocolException if the frame is malformed or too long
+     */
+    public static boolean decode(ByteBuffer buf, Message out) throws ProtocolException {
+        int start = buf.position();
+        int available = buf.remaining();
+
+        // length prefix; may itself be incomplete
+        int body = 0;
+        int header = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (header == available) {
+                buf.position(start);
+                return false;
+            }
+            if (header == MAX_HEADER_BYTES) throw new ProtocolException("length prefix too long");
+            byte b = buf.get();
+            header++;
+            body |= (b & 0x7F) << shift;
+            if (b >= 0) break;
+        }
+        if (body < 2 || body > MAX_FRAME_BYTES) throw new ProtocolException("bad frame length " + body);
+        if (available - header < body) {
+            buf.position(start);
+            return false;
+        }
+
+        int end = buf.position() + body;
+        int type = buf.get() & 0xFF;
+        int count = buf.get() & 0xFF;
+        if (count > Message.MAX_FIELDS) throw new ProtocolException("too many fields: " + count);
+        out.clear(type);
+        for (int i = 0; i < count; i++) {
+            if (buf.position() >= end) throw new ProtocolException("truncated fields");
+            out.add(unzigzag(getVarInt(buf, end)));
+        }
+        out.setPayload(buf, buf.position(), end - buf.position());
+        buf.position(end);
+        return true;
+    }
+}